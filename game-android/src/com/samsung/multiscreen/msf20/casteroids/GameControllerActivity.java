@@ -1,6 +1,10 @@
 package com.samsung.multiscreen.msf20.casteroids;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import android.app.Activity;
 import android.content.Context;
@@ -12,7 +16,11 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.os.Vibrator;
 import android.text.Spannable;
 import android.text.SpannableString;
@@ -31,22 +39,30 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.samsung.multiscreen.msf20.casteroids.input.InputClock;
+import com.samsung.multiscreen.msf20.casteroids.input.InputPipeline;
+import com.samsung.multiscreen.msf20.casteroids.input.InputRecorder;
+import com.samsung.multiscreen.msf20.casteroids.input.InputScheduler;
+import com.samsung.multiscreen.msf20.casteroids.input.OneEuroFilter;
+import com.samsung.multiscreen.msf20.casteroids.input.RotateQuantizer;
+import com.samsung.multiscreen.msf20.casteroids.model.ConfigType;
+import com.samsung.multiscreen.msf20.casteroids.model.DeliveryTarget;
 import com.samsung.multiscreen.msf20.casteroids.model.Event;
-import com.samsung.multiscreen.msf20.casteroids.model.Fire;
 import com.samsung.multiscreen.msf20.casteroids.model.GameConnectivityManager;
-import com.samsung.multiscreen.msf20.casteroids.model.MessageDataHelper;
-import com.samsung.multiscreen.msf20.casteroids.model.Rotate;
-import com.samsung.multiscreen.msf20.casteroids.model.Thrust;
+import com.samsung.multiscreen.msf20.casteroids.model.GameMessageListener;
+import com.samsung.multiscreen.msf20.casteroids.model.JoinResponseData;
+import com.samsung.multiscreen.msf20.casteroids.model.MessageType;
+import com.samsung.multiscreen.msf20.casteroids.utils.ThreadUtils;
 import com.samsung.multiscreen.msf20.casteroids.views.GyroView;
 import com.samsung.multiscreen.msf20.connectivity.ConnectivityListener;
-import com.samsung.multiscreen.msf20.connectivity.MessageListener;
+import com.samsung.multiscreen.msf20.connectivity.ConnectivityManager;
 
 /**
  * The game controller screen for Casteroids.
  *
  * @author Nik Bhattacharya
  */
-public class GameControllerActivity extends Activity implements View.OnTouchListener, ConnectivityListener, MessageListener {
+public class GameControllerActivity extends Activity implements View.OnTouchListener, ConnectivityListener {
 
     /** Debugging */
     private static final String TAG = GameControllerActivity.class.getSimpleName();
@@ -58,12 +74,23 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
     private int userSelectedColor;
 
     /** Keep track of state */
-    private boolean turningLeft, turningRight, thrusting, firing;
-    private int strengthLeft, strengthRight;
+    private boolean thrusting, firing;
 
     /** GameConnectivityManager enables sending messages to the TV */
     private GameConnectivityManager gameConnectivityManager;
 
+    /** Sends the controller input to the TV at a fixed tick */
+    private InputScheduler inputScheduler;
+
+    /** Turns the sensor events and button presses in to the input sent by the InputScheduler */
+    private InputPipeline inputPipeline;
+
+    /** Record the input of every session to a file that the InputReplayer can replay */
+    private static final boolean RECORD_INPUT = false;
+
+    /** Records the input of the current session, or null */
+    private InputRecorder inputRecorder;
+
     /** Vibration service */
     private Vibrator vibrator;
 
@@ -85,11 +112,66 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
     /** Device orientation */
     private float pitch = 0;
 
-    /** Track device orientation */
-    private float[] aValues = new float[3];
+    /** Delivers the sensor events and runs the orientation math off the UI thread */
+    private HandlerThread sensorThread;
+    private Handler sensorHandler;
 
-    /** Track device orientation */
-    private float[] mValues = new float[3];
+    /** The latest pitch handed from the sensor thread to the UI */
+    private volatile float sensorPitch = 0;
+
+    /** Whether a pitch update is already posted to the UI thread */
+    private final AtomicBoolean isPitchUpdatePosted = new AtomicBoolean(false);
+
+    /** Updates the Compass View with the latest pitch on the UI thread */
+    private final Runnable pitchUpdateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isPitchUpdatePosted.set(false);
+            pitch = sensorPitch;
+
+            if (compassView != null) {
+                compassView.setPitch(pitch);
+                compassView.invalidate();
+            }
+        }
+    };
+
+    /** Handles the GAME_START and PLAYER_OUT count downs on the UI thread */
+    private final GameMessageListener<Integer> countDownListener = new GameMessageListener<Integer>() {
+        @Override
+        public void onMessage(MessageType<? extends Integer> messageType, Integer numSeconds) {
+            logMessage(messageType);
+            if (numSeconds == null) {
+                return;
+            }
+            if (messageType == MessageType.GAME_START) {
+                onGameStart(numSeconds);
+            } else {
+                onPlayerOut(numSeconds);
+            }
+        }
+    };
+
+    /** Handles the GAME_OVER message on the UI thread, the scores are shown by the GameOverActivity */
+    private final GameMessageListener<Object> gameOverListener = new GameMessageListener<Object>() {
+        @Override
+        public void onMessage(MessageType<?> messageType, Object message) {
+            logMessage(messageType);
+            onGameOver();
+        }
+    };
+
+    /** Handles the JOIN_RESPONSE of a rejoin on the UI thread */
+    private final GameMessageListener<JoinResponseData> joinResponseListener = new GameMessageListener<JoinResponseData>() {
+        @Override
+        public void onMessage(MessageType<? extends JoinResponseData> messageType, JoinResponseData joinResponseData) {
+            logMessage(messageType);
+            onJoinResponse(joinResponseData);
+        }
+    };
+
+    /** Use the game rotation vector sensor for the device orientation where available */
+    private static final boolean USE_GAME_ROTATION_VECTOR = true;
 
     /** Visual indicator of the device orientation */
     private GyroView compassView;
@@ -103,6 +185,9 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
     /** Magnetic Field sensor */
     private Sensor magneticField;
 
+    /** Game Rotation Vector sensor. Replaces the accelerometer and magnetic field sensors when available. */
+    private Sensor gameRotationVector;
+
     /** Whether user input is enabled */
     private boolean isEnabled = true;
 
@@ -142,9 +227,23 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
 
         //sensor code
         compassView = (GyroView)this.findViewById(R.id.compass_view);
+        sensorThread = new HandlerThread("SensorThread");
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+        sensorHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                ThreadUtils.setThreadPriorityAudio(Process.myTid());
+            }
+        });
         sensorManager = (SensorManager)getSystemService(Context.SENSOR_SERVICE);
-        accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-        magneticField = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+        if (USE_GAME_ROTATION_VECTOR && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            gameRotationVector = sensorManager.getDefaultSensor(Sensor.TYPE_GAME_ROTATION_VECTOR);
+        }
+        if (gameRotationVector == null) {
+            accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            magneticField = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+        }
         compassView.setShowNumber(false);
         compassView.setGyroColor(userSelectedColor);
 
@@ -182,7 +281,27 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
         // Get an instance of the ConnectivtyManager and register for connectivity updates.
         gameConnectivityManager = GameConnectivityManager.getInstance(getApplicationContext());
         gameConnectivityManager.registerConnectivityListener(this);
-        gameConnectivityManager.registerMessageListener(this, Event.GAME_START, Event.PLAYER_OUT, Event.GAME_OVER);
+        gameConnectivityManager.registerMessageListener(countDownListener, DeliveryTarget.UI_THREAD, MessageType.GAME_START);
+        gameConnectivityManager.registerMessageListener(countDownListener, DeliveryTarget.UI_THREAD, MessageType.PLAYER_OUT);
+        gameConnectivityManager.registerMessageListener(gameOverListener, DeliveryTarget.UI_THREAD, MessageType.GAME_OVER);
+        gameConnectivityManager.registerMessageListener(joinResponseListener, DeliveryTarget.UI_THREAD,
+                MessageType.JOIN_RESPONSE);
+
+        // Send the controller input at the rate the TV updates the players.
+        long tickMillis = gameConnectivityManager.getGameState().getConfigTypeMap()
+                .isEnabled(ConfigType.AGGRESSIVE_UPDATE_CYCLE) ? InputScheduler.AGGRESSIVE_TICK_MILLIS
+                : InputScheduler.DEFAULT_TICK_MILLIS;
+        if (inputScheduler == null) {
+            inputScheduler = new InputScheduler(gameConnectivityManager, new Handler(), tickMillis);
+            inputPipeline = new InputPipeline(inputScheduler, new OneEuroFilter());
+        } else {
+            inputScheduler.setTickMillis(tickMillis);
+        }
+        inputScheduler.start();
+
+        if (RECORD_INPUT) {
+            startRecordingInput();
+        }
 
         // If we are not connected return to the main screen.
         if (!gameConnectivityManager.isConnected()) {
@@ -195,12 +314,24 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
         boolean hasGameStarted = (gameConnectivityManager.getGameState().getGameStartCountDownSeconds() == 0);
         enableViews(hasGameStarted);
 
-        //start the sensor listeners
+        //start the sensor listeners on the sensor thread
+        sensorHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                inputPipeline.resetSensors();
+            }
+        });
+        if(gameRotationVector != null) {
+            sensorManager.registerListener(sensorEventListener, gameRotationVector, SensorManager.SENSOR_DELAY_GAME,
+                    sensorHandler);
+        }
         if(accelerometer != null) {
-            sensorManager.registerListener(sensorEventListener, accelerometer, SensorManager.SENSOR_DELAY_GAME);
+            sensorManager.registerListener(sensorEventListener, accelerometer, SensorManager.SENSOR_DELAY_GAME,
+                    sensorHandler);
         }
         if(magneticField != null) {
-            sensorManager.registerListener(sensorEventListener, magneticField, SensorManager.SENSOR_DELAY_GAME);
+            sensorManager.registerListener(sensorEventListener, magneticField, SensorManager.SENSOR_DELAY_GAME,
+                    sensorHandler);
         }
     }
 
@@ -210,10 +341,35 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
 
         // Unregister self as a listener
         gameConnectivityManager.unregisterConnectivityListener(this);
-        gameConnectivityManager.unregisterMessageListener(this, Event.GAME_START, Event.PLAYER_OUT, Event.GAME_OVER);
+        gameConnectivityManager.unregisterMessageListener(countDownListener, MessageType.GAME_START);
+        gameConnectivityManager.unregisterMessageListener(countDownListener, MessageType.PLAYER_OUT);
+        gameConnectivityManager.unregisterMessageListener(gameOverListener, MessageType.GAME_OVER);
+        gameConnectivityManager.unregisterMessageListener(joinResponseListener, MessageType.JOIN_RESPONSE);
 
         //stop the sensor listeners as it can drain the battery if you don't
         sensorManager.unregisterListener(sensorEventListener);
+
+        //stop the input tick, sending any pending input first
+        inputScheduler.stop();
+
+        stopRecordingInput();
+
+        if (BuildConfig.DEBUG) {
+            RotateQuantizer rotateQuantizer = inputPipeline.getRotateQuantizer();
+            Log.d(TAG, "Rotate changes=" + rotateQuantizer.getChangeCount() + ", suppressed="
+                    + rotateQuantizer.getSuppressedCount() + ", sent=" + inputScheduler.getRotateSentCount()
+                    + ", overwritten=" + inputScheduler.getRotateOverwrittenCount() + ", states="
+                    + inputScheduler.getStateSentCount());
+            Log.d(TAG, "Input latency: " + gameConnectivityManager.getLatencyReport());
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        //stop the sensor thread
+        sensorThread.quit();
     }
 
     @Override
@@ -227,11 +383,12 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
         //only send values if we are enabled
         if(isEnabled) {
             int id = v.getId();
+            long inputTimeNanos = InputClock.fromEventTime(event.getEventTime());
 
             if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
-                handleDown(id);
+                handleDown(id, inputTimeNanos);
             } else if (event.getActionMasked() == MotionEvent.ACTION_UP) {
-                handleUp(id);
+                handleUp(id, inputTimeNanos);
             }
         }
 
@@ -250,7 +407,12 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
             case DISCOVERY_FOUND_SERVICE:
             case DISCOVERY_LOST_SERVICE:
             case APPLICATION_CONNECTED:
-                // Ignore
+            case APPLICATION_RECONNECTED:
+                // Ignore. The player rejoins the game with the same ship once reconnected.
+                break;
+            case APPLICATION_RECONNECTING:
+                // Keep the player in the game while the connection is reconnected.
+                Toast.makeText(this, "Reconnecting...", Toast.LENGTH_SHORT).show();
                 break;
             case APPLICATION_DISCONNECTED:
             case APPLICATION_CONNECT_FAILED:
@@ -262,55 +424,65 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
         }
     }
 
-    @Override
-    public void onMessage(String event, String data, byte[] payload) {
+    private void logMessage(MessageType<?> messageType) {
         if (BuildConfig.DEBUG) {
-            Log.d(TAG, "Received event '" + event + "'");
+            Log.d(TAG, "Received event '" + messageType.getEvent().getName() + "'");
         }
-        if(event.equals(Event.GAME_OVER.getName())){
-            Intent gameOverScreen = new Intent();
-            gameOverScreen.setClass(this, GameOverActivity.class);
-            startActivity(gameOverScreen);
-            finish();
-        } else if (event.equals(Event.GAME_START.getName())){
-            //show countdown
-            int numSeconds = MessageDataHelper.decodeGameStartCountDownSeconds(data);
+    }
 
+    private void onGameOver() {
+        Intent gameOverScreen = new Intent();
+        gameOverScreen.setClass(this, GameOverActivity.class);
+        startActivity(gameOverScreen);
+        finish();
+    }
 
-            //show a toast for any non 0 wait time.
-            if(numSeconds != 0) {
-                instructionsText.setVisibility(View.VISIBLE);
-                instructionsText.setText(getStyledString("Game starting in " + numSeconds + ((numSeconds == 1) ? " second" : " seconds")));
-            } else {
-                instructionsText.setVisibility(View.INVISIBLE);
-            }
+    private void onGameStart(int numSeconds) {
+        //show countdown
+
+        //show a toast for any non 0 wait time.
+        if(numSeconds != 0) {
+            instructionsText.setVisibility(View.VISIBLE);
+            instructionsText.setText(getStyledString("Game starting in " + numSeconds + ((numSeconds == 1) ? " second" : " seconds")));
+        } else {
+            instructionsText.setVisibility(View.INVISIBLE);
+        }
 
-            //Only 0 means we are in
-            setUserInputEnabled(numSeconds == 0);
-        } else if (event.equals(Event.PLAYER_OUT.getName())){
-            //show countdown
-            int numSeconds = MessageDataHelper.decodePlayerOutCountDownSeconds(data);
+        //Only 0 means we are in
+        setUserInputEnabled(numSeconds == 0);
+    }
 
-            //show a toast for any non 0 wait time.
-            if(numSeconds != 0) {
-                instructionsText.setVisibility(View.VISIBLE);
-                instructionsText.setText(getStyledString("Game starting in " + numSeconds + ((numSeconds == 1) ? " second" : " seconds")));
+    private void onPlayerOut(int numSeconds) {
+        //show countdown
 
-                deathOverlayView.setVisibility(View.VISIBLE);
+        //show a toast for any non 0 wait time.
+        if(numSeconds != 0) {
+            instructionsText.setVisibility(View.VISIBLE);
+            instructionsText.setText(getStyledString("Game starting in " + numSeconds + ((numSeconds == 1) ? " second" : " seconds")));
 
-                if(!processedPlayerOutEvent) {
-                    vibrator.vibrate(300);
-                }
-            }
+            deathOverlayView.setVisibility(View.VISIBLE);
 
-            //Only 0 means we are in
-            setUserInputEnabled(numSeconds == 0);
-            if(numSeconds == 0){
-                processedPlayerOutEvent = false; //get ready for the next player out
-                deathOverlayView.setVisibility(View.GONE);
-                instructionsText.setVisibility(View.INVISIBLE);
+            if(!processedPlayerOutEvent) {
+                vibrator.vibrate(300);
             }
         }
+
+        //Only 0 means we are in
+        setUserInputEnabled(numSeconds == 0);
+        if(numSeconds == 0){
+            processedPlayerOutEvent = false; //get ready for the next player out
+            deathOverlayView.setVisibility(View.GONE);
+            instructionsText.setVisibility(View.INVISIBLE);
+        }
+    }
+
+    private void onJoinResponse(JoinResponseData joinResponseData) {
+        // The player rejoins the game after the connection was reconnected. If the TV no longer holds the
+        // player's slot, the player has to join again.
+        if (joinResponseData == null || !joinResponseData.isSuccessful()) {
+            Toast.makeText(this, "Couldn't rejoin the game.", Toast.LENGTH_SHORT).show();
+            finish();
+        }
     }
 
 
@@ -319,34 +491,16 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
      */
 
     /**
-     * Updates the internal state of the device as well as sends the message
-     * over the the Compass View.
+     * Hands the latest pitch of the device to the Compass View. Called on
+     * the sensor thread.
      *
      * @param pitch the current pitch of the device.
      */
     private void updateOrientation(float pitch) {
-        this.pitch = pitch;
-
-        if (compassView!= null) {
-            compassView.setPitch(pitch);
-            compassView.invalidate();
-        }
-
-        int threshold = 5;
-        //strength value ranging from 0 to 20 based on the given threshold and pitch.
-        int strength = (int)(((Math.abs(pitch)-threshold) * 20.0f) / (90.0f - threshold));
-
-        if(pitch > -threshold && pitch < threshold) {
-            if(turningRight) {
-                setTurningRight(false, 0);
-            }
-            if(turningLeft) {
-                setTurningLeft(false, 0);
-            }
-        } else if (pitch <= -threshold && (!turningRight || strengthRight != strength)) {
-            setTurningRight(true, strength);
-        } else if(pitch >= threshold && (!turningLeft || strengthLeft != strength)) {
-            setTurningLeft(true, strength);
+        //hand only the latest pitch to the UI, with at most one update posted at a time
+        sensorPitch = pitch;
+        if (isPitchUpdatePosted.compareAndSet(false, true)) {
+            ThreadUtils.postOnUiThread(pitchUpdateRunnable);
         }
     }
 
@@ -364,27 +518,27 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
 
 
 
-    private void handleDown(int id) {
+    private void handleDown(int id, long inputTimeNanos) {
 
         handleEvent(id, /** Down */
-                true);
+                true, inputTimeNanos);
         Log.v(TAG, toString());
     }
 
-    private void handleUp(int id) {
+    private void handleUp(int id, long inputTimeNanos) {
 
         handleEvent(id, /** Down */
-                false);
+                false, inputTimeNanos);
         Log.v(TAG, toString());
     }
 
-    private void handleEvent(int viewId, boolean value) {
+    private void handleEvent(int viewId, boolean value, long inputTimeNanos) {
         switch (viewId) {
             case R.id.thrust_button:
-                setThrusting(value);
+                setThrusting(value, inputTimeNanos);
                 break;
             case R.id.fire_button:
-                setFiring(value);
+                setFiring(value, inputTimeNanos);
                 break;
             default:
                 break;
@@ -392,46 +546,17 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
         Log.v(TAG, toString());
     }
 
-    private void setTurningLeft(boolean value, int strength) {
-        turningLeft = value;
-        strengthLeft = strength;
-
-        if (value) {
-            gameConnectivityManager.sendRotateMessage(Rotate.LEFT, strength);
-        } else {
-            gameConnectivityManager.sendRotateMessage(Rotate.NONE, 0);
-        }
-    }
-
-    private void setTurningRight(boolean value, int strength) {
-        turningRight = value;
-        strengthRight = strength;
-
-        if (value) {
-            gameConnectivityManager.sendRotateMessage(Rotate.RIGHT, strength);
-        } else {
-            gameConnectivityManager.sendRotateMessage(Rotate.NONE, 0);
-        }
-    }
-
-    private void setThrusting(boolean value) {
+    private void setThrusting(boolean value, long inputTimeNanos) {
         thrusting = value;
-
-        if (value) {
-            gameConnectivityManager.sendThrustMessage(Thrust.ON);
-        } else {
-            gameConnectivityManager.sendThrustMessage(Thrust.OFF);
-        }
+        inputPipeline.setThrust(value, inputTimeNanos);
     }
 
-    private void setFiring(boolean value) {
+    private void setFiring(boolean value, long inputTimeNanos) {
         firing = value;
+        inputPipeline.setFire(value, inputTimeNanos);
 
         if (value) {
-            gameConnectivityManager.sendFireMessage(Fire.ON);
             vibrator.vibrate(10);
-        } else {
-            gameConnectivityManager.sendFireMessage(Fire.OFF);
         }
     }
 
@@ -457,6 +582,55 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
         }
     }
 
+    /**
+     * Starts recording the input and the messages received from the TV to
+     * a new input log in the app files directory.
+     */
+    private void startRecordingInput() {
+        File dir = getExternalFilesDir(null);
+        File file = new File((dir != null) ? dir : getFilesDir(), "input-" + System.currentTimeMillis() + ".cinp");
+        try {
+            inputRecorder = new InputRecorder(new FileOutputStream(file));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start recording the input. file=" + file, e);
+            return;
+        }
+
+        inputPipeline.setInputRecorder(inputRecorder);
+        for (Event event : Event.values()) {
+            if (event.doesClientReceive()) {
+                gameConnectivityManager.registerMessageListener(inputRecorder, event);
+            }
+        }
+
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "Recording the input to " + file);
+        }
+    }
+
+    /**
+     * Stops recording the input and closes the input log.
+     */
+    private void stopRecordingInput() {
+        if (inputRecorder == null) {
+            return;
+        }
+
+        inputPipeline.setInputRecorder(null);
+        for (Event event : Event.values()) {
+            if (event.doesClientReceive()) {
+                gameConnectivityManager.unregisterMessageListener(inputRecorder, event);
+            }
+        }
+
+        try {
+            inputRecorder.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close the input log.", e);
+        }
+        inputRecorder = null;
+    }
+
 
 
     /**
@@ -504,10 +678,10 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
             //then send messages to the server if needed
             if(!this.isEnabled) {
 
-                setFiring(false);
-                setThrusting(false);
-                setTurningRight(false, 0);
-                setTurningLeft(false, 0);
+                //release all the controls in a single batch
+                firing = false;
+                thrusting = false;
+                inputPipeline.release();
 
             }
         }
@@ -523,8 +697,13 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
         fireButton.setEnabled(enabled);
         if (enabled) {
             compassView.setVisibility(View.VISIBLE);
-            setThrusting(thrustButton.isPressed());
-            setFiring(fireButton.isPressed());
+            gameConnectivityManager.beginInputBatch();
+            try {
+                setThrusting(thrustButton.isPressed(), ConnectivityManager.NO_INPUT_TIME);
+                setFiring(fireButton.isPressed(), ConnectivityManager.NO_INPUT_TIME);
+            } finally {
+                gameConnectivityManager.endInputBatch();
+            }
         } else {
             compassView.setVisibility(View.INVISIBLE);
         }
@@ -559,31 +738,18 @@ public class GameControllerActivity extends Activity implements View.OnTouchList
      */
 
     /**
-     * SensorEventListener listens for Accelerometer and Magnetic Field events and updates
-     * the state of the device orientation.
+     * SensorEventListener listens for Game Rotation Vector events, or Accelerometer and Magnetic
+     * Field events, and hands them to the input pipeline.
      *
+     * The events are delivered on the sensor thread, so the UI thread only receives the final pitch.
      */
     private final SensorEventListener sensorEventListener = new SensorEventListener() {
         @Override
         public void onSensorChanged(SensorEvent event) {
-            switch (event.sensor.getType ()){
-                case Sensor.TYPE_ACCELEROMETER:
-                    aValues = event.values.clone ();
-                    break;
-                case Sensor.TYPE_MAGNETIC_FIELD:
-                    mValues = event.values.clone ();
-                    break;
+            if (inputPipeline.onSensorEvent(event.sensor.getType(), event.values, event.timestamp,
+                    InputClock.fromSensorTimestamp(event.timestamp))) {
+                updateOrientation(inputPipeline.getPitch());
             }
-
-            float[] R = new float[16];
-            float[] orientationValues = new float[3];
-
-            SensorManager.getRotationMatrix (R, null, aValues, mValues);
-            SensorManager.getOrientation (R, orientationValues);
-
-            orientationValues[1] = (float)Math.toDegrees (orientationValues[1]);
-
-            updateOrientation(orientationValues[1]);
         }
 
         @Override
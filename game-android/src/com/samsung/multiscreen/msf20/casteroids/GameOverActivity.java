@@ -28,13 +28,13 @@ import android.widget.TableLayout;
 import android.widget.TableRow;
 import android.widget.TextView;
 
-import com.samsung.multiscreen.msf20.casteroids.model.Event;
+import com.samsung.multiscreen.msf20.casteroids.model.DeliveryTarget;
 import com.samsung.multiscreen.msf20.casteroids.model.GameConnectivityManager;
+import com.samsung.multiscreen.msf20.casteroids.model.GameMessageListener;
 import com.samsung.multiscreen.msf20.casteroids.model.GameState;
-import com.samsung.multiscreen.msf20.casteroids.model.MessageDataHelper;
+import com.samsung.multiscreen.msf20.casteroids.model.MessageType;
 import com.samsung.multiscreen.msf20.casteroids.model.ScoreData;
 import com.samsung.multiscreen.msf20.connectivity.ConnectivityListener;
-import com.samsung.multiscreen.msf20.connectivity.MessageListener;
 
 /**
  * GameOver page for the game. This screen shows the scores for the various players
@@ -43,7 +43,7 @@ import com.samsung.multiscreen.msf20.connectivity.MessageListener;
  * @author Nik Bhattacharya
  *
  */
-public class GameOverActivity extends Activity implements ConnectivityListener, MessageListener {
+public class GameOverActivity extends Activity implements ConnectivityListener, GameMessageListener<Integer> {
 
     private static final String TAG = GameOverActivity.class.getSimpleName();
 
@@ -131,7 +131,7 @@ public class GameOverActivity extends Activity implements ConnectivityListener,
 
         //Register for connectivity updates.
         connectivityManager.registerConnectivityListener(this);
-        connectivityManager.registerMessageListener(this, Event.GAME_START);
+        connectivityManager.registerMessageListener(this, DeliveryTarget.UI_THREAD, MessageType.GAME_START);
 
         //capture the current state of the connection and show on the UI
         bindViews();
@@ -143,7 +143,7 @@ public class GameOverActivity extends Activity implements ConnectivityListener,
 
         // Unregister self as a listener
         connectivityManager.unregisterConnectivityListener(this);
-        connectivityManager.unregisterMessageListener(this, Event.GAME_START);
+        connectivityManager.unregisterMessageListener(this, MessageType.GAME_START);
     }
 
     @Override
@@ -161,13 +161,12 @@ public class GameOverActivity extends Activity implements ConnectivityListener,
     }
 
     @Override
-    public void onMessage(String event, String data, byte[] payload) {
+    public void onMessage(MessageType<? extends Integer> messageType, Integer numSeconds) {
         if (BuildConfig.DEBUG) {
-            Log.d(TAG, "Received event '" + event + "'");
+            Log.d(TAG, "Received event '" + messageType.getEvent().getName() + "'");
         }
-        if (event.equals(Event.GAME_START.getName())){
+        if (numSeconds != null){
             //show countdown
-            int numSeconds = MessageDataHelper.decodeGameStartCountDownSeconds(data);
 
 
             //show a toast for any non 0 wait time.
@@ -1,5 +1,7 @@
 package com.samsung.multiscreen.msf20.casteroids;
 
+import java.util.List;
+
 import android.animation.Animator;
 import android.annotation.TargetApi;
 import android.app.Activity;
@@ -19,11 +21,13 @@ import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.samsung.multiscreen.msf20.casteroids.model.Event;
+import com.samsung.multiscreen.msf20.casteroids.model.DeliveryTarget;
 import com.samsung.multiscreen.msf20.casteroids.model.GameConnectivityManager;
+import com.samsung.multiscreen.msf20.casteroids.model.GameMessageListener;
+import com.samsung.multiscreen.msf20.casteroids.model.MessageType;
+import com.samsung.multiscreen.msf20.casteroids.model.SlotData;
 import com.samsung.multiscreen.msf20.casteroids.views.CustomToast;
 import com.samsung.multiscreen.msf20.connectivity.ConnectivityListener;
-import com.samsung.multiscreen.msf20.connectivity.MessageListener;
 
 /**
  * Landing page for the game. Depending on the connectivity manager, it shows a
@@ -32,7 +36,7 @@ import com.samsung.multiscreen.msf20.connectivity.MessageListener;
  * @author Nik Bhattacharya
  *
  */
-public class MainActivity extends Activity implements ConnectivityListener, MessageListener {
+public class MainActivity extends Activity implements ConnectivityListener, GameMessageListener<List<SlotData>> {
 
     /** Code to send to the next screen when calling startActivityForResult */
     private static final  int SELECT_TV_RESULT_CODE = 1000;
@@ -133,7 +137,7 @@ public class MainActivity extends Activity implements ConnectivityListener, Mess
 
         //Register for connectivity and message updates.
         connectivityManager.registerConnectivityListener(this);
-        connectivityManager.registerMessageListener(this, Event.SLOT_UPDATE);
+        connectivityManager.registerMessageListener(this, DeliveryTarget.UI_THREAD, MessageType.SLOT_UPDATE);
 
         //if we are not discovering and don't have a flag to tell us not to restart discovery
         //go for it
@@ -154,7 +158,7 @@ public class MainActivity extends Activity implements ConnectivityListener, Mess
 
         // Unregister self as a connectivity and message update listener
         connectivityManager.unregisterConnectivityListener(this);
-        connectivityManager.unregisterMessageListener(this, Event.SLOT_UPDATE);
+        connectivityManager.unregisterMessageListener(this, MessageType.SLOT_UPDATE);
     }
 
     @Override
@@ -232,18 +236,11 @@ public class MainActivity extends Activity implements ConnectivityListener, Mess
     }
 
 	@Override
-    public void onMessage(String eventName, String data, byte[] payload) {
-		Event event = Event.getByName(eventName);
-		switch (event) {
-			case SLOT_UPDATE:
-                cancelProgressIndicator();
-                
-                // The slot update indicates that the TV Application is initialized, move to the player info screen
-                launchIntent(PlayerInfoActivity.class);
-				break;
-			default:
-				// ignore
-		}
+    public void onMessage(MessageType<? extends List<SlotData>> messageType, List<SlotData> slotData) {
+        cancelProgressIndicator();
+
+        // The slot update indicates that the TV Application is initialized, move to the player info screen
+        launchIntent(PlayerInfoActivity.class);
     }
 
     /******************************************************************************************************************
@@ -33,14 +33,14 @@ import android.widget.Toast;
 import com.samsung.multiscreen.msf20.casteroids.model.Color;
 import com.samsung.multiscreen.msf20.casteroids.model.ConfigType;
 import com.samsung.multiscreen.msf20.casteroids.model.ConfigTypeMap;
-import com.samsung.multiscreen.msf20.casteroids.model.Event;
+import com.samsung.multiscreen.msf20.casteroids.model.DeliveryTarget;
 import com.samsung.multiscreen.msf20.casteroids.model.GameConnectivityManager;
+import com.samsung.multiscreen.msf20.casteroids.model.GameMessageListener;
 import com.samsung.multiscreen.msf20.casteroids.model.JoinResponseData;
-import com.samsung.multiscreen.msf20.casteroids.model.MessageDataHelper;
+import com.samsung.multiscreen.msf20.casteroids.model.MessageType;
 import com.samsung.multiscreen.msf20.casteroids.model.SlotData;
 import com.samsung.multiscreen.msf20.casteroids.views.CustomToast;
 import com.samsung.multiscreen.msf20.connectivity.ConnectivityListener;
-import com.samsung.multiscreen.msf20.connectivity.MessageListener;
 
 /**
  *
@@ -50,7 +50,7 @@ import com.samsung.multiscreen.msf20.connectivity.MessageListener;
  *
  */
 
-public class PlayerInfoActivity extends Activity implements ConnectivityListener, MessageListener, View.OnClickListener, View.OnTouchListener{
+public class PlayerInfoActivity extends Activity implements ConnectivityListener, View.OnClickListener, View.OnTouchListener{
 
     /** Reference to the connectivity manager */
     private GameConnectivityManager connectivityManager = null;
@@ -100,6 +100,30 @@ public class PlayerInfoActivity extends Activity implements ConnectivityListener
     /** Button animator */
     private ObjectAnimator animator;
 
+    /** Handles the JOIN_RESPONSE message on the UI thread */
+    private final GameMessageListener<JoinResponseData> joinResponseListener = new GameMessageListener<JoinResponseData>() {
+        @Override
+        public void onMessage(MessageType<? extends JoinResponseData> messageType, JoinResponseData joinResponseData) {
+            onJoinResponse(joinResponseData);
+        }
+    };
+
+    /** Handles the SLOT_UPDATE message on the UI thread */
+    private final GameMessageListener<List<SlotData>> slotUpdateListener = new GameMessageListener<List<SlotData>>() {
+        @Override
+        public void onMessage(MessageType<? extends List<SlotData>> messageType, List<SlotData> slotData) {
+            onSlotUpdate();
+        }
+    };
+
+    /** Handles the CONFIG_UPDATE message on the UI thread */
+    private final GameMessageListener<ConfigTypeMap> configUpdateListener = new GameMessageListener<ConfigTypeMap>() {
+        @Override
+        public void onMessage(MessageType<? extends ConfigTypeMap> messageType, ConfigTypeMap configTypeMap) {
+            onConfigUpdate();
+        }
+    };
+
     /******************************************************************************************************************
      * Android Lifecycle methods
      */
@@ -202,7 +226,7 @@ public class PlayerInfoActivity extends Activity implements ConnectivityListener
         connectivityManager.registerConnectivityListener(this);
 
         //register for SLOT changes
-        connectivityManager.registerMessageListener(this, Event.SLOT_UPDATE, Event.JOIN_RESPONSE, Event.CONFIG_UPDATE);
+        registerMessageListeners();
 
         //rebind the data
         bindAvailableSlots();
@@ -223,7 +247,7 @@ public class PlayerInfoActivity extends Activity implements ConnectivityListener
         connectivityManager.unregisterConnectivityListener(this);
 
         //unregister for SLOT changes
-        connectivityManager.unregisterMessageListener(this, Event.SLOT_UPDATE, Event.JOIN_RESPONSE, Event.CONFIG_UPDATE);
+        unregisterMessageListeners();
 
         animator.cancel();
 
@@ -297,6 +321,16 @@ public class PlayerInfoActivity extends Activity implements ConnectivityListener
             case APPLICATION_CONNECTED:
                 // Ignore
                 break;
+            case APPLICATION_RECONNECTING:
+                CustomToast.makeText(this, "Reconnecting...", Toast.LENGTH_SHORT).show();
+                break;
+            case APPLICATION_RECONNECTED:
+                // A JOIN_REQUEST sent while the connection was lost will not be answered, so let the player try again.
+                if (joinResultPending) {
+                    joinResultPending = false;
+                    bindAvailableSlots();
+                }
+                break;
             case APPLICATION_DISCONNECTED:
             case APPLICATION_CONNECT_FAILED:
                 //Notify the user that the connection was lost.
@@ -307,36 +341,29 @@ public class PlayerInfoActivity extends Activity implements ConnectivityListener
         }
     }
 
-    @Override
-    public void onMessage(String eventName, String data, byte[] payload) {
-		Event event = Event.getByName(eventName);
-		switch (event) {
-			case JOIN_RESPONSE:
-	            JoinResponseData joinResponseData = MessageDataHelper.decodeJoinResponseData(data);
-	            if(joinResponseData.isSuccessful()){
-	                startGame(joinResponseData);
-	            } else {
-	                CustomToast.makeText(this, "Couldn't join game. Try again.", Toast.LENGTH_SHORT).show();
-	                bindAvailableSlots();
-	            }
-		        joinResultPending = false;
-				break;
-			case SLOT_UPDATE:
-				// Ignore SLOT_UPDATE events while we are waiting for a JOIN_RESPONSE event from the TV App. The 
-				// SLOT_UPDATE will be processed if the JOIN_RESPONSE indicates the join request was "unsuccessful".
-				if (!joinResultPending) {
-		            bindAvailableSlots();
-				}
-				break;
-			case CONFIG_UPDATE:
-	            if(gameConfigDialog != null && gameConfigDialog.isShowing()) {
-	                Toast.makeText(this, "Another player edited the game configuration", Toast.LENGTH_SHORT).show();
-	                gameConfigDialog.dismiss();
-	            }
-				break;
-			default:
-				// ignore
-		}
+    private void onJoinResponse(JoinResponseData joinResponseData) {
+        if(joinResponseData != null && joinResponseData.isSuccessful()){
+            startGame(joinResponseData);
+        } else {
+            CustomToast.makeText(this, "Couldn't join game. Try again.", Toast.LENGTH_SHORT).show();
+            bindAvailableSlots();
+        }
+        joinResultPending = false;
+    }
+
+    private void onSlotUpdate() {
+        // Ignore SLOT_UPDATE events while we are waiting for a JOIN_RESPONSE event from the TV App. The
+        // SLOT_UPDATE will be processed if the JOIN_RESPONSE indicates the join request was "unsuccessful".
+        if (!joinResultPending) {
+            bindAvailableSlots();
+        }
+    }
+
+    private void onConfigUpdate() {
+        if(gameConfigDialog != null && gameConfigDialog.isShowing()) {
+            Toast.makeText(this, "Another player edited the game configuration", Toast.LENGTH_SHORT).show();
+            gameConfigDialog.dismiss();
+        }
     }
 
 
@@ -344,6 +371,20 @@ public class PlayerInfoActivity extends Activity implements ConnectivityListener
      * Private methods
      */
 
+    private void registerMessageListeners() {
+        connectivityManager.registerMessageListener(slotUpdateListener, DeliveryTarget.UI_THREAD, MessageType.SLOT_UPDATE);
+        connectivityManager.registerMessageListener(joinResponseListener, DeliveryTarget.UI_THREAD,
+                MessageType.JOIN_RESPONSE);
+        connectivityManager.registerMessageListener(configUpdateListener, DeliveryTarget.UI_THREAD,
+                MessageType.CONFIG_UPDATE);
+    }
+
+    private void unregisterMessageListeners() {
+        connectivityManager.unregisterMessageListener(slotUpdateListener, MessageType.SLOT_UPDATE);
+        connectivityManager.unregisterMessageListener(joinResponseListener, MessageType.JOIN_RESPONSE);
+        connectivityManager.unregisterMessageListener(configUpdateListener, MessageType.CONFIG_UPDATE);
+    }
+
     private void handleEvent(int viewId, boolean isDown, View v) {
         switch (viewId) {
             case R.id.color1_button:
@@ -503,7 +544,7 @@ public class PlayerInfoActivity extends Activity implements ConnectivityListener
         // Even though these get unregistered when this activity is paused, that doesn't happen right away and we need 
         // to make sure we don't process any more events at this point especially the SLOT_UPDATE event caused by this 
         // client joining the game.
-        connectivityManager.unregisterMessageListener(this, Event.SLOT_UPDATE, Event.JOIN_RESPONSE, Event.CONFIG_UPDATE);
+        unregisterMessageListeners();
                 
         //don't keep ourselves around
         finish();
@@ -0,0 +1,76 @@
+package com.samsung.multiscreen.msf20.casteroids.input;
+
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * Converts the timestamps of the Android input events to the System.nanoTime() time base used to record the input
+ * latency.<br>
+ * <br>
+ * System.nanoTime() and SystemClock.uptimeMillis() share the same monotonic clock, which is also the clock of
+ * MotionEvent.getEventTime(). SensorEvent.timestamp is in the elapsed realtime clock on most devices, which keeps
+ * counting while the device sleeps, but some devices use the uptime clock instead. The sensor timestamp is converted
+ * from whichever of the two clocks it is closer to.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public final class InputClock {
+
+	// The number of nanoseconds in a millisecond.
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private InputClock() {
+	}
+
+	/**
+	 * Returns the current time in the System.nanoTime() time base.
+	 *
+	 * @return
+	 */
+	public static long now() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Returns the given MotionEvent.getEventTime() in the System.nanoTime() time base.
+	 *
+	 * @param eventTimeMillis
+	 *            The event time in the SystemClock.uptimeMillis() time base.
+	 * @return
+	 */
+	public static long fromEventTime(long eventTimeMillis) {
+		return System.nanoTime() - ((SystemClock.uptimeMillis() - eventTimeMillis) * NANOS_PER_MILLI);
+	}
+
+	/**
+	 * Returns the given SensorEvent.timestamp in the System.nanoTime() time base.
+	 *
+	 * @param timestampNanos
+	 *            The sensor event timestamp.
+	 * @return
+	 */
+	public static long fromSensorTimestamp(long timestampNanos) {
+		long nowNanos = System.nanoTime();
+		long elapsedRealtimeNanos = getElapsedRealtimeNanos();
+
+		// The sensor timestamp is in the uptime clock already.
+		if (Math.abs(nowNanos - timestampNanos) <= Math.abs(elapsedRealtimeNanos - timestampNanos)) {
+			return timestampNanos;
+		}
+
+		return nowNanos - (elapsedRealtimeNanos - timestampNanos);
+	}
+
+	/**
+	 * Returns the elapsed realtime in nanoseconds. Only has millisecond resolution before Jelly Bean MR1.
+	 *
+	 * @return
+	 */
+	private static long getElapsedRealtimeNanos() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+			return SystemClock.elapsedRealtimeNanos();
+		}
+		return SystemClock.elapsedRealtime() * NANOS_PER_MILLI;
+	}
+}
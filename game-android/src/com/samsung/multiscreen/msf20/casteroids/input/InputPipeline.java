@@ -0,0 +1,227 @@
+package com.samsung.multiscreen.msf20.casteroids.input;
+
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+
+import com.samsung.multiscreen.msf20.casteroids.model.Fire;
+import com.samsung.multiscreen.msf20.casteroids.model.GameConnectivityManager;
+import com.samsung.multiscreen.msf20.casteroids.model.Thrust;
+import com.samsung.multiscreen.msf20.connectivity.ConnectivityManager;
+
+/**
+ * The controller input pipeline. Turns the raw sensor events and the button presses in to the input sent by an
+ * InputScheduler:<br>
+ * <code>
+ *     sensor events -&gt; device pitch -&gt; TiltFilter -&gt; RotateQuantizer -&gt; InputScheduler mailbox<br>
+ *     thrust and fire buttons -&gt; InputScheduler
+ * </code><br>
+ * <br>
+ * It is used by the GameControllerActivity and by the InputReplayer, so a replayed session runs through exactly the same
+ * code as a live one. If an InputRecorder is set, every input that enters the pipeline is recorded.<br>
+ * <br>
+ * The sensor events must all come from the same thread. The other methods can be called from any thread.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class InputPipeline {
+
+	// Sends the controller input to the TV application.
+	private final InputScheduler inputScheduler;
+
+	// Smooths the sensor noise out of the device pitch.
+	private final TiltFilter tiltFilter;
+
+	// Turns the device pitch in to a Rotate and a rotate strength. Also used as the lock for the rotation.
+	private final RotateQuantizer rotateQuantizer = new RotateQuantizer();
+
+	// The latest sensor values, copied in to preallocated arrays so that nothing is allocated per sensor event.
+	private final float[] aValues = new float[3];
+	private final float[] mValues = new float[3];
+	private final float[] rotationVectorValues = new float[4];
+
+	// Whether the accelerometer and magnetic field values have been received.
+	private boolean hasAValues, hasMValues;
+
+	// Reused rotation matrix and orientation values.
+	private final float[] rotationMatrix = new float[16];
+	private final float[] orientationValues = new float[3];
+
+	// The latest filtered device pitch in degrees.
+	private volatile float pitch = 0;
+
+	// Records the input, or null.
+	private volatile InputRecorder inputRecorder = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param inputScheduler
+	 *            Sends the controller input to the TV application.
+	 * @param tiltFilter
+	 *            Smooths the sensor noise out of the device pitch.
+	 */
+	public InputPipeline(InputScheduler inputScheduler, TiltFilter tiltFilter) {
+		this.inputScheduler = inputScheduler;
+		this.tiltFilter = tiltFilter;
+	}
+
+	/**
+	 * Returns the InputScheduler the input is sent with.
+	 *
+	 * @return
+	 */
+	public InputScheduler getInputScheduler() {
+		return inputScheduler;
+	}
+
+	/**
+	 * Returns the RotateQuantizer. Only to read its counters.
+	 *
+	 * @return
+	 */
+	public RotateQuantizer getRotateQuantizer() {
+		return rotateQuantizer;
+	}
+
+	/**
+	 * Sets the InputRecorder that records the input from now on, or null to stop recording.
+	 *
+	 * @param inputRecorder
+	 */
+	public void setInputRecorder(InputRecorder inputRecorder) {
+		this.inputRecorder = inputRecorder;
+	}
+
+	/**
+	 * Processes a sensor event. Only the game rotation vector, accelerometer and magnetic field sensors are used.
+	 *
+	 * @param sensorType
+	 *            The Sensor type.
+	 * @param values
+	 *            The sensor values.
+	 * @param timestampNanos
+	 *            The time of the sensor event in nanoseconds, used by the TiltFilter.
+	 * @param inputTimeNanos
+	 *            The time of the sensor event in the System.nanoTime() time base.
+	 * @return Returns true if the device pitch was updated.
+	 */
+	public boolean onSensorEvent(int sensorType, float[] values, long timestampNanos, long inputTimeNanos) {
+		InputRecorder recorder = inputRecorder;
+		if (recorder != null) {
+			recorder.recordSensorEvent(sensorType, values, inputTimeNanos);
+		}
+
+		switch (sensorType) {
+			case Sensor.TYPE_GAME_ROTATION_VECTOR:
+				// Some devices report 5 values which getRotationMatrixFromVector() rejects, so only copy x, y, z and w.
+				System.arraycopy(values, 0, rotationVectorValues, 0,
+				        Math.min(values.length, rotationVectorValues.length));
+				SensorManager.getRotationMatrixFromVector(rotationMatrix, rotationVectorValues);
+				break;
+			case Sensor.TYPE_ACCELEROMETER:
+				System.arraycopy(values, 0, aValues, 0, aValues.length);
+				hasAValues = true;
+				if (!hasMValues || !SensorManager.getRotationMatrix(rotationMatrix, null, aValues, mValues)) {
+					return false;
+				}
+				break;
+			case Sensor.TYPE_MAGNETIC_FIELD:
+				System.arraycopy(values, 0, mValues, 0, mValues.length);
+				hasMValues = true;
+				if (!hasAValues || !SensorManager.getRotationMatrix(rotationMatrix, null, aValues, mValues)) {
+					return false;
+				}
+				break;
+			default:
+				return false;
+		}
+
+		SensorManager.getOrientation(rotationMatrix, orientationValues);
+		pitch = tiltFilter.filter((float) Math.toDegrees(orientationValues[1]), timestampNanos);
+
+		synchronized (rotateQuantizer) {
+			// Only act when the quantized direction or strength changed.
+			if (rotateQuantizer.update(pitch)) {
+				inputScheduler.setRotate(rotateQuantizer.getRotate(), rotateQuantizer.getStrength(), inputTimeNanos);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the latest filtered device pitch in degrees.
+	 *
+	 * @return
+	 */
+	public float getPitch() {
+		return pitch;
+	}
+
+	/**
+	 * Forgets the previous sensor values, for example after the sensors were restarted. Must be called on the thread
+	 * the sensor events come from.
+	 */
+	public void resetSensors() {
+		hasAValues = false;
+		hasMValues = false;
+		tiltFilter.reset();
+	}
+
+	/**
+	 * Presses or releases the thrust button.
+	 *
+	 * @param on
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base, or NO_INPUT_TIME.
+	 */
+	public void setThrust(boolean on, long inputTimeNanos) {
+		InputRecorder recorder = inputRecorder;
+		if (recorder != null) {
+			recorder.recordThrust(on, inputTimeNanos);
+		}
+		inputScheduler.setThrust(on ? Thrust.ON : Thrust.OFF, inputTimeNanos);
+	}
+
+	/**
+	 * Presses or releases the fire button.
+	 *
+	 * @param on
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base, or NO_INPUT_TIME.
+	 */
+	public void setFire(boolean on, long inputTimeNanos) {
+		InputRecorder recorder = inputRecorder;
+		if (recorder != null) {
+			recorder.recordFire(on, inputTimeNanos);
+		}
+		inputScheduler.setFire(on ? Fire.ON : Fire.OFF, inputTimeNanos);
+	}
+
+	/**
+	 * Releases all the controls and sends the change right away in a single input batch, for example when the user
+	 * input is disabled.
+	 */
+	public void release() {
+		InputRecorder recorder = inputRecorder;
+		if (recorder != null) {
+			recorder.recordRelease(System.nanoTime());
+		}
+
+		GameConnectivityManager gameConnectivityManager = inputScheduler.getGameConnectivityManager();
+		gameConnectivityManager.beginInputBatch();
+		try {
+			inputScheduler.setFire(Fire.OFF, ConnectivityManager.NO_INPUT_TIME);
+			inputScheduler.setThrust(Thrust.OFF, ConnectivityManager.NO_INPUT_TIME);
+			synchronized (rotateQuantizer) {
+				rotateQuantizer.reset();
+				inputScheduler.setRotate(rotateQuantizer.getRotate(), rotateQuantizer.getStrength(),
+				        ConnectivityManager.NO_INPUT_TIME);
+			}
+			inputScheduler.flush();
+		} finally {
+			gameConnectivityManager.endInputBatch();
+		}
+	}
+}
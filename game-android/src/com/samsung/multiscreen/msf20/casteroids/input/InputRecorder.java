@@ -0,0 +1,260 @@
+package com.samsung.multiscreen.msf20.casteroids.input;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import android.util.Log;
+
+import com.samsung.multiscreen.msf20.connectivity.MessageListener;
+
+/**
+ * Records a play session in to a compact binary log that the InputReplayer can replay: the raw sensor events and the
+ * button presses that enter the InputPipeline, and the messages received from the TV application when registered as a
+ * MessageListener.<br>
+ * <br>
+ * The log starts with the MAGIC number and the format VERSION, followed by the records. Every record starts with its
+ * type and the microseconds since the previous record:<br>
+ * <code>
+ *     SENSOR:  [ type, delta, sensor type (1 byte), value count (1 byte), values (floats)... ]<br>
+ *     THRUST:  [ type, delta, on (1 byte) ]<br>
+ *     FIRE:    [ type, delta, on (1 byte) ]<br>
+ *     RELEASE: [ type, delta ]<br>
+ *     MESSAGE: [ type, delta, event (UTF), has data (1 byte), data (UTF), payload length (int, -1 for none), payload ]
+ * </code><br>
+ * <br>
+ * The methods of this class can be called from any thread. If writing fails the error is logged once and the rest of
+ * the session is not recorded.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class InputRecorder implements MessageListener, Closeable {
+
+	// Used to identify the source of a log message.
+	private static final String TAG = InputRecorder.class.getSimpleName();
+
+	// The first 4 bytes of every input log, "CINP".
+	public static final int MAGIC = 0x43494E50;
+
+	// The version of the input log format.
+	public static final byte VERSION = 1;
+
+	// The record types.
+	static final byte RECORD_SENSOR = 1;
+	static final byte RECORD_THRUST = 2;
+	static final byte RECORD_FIRE = 3;
+	static final byte RECORD_RELEASE = 4;
+	static final byte RECORD_MESSAGE = 5;
+
+	// The most sensor values recorded per event.
+	static final int MAX_SENSOR_VALUES = 4;
+
+	// The log being written. Also used as the lock.
+	private final DataOutputStream out;
+
+	// The time of the previous record in the System.nanoTime() time base.
+	private long previousTimeNanos;
+	private boolean hasPreviousTime = false;
+
+	// The number of records written.
+	private long recordCount = 0;
+
+	// A flag indicating whether or not the recorder was closed or failed to write.
+	private boolean isClosed = false;
+
+	/**
+	 * Constructor. Writes the header of the log.
+	 *
+	 * @param outputStream
+	 *            Where the log is written. Closed by close().
+	 * @throws IOException
+	 */
+	public InputRecorder(OutputStream outputStream) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(outputStream));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+	}
+
+	/**
+	 * Records a sensor event.
+	 *
+	 * @param sensorType
+	 * @param values
+	 * @param timeNanos
+	 *            The time of the sensor event in the System.nanoTime() time base.
+	 */
+	public void recordSensorEvent(int sensorType, float[] values, long timeNanos) {
+		synchronized (out) {
+			try {
+				if (!beginRecord(RECORD_SENSOR, timeNanos)) {
+					return;
+				}
+				int count = Math.min(values.length, MAX_SENSOR_VALUES);
+				out.writeByte(sensorType);
+				out.writeByte(count);
+				for (int i = 0; i < count; i++) {
+					out.writeFloat(values[i]);
+				}
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Records a thrust button press or release.
+	 *
+	 * @param on
+	 * @param timeNanos
+	 *            The time of the input event in the System.nanoTime() time base.
+	 */
+	public void recordThrust(boolean on, long timeNanos) {
+		recordButton(RECORD_THRUST, on, timeNanos);
+	}
+
+	/**
+	 * Records a fire button press or release.
+	 *
+	 * @param on
+	 * @param timeNanos
+	 *            The time of the input event in the System.nanoTime() time base.
+	 */
+	public void recordFire(boolean on, long timeNanos) {
+		recordButton(RECORD_FIRE, on, timeNanos);
+	}
+
+	/**
+	 * Records that all the controls were released.
+	 *
+	 * @param timeNanos
+	 *            The time of the release in the System.nanoTime() time base.
+	 */
+	public void recordRelease(long timeNanos) {
+		synchronized (out) {
+			try {
+				beginRecord(RECORD_RELEASE, timeNanos);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Records a message received from the TV application.
+	 *
+	 * @param event
+	 * @param data
+	 * @param payload
+	 */
+	@Override
+	public void onMessage(String event, String data, byte[] payload) {
+		synchronized (out) {
+			try {
+				if (!beginRecord(RECORD_MESSAGE, System.nanoTime())) {
+					return;
+				}
+				out.writeUTF(event);
+				out.writeBoolean(data != null);
+				if (data != null) {
+					out.writeUTF(data);
+				}
+				if (payload != null) {
+					out.writeInt(payload.length);
+					out.write(payload);
+				} else {
+					out.writeInt(-1);
+				}
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of records written.
+	 *
+	 * @return
+	 */
+	public long getRecordCount() {
+		synchronized (out) {
+			return recordCount;
+		}
+	}
+
+	/**
+	 * Flushes and closes the log. Nothing is recorded afterwards.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (out) {
+			if (isClosed) {
+				return;
+			}
+			isClosed = true;
+			out.close();
+		}
+	}
+
+	/**
+	 * Records a button press or release.
+	 *
+	 * @param type
+	 * @param on
+	 * @param timeNanos
+	 */
+	private void recordButton(byte type, boolean on, long timeNanos) {
+		synchronized (out) {
+			try {
+				if (beginRecord(type, timeNanos)) {
+					out.writeBoolean(on);
+				}
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the type and the time delta of a record. Must be called while holding the lock.
+	 *
+	 * @param type
+	 * @param timeNanos
+	 * @return Returns false if the recorder is closed.
+	 * @throws IOException
+	 */
+	private boolean beginRecord(byte type, long timeNanos) throws IOException {
+		if (isClosed) {
+			return false;
+		}
+
+		// The inputs come from several threads, so the times are not always in order. Never go back in time.
+		long deltaMicros = hasPreviousTime ? Math.max(0, (timeNanos - previousTimeNanos) / 1000) : 0;
+		if (!hasPreviousTime || (timeNanos - previousTimeNanos > 0)) {
+			previousTimeNanos = timeNanos;
+			hasPreviousTime = true;
+		}
+
+		out.writeByte(type);
+		out.writeInt((int) Math.min(deltaMicros, Integer.MAX_VALUE));
+		recordCount++;
+		return true;
+	}
+
+	/**
+	 * Stops recording after a write failed. Must be called while holding the lock.
+	 *
+	 * @param e
+	 */
+	private void fail(IOException e) {
+		Log.e(TAG, "Failed to record input. Stopping the recording. recordCount=" + recordCount, e);
+		isClosed = true;
+		try {
+			out.close();
+		} catch (IOException ignored) {
+			// Ignore. The recording is already broken.
+		}
+	}
+}
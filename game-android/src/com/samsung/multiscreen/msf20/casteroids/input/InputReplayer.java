@@ -0,0 +1,252 @@
+package com.samsung.multiscreen.msf20.casteroids.input;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.samsung.multiscreen.msf20.connectivity.ConnectivityManager;
+import com.samsung.multiscreen.msf20.connectivity.MessageListener;
+
+/**
+ * Replays an input log written by the InputRecorder through an InputPipeline, faster than real time.<br>
+ * <br>
+ * The recorded sensor events and button presses go through the same InputPipeline, InputScheduler and
+ * GameConnectivityManager send path as a live session, and the recorded TV application messages are handed to the
+ * given MessageListener, normally the GameConnectivityManager. This allows the message counts, allocation and latency
+ * of different builds to be compared with identical input.<br>
+ * <br>
+ * The replay keeps its own clock built from the recorded times:
+ * <ul>
+ * <li>The TiltFilter sees the recorded time between the sensor events.</li>
+ * <li>The InputScheduler is flushed once per tick of that clock, so the InputScheduler must not be running.</li>
+ * <li>The InputScheduler times its ControllerState refreshes with that clock.</li>
+ * <li>The input latency is stamped with the time each input is replayed, so it measures the processing and send
+ * path but not the time waiting for the tick.</li>
+ * </ul>
+ * To replay without a TV, set a MessageSink such as the CountingMessageSink on the ConnectivityManager, so the
+ * messages are counted instead of published.<br>
+ * <br>
+ * Instances are not thread safe and can only replay once.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class InputReplayer {
+
+	// The log being replayed.
+	private final DataInputStream in;
+
+	// Reused sensor values, indexed by the value count.
+	private final float[][] sensorValues = new float[InputRecorder.MAX_SENSOR_VALUES + 1][];
+
+	// The longest time to wait for the replayed messages to be published.
+	private static final long PUBLISH_TIMEOUT_MILLIS = 1000;
+
+	// The number of records replayed by type, indexed by the record type.
+	private final long[] recordCounts = new long[InputRecorder.RECORD_MESSAGE + 1];
+
+	// The recorded length of the session and the time it took to replay.
+	private long recordedNanos = 0;
+	private long replayNanos = 0;
+
+	// The recorded time of the record being replayed, in milliseconds.
+	private final InputScheduler.Clock replayClock = new InputScheduler.Clock() {
+		@Override
+		public long uptimeMillis() {
+			return recordedNanos / 1000000;
+		}
+	};
+
+	/**
+	 * Constructor. Reads the header of the log.
+	 *
+	 * @param inputStream
+	 *            The input log. Closed once replayed.
+	 * @throws IOException
+	 *             If the log is not an input log or has an unsupported version.
+	 */
+	public InputReplayer(InputStream inputStream) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(inputStream));
+
+		int magic = in.readInt();
+		byte version = in.readByte();
+		if ((magic != InputRecorder.MAGIC) || (version != InputRecorder.VERSION)) {
+			in.close();
+			throw new IOException("Not a supported input log. magic=" + Integer.toHexString(magic) + ", version="
+			        + version);
+		}
+
+		for (int i = 0; i < sensorValues.length; i++) {
+			sensorValues[i] = new float[i];
+		}
+	}
+
+	/**
+	 * Replays the log.
+	 *
+	 * @param inputPipeline
+	 *            The pipeline the input is replayed through. Its InputScheduler must not be running.
+	 * @param messageListener
+	 *            Receives the recorded TV application messages. May be null.
+	 * @throws IOException
+	 */
+	public void replay(InputPipeline inputPipeline, MessageListener messageListener) throws IOException {
+		replay(inputPipeline, messageListener, null);
+	}
+
+	/**
+	 * Replays the log, waiting after every record until the messages it sent are published by the given
+	 * ConnectivityManager.<br>
+	 * <br>
+	 * A queued ROTATE or THRUST message is replaced by a newer one, so without waiting, the number of messages
+	 * published depends on how fast the send thread keeps up. With waiting, every replay of the log publishes the same
+	 * messages, at the cost of a slower replay.
+	 *
+	 * @param inputPipeline
+	 *            The pipeline the input is replayed through. Its InputScheduler must not be running.
+	 * @param messageListener
+	 *            Receives the recorded TV application messages. May be null.
+	 * @param connectivityManager
+	 *            The ConnectivityManager the messages are sent with, or null to not wait for them to be published.
+	 * @throws IOException
+	 */
+	public void replay(InputPipeline inputPipeline, MessageListener messageListener,
+	        ConnectivityManager connectivityManager) throws IOException {
+		InputScheduler inputScheduler = inputPipeline.getInputScheduler();
+		long tickNanos = inputScheduler.getTickMillis() * 1000000L;
+		long nextTickNanos = tickNanos;
+		long startNanos = System.nanoTime();
+
+		InputScheduler.Clock previousClock = inputScheduler.getClock();
+		inputScheduler.setClock(replayClock);
+		try {
+			while (true) {
+				int type;
+				try {
+					type = in.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+				recordedNanos += in.readInt() * 1000L;
+
+				// Run the ticks that were due before this record.
+				while (recordedNanos >= nextTickNanos) {
+					inputScheduler.flush();
+					awaitPublished(connectivityManager);
+					nextTickNanos += tickNanos;
+				}
+
+				long inputTimeNanos = System.nanoTime();
+				switch (type) {
+					case InputRecorder.RECORD_SENSOR:
+						int sensorType = in.readUnsignedByte();
+						int count = in.readUnsignedByte();
+						if (count > InputRecorder.MAX_SENSOR_VALUES) {
+							throw new IOException("Too many input log sensor values. count=" + count
+							        + ", recordedNanos=" + recordedNanos);
+						}
+						float[] values = sensorValues[count];
+						for (int i = 0; i < values.length; i++) {
+							values[i] = in.readFloat();
+						}
+						inputPipeline.onSensorEvent(sensorType, values, recordedNanos, inputTimeNanos);
+						break;
+					case InputRecorder.RECORD_THRUST:
+						inputPipeline.setThrust(in.readBoolean(), inputTimeNanos);
+						break;
+					case InputRecorder.RECORD_FIRE:
+						inputPipeline.setFire(in.readBoolean(), inputTimeNanos);
+						break;
+					case InputRecorder.RECORD_RELEASE:
+						inputPipeline.release();
+						break;
+					case InputRecorder.RECORD_MESSAGE:
+						String event = in.readUTF();
+						String data = in.readBoolean() ? in.readUTF() : null;
+						int payloadLength = in.readInt();
+						byte[] payload = null;
+						if (payloadLength >= 0) {
+							payload = new byte[payloadLength];
+							in.readFully(payload);
+						}
+						if (messageListener != null) {
+							messageListener.onMessage(event, data, payload);
+						}
+						break;
+					default:
+						throw new IOException("Unknown input log record. type=" + type + ", recordedNanos="
+						        + recordedNanos);
+				}
+				recordCounts[type]++;
+				awaitPublished(connectivityManager);
+			}
+
+			inputScheduler.flush();
+			awaitPublished(connectivityManager);
+		} finally {
+			inputScheduler.setClock(previousClock);
+			replayNanos = System.nanoTime() - startNanos;
+			in.close();
+		}
+	}
+
+	/**
+	 * Waits until the messages queued by the given ConnectivityManager are published.
+	 *
+	 * @param connectivityManager
+	 *            The ConnectivityManager, or null to not wait.
+	 * @throws IOException
+	 *             If the messages were not published in time.
+	 */
+	private void awaitPublished(ConnectivityManager connectivityManager) throws IOException {
+		if ((connectivityManager == null) || (connectivityManager.getSendQueueDepth() == 0)) {
+			return;
+		}
+		if (!connectivityManager.awaitSendQueueEmpty(PUBLISH_TIMEOUT_MILLIS)) {
+			throw new IOException("The replayed messages were not published in time. recordedNanos=" + recordedNanos);
+		}
+	}
+
+	/**
+	 * Returns the number of records replayed.
+	 *
+	 * @return
+	 */
+	public long getRecordCount() {
+		long count = 0;
+		for (long recordCount : recordCounts) {
+			count += recordCount;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the recorded length of the session in nanoseconds.
+	 *
+	 * @return
+	 */
+	public long getRecordedNanos() {
+		return recordedNanos;
+	}
+
+	/**
+	 * Returns the time it took to replay the session in nanoseconds.
+	 *
+	 * @return
+	 */
+	public long getReplayNanos() {
+		return replayNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "InputReplayer [records=" + getRecordCount() + ", sensorEvents="
+		        + recordCounts[InputRecorder.RECORD_SENSOR] + ", thrusts=" + recordCounts[InputRecorder.RECORD_THRUST]
+		        + ", fires=" + recordCounts[InputRecorder.RECORD_FIRE] + ", releases="
+		        + recordCounts[InputRecorder.RECORD_RELEASE] + ", messages="
+		        + recordCounts[InputRecorder.RECORD_MESSAGE] + ", recordedMillis=" + (recordedNanos / 1000000)
+		        + ", replayMillis=" + (replayNanos / 1000000) + "]";
+	}
+}
@@ -0,0 +1,469 @@
+package com.samsung.multiscreen.msf20.casteroids.input;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.samsung.multiscreen.msf20.casteroids.BuildConfig;
+import com.samsung.multiscreen.msf20.casteroids.model.ControllerState;
+import com.samsung.multiscreen.msf20.casteroids.model.Fire;
+import com.samsung.multiscreen.msf20.casteroids.model.GameConnectivityManager;
+import com.samsung.multiscreen.msf20.casteroids.model.ProtocolFeature;
+import com.samsung.multiscreen.msf20.casteroids.model.Rotate;
+import com.samsung.multiscreen.msf20.casteroids.model.Thrust;
+import com.samsung.multiscreen.msf20.connectivity.ConnectivityManager;
+
+/**
+ * Sends the controller input to the TV application at a fixed tick instead of at the rate the input changes.<br>
+ * <br>
+ * The rotation is driven by the orientation sensors and can change on every sensor sample. It is written to a latest
+ * value mailbox, overwriting any value that has not been sent yet, and the mailbox is sampled once per tick. A ROTATE
+ * message is only sent if the rotation changed since the last one that was sent.<br>
+ * <br>
+ * The thrust and fire buttons are edges that must never be dropped, so they are sent right away in the HIGH lane,
+ * together with any pending rotation change. Each edge and its rotation, and each tick, are sent in one input batch, so
+ * that the TV application gets them as a single INPUT_BATCH message if it agreed to the INPUT_BATCH feature. All the
+ * button edges share the HIGH lane, so they reach the TV application in the order they were made.<br>
+ * <br>
+ * If the TV application agreed to the CONTROLLER_STATE feature, full ControllerState snapshots are sent instead of the
+ * individual messages: right away when a button changes, on a tick when the rotation changed, and at least every
+ * STATE_REFRESH_MILLIS otherwise so that a lost snapshot cannot leave the TV application with a stale state.<br>
+ * <br>
+ * Each input can be stamped with the time of its input event so that the GameConnectivityManager can record the input
+ * latency. A rotation that waits in the mailbox keeps the time of the first change that was not sent yet, so the
+ * latency includes the time spent waiting for the tick.<br>
+ * <br>
+ * The methods of this class can be called from any thread. The tick runs on the thread of the given Handler.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class InputScheduler {
+
+	// Used to identify the source of a log message.
+	private static final String TAG = InputScheduler.class.getSimpleName();
+
+	// The TV application runs at 60 frames per second and updates each player every 4th frame, or every 8th frame when
+	// the aggressive update cycle is enabled. Sending faster than that only adds messages the TV cannot use.
+	public static final long DEFAULT_TICK_MILLIS = 67;
+	public static final long AGGRESSIVE_TICK_MILLIS = 133;
+
+	// The longest time between two ControllerState snapshots, even if the input did not change.
+	public static final long STATE_REFRESH_MILLIS = 250;
+
+	/**
+	 * The clock the ControllerState refreshes are timed with.
+	 */
+	public interface Clock {
+
+		/**
+		 * Returns the current time in milliseconds.
+		 *
+		 * @return
+		 */
+		long uptimeMillis();
+	}
+
+	// The clock of the device.
+	public static final Clock SYSTEM_CLOCK = new Clock() {
+		@Override
+		public long uptimeMillis() {
+			return SystemClock.uptimeMillis();
+		}
+	};
+
+	// The clock the ControllerState refreshes are timed with. Replaced by the InputReplayer with the recorded time.
+	private volatile Clock clock = SYSTEM_CLOCK;
+
+	// Used to send the messages to the TV application.
+	private final GameConnectivityManager gameConnectivityManager;
+
+	// The Handler the tick runs on.
+	private final Handler handler;
+
+	// Guards the mailbox and the last sent state.
+	private final Object lock = new Object();
+
+	// The time between ticks.
+	private volatile long tickMillis;
+
+	// A flag indicating whether or not the tick is running.
+	private volatile boolean isRunning = false;
+
+	// The mailbox. The latest rotation that was set.
+	private Rotate rotate = Rotate.NONE;
+	private int strength = 0;
+
+	// The time of the first input event that changed the rotation since it was last sent, or NO_INPUT_TIME.
+	private long rotateInputTimeNanos = ConnectivityManager.NO_INPUT_TIME;
+
+	// The last rotation that was sent to the TV application.
+	private Rotate sentRotate = Rotate.NONE;
+	private int sentStrength = 0;
+
+	// The latest button states.
+	private Thrust thrust = Thrust.OFF;
+	private Fire fire = Fire.OFF;
+
+	// The last ControllerState snapshot that was sent and when it was sent.
+	private ControllerState sentState = null;
+	private long sentStateMillis = 0;
+
+	// The number of ControllerState snapshots sent.
+	private long stateSentCount = 0;
+
+	// The number of ROTATE messages sent, and the number of rotations overwritten in the mailbox before being sent.
+	private long rotateSentCount = 0;
+	private long rotateOverwrittenCount = 0;
+
+	// Samples the mailbox and reschedules itself while the tick is running.
+	private final Runnable tickRunnable = new Runnable() {
+		@Override
+		public void run() {
+			if (!isRunning) {
+				return;
+			}
+			flush();
+			handler.postDelayed(this, tickMillis);
+		}
+	};
+
+	/**
+	 * Constructor.
+	 *
+	 * @param gameConnectivityManager
+	 *            Used to send the messages to the TV application.
+	 * @param handler
+	 *            The Handler the tick runs on.
+	 * @param tickMillis
+	 *            The time between ticks.
+	 */
+	public InputScheduler(GameConnectivityManager gameConnectivityManager, Handler handler, long tickMillis) {
+		this.gameConnectivityManager = gameConnectivityManager;
+		this.handler = handler;
+		setTickMillis(tickMillis);
+	}
+
+	/**
+	 * Returns the GameConnectivityManager the messages are sent with.
+	 *
+	 * @return
+	 */
+	public GameConnectivityManager getGameConnectivityManager() {
+		return gameConnectivityManager;
+	}
+
+	/**
+	 * Starts the tick. Does nothing if it is already running.
+	 */
+	public void start() {
+		if (isRunning) {
+			return;
+		}
+
+		if (BuildConfig.DEBUG) {
+			Log.d(TAG, "Starting input tick. tickMillis=" + tickMillis);
+		}
+
+		isRunning = true;
+		handler.postDelayed(tickRunnable, tickMillis);
+	}
+
+	/**
+	 * Stops the tick after sending any pending change.
+	 */
+	public void stop() {
+		if (!isRunning) {
+			return;
+		}
+
+		if (BuildConfig.DEBUG) {
+			Log.d(TAG, "Stopping input tick.");
+		}
+
+		isRunning = false;
+		handler.removeCallbacks(tickRunnable);
+		flush();
+	}
+
+	/**
+	 * Returns whether or not the tick is running.
+	 *
+	 * @return
+	 */
+	public boolean isRunning() {
+		return isRunning;
+	}
+
+	/**
+	 * Returns the time between ticks.
+	 *
+	 * @return
+	 */
+	public long getTickMillis() {
+		return tickMillis;
+	}
+
+	/**
+	 * Sets the time between ticks. Takes effect from the next tick.
+	 *
+	 * @param tickMillis
+	 */
+	public void setTickMillis(long tickMillis) {
+		if (tickMillis <= 0) {
+			throw new IllegalArgumentException("tickMillis must be greater than 0. tickMillis=" + tickMillis);
+		}
+		this.tickMillis = tickMillis;
+	}
+
+	/**
+	 * Returns the clock the ControllerState refreshes are timed with.
+	 *
+	 * @return
+	 */
+	public Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Sets the clock the ControllerState refreshes are timed with, for example the recorded time of a replayed input
+	 * log so that every replay of the log sends the same messages.
+	 *
+	 * @param clock
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Puts the latest rotation in the mailbox. It is sent on the next tick if it is still the latest rotation then.
+	 *
+	 * @param rotate
+	 *            Which direction to rotate.
+	 * @param strength
+	 *            The strength of the rotate.
+	 */
+	public void setRotate(Rotate rotate, int strength) {
+		setRotate(rotate, strength, ConnectivityManager.NO_INPUT_TIME);
+	}
+
+	/**
+	 * Puts the latest rotation in the mailbox. It is sent on the next tick if it is still the latest rotation then.
+	 *
+	 * @param rotate
+	 *            Which direction to rotate.
+	 * @param strength
+	 *            The strength of the rotate.
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base, or NO_INPUT_TIME.
+	 */
+	public void setRotate(Rotate rotate, int strength, long inputTimeNanos) {
+		synchronized (lock) {
+			if (isRotatePending()) {
+				rotateOverwrittenCount++;
+			} else {
+				rotateInputTimeNanos = inputTimeNanos;
+			}
+			this.rotate = rotate;
+			this.strength = (rotate != Rotate.NONE) ? strength : 0;
+		}
+	}
+
+	/**
+	 * Sends the thrust change right away, in one input batch with any pending rotation change.
+	 *
+	 * @param thrust
+	 */
+	public void setThrust(Thrust thrust) {
+		setThrust(thrust, ConnectivityManager.NO_INPUT_TIME);
+	}
+
+	/**
+	 * Sends the thrust change right away, in one input batch with any pending rotation change.
+	 *
+	 * @param thrust
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base, or NO_INPUT_TIME.
+	 */
+	public void setThrust(Thrust thrust, long inputTimeNanos) {
+		synchronized (lock) {
+			this.thrust = thrust;
+			if (isControllerStateEnabled()) {
+				sendState(inputTimeNanos);
+				return;
+			}
+
+			gameConnectivityManager.beginInputBatch();
+			try {
+				gameConnectivityManager.sendThrustMessage(thrust, inputTimeNanos);
+				sendRotateIfChanged();
+			} finally {
+				gameConnectivityManager.endInputBatch();
+			}
+		}
+	}
+
+	/**
+	 * Sends the fire change right away, in one input batch with any pending rotation change.
+	 *
+	 * @param fire
+	 */
+	public void setFire(Fire fire) {
+		setFire(fire, ConnectivityManager.NO_INPUT_TIME);
+	}
+
+	/**
+	 * Sends the fire change right away, in one input batch with any pending rotation change.
+	 *
+	 * @param fire
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base, or NO_INPUT_TIME.
+	 */
+	public void setFire(Fire fire, long inputTimeNanos) {
+		synchronized (lock) {
+			this.fire = fire;
+			if (isControllerStateEnabled()) {
+				sendState(inputTimeNanos);
+				return;
+			}
+
+			gameConnectivityManager.beginInputBatch();
+			try {
+				gameConnectivityManager.sendFireMessage(fire, inputTimeNanos);
+				sendRotateIfChanged();
+			} finally {
+				gameConnectivityManager.endInputBatch();
+			}
+		}
+	}
+
+	/**
+	 * Sends the pending rotation change without waiting for the next tick. When ControllerState snapshots are used, a
+	 * snapshot is also sent if the last one is older than STATE_REFRESH_MILLIS.<br>
+	 * <br>
+	 * The rotation is sent in an input batch, so that it joins the changes of a batch opened by the caller.
+	 */
+	public void flush() {
+		synchronized (lock) {
+			if (!isControllerStateEnabled()) {
+				gameConnectivityManager.beginInputBatch();
+				try {
+					sendRotateIfChanged();
+				} finally {
+					gameConnectivityManager.endInputBatch();
+				}
+			} else if ((sentState == null) || (rotate != sentState.getRotate()) || (strength != sentState.getStrength())
+			        || ((clock.uptimeMillis() - sentStateMillis) >= STATE_REFRESH_MILLIS)) {
+				sendState(ConnectivityManager.NO_INPUT_TIME);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of ControllerState snapshots sent.
+	 *
+	 * @return
+	 */
+	public long getStateSentCount() {
+		synchronized (lock) {
+			return stateSentCount;
+		}
+	}
+
+	/**
+	 * Returns the number of ROTATE messages sent.
+	 *
+	 * @return
+	 */
+	public long getRotateSentCount() {
+		synchronized (lock) {
+			return rotateSentCount;
+		}
+	}
+
+	/**
+	 * Returns the number of rotations that were overwritten in the mailbox before they were sent.
+	 *
+	 * @return
+	 */
+	public long getRotateOverwrittenCount() {
+		synchronized (lock) {
+			return rotateOverwrittenCount;
+		}
+	}
+
+	/**
+	 * Forgets the rotation that was last sent, for example after joining a new game, so that the next change is sent
+	 * even if it matches the old state.
+	 */
+	public void reset() {
+		synchronized (lock) {
+			rotate = Rotate.NONE;
+			strength = 0;
+			sentRotate = Rotate.NONE;
+			sentStrength = 0;
+			rotateInputTimeNanos = ConnectivityManager.NO_INPUT_TIME;
+			thrust = Thrust.OFF;
+			fire = Fire.OFF;
+			sentState = null;
+		}
+	}
+
+	/**
+	 * Returns whether or not the TV application agreed to receive ControllerState snapshots.
+	 *
+	 * @return
+	 */
+	private boolean isControllerStateEnabled() {
+		return gameConnectivityManager.isFeatureEnabled(ProtocolFeature.CONTROLLER_STATE);
+	}
+
+	/**
+	 * Returns whether or not the rotation in the mailbox differs from the last one sent. Must be called while holding
+	 * the lock.
+	 *
+	 * @return
+	 */
+	private boolean isRotatePending() {
+		return (rotate != sentRotate) || (strength != sentStrength);
+	}
+
+	/**
+	 * Sends a ControllerState snapshot of the latest input. Must be called while holding the lock.
+	 *
+	 * @param inputTimeNanos
+	 *            The time of the button input event that caused the snapshot, or NO_INPUT_TIME.
+	 */
+	private void sendState(long inputTimeNanos) {
+		// The snapshot is as late as the earliest input it carries that was not sent yet.
+		if (isRotatePending() && (rotateInputTimeNanos != ConnectivityManager.NO_INPUT_TIME)
+		        && ((inputTimeNanos == ConnectivityManager.NO_INPUT_TIME) || (rotateInputTimeNanos - inputTimeNanos < 0))) {
+			inputTimeNanos = rotateInputTimeNanos;
+		}
+
+		ControllerState state = gameConnectivityManager.createControllerState(rotate, strength, thrust, fire);
+		gameConnectivityManager.sendControllerStateMessage(state, inputTimeNanos);
+		stateSentCount++;
+		sentState = state;
+		sentStateMillis = clock.uptimeMillis();
+
+		// The snapshot carries the rotation, so it no longer counts as pending.
+		sentRotate = rotate;
+		sentStrength = strength;
+	}
+
+	/**
+	 * Sends a ROTATE message if the rotation in the mailbox differs from the last one sent. Must be called while
+	 * holding the lock.
+	 */
+	private void sendRotateIfChanged() {
+		if (!isRotatePending()) {
+			return;
+		}
+
+		gameConnectivityManager.sendRotateMessage(rotate, strength, rotateInputTimeNanos);
+		rotateSentCount++;
+		sentRotate = rotate;
+		sentStrength = strength;
+	}
+}
@@ -0,0 +1,109 @@
+package com.samsung.multiscreen.msf20.casteroids.input;
+
+/**
+ * A TiltFilter that applies a first order low-pass filter with a fixed cutoff frequency. The smoothing factor is
+ * derived from the time between samples, so the filter behaves the same at any sensor rate.<br>
+ * <br>
+ * A fixed cutoff is a trade off: a low cutoff removes the jitter at rest but lags behind fast tilts, a high cutoff
+ * follows fast tilts but lets the jitter through. See OneEuroFilter for a filter that adapts the cutoff.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class LowPassFilter implements TiltFilter {
+
+	// The default cutoff frequency in Hz.
+	public static final float DEFAULT_CUTOFF_HZ = 3.0f;
+
+	// The time between samples assumed when two samples have the same timestamp. 50 Hz is the SENSOR_DELAY_GAME rate.
+	static final float DEFAULT_SAMPLE_PERIOD_SECONDS = 0.02f;
+
+	// The cutoff frequency in Hz.
+	private final float cutoffHz;
+
+	// The previous filtered value and its timestamp.
+	private float value;
+	private long timestampNanos;
+	private boolean hasValue = false;
+
+	/**
+	 * Constructor that uses the default cutoff frequency.
+	 */
+	public LowPassFilter() {
+		this(DEFAULT_CUTOFF_HZ);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cutoffHz
+	 *            The cutoff frequency in Hz.
+	 */
+	public LowPassFilter(float cutoffHz) {
+		if (cutoffHz <= 0) {
+			throw new IllegalArgumentException("cutoffHz must be greater than 0. cutoffHz=" + cutoffHz);
+		}
+		this.cutoffHz = cutoffHz;
+	}
+
+	@Override
+	public float filter(float pitch, long timestampNanos) {
+		if (!hasValue) {
+			hasValue = true;
+		} else {
+			pitch = smooth(value, pitch, alpha(getPeriodSeconds(this.timestampNanos, timestampNanos), cutoffHz));
+		}
+
+		value = pitch;
+		this.timestampNanos = timestampNanos;
+		return pitch;
+	}
+
+	@Override
+	public void reset() {
+		hasValue = false;
+	}
+
+	@Override
+	public String toString() {
+		return "LowPassFilter [cutoffHz=" + cutoffHz + "]";
+	}
+
+	/**
+	 * Returns the time between two samples in seconds.
+	 *
+	 * @param previousNanos
+	 * @param currentNanos
+	 * @return
+	 */
+	static float getPeriodSeconds(long previousNanos, long currentNanos) {
+		long periodNanos = currentNanos - previousNanos;
+		return (periodNanos > 0) ? (periodNanos / 1e9f) : DEFAULT_SAMPLE_PERIOD_SECONDS;
+	}
+
+	/**
+	 * Returns the smoothing factor of a first order low-pass filter with the given cutoff frequency.
+	 *
+	 * @param periodSeconds
+	 *            The time since the previous sample in seconds.
+	 * @param cutoffHz
+	 *            The cutoff frequency in Hz.
+	 * @return
+	 */
+	static float alpha(float periodSeconds, float cutoffHz) {
+		float tau = 1.0f / (2.0f * (float) Math.PI * cutoffHz);
+		return 1.0f / (1.0f + (tau / periodSeconds));
+	}
+
+	/**
+	 * Returns the previous value moved towards the current value by the given smoothing factor.
+	 *
+	 * @param previous
+	 * @param current
+	 * @param alpha
+	 * @return
+	 */
+	static float smooth(float previous, float current, float alpha) {
+		return previous + (alpha * (current - previous));
+	}
+}
@@ -0,0 +1,104 @@
+package com.samsung.multiscreen.msf20.casteroids.input;
+
+/**
+ * A TiltFilter that implements the One Euro filter by Casiez, Roussel and Vogel (CHI 2012).<br>
+ * <br>
+ * The One Euro filter is a first order low-pass filter whose cutoff frequency grows with the speed of the signal:
+ * <ul>
+ * <li>At rest the cutoff is minCutoffHz, so the sensor jitter is smoothed heavily and does not turn in to strength
+ * changes.</li>
+ * <li>While tilting the cutoff grows by beta Hz per degree per second, so the filter adds little lag to a fast
+ * tilt.</li>
+ * </ul>
+ * The speed is itself low-pass filtered at derivativeCutoffHz so that a single noisy sample does not open the filter.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class OneEuroFilter implements TiltFilter {
+
+	// The default cutoff frequency at rest in Hz.
+	public static final float DEFAULT_MIN_CUTOFF_HZ = 0.5f;
+
+	// The default increase of the cutoff frequency in Hz per degree per second of tilt speed.
+	public static final float DEFAULT_BETA = 0.05f;
+
+	// The default cutoff frequency of the tilt speed in Hz.
+	public static final float DEFAULT_DERIVATIVE_CUTOFF_HZ = 1.0f;
+
+	// The cutoff frequency at rest in Hz.
+	private final float minCutoffHz;
+
+	// The increase of the cutoff frequency in Hz per degree per second.
+	private final float beta;
+
+	// The cutoff frequency of the tilt speed in Hz.
+	private final float derivativeCutoffHz;
+
+	// The previous filtered value, the previous filtered speed in degrees per second, and the previous timestamp.
+	private float value;
+	private float speed;
+	private long timestampNanos;
+	private boolean hasValue = false;
+
+	/**
+	 * Constructor that uses the default configuration.
+	 */
+	public OneEuroFilter() {
+		this(DEFAULT_MIN_CUTOFF_HZ, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF_HZ);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param minCutoffHz
+	 *            The cutoff frequency at rest in Hz. Lower values smooth more at rest.
+	 * @param beta
+	 *            The increase of the cutoff frequency in Hz per degree per second. Higher values lag less while
+	 *            tilting.
+	 * @param derivativeCutoffHz
+	 *            The cutoff frequency of the tilt speed in Hz.
+	 */
+	public OneEuroFilter(float minCutoffHz, float beta, float derivativeCutoffHz) {
+		if ((minCutoffHz <= 0) || (beta < 0) || (derivativeCutoffHz <= 0)) {
+			throw new IllegalArgumentException("Invalid configuration. minCutoffHz=" + minCutoffHz + ", beta=" + beta
+			        + ", derivativeCutoffHz=" + derivativeCutoffHz);
+		}
+
+		this.minCutoffHz = minCutoffHz;
+		this.beta = beta;
+		this.derivativeCutoffHz = derivativeCutoffHz;
+	}
+
+	@Override
+	public float filter(float pitch, long timestampNanos) {
+		if (!hasValue) {
+			hasValue = true;
+			speed = 0;
+		} else {
+			float periodSeconds = LowPassFilter.getPeriodSeconds(this.timestampNanos, timestampNanos);
+
+			// Filter the tilt speed, then pick the cutoff from it.
+			float rawSpeed = (pitch - value) / periodSeconds;
+			speed = LowPassFilter.smooth(speed, rawSpeed, LowPassFilter.alpha(periodSeconds, derivativeCutoffHz));
+			float cutoffHz = minCutoffHz + (beta * Math.abs(speed));
+
+			pitch = LowPassFilter.smooth(value, pitch, LowPassFilter.alpha(periodSeconds, cutoffHz));
+		}
+
+		value = pitch;
+		this.timestampNanos = timestampNanos;
+		return pitch;
+	}
+
+	@Override
+	public void reset() {
+		hasValue = false;
+	}
+
+	@Override
+	public String toString() {
+		return "OneEuroFilter [minCutoffHz=" + minCutoffHz + ", beta=" + beta + ", derivativeCutoffHz="
+		        + derivativeCutoffHz + "]";
+	}
+}
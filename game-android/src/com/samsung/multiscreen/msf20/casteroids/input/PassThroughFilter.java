@@ -0,0 +1,24 @@
+package com.samsung.multiscreen.msf20.casteroids.input;
+
+/**
+ * A TiltFilter that does not filter the pitch.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class PassThroughFilter implements TiltFilter {
+
+	@Override
+	public float filter(float pitch, long timestampNanos) {
+		return pitch;
+	}
+
+	@Override
+	public void reset() {
+	}
+
+	@Override
+	public String toString() {
+		return "PassThroughFilter []";
+	}
+}
@@ -0,0 +1,243 @@
+package com.samsung.multiscreen.msf20.casteroids.input;
+
+import com.samsung.multiscreen.msf20.casteroids.model.MessageDataHelper;
+import com.samsung.multiscreen.msf20.casteroids.model.Rotate;
+
+/**
+ * Turns the device pitch in to a Rotate and a rotate strength from 0 to MAX_ROTATE_STRENGTH.<br>
+ * <br>
+ * A phone held near a boundary would flip between two strengths, or between NONE and LEFT/RIGHT, and every flip is a
+ * ROTATE message. To avoid this the quantizer applies:
+ * <ul>
+ * <li>A hysteresis band. Once turning, the pitch has to drop below the threshold minus the band to stop, and a new
+ * strength is only taken once the pitch is more than the band past the step boundary.</li>
+ * <li>Adaptive quantization. The strength steps are fine near the threshold where small tilts matter, and grow to a
+ * coarser step at extreme tilt.</li>
+ * </ul>
+ * The quantizer also counts how many changes were reported and how many changes the previous fixed threshold and
+ * truncation would have reported but were suppressed.<br>
+ * <br>
+ * Instances are not thread safe.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class RotateQuantizer {
+
+	// The default pitch in degrees where turning starts.
+	public static final float DEFAULT_THRESHOLD_DEGREES = 5.0f;
+
+	// The default pitch in degrees where the maximum strength is reached.
+	public static final float DEFAULT_MAX_DEGREES = 90.0f;
+
+	// The default width of the hysteresis band in degrees.
+	public static final float DEFAULT_HYSTERESIS_DEGREES = 1.5f;
+
+	// The default strength step at maximum tilt. The step near the threshold is always 1.
+	public static final int DEFAULT_MAX_STEP = 3;
+
+	// The maximum rotate strength.
+	private static final int MAX_STRENGTH = MessageDataHelper.MAX_ROTATE_STRENGTH;
+
+	// The pitch in degrees where turning starts.
+	private final float thresholdDegrees;
+
+	// The pitch range in degrees from the threshold to the maximum strength.
+	private final float rangeDegrees;
+
+	// The width of the hysteresis band in degrees and in strength units.
+	private final float hysteresisDegrees;
+	private final float hysteresisStrength;
+
+	// Maps each strength from 0 to MAX_STRENGTH down to the closest step at or below it.
+	private final int[] steps = new int[MAX_STRENGTH + 1];
+
+	// The current output.
+	private Rotate rotate = Rotate.NONE;
+	private int strength = 0;
+
+	// The output of the previous fixed threshold and truncation. Used to count the suppressed changes.
+	private Rotate plainRotate = Rotate.NONE;
+	private int plainStrength = 0;
+
+	// The number of changes reported and suppressed.
+	private long changeCount = 0;
+	private long suppressedCount = 0;
+
+	/**
+	 * Constructor that uses the default configuration.
+	 */
+	public RotateQuantizer() {
+		this(DEFAULT_THRESHOLD_DEGREES, DEFAULT_MAX_DEGREES, DEFAULT_HYSTERESIS_DEGREES, DEFAULT_MAX_STEP);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param thresholdDegrees
+	 *            The pitch in degrees where turning starts.
+	 * @param maxDegrees
+	 *            The pitch in degrees where the maximum strength is reached.
+	 * @param hysteresisDegrees
+	 *            The width of the hysteresis band in degrees. 0 disables the hysteresis.
+	 * @param maxStep
+	 *            The strength step at maximum tilt. 1 gives the same fine steps across the whole range.
+	 */
+	public RotateQuantizer(float thresholdDegrees, float maxDegrees, float hysteresisDegrees, int maxStep) {
+		if ((thresholdDegrees < 0) || (maxDegrees <= thresholdDegrees) || (hysteresisDegrees < 0)
+		        || (hysteresisDegrees > thresholdDegrees) || (maxStep < 1)) {
+			throw new IllegalArgumentException("Invalid configuration. thresholdDegrees=" + thresholdDegrees
+			        + ", maxDegrees=" + maxDegrees + ", hysteresisDegrees=" + hysteresisDegrees + ", maxStep=" + maxStep);
+		}
+
+		this.thresholdDegrees = thresholdDegrees;
+		this.rangeDegrees = maxDegrees - thresholdDegrees;
+		this.hysteresisDegrees = hysteresisDegrees;
+		this.hysteresisStrength = (hysteresisDegrees * MAX_STRENGTH) / rangeDegrees;
+
+		// Build the steps. The step grows linearly from 1 at the threshold to maxStep at the maximum strength, and the
+		// maximum strength is always a step so that full tilt is reachable.
+		int step = 0;
+		int nextStep = 1;
+		for (int i = 0; i <= MAX_STRENGTH; i++) {
+			if ((i == MAX_STRENGTH) || (i >= nextStep)) {
+				step = i;
+				nextStep = step + 1 + Math.round(((maxStep - 1) * step) / (float) MAX_STRENGTH);
+			}
+			steps[i] = step;
+		}
+	}
+
+	/**
+	 * Updates the quantizer with the latest pitch.
+	 *
+	 * @param pitch
+	 *            The device pitch in degrees. Positive pitch turns left, negative pitch turns right.
+	 * @return Returns true if the Rotate or the strength changed.
+	 */
+	public boolean update(float pitch) {
+		float absPitch = Math.abs(pitch);
+		Rotate direction = (pitch >= 0) ? Rotate.LEFT : Rotate.RIGHT;
+
+		// Work out the new rotate. Once turning, keep turning until the pitch leaves the hysteresis band. A change of
+		// direction always goes through NONE first.
+		Rotate newRotate;
+		if (rotate == Rotate.NONE) {
+			newRotate = (absPitch >= thresholdDegrees) ? direction : Rotate.NONE;
+		} else if ((direction == rotate) && (absPitch >= thresholdDegrees - hysteresisDegrees)) {
+			newRotate = rotate;
+		} else {
+			newRotate = Rotate.NONE;
+		}
+
+		// Work out the new strength. Only move to another step once the strength is more than the hysteresis band past
+		// the step boundary. The band does not apply at the ends of the range so that 0 and full tilt stay reachable.
+		int newStrength = 0;
+		if (newRotate != Rotate.NONE) {
+			float value = toStrength(absPitch);
+			newStrength = quantize(value);
+			if ((newRotate == rotate) && (value > 0.0f) && (value < MAX_STRENGTH)) {
+				if (newStrength > strength) {
+					newStrength = Math.max(strength, quantize(value - hysteresisStrength));
+				} else if (newStrength < strength) {
+					newStrength = Math.min(strength, quantize(value + hysteresisStrength));
+				}
+			}
+		}
+
+		boolean changed = (newRotate != rotate) || (newStrength != strength);
+		rotate = newRotate;
+		strength = newStrength;
+
+		// Count what the previous fixed threshold and truncation would have sent.
+		Rotate newPlainRotate = (absPitch < thresholdDegrees) ? Rotate.NONE : direction;
+		int newPlainStrength = (newPlainRotate != Rotate.NONE) ? (int) toStrength(absPitch) : 0;
+		boolean plainChanged = (newPlainRotate != plainRotate) || (newPlainStrength != plainStrength);
+		plainRotate = newPlainRotate;
+		plainStrength = newPlainStrength;
+
+		if (changed) {
+			changeCount++;
+		} else if (plainChanged) {
+			suppressedCount++;
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Returns the current Rotate.
+	 *
+	 * @return
+	 */
+	public Rotate getRotate() {
+		return rotate;
+	}
+
+	/**
+	 * Returns the current rotate strength. Always 0 when the Rotate is NONE.
+	 *
+	 * @return
+	 */
+	public int getStrength() {
+		return strength;
+	}
+
+	/**
+	 * Returns the number of changes reported by update().
+	 *
+	 * @return
+	 */
+	public long getChangeCount() {
+		return changeCount;
+	}
+
+	/**
+	 * Returns the number of changes the fixed threshold and truncation would have reported that were suppressed.
+	 *
+	 * @return
+	 */
+	public long getSuppressedCount() {
+		return suppressedCount;
+	}
+
+	/**
+	 * Resets the output to NONE. The counters are kept.
+	 */
+	public void reset() {
+		rotate = Rotate.NONE;
+		strength = 0;
+		plainRotate = Rotate.NONE;
+		plainStrength = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "RotateQuantizer [rotate=" + rotate + ", strength=" + strength + ", changeCount=" + changeCount
+		        + ", suppressedCount=" + suppressedCount + "]";
+	}
+
+	/**
+	 * Returns the unquantized strength from 0 to MAX_STRENGTH for the given absolute pitch.
+	 *
+	 * @param absPitch
+	 * @return
+	 */
+	private float toStrength(float absPitch) {
+		float value = ((absPitch - thresholdDegrees) * MAX_STRENGTH) / rangeDegrees;
+		return Math.max(0.0f, Math.min(MAX_STRENGTH, value));
+	}
+
+	/**
+	 * Returns the step at or below the given unquantized strength.
+	 *
+	 * @param value
+	 * @return
+	 */
+	private int quantize(float value) {
+		if (value <= 0.0f) {
+			return 0;
+		}
+		return steps[Math.min(MAX_STRENGTH, (int) value)];
+	}
+}
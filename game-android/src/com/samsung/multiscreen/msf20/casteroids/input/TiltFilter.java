@@ -0,0 +1,29 @@
+package com.samsung.multiscreen.msf20.casteroids.input;
+
+/**
+ * A filter stage for the device pitch, applied between the orientation sensors and the RotateQuantizer.<br>
+ * <br>
+ * Implementations must not allocate when filtering since they run for every sensor event. They are not required to be
+ * thread safe.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public interface TiltFilter {
+
+	/**
+	 * Filters the given pitch.
+	 *
+	 * @param pitch
+	 *            The raw device pitch in degrees.
+	 * @param timestampNanos
+	 *            The time of the sensor event in nanoseconds. Only the difference between two timestamps is used.
+	 * @return The filtered pitch in degrees.
+	 */
+	public float filter(float pitch, long timestampNanos);
+
+	/**
+	 * Forgets the previous samples, for example after the sensors were restarted. The next pitch is passed through.
+	 */
+	public void reset();
+}
@@ -0,0 +1,27 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+/**
+ * This interface is implemented by components that decode the data of a TV application defined message event in to a
+ * typed object.<br>
+ * <br>
+ * A Codec is registered per Event with the {@link CodecRegistry} so that a received message is decoded exactly once and
+ * the decoded object is handed to every listener.
+ * 
+ * @author Dan McCafferty
+ * 
+ * @param <T>
+ *            The type of the decoded object.
+ */
+public interface Codec<T> {
+
+	/**
+	 * Returns the object decoded from the given message data and/or payload.
+	 * 
+	 * @param data
+	 *            The application defined data structure for the event. May be null.
+	 * @param payload
+	 *            The application defined byte array for the event. May be null.
+	 * @return The decoded object or null if the message could not be decoded.
+	 */
+	public T decode(String data, byte[] payload);
+}
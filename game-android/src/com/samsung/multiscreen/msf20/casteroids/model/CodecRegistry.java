@@ -0,0 +1,136 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import android.util.Log;
+
+/**
+ * Contains the MessageType to Codec mappings used to decode the messages received from the TV application. A Codec is
+ * registered against the typed MessageType key, so it can only decode to the type the listeners of the MessageType
+ * expect.<br>
+ * <br>
+ * The following Codecs are registered by default:<br>
+ * <code>
+ *     SLOT_UPDATE   - List&lt;SlotData&gt;<br>
+ *     JOIN_RESPONSE - JoinResponseData<br>
+ *     GAME_START    - Integer (count down seconds)<br>
+ *     GAME_OVER     - List&lt;ScoreData&gt;<br>
+ *     PLAYER_OUT    - Integer (count down seconds)<br>
+ *     CONFIG_UPDATE - ConfigTypeMap
+ * </code><br>
+ * <br>
+ * Lookups do not lock. Registering a Codec replaces the whole map, so Codecs are expected to be registered rarely (i.e.
+ * at start up).
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class CodecRegistry {
+	// Used to identify the source of a log message.
+	private static final String TAG = CodecRegistry.class.getSimpleName();
+
+	// The current Event to Codec map. Never modified once published.
+	private volatile Map<Event, Codec<?>> codecMap = new EnumMap<Event, Codec<?>>(Event.class);
+
+	/**
+	 * Constructor. Registers the default Codecs.
+	 */
+	public CodecRegistry() {
+		super();
+
+		// Register the Codecs for the Events that the client receives.
+		init();
+	}
+
+	/**
+	 * Registers the default Codecs.
+	 */
+	private void init() {
+		register(MessageType.SLOT_UPDATE, new Codec<List<SlotData>>() {
+			@Override
+			public List<SlotData> decode(String data, byte[] payload) {
+				return MessageDataHelper.decodeSlotUpdateSlotData(data);
+			}
+		});
+		register(MessageType.JOIN_RESPONSE, new Codec<JoinResponseData>() {
+			@Override
+			public JoinResponseData decode(String data, byte[] payload) {
+				return MessageDataHelper.decodeJoinResponseData(data);
+			}
+		});
+		register(MessageType.GAME_START, new Codec<Integer>() {
+			@Override
+			public Integer decode(String data, byte[] payload) {
+				return MessageDataHelper.decodeGameStartCountDownSeconds(data);
+			}
+		});
+		register(MessageType.GAME_OVER, new Codec<List<ScoreData>>() {
+			@Override
+			public List<ScoreData> decode(String data, byte[] payload) {
+				return MessageDataHelper.decodeGameOverScoreData(data);
+			}
+		});
+		register(MessageType.PLAYER_OUT, new Codec<Integer>() {
+			@Override
+			public Integer decode(String data, byte[] payload) {
+				return MessageDataHelper.decodePlayerOutCountDownSeconds(data);
+			}
+		});
+		register(MessageType.CONFIG_UPDATE, new Codec<ConfigTypeMap>() {
+			@Override
+			public ConfigTypeMap decode(String data, byte[] payload) {
+				return MessageDataHelper.decodeConfigUpdateData(data);
+			}
+		});
+	}
+
+	/**
+	 * Registers the given Codec for the given MessageType, replacing any Codec previously registered for it.
+	 * 
+	 * @param messageType
+	 * @param codec
+	 */
+	public synchronized <T> void register(MessageType<T> messageType, Codec<? extends T> codec) {
+		Map<Event, Codec<?>> updatedCodecMap = new EnumMap<Event, Codec<?>>(codecMap);
+		updatedCodecMap.put(messageType.getEvent(), codec);
+		codecMap = updatedCodecMap;
+	}
+
+	/**
+	 * Returns the Codec registered for the given MessageType or NULL if there is none.
+	 * 
+	 * @param messageType
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Codec<? extends T> getCodec(MessageType<T> messageType) {
+		// register() only accepts a Codec of the MessageType's type.
+		return (Codec<? extends T>) codecMap.get(messageType.getEvent());
+	}
+
+	/**
+	 * Returns the message data decoded by the Codec registered for the given MessageType. Returns NULL if there is no
+	 * Codec registered for the MessageType or if the Codec failed to decode the data or decoded it to another type.
+	 * 
+	 * @param messageType
+	 * @param data
+	 * @param payload
+	 * @return
+	 */
+	public <T> T decode(MessageType<T> messageType, String data, byte[] payload) {
+		Codec<?> codec = codecMap.get(messageType.getEvent());
+		if (codec == null) {
+			return null;
+		}
+
+		try {
+			// Check the type, a Codec may still have been registered through a raw type.
+			return messageType.cast(codec.decode(data, payload));
+		} catch (Exception e) {
+			Log.e(TAG, "Failed to decode '" + messageType.getEvent().getName() + "' message. data=" + data, e);
+			return null;
+		}
+	}
+}
@@ -19,6 +19,16 @@ public enum Color {
     // The color-int representing the color. This is intended to be used by the UI layer to display the color.
     private final int colorInt;
 
+    // The Colors indexed by their TV application defined name. Used by getByName(), which runs for every slot and score
+    // entry that is decoded.
+    private static final NameIndex<Color> nameIndex = new NameIndex<Color>();
+
+    static {
+        for (Color currentColor : Color.values()) {
+            nameIndex.put(currentColor.name, currentColor);
+        }
+    }
+
     /**
      * Constructor.
      * 
@@ -58,15 +68,6 @@ public enum Color {
      * @return
      */
     public static Color getByName(String name) {
-        Color color = null;
-
-        for (Color currentColor : Color.values()) {
-            if (currentColor.name.equalsIgnoreCase(name)) {
-                color = currentColor;
-                break;
-            }
-        }
-
-        return color;
+        return nameIndex.get(name);
     }    
 }
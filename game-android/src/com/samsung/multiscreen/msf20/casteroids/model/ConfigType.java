@@ -31,6 +31,15 @@ public enum ConfigType {
 	// The default value for the ConfigType.
 	private final boolean defaultValue;
 
+	// The ConfigTypes indexed by their TV application defined name.
+	private static final NameIndex<ConfigType> nameIndex = new NameIndex<ConfigType>();
+
+	static {
+		for (ConfigType currentType : ConfigType.values()) {
+			nameIndex.put(currentType.name, currentType);
+		}
+	}
+
 	ConfigType(String name, String description, boolean defaultValue) {
 		this.name = name;
 		this.description = description;
@@ -74,15 +83,6 @@ public enum ConfigType {
 	 * @return
 	 */
 	public static ConfigType getByName(String name) {
-		ConfigType type = null;
-
-		for (ConfigType currentType : ConfigType.values()) {
-			if (currentType.name.equalsIgnoreCase(name)) {
-				type = currentType;
-				break;
-			}
-		}
-
-		return type;
+		return nameIndex.get(name);
 	}
 }
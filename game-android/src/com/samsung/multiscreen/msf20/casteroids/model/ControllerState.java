@@ -0,0 +1,114 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+/**
+ * A full snapshot of the controller input: the rotate direction and strength, the thrust and the fire state, stamped
+ * with a sequence number.<br>
+ * <br>
+ * The snapshot is sent in a CONTROLLER_STATE message. Since every message carries the whole state, a lost message is
+ * repaired by the next one, and the TV application only has to drop any message with a sequence number that is not
+ * greater than the last one it applied.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class ControllerState {
+	// The sequence number. Increases by one for every new snapshot within a session.
+	private final int sequence;
+
+	// Which direction to rotate.
+	private final Rotate rotate;
+
+	// The strength of the rotate. Always 0 if the rotate is NONE.
+	private final int strength;
+
+	// The thrust state.
+	private final Thrust thrust;
+
+	// The fire state.
+	private final Fire fire;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param sequence
+	 *            The sequence number.
+	 * @param rotate
+	 *            Which direction to rotate.
+	 * @param strength
+	 *            The strength of the rotate.
+	 * @param thrust
+	 *            The thrust state.
+	 * @param fire
+	 *            The fire state.
+	 */
+	public ControllerState(int sequence, Rotate rotate, int strength, Thrust thrust, Fire fire) {
+		super();
+		this.sequence = sequence;
+		this.rotate = rotate;
+		this.strength = (rotate != Rotate.NONE) ? strength : 0;
+		this.thrust = thrust;
+		this.fire = fire;
+	}
+
+	/**
+	 * Returns the sequence number.
+	 * 
+	 * @return
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Returns which direction to rotate.
+	 * 
+	 * @return
+	 */
+	public Rotate getRotate() {
+		return rotate;
+	}
+
+	/**
+	 * Returns the strength of the rotate.
+	 * 
+	 * @return
+	 */
+	public int getStrength() {
+		return strength;
+	}
+
+	/**
+	 * Returns the thrust state.
+	 * 
+	 * @return
+	 */
+	public Thrust getThrust() {
+		return thrust;
+	}
+
+	/**
+	 * Returns the fire state.
+	 * 
+	 * @return
+	 */
+	public Fire getFire() {
+		return fire;
+	}
+
+	/**
+	 * Returns whether or not the given state has the same input as this state, ignoring the sequence numbers.
+	 * 
+	 * @param another
+	 * @return
+	 */
+	public boolean hasSameInput(ControllerState another) {
+		return (another != null) && (rotate == another.rotate) && (strength == another.strength)
+		        && (thrust == another.thrust) && (fire == another.fire);
+	}
+
+	@Override
+	public String toString() {
+		return "ControllerState [sequence=" + sequence + ", rotate=" + rotate + ", strength=" + strength + ", thrust="
+		        + thrust + ", fire=" + fire + "]";
+	}
+}
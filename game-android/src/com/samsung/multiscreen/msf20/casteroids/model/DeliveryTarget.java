@@ -0,0 +1,24 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+/**
+ * The threads a GameMessageListener can be called on. A listener chooses the target when it registers with the
+ * GameConnectivityManager.<br>
+ * <br>
+ * The messages for the UI_THREAD and BACKGROUND targets are delivered in batches. A received message is queued once
+ * per target, however many listeners registered for it. One task then delivers all the queued messages to the
+ * listeners, in the order they were received. So a burst of messages costs one UI thread post instead of one per
+ * listener per message.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public enum DeliveryTarget {
+	// Called on the thread that received the message, before the next message is received.
+	INLINE,
+
+	// Called on the UI thread.
+	UI_THREAD,
+
+	// Called on a background thread shared by all the BACKGROUND listeners.
+	BACKGROUND;
+}
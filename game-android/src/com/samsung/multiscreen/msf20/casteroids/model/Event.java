@@ -27,6 +27,14 @@ public enum Event {
 	// Event sent to have the spacecraft fire a bullet.
 	FIRE("fire", true),
 
+	// Event sent with several ROTATE, THRUST and FIRE changes from the same input tick packed in to a single message. Only
+	// sent if the TV application agreed to the INPUT_BATCH protocol feature.
+	INPUT_BATCH("input_batch", true),
+
+	// Event sent with a full ControllerState snapshot. Replaces the ROTATE, THRUST, FIRE and INPUT_BATCH events if the TV
+	// application agreed to the CONTROLLER_STATE protocol feature.
+	CONTROLLER_STATE("controller_state", true),
+
 	// Event sent to enabled/disable different features of the game. This was added to assist in the performance tuning of
 	// the TV Application.
 	CONFIG_UPDATE("config_update", true),
@@ -59,6 +67,16 @@ public enum Event {
 	// one the client receives.
 	private final boolean send;
 
+	// The Events indexed by their TV application defined name. getByName() runs for every received message, so it uses
+	// this index instead of scanning values().
+	private static final NameIndex<Event> nameIndex = new NameIndex<Event>();
+
+	static {
+		for (Event currentEvent : Event.values()) {
+			nameIndex.put(currentEvent.name, currentEvent);
+		}
+	}
+
 	/**
 	 * Constructor.
 	 * 
@@ -107,15 +125,6 @@ public enum Event {
 	 * @return
 	 */
 	public static Event getByName(String name) {
-		Event event = null;
-
-		for (Event currentEvent : Event.values()) {
-			if (currentEvent.name.equalsIgnoreCase(name)) {
-				event = currentEvent;
-				break;
-			}
-		}
-
-		return event;
+		return nameIndex.get(name);
 	}
 }
@@ -1,13 +1,31 @@
 package com.samsung.multiscreen.msf20.casteroids.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import android.content.Context;
 import android.util.Log;
 
 import com.samsung.multiscreen.Message;
 import com.samsung.multiscreen.msf20.casteroids.BuildConfig;
+import com.samsung.multiscreen.msf20.casteroids.utils.ThreadUtils;
 import com.samsung.multiscreen.msf20.connectivity.ConnectivityListener;
 import com.samsung.multiscreen.msf20.connectivity.ConnectivityManager;
+import com.samsung.multiscreen.msf20.connectivity.ListenerArrays;
+import com.samsung.multiscreen.msf20.connectivity.ListenerDispatchGuard;
 import com.samsung.multiscreen.msf20.connectivity.MessageListener;
+import com.samsung.multiscreen.msf20.connectivity.SendPriority;
 
 /**
  * This class extends the ConnectivityManager with Casteroids game specific logic. It serves as a layer of abstraction
@@ -20,7 +38,7 @@ import com.samsung.multiscreen.msf20.connectivity.MessageListener;
 public class GameConnectivityManager extends ConnectivityManager implements ConnectivityListener, MessageListener {
 
 	// An singleton instance of this class
-	private static GameConnectivityManager instance = null;
+	private static volatile GameConnectivityManager instance = null;
 
 	// The URL options for the TV application.
 	protected static final String LOCALHOST_TV_APP_URL = "http://127.0.0.1:63343/game-webapp/dist/tv/index.html";
@@ -37,6 +55,55 @@ public class GameConnectivityManager extends ConnectivityManager implements Conn
 	// Contains game state data collected from events received from the TV Application.
 	private GameState gameState = new GameState();
 
+	// Decodes the messages received from the TV application.
+	private final CodecRegistry codecRegistry = new CodecRegistry();
+
+	// The registered game message listeners and their pending messages, indexed by the DeliveryTarget ordinal.
+	private final GameMessageDelivery[] gameMessageDeliveries;
+
+	// A lock used to synchronize registering and unregistering game message listeners. Never held while a listener is
+	// notified.
+	private final Object gameMessageListenerLock = new Object();
+
+	// The wire formats and optional protocol features this client supports. Advertised in the JOIN_REQUEST message.
+	private static final Set<WireFormat> SUPPORTED_WIRE_FORMATS = Collections.unmodifiableSet(EnumSet
+	        .allOf(WireFormat.class));
+	private static final Set<ProtocolFeature> SUPPORTED_FEATURES = Collections.unmodifiableSet(EnumSet
+	        .allOf(ProtocolFeature.class));
+
+	// The wire format used to send the ROTATE, THRUST and FIRE messages for the current session. Picked by the TV
+	// application in the JOIN_RESPONSE message.
+	private volatile WireFormat wireFormat = WireFormat.JSON;
+
+	// The optional protocol features used for the current session. Agreed to by the TV application in the
+	// JOIN_RESPONSE message.
+	private volatile Set<ProtocolFeature> features = Collections.emptySet();
+
+	// The sequence number of the last ControllerState created for the current session.
+	private final AtomicInteger controllerStateSequence = new AtomicInteger(0);
+
+	// Collects the ROTATE, THRUST and FIRE changes made between beginInputBatch() and endInputBatch(). Also used as the
+	// lock that keeps the input messages in order.
+	private final InputBatch inputBatch = new InputBatch();
+
+	// The number of open beginInputBatch() calls. Guarded by the inputBatch lock.
+	private int inputBatchDepth = 0;
+
+	// The player of the last JOIN_REQUEST, rejoined with the same resume token after the connection is reconnected, or
+	// null after quitting or disconnecting.
+	private volatile JoinedPlayer joinedPlayer = null;
+
+	// The game message listeners of a MessageType no listener registered for.
+	private static final GameMessageListener<?>[] NO_GAME_MESSAGE_LISTENERS = new GameMessageListener<?>[0];
+
+	// Runs the deliveries to the UI_THREAD listeners.
+	private static final Executor UI_THREAD_EXECUTOR = new Executor() {
+		@Override
+		public void execute(Runnable task) {
+			ThreadUtils.postOnUiThread(task);
+		}
+	};
+
 	/**
 	 * Constructor.
 	 * 
@@ -48,6 +115,12 @@ public class GameConnectivityManager extends ConnectivityManager implements Conn
 	private GameConnectivityManager(Context context, String url, String channelId, long discoveryTimeoutMillis) {
 		super(context, url, channelId, discoveryTimeoutMillis);
 
+		gameMessageDeliveries = new GameMessageDelivery[DeliveryTarget.values().length];
+		gameMessageDeliveries[DeliveryTarget.INLINE.ordinal()] = new GameMessageDelivery(null);
+		gameMessageDeliveries[DeliveryTarget.UI_THREAD.ordinal()] = new GameMessageDelivery(UI_THREAD_EXECUTOR);
+		gameMessageDeliveries[DeliveryTarget.BACKGROUND.ordinal()] = new GameMessageDelivery(
+		        createBackgroundExecutor());
+
 		// Register for connectivity updates
 		registerConnectivityListener(this);
 
@@ -84,6 +157,15 @@ public class GameConnectivityManager extends ConnectivityManager implements Conn
 		return gameState;
 	}
 
+	/**
+	 * Returns the CodecRegistry used to decode the messages received from the TV application.
+	 * 
+	 * @return
+	 */
+	public CodecRegistry getCodecRegistry() {
+		return codecRegistry;
+	}
+
 	/**
 	 * Sends a JOIN_REQUEST message to the TV application.
 	 * 
@@ -94,13 +176,45 @@ public class GameConnectivityManager extends ConnectivityManager implements Conn
 	 * @return
 	 */
 	public void sendJoinRequestMessage(String name, Color color) {
-		String data = MessageDataHelper.encodeJoinRequestData(name, color);
+		// Every join starts a new session with a new resume token.
+		JoinedPlayer player = new JoinedPlayer(name, color, UUID.randomUUID().toString());
+		joinedPlayer = player;
+		sendJoinRequestMessage(player);
+	}
+
+	/**
+	 * Sends a JOIN_REQUEST message for the given player to the TV application.
+	 * 
+	 * @param player
+	 */
+	private void sendJoinRequestMessage(JoinedPlayer player) {
+		String data = MessageDataHelper.encodeJoinRequestData(player.name, player.color, SUPPORTED_WIRE_FORMATS,
+		        SUPPORTED_FEATURES, player.resumeToken);
 
 		if (data != null) {
 			sendMessage(Event.JOIN_REQUEST.getName(), data);
 		} else {
-			Log.e(TAG, "Failed to create JOIN_REQUEST data using name='" + name + "' and color=" + color + ".");
+			Log.e(TAG, "Failed to create JOIN_REQUEST data using name='" + player.name + "' and color=" + player.color
+			        + ".");
+		}
+	}
+
+	/**
+	 * Rejoins the game after the connection to the TV application was reconnected, if the player had joined it. The
+	 * JOIN_REQUEST carries the resume token of the original join, so the TV application gives the player the same slot
+	 * and color back.
+	 */
+	private void resumeJoinedPlayer() {
+		JoinedPlayer player = joinedPlayer;
+		JoinResponseData joinResponseData = gameState.getJoinResponseData();
+		if ((player == null) || (joinResponseData == null) || !joinResponseData.isSuccessful()) {
+			return;
+		}
+
+		if (BuildConfig.DEBUG) {
+			Log.d(TAG, "Rejoining the game after reconnecting. name='" + player.name + "', color=" + player.color);
 		}
+		sendJoinRequestMessage(player);
 	}
 
 	/**
@@ -109,10 +223,12 @@ public class GameConnectivityManager extends ConnectivityManager implements Conn
 	public void sendQuitMessage() {
 		sendMessage(Event.QUIT.getName(), null);
         getGameState().onGameQuit();
+		joinedPlayer = null;
+		resetSession();
 	}
 
 	/**
-	 * Sends a ROTATE message to the TV application.
+	 * Sends a ROTATE message to the TV application. If an input batch is open the change is added to the batch instead.
 	 * 
 	 * @param rotate
 	 *            Which direction to rotate.
@@ -120,28 +236,344 @@ public class GameConnectivityManager extends ConnectivityManager implements Conn
 	 *            The strength of the rotate from 0 to 100.
 	 */
 	public void sendRotateMessage(Rotate rotate, int strength) {
-		String data = MessageDataHelper.encodeRotateData(rotate, strength);
-		if (data != null) {
-			sendMessage(Event.ROTATE.getName(), data);
+		sendRotateMessage(rotate, strength, NO_INPUT_TIME);
+	}
+
+	/**
+	 * Sends a ROTATE message caused by an input event to the TV application and records its input latency. If an input
+	 * batch is open the change is added to the batch instead.
+	 * 
+	 * @param rotate
+	 *            Which direction to rotate.
+	 * @param strength
+	 *            The strength of the rotate from 0 to 100.
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base, or NO_INPUT_TIME.
+	 */
+	public void sendRotateMessage(Rotate rotate, int strength, long inputTimeNanos) {
+		synchronized (inputBatch) {
+			if (isInputBatchOpen() && inputBatch.addRotate(rotate, strength, inputTimeNanos)) {
+				return;
+			}
+			writeRotateMessage(rotate, strength, inputTimeNanos);
 		}
 	}
 
 	/**
-	 * Sends a THRUST message to the TV application.
+	 * Sends a THRUST message to the TV application. If an input batch is open the change is added to the batch instead.
 	 * 
 	 * @param thrust
 	 */
 	public void sendThrustMessage(Thrust thrust) {
-		sendMessage(Event.THRUST.getName(), thrust.getName());
+		sendThrustMessage(thrust, NO_INPUT_TIME);
+	}
+
+	/**
+	 * Sends a THRUST message caused by an input event to the TV application and records its input latency. If an input
+	 * batch is open the change is added to the batch instead.
+	 * 
+	 * @param thrust
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base, or NO_INPUT_TIME.
+	 */
+	public void sendThrustMessage(Thrust thrust, long inputTimeNanos) {
+		synchronized (inputBatch) {
+			if (isInputBatchOpen() && inputBatch.addThrust(thrust, inputTimeNanos)) {
+				return;
+			}
+			writeThrustMessage(thrust, inputTimeNanos);
+		}
 	}
 
 	/**
-	 * Sends a FIRE message to the TV application.
+	 * Sends a FIRE message to the TV application. If an input batch is open the change is added to the batch instead.
 	 * 
 	 * @param fire
 	 */
 	public void sendFireMessage(Fire fire) {
-		sendMessage(Event.FIRE.getName(), fire.getName());
+		sendFireMessage(fire, NO_INPUT_TIME);
+	}
+
+	/**
+	 * Sends a FIRE message caused by an input event to the TV application and records its input latency. If an input
+	 * batch is open the change is added to the batch instead.
+	 * 
+	 * @param fire
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base, or NO_INPUT_TIME.
+	 */
+	public void sendFireMessage(Fire fire, long inputTimeNanos) {
+		synchronized (inputBatch) {
+			if (isInputBatchOpen() && inputBatch.addFire(fire, inputTimeNanos)) {
+				return;
+			}
+			writeFireMessage(fire, inputTimeNanos);
+		}
+	}
+
+	/**
+	 * Returns a new ControllerState with the next sequence number of the current session.
+	 * 
+	 * @param rotate
+	 * @param strength
+	 * @param thrust
+	 * @param fire
+	 * @return
+	 */
+	public ControllerState createControllerState(Rotate rotate, int strength, Thrust thrust, Fire fire) {
+		return new ControllerState(controllerStateSequence.incrementAndGet(), rotate, strength, thrust, fire);
+	}
+
+	/**
+	 * Sends a CONTROLLER_STATE message with the full controller input to the TV application. Should only be used if
+	 * the TV application agreed to the CONTROLLER_STATE feature.
+	 * 
+	 * @param controllerState
+	 */
+	public void sendControllerStateMessage(ControllerState controllerState) {
+		sendControllerStateMessage(controllerState, NO_INPUT_TIME);
+	}
+
+	/**
+	 * Sends a CONTROLLER_STATE message with the full controller input to the TV application and records its input
+	 * latency. Should only be used if the TV application agreed to the CONTROLLER_STATE feature.
+	 * 
+	 * @param controllerState
+	 * @param inputTimeNanos
+	 *            The time of the earliest input event not yet sent in the System.nanoTime() time base, or
+	 *            NO_INPUT_TIME.
+	 */
+	public void sendControllerStateMessage(ControllerState controllerState, long inputTimeNanos) {
+		if (wireFormat == WireFormat.BINARY) {
+			sendMessage(Event.CONTROLLER_STATE.getName(), null, Message.TARGET_HOST,
+			        MessagePayloadHelper.encodeControllerStatePayload(controllerState), inputTimeNanos);
+		} else {
+			sendMessage(Event.CONTROLLER_STATE.getName(),
+			        MessageDataHelper.encodeControllerStateData(controllerState), Message.TARGET_HOST, null,
+			        inputTimeNanos);
+		}
+	}
+
+	/**
+	 * Opens an input batch. Until the matching endInputBatch() call the ROTATE, THRUST and FIRE changes are collected
+	 * and then sent together. Calls can be nested, only the outermost endInputBatch() sends the batch.
+	 */
+	public void beginInputBatch() {
+		synchronized (inputBatch) {
+			inputBatchDepth++;
+		}
+	}
+
+	/**
+	 * Closes the input batch opened by beginInputBatch() and sends the collected changes to the TV application.<br>
+	 * <br>
+	 * A batch with more than one change is sent as a single INPUT_BATCH message when the TV application agreed to the
+	 * INPUT_BATCH feature. Otherwise the changes are sent as individual messages in the order they were made.
+	 */
+	public void endInputBatch() {
+		synchronized (inputBatch) {
+			if (inputBatchDepth == 0) {
+				Log.w(TAG, "endInputBatch() called without a matching beginInputBatch().");
+				return;
+			}
+			if (--inputBatchDepth == 0) {
+				flushInputBatch();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether or not an input batch is open, flushing the batch first if it is full. Must be called while
+	 * holding the inputBatch lock.
+	 * 
+	 * @return
+	 */
+	private boolean isInputBatchOpen() {
+		// Flush a full batch so that the change being added keeps its order.
+		if ((inputBatchDepth > 0) && (inputBatch.size() == InputBatch.MAX_SIZE)) {
+			flushInputBatch();
+		}
+		return (inputBatchDepth > 0);
+	}
+
+	/**
+	 * Sends and clears the collected input batch. Must be called while holding the inputBatch lock.<br>
+	 * <br>
+	 * An INPUT_BATCH message records its input latency from the earliest input event in the batch. It is sent in the
+	 * HIGH lane, so if it carries a rotation the older ROTATE message still queued in the NORMAL lane is cancelled
+	 * first. Otherwise that message would be published after the batch and undo its rotation.
+	 */
+	private void flushInputBatch() {
+		if (inputBatch.isEmpty()) {
+			return;
+		}
+
+		if ((inputBatch.size() > 1) && isFeatureEnabled(ProtocolFeature.INPUT_BATCH)) {
+			long inputTimeNanos = inputBatch.getEarliestInputTime();
+			if (inputBatch.contains(Event.ROTATE)) {
+				cancelQueuedMessage(Event.ROTATE.getName());
+			}
+			if (wireFormat == WireFormat.BINARY) {
+				sendMessage(Event.INPUT_BATCH.getName(), null, Message.TARGET_HOST,
+				        MessagePayloadHelper.encodeInputBatchPayload(inputBatch), inputTimeNanos);
+			} else {
+				sendMessage(Event.INPUT_BATCH.getName(), MessageDataHelper.encodeInputBatchData(inputBatch),
+				        Message.TARGET_HOST, null, inputTimeNanos);
+			}
+		} else {
+			for (int i = 0; i < inputBatch.size(); i++) {
+				switch (inputBatch.getEvent(i)) {
+					case ROTATE:
+						writeRotateMessage(inputBatch.getRotate(i), inputBatch.getStrength(i), inputBatch.getInputTime(i));
+						break;
+					case THRUST:
+						writeThrustMessage(inputBatch.getThrust(i), inputBatch.getInputTime(i));
+						break;
+					case FIRE:
+						writeFireMessage(inputBatch.getFire(i), inputBatch.getInputTime(i));
+						break;
+					default:
+						// Ignore. Only the input events are batched.
+				}
+			}
+		}
+
+		inputBatch.clear();
+	}
+
+	/**
+	 * Writes a single ROTATE message in the wire format of the current session.
+	 * 
+	 * @param rotate
+	 * @param strength
+	 * @param inputTimeNanos
+	 */
+	private void writeRotateMessage(Rotate rotate, int strength, long inputTimeNanos) {
+		// If enabled, send the binary payload.
+		if (wireFormat == WireFormat.BINARY) {
+			sendMessage(Event.ROTATE.getName(), null, Message.TARGET_HOST,
+			        MessagePayloadHelper.encodeRotatePayload(rotate, strength), inputTimeNanos);
+			return;
+		}
+
+		// Otherwise fallback to the JSON data.
+		String data = MessageDataHelper.encodeRotateData(rotate, strength);
+		if (data != null) {
+			sendMessage(Event.ROTATE.getName(), data, Message.TARGET_HOST, null, inputTimeNanos);
+		}
+	}
+
+	/**
+	 * Writes a single THRUST message in the wire format of the current session.
+	 * 
+	 * @param thrust
+	 * @param inputTimeNanos
+	 */
+	private void writeThrustMessage(Thrust thrust, long inputTimeNanos) {
+		if (wireFormat == WireFormat.BINARY) {
+			sendMessage(Event.THRUST.getName(), null, Message.TARGET_HOST,
+			        MessagePayloadHelper.encodeThrustPayload(thrust), inputTimeNanos);
+		} else {
+			sendMessage(Event.THRUST.getName(), thrust.getName(), Message.TARGET_HOST, null, inputTimeNanos);
+		}
+	}
+
+	/**
+	 * Writes a single FIRE message in the wire format of the current session.
+	 * 
+	 * @param fire
+	 * @param inputTimeNanos
+	 */
+	private void writeFireMessage(Fire fire, long inputTimeNanos) {
+		if (wireFormat == WireFormat.BINARY) {
+			sendMessage(Event.FIRE.getName(), null, Message.TARGET_HOST, MessagePayloadHelper.encodeFirePayload(fire),
+			        inputTimeNanos);
+		} else {
+			sendMessage(Event.FIRE.getName(), fire.getName(), Message.TARGET_HOST, null, inputTimeNanos);
+		}
+	}
+
+	/**
+	 * Returns the wire format used to send the ROTATE, THRUST and FIRE messages for the current session.
+	 * 
+	 * @return
+	 */
+	public WireFormat getWireFormat() {
+		return wireFormat;
+	}
+
+	/**
+	 * Returns whether or not the given optional protocol feature is used for the current session.
+	 * 
+	 * @param feature
+	 * @return
+	 */
+	public boolean isFeatureEnabled(ProtocolFeature feature) {
+		return features.contains(feature);
+	}
+
+	/**
+	 * Applies the wire format and features negotiated in the JOIN_RESPONSE to the current session. An unsuccessful
+	 * response leaves the session unchanged.
+	 * 
+	 * @param joinResponseData
+	 */
+	private void applySession(JoinResponseData joinResponseData) {
+		if ((joinResponseData == null) || !joinResponseData.isSuccessful()) {
+			return;
+		}
+
+		wireFormat = joinResponseData.getWireFormat();
+		features = joinResponseData.getFeatures();
+		controllerStateSequence.set(0);
+
+		if (BuildConfig.DEBUG) {
+			Log.d(TAG, "Negotiated session. wireFormat=" + wireFormat + ", features=" + features);
+		}
+	}
+
+	/**
+	 * Resets the session to the JSON wire format and no features, which every TV application supports.
+	 */
+	private void resetSession() {
+		wireFormat = WireFormat.JSON;
+		features = Collections.emptySet();
+		controllerStateSequence.set(0);
+	}
+
+	/**
+	 * Returns whether or not the clock of the TV application is synchronized, so that the times can be converted
+	 * between the clocks. The clocks are synchronized right after connecting.
+	 * 
+	 * @return
+	 */
+	public boolean isTvClockSynchronized() {
+		return getClockSync().isSynchronized();
+	}
+
+	/**
+	 * Converts the given time of this device to the time of the TV application, which is the performance.now() clock
+	 * the TV application runs the game with. For example the time of an input event can be converted so the TV
+	 * application can apply the input at the simulation tick it was made in.
+	 * 
+	 * @param nanoTime
+	 *            A time in the System.nanoTime() time base.
+	 * @return The TV time in microseconds.
+	 */
+	public long toTvTimeMicros(long nanoTime) {
+		return getClockSync().toTvTimeNanos(nanoTime) / 1000;
+	}
+
+	/**
+	 * Converts the given time of the TV application to the time of this device. For example the time a message was
+	 * sent by the TV application can be converted to measure its one way latency.
+	 * 
+	 * @param tvTimeMicros
+	 *            A time of the performance.now() clock of the TV application in microseconds.
+	 * @return The time in the System.nanoTime() time base.
+	 */
+	public long toLocalNanoTime(long tvTimeMicros) {
+		return getClockSync().toLocalNanos(tvTimeMicros * 1000);
 	}
 
 	/**
@@ -181,6 +613,189 @@ public class GameConnectivityManager extends ConnectivityManager implements Conn
 		}
 	}
 
+	/**
+	 * Registers the given listener for decoded game message updates of the given MessageType. The listener is called on
+	 * the thread that received the message.
+	 * 
+	 * @param listener
+	 * @param messageType
+	 */
+	public <T> void registerMessageListener(GameMessageListener<? super T> listener, MessageType<T> messageType) {
+		registerMessageListener(listener, DeliveryTarget.INLINE, messageType);
+	}
+
+	/**
+	 * Registers the given listener for decoded game message updates of the given MessageType on the given delivery
+	 * target. A listener that is already registered for the MessageType on another target is moved to the given
+	 * target.
+	 * 
+	 * @param listener
+	 * @param target
+	 *            The thread the listener is called on.
+	 * @param messageType
+	 */
+	public <T> void registerMessageListener(GameMessageListener<? super T> listener, DeliveryTarget target,
+	        MessageType<T> messageType) {
+		if ((listener == null) || (target == null) || (messageType == null)) {
+			return;
+		}
+
+		// The bits of the targets the listener was removed from.
+		int movedTargets = 0;
+		synchronized (gameMessageListenerLock) {
+			// Remove the listener from the other targets so that it is never called twice for a message.
+			for (int i = 0; i < gameMessageDeliveries.length; i++) {
+				if ((i != target.ordinal()) && gameMessageDeliveries[i].removeListener(messageType, listener)) {
+					movedTargets |= (1 << i);
+				}
+			}
+
+			// Add the listener if its not already registered.
+			int count = gameMessageDeliveries[target.ordinal()].addListener(messageType, listener);
+			if ((count != -1) && BuildConfig.DEBUG) {
+				String simpleName = listener.getClass().getSimpleName();
+				Log.v(TAG, "Registering " + simpleName + " for '" + messageType.getEvent().getName()
+				        + "' game message updates on " + target + ". count=" + count);
+			}
+		}
+
+		// Wait for the deliveries that may still call the listener on its previous targets.
+		awaitGameMessageDeliveries(movedTargets);
+	}
+
+	/**
+	 * Unregisters the given listener from decoded game message updates of the given MessageType.<br>
+	 * <br>
+	 * The listener is not called once this method returns. Unless called from a listener callback, it waits for the
+	 * deliveries in progress on other threads, but only on the targets the listener was registered on. A message still
+	 * queued for the listener's target is not delivered to it.<br>
+	 * <br>
+	 * Called from a listener callback, it returns right away. A delivery in progress on another thread can then still
+	 * call the listener, but only if it read the listener before it was unregistered.
+	 * 
+	 * @param listener
+	 * @param messageType
+	 */
+	public <T> void unregisterMessageListener(GameMessageListener<? super T> listener, MessageType<T> messageType) {
+		if ((listener == null) || (messageType == null)) {
+			return;
+		}
+
+		// The bits of the targets the listener was removed from.
+		int removedTargets = 0;
+		synchronized (gameMessageListenerLock) {
+			// Attempt to remove the listener from whichever target it is registered on.
+			for (int i = 0; i < gameMessageDeliveries.length; i++) {
+				if (gameMessageDeliveries[i].removeListener(messageType, listener)) {
+					removedTargets |= (1 << i);
+				}
+			}
+
+			if (BuildConfig.DEBUG) {
+				String msg = (removedTargets != 0) ? "Unregistering " : "Could not unregister ";
+				String simpleName = listener.getClass().getSimpleName();
+				Log.v(TAG, msg + simpleName + " from '" + messageType.getEvent().getName() + "' game message updates.");
+			}
+		}
+
+		// Wait for the deliveries that may still call the listener.
+		awaitGameMessageDeliveries(removedTargets);
+	}
+
+	/**
+	 * Waits until the deliveries in progress on other threads are finished on the given targets, so that a listener
+	 * removed from them is not called anymore. Does not wait when called from any listener callback, see
+	 * ListenerDispatchGuard. Must not be called while holding the gameMessageListenerLock.
+	 * 
+	 * @param targets
+	 *            The bits of the DeliveryTarget ordinals to wait for.
+	 */
+	private void awaitGameMessageDeliveries(int targets) {
+		for (int i = 0; i < gameMessageDeliveries.length; i++) {
+			if ((targets & (1 << i)) != 0) {
+				gameMessageDeliveries[i].dispatchGuard.awaitDispatches();
+			}
+		}
+	}
+
+	/**
+	 * Sends the decoded message to all listeners registered for the given MessageType. The INLINE listeners are called
+	 * right away, the message is queued for the other targets that have a listener for the MessageType.
+	 * 
+	 * @param messageType
+	 * @param message
+	 */
+	private <T> void notifyGameMessageListeners(MessageType<T> messageType, T message) {
+		for (int i = 0; i < gameMessageDeliveries.length; i++) {
+			gameMessageDeliveries[i].deliver(messageType, message);
+		}
+	}
+
+	/**
+	 * Creates the executor that runs the deliveries to the BACKGROUND listeners. Its single thread is only started when
+	 * the first message is delivered.
+	 * 
+	 * @return
+	 */
+	private static ExecutorService createBackgroundExecutor() {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "GameMessageDelivery");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Sends the button edges in the HIGH lane so that they never wait behind the rotation updates or a config broadcast.
+	 * Every message that carries a button edge shares that lane, so that the edges keep their order: a batched ON can
+	 * never be overtaken by a later OFF sent on its own. That includes the INPUT_BATCH messages and the ControllerState
+	 * snapshots, which also keep their sequence order this way. An INPUT_BATCH can carry a rotation too, see
+	 * flushInputBatch() for how it stays ahead of the ROTATE messages. The session messages go in the LOW lane.
+	 * 
+	 * @param eventName
+	 * @return
+	 */
+	@Override
+	protected SendPriority getSendPriority(String eventName) {
+		Event event = Event.getByName(eventName);
+		if (event == null) {
+			return super.getSendPriority(eventName);
+		}
+
+		switch (event) {
+			case FIRE:
+			case THRUST:
+			case INPUT_BATCH:
+			case CONTROLLER_STATE:
+				return SendPriority.HIGH;
+			case ROTATE:
+				return SendPriority.NORMAL;
+			case JOIN_REQUEST:
+			case QUIT:
+			case CONFIG_UPDATE:
+				return SendPriority.LOW;
+			default:
+				return super.getSendPriority(eventName);
+		}
+	}
+
+	/**
+	 * ROTATE and THRUST messages carry the latest state, so a queued one that was not published yet can be replaced by a
+	 * newer one. Every FIRE edge must reach the TV application, and INPUT_BATCH and CONTROLLER_STATE messages can carry
+	 * FIRE edges, so they are never replaced.
+	 * 
+	 * @param eventName
+	 * @return
+	 */
+	@Override
+	protected boolean isCoalescible(String eventName) {
+		Event event = Event.getByName(eventName);
+		return (event == Event.ROTATE) || (event == Event.THRUST);
+	}
+
 	@Override
 	public void onConnectivityUpdate(int eventId) {
 		if (BuildConfig.DEBUG) {
@@ -189,11 +804,19 @@ public class GameConnectivityManager extends ConnectivityManager implements Conn
 
 		switch (eventId) {
 			case APPLICATION_CONNECTED:
+				resetSession();
 				gameState.onConnected();
 				break;
 			case APPLICATION_DISCONNECTED:
+				joinedPlayer = null;
+				resetSession();
 				gameState.onDisconnected();
 				break;
+			case APPLICATION_RECONNECTED:
+				// The new connection starts a new session, but the game state is kept since the player rejoins it.
+				resetSession();
+				resumeJoinedPlayer();
+				break;
 			default:
 				// Ignore.
 		}
@@ -216,34 +839,292 @@ public class GameConnectivityManager extends ConnectivityManager implements Conn
 			Log.d(TAG, "Received message '" + eventName + "'. data=" + data);
 		}
 
+		// Only the Events the client receives have a MessageType.
+		MessageType<?> messageType = MessageType.get(event);
+		if (messageType == null) {
+			if (BuildConfig.DEBUG) {
+				Log.w(TAG, "Ignoring event '" + eventName + "' the client does not receive. data=" + data);
+			}
+			return;
+		}
+
+		onGameMessage(messageType, data, payload);
+	}
+
+	/**
+	 * Decodes a received message once using the Codec registered for its MessageType, updates the game state and hands
+	 * the decoded message to the registered game message listeners.
+	 * 
+	 * @param messageType
+	 * @param data
+	 * @param payload
+	 */
+	private <T> void onGameMessage(MessageType<T> messageType, String data, byte[] payload) {
+		T message = codecRegistry.decode(messageType, data, payload);
+		updateGameState(messageType.getEvent(), message);
+		notifyGameMessageListeners(messageType, message);
+	}
+
+	/**
+	 * Updates the game state with the given decoded message.
+	 * 
+	 * @param event
+	 * @param message
+	 *            The decoded message, already checked against the MessageType of the Event.
+	 */
+	private void updateGameState(Event event, Object message) {
 		// Switch on the Event
 		switch (event) {
 			case SLOT_UPDATE:
-				gameState.onSlotData(MessageDataHelper.decodeSlotUpdateSlotData(data));
+				gameState.onSlotData(MessageType.SLOT_UPDATE.cast(message));
 				break;
 			case JOIN_RESPONSE:
-				gameState.onJoinResponse(MessageDataHelper.decodeJoinResponseData(data));
+				JoinResponseData joinResponseData = MessageType.JOIN_RESPONSE.cast(message);
+				applySession(joinResponseData);
+				gameState.onJoinResponse(joinResponseData);
 				break;
 			case GAME_START:
-				gameState.onGameStart(MessageDataHelper.decodeGameStartCountDownSeconds(data));
+				gameState.onGameStart(getIntValue(MessageType.GAME_START.cast(message)));
 				break;
 			case GAME_OVER:
-				gameState.onGameOver(MessageDataHelper.decodeGameOverScoreData(data));
+				gameState.onGameOver(MessageType.GAME_OVER.cast(message));
 				break;
 			case PLAYER_OUT:
-				gameState.onPlayerOut(MessageDataHelper.decodePlayerOutCountDownSeconds(data));
+				gameState.onPlayerOut(getIntValue(MessageType.PLAYER_OUT.cast(message)));
 				break;
 			case CONFIG_UPDATE:
 				// We received a configuration update sent by another client.
-				gameState.onConfigUpdate(MessageDataHelper.decodeConfigUpdateData(data));
+				if (message != null) {
+					gameState.onConfigUpdate(MessageType.CONFIG_UPDATE.cast(message));
+				}
 				break;
 			default:
 				// Ignore.
 		}
 	}
 
+	/**
+	 * Returns the int value of the given decoded message or 0 if it is null.
+	 * 
+	 * @param message
+	 * @return
+	 */
+	private static int getIntValue(Integer message) {
+		return (message != null) ? message : 0;
+	}
+
 	@Override
 	public String toString() {
 		return "GameConnectivityManager [gameState=" + gameState + "]";
 	}
+
+	/**
+	 * The game message listeners registered on one DeliveryTarget and the messages waiting to be delivered to them.<br>
+	 * <br>
+	 * Without an executor the listeners are called right away. Otherwise a received message is queued once, however
+	 * many listeners registered for its Event, and at most one delivery task is waiting on the executor. The task
+	 * delivers every message queued until it runs, so a burst of messages costs one task. The executor must run the
+	 * tasks one at a time.<br>
+	 * <br>
+	 * The listeners are read when the message is delivered, so a listener that unregistered while the message was
+	 * queued is not called. The deliveries hold the dispatch guard, so a listener is not called either once
+	 * unregistering it returned.
+	 */
+	private final class GameMessageDelivery implements Runnable {
+
+		// Runs the delivery task, or null to call the listeners right away.
+		private final Executor executor;
+
+		// The registered listeners, indexed by the Event ordinal of their MessageType. The arrays are never changed,
+		// registering or unregistering a listener replaces them, so the listeners are notified without a lock or an
+		// allocation. A listener is only added to the array of a MessageType whose type it accepts.
+		private final AtomicReferenceArray<GameMessageListener<?>[]> listeners =
+		        new AtomicReferenceArray<GameMessageListener<?>[]>(Event.values().length);
+
+		// The queued messages and their MessageTypes. Guarded by the delivery.
+		private ArrayList<MessageType<?>> pendingTypes = new ArrayList<MessageType<?>>();
+		private ArrayList<Object> pendingMessages = new ArrayList<Object>();
+
+		// The messages being delivered by the task. Swapped with the queued messages so that queueing never waits for
+		// the listeners. Only used by the task.
+		private ArrayList<MessageType<?>> deliveringTypes = new ArrayList<MessageType<?>>();
+		private ArrayList<Object> deliveringMessages = new ArrayList<Object>();
+
+		// Whether or not a delivery task is waiting on the executor.
+		private final AtomicBoolean isTaskPosted = new AtomicBoolean(false);
+
+		// Held while the listeners are called, so that unregistering can wait for the deliveries in progress.
+		private final ListenerDispatchGuard dispatchGuard = new ListenerDispatchGuard();
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param executor
+		 *            Runs the delivery task, or null to call the listeners right away.
+		 */
+		private GameMessageDelivery(Executor executor) {
+			this.executor = executor;
+
+			for (int i = 0; i < listeners.length(); i++) {
+				listeners.set(i, NO_GAME_MESSAGE_LISTENERS);
+			}
+		}
+
+		/**
+		 * Adds the given listener for the given MessageType. Must be called while holding the gameMessageListenerLock.
+		 * 
+		 * @param messageType
+		 * @param listener
+		 * @return Returns the number of listeners of the MessageType, or -1 if the listener was already registered.
+		 */
+		private <T> int addListener(MessageType<T> messageType, GameMessageListener<? super T> listener) {
+			int index = messageType.getEvent().ordinal();
+			GameMessageListener<?>[] originalListeners = listeners.get(index);
+			GameMessageListener<?>[] updatedListeners = ListenerArrays.<GameMessageListener<?>> add(originalListeners,
+			        listener);
+			if (updatedListeners == originalListeners) {
+				return -1;
+			}
+
+			listeners.set(index, updatedListeners);
+			return updatedListeners.length;
+		}
+
+		/**
+		 * Removes the given listener for the given MessageType. Must be called while holding the
+		 * gameMessageListenerLock.
+		 * 
+		 * @param messageType
+		 * @param listener
+		 * @return Returns true if the listener was removed or false if it was not registered.
+		 */
+		private boolean removeListener(MessageType<?> messageType, GameMessageListener<?> listener) {
+			int index = messageType.getEvent().ordinal();
+			GameMessageListener<?>[] originalListeners = listeners.get(index);
+			GameMessageListener<?>[] updatedListeners = ListenerArrays.<GameMessageListener<?>> remove(
+			        originalListeners, listener);
+			if (updatedListeners == originalListeners) {
+				return false;
+			}
+
+			listeners.set(index, (updatedListeners.length > 0) ? updatedListeners : NO_GAME_MESSAGE_LISTENERS);
+			return true;
+		}
+
+		/**
+		 * Calls the listeners of the given MessageType right away or queues the message for the delivery task. Does
+		 * nothing if no listener registered for the MessageType.
+		 * 
+		 * @param messageType
+		 * @param message
+		 */
+		private <T> void deliver(MessageType<T> messageType, T message) {
+			GameMessageListener<?>[] typeListeners = listeners.get(messageType.getEvent().ordinal());
+			if (typeListeners.length == 0) {
+				return;
+			}
+
+			if (executor == null) {
+				notifyListeners(messageType, message);
+				return;
+			}
+
+			synchronized (this) {
+				pendingTypes.add(messageType);
+				pendingMessages.add(message);
+			}
+
+			// Post a task only if none is waiting, the waiting task delivers this message too.
+			if (isTaskPosted.compareAndSet(false, true)) {
+				executor.execute(this);
+			}
+		}
+
+		/**
+		 * Delivers the queued messages. Run by the executor.
+		 */
+		@Override
+		public void run() {
+			// Clear the flag before taking the messages, so a message queued after this point posts a new task.
+			isTaskPosted.set(false);
+
+			synchronized (this) {
+				ArrayList<MessageType<?>> types = pendingTypes;
+				pendingTypes = deliveringTypes;
+				deliveringTypes = types;
+
+				ArrayList<Object> messages = pendingMessages;
+				pendingMessages = deliveringMessages;
+				deliveringMessages = messages;
+			}
+
+			for (int i = 0; i < deliveringTypes.size(); i++) {
+				notifyListeners(deliveringTypes.get(i), deliveringMessages.get(i));
+			}
+
+			// Release the references to the delivered messages.
+			deliveringTypes.clear();
+			deliveringMessages.clear();
+		}
+
+		/**
+		 * Sends the decoded message to the listeners of the given MessageType. The array is never changed, so a listener
+		 * can unregister itself or another listener in its callback. A listener unregistered by an earlier listener of
+		 * the message is skipped.<br>
+		 * <br>
+		 * This is the only place the listeners are cast to the type of the message. addListener() only adds a listener
+		 * to the array of a MessageType whose type it accepts, and the message was checked against the MessageType when
+		 * it was decoded.
+		 * 
+		 * @param messageType
+		 * @param message
+		 */
+		@SuppressWarnings("unchecked")
+		private <T> void notifyListeners(MessageType<T> messageType, Object message) {
+			Event event = messageType.getEvent();
+			T typedMessage = (T) message;
+			dispatchGuard.beginDispatch();
+			try {
+				GameMessageListener<?>[] typeListeners = listeners.get(event.ordinal());
+				for (int i = 0; i < typeListeners.length; i++) {
+					GameMessageListener<? super T> listener = (GameMessageListener<? super T>) typeListeners[i];
+
+					GameMessageListener<?>[] currentListeners = listeners.get(event.ordinal());
+					if ((currentListeners != typeListeners)
+					        && !ListenerArrays.<GameMessageListener<?>> contains(currentListeners, listener)) {
+						continue;
+					}
+
+					try {
+						listener.onMessage(messageType, typedMessage);
+					} catch (Exception e) {
+						String simpleName = listener.getClass().getSimpleName();
+						Log.e(TAG, "Failed to send " + simpleName + " a '" + event.getName() + "' game message update.",
+						        e);
+					}
+				}
+			} finally {
+				dispatchGuard.endDispatch();
+			}
+		}
+	}
+
+	/**
+	 * The name and color a player joined the game with, and the resume token identifying the player's session to the
+	 * TV application.
+	 */
+	private static final class JoinedPlayer {
+
+		private final String name;
+
+		private final Color color;
+
+		private final String resumeToken;
+
+		JoinedPlayer(String name, Color color, String resumeToken) {
+			this.name = name;
+			this.color = color;
+			this.resumeToken = resumeToken;
+		}
+	}
 }
@@ -0,0 +1,32 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+/**
+ * This interface is implemented by components that want to receive decoded game message updates.<br>
+ * <br>
+ * The message data is decoded once by the GameConnectivityManager using the Codec registered for the MessageType in
+ * the {@link CodecRegistry}. A listener registers against a {@link MessageType} and receives the decoded message with
+ * the type of that MessageType.<br>
+ * <br>
+ * The callbacks are on the thread of the {@link DeliveryTarget} the listener registered with. A listener registered
+ * without a DeliveryTarget is called on the thread that received the message, which is not the UI thread.
+ * 
+ * @author Dan McCafferty
+ * 
+ * @param <T>
+ *            The type of the decoded messages the listener receives.
+ */
+public interface GameMessageListener<T> {
+
+	/**
+	 * Called when a new message that the listener registered for was received and decoded.<br>
+	 * <br>
+	 * NOTE: This callback is only on the UI thread if the listener registered with DeliveryTarget.UI_THREAD. Otherwise
+	 * a change to the UI needs to be run on the UI thread.
+	 * 
+	 * @param messageType
+	 *            The MessageType of the message.
+	 * @param message
+	 *            The decoded message data. May be null if the data could not be decoded.
+	 */
+	public void onMessage(MessageType<? extends T> messageType, T message);
+}
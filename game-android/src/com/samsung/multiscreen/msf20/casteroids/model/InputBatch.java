@@ -0,0 +1,256 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import com.samsung.multiscreen.msf20.connectivity.ConnectivityManager;
+
+/**
+ * Collects the ROTATE, THRUST and FIRE changes from one input tick so that they can be sent to the TV application in a
+ * single INPUT_BATCH message. The changes are kept in the order they were added.<br>
+ * <br>
+ * The batch is reused from tick to tick and does not allocate once created. It is not thread safe.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class InputBatch {
+
+	// The maximum number of changes in a batch. A tick can at most change the rotate, thrust and fire state, but a
+	// button can be pressed and released within the same tick, so leave some room.
+	public static final int MAX_SIZE = 8;
+
+	// The Event of each change. One of ROTATE, THRUST or FIRE.
+	private final Event[] events = new Event[MAX_SIZE];
+
+	// The Rotate, Thrust or Fire value of each change.
+	private final Enum<?>[] values = new Enum<?>[MAX_SIZE];
+
+	// The rotate strength of each ROTATE change.
+	private final int[] strengths = new int[MAX_SIZE];
+
+	// The time of the input event that caused each change, or ConnectivityManager.NO_INPUT_TIME.
+	private final long[] inputTimes = new long[MAX_SIZE];
+
+	// The number of changes in the batch.
+	private int size = 0;
+
+	/**
+	 * Adds a ROTATE change to the batch.
+	 * 
+	 * @param rotate
+	 * @param strength
+	 * @return Returns false if the batch is full.
+	 */
+	public boolean addRotate(Rotate rotate, int strength) {
+		return addRotate(rotate, strength, ConnectivityManager.NO_INPUT_TIME);
+	}
+
+	/**
+	 * Adds a ROTATE change caused by an input event to the batch.
+	 * 
+	 * @param rotate
+	 * @param strength
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base.
+	 * @return Returns false if the batch is full.
+	 */
+	public boolean addRotate(Rotate rotate, int strength, long inputTimeNanos) {
+		return add(Event.ROTATE, rotate, (rotate != Rotate.NONE) ? strength : 0, inputTimeNanos);
+	}
+
+	/**
+	 * Adds a THRUST change to the batch.
+	 * 
+	 * @param thrust
+	 * @return Returns false if the batch is full.
+	 */
+	public boolean addThrust(Thrust thrust) {
+		return addThrust(thrust, ConnectivityManager.NO_INPUT_TIME);
+	}
+
+	/**
+	 * Adds a THRUST change caused by an input event to the batch.
+	 * 
+	 * @param thrust
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base.
+	 * @return Returns false if the batch is full.
+	 */
+	public boolean addThrust(Thrust thrust, long inputTimeNanos) {
+		return add(Event.THRUST, thrust, 0, inputTimeNanos);
+	}
+
+	/**
+	 * Adds a FIRE change to the batch.
+	 * 
+	 * @param fire
+	 * @return Returns false if the batch is full.
+	 */
+	public boolean addFire(Fire fire) {
+		return addFire(fire, ConnectivityManager.NO_INPUT_TIME);
+	}
+
+	/**
+	 * Adds a FIRE change caused by an input event to the batch.
+	 * 
+	 * @param fire
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base.
+	 * @return Returns false if the batch is full.
+	 */
+	public boolean addFire(Fire fire, long inputTimeNanos) {
+		return add(Event.FIRE, fire, 0, inputTimeNanos);
+	}
+
+	/**
+	 * Adds a change to the batch.
+	 * 
+	 * @param event
+	 * @param value
+	 * @param strength
+	 * @param inputTimeNanos
+	 * @return Returns false if the batch is full.
+	 */
+	private boolean add(Event event, Enum<?> value, int strength, long inputTimeNanos) {
+		if (size == MAX_SIZE) {
+			return false;
+		}
+		events[size] = event;
+		values[size] = value;
+		strengths[size] = strength;
+		inputTimes[size] = inputTimeNanos;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes all the changes from the batch.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			values[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of changes in the batch.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns whether or not the batch is empty.
+	 * 
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	/**
+	 * Returns whether or not the batch has a change of the given event.
+	 * 
+	 * @param event
+	 * @return
+	 */
+	public boolean contains(Event event) {
+		for (int i = 0; i < size; i++) {
+			if (events[i] == event) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the Event of the change at the given index. One of ROTATE, THRUST or FIRE.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public Event getEvent(int index) {
+		return events[index];
+	}
+
+	/**
+	 * Returns the Rotate value of the ROTATE change at the given index.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public Rotate getRotate(int index) {
+		return (Rotate) values[index];
+	}
+
+	/**
+	 * Returns the rotate strength of the ROTATE change at the given index.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public int getStrength(int index) {
+		return strengths[index];
+	}
+
+	/**
+	 * Returns the time of the input event that caused the change at the given index, or
+	 * ConnectivityManager.NO_INPUT_TIME.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public long getInputTime(int index) {
+		return inputTimes[index];
+	}
+
+	/**
+	 * Returns the earliest time of the input events that caused the changes in the batch, or
+	 * ConnectivityManager.NO_INPUT_TIME if no change was caused by an input event.
+	 * 
+	 * @return
+	 */
+	public long getEarliestInputTime() {
+		long earliest = ConnectivityManager.NO_INPUT_TIME;
+		for (int i = 0; i < size; i++) {
+			if ((inputTimes[i] != ConnectivityManager.NO_INPUT_TIME)
+			        && ((earliest == ConnectivityManager.NO_INPUT_TIME) || (inputTimes[i] - earliest < 0))) {
+				earliest = inputTimes[i];
+			}
+		}
+		return earliest;
+	}
+
+	/**
+	 * Returns the Thrust value of the THRUST change at the given index.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public Thrust getThrust(int index) {
+		return (Thrust) values[index];
+	}
+
+	/**
+	 * Returns the Fire value of the FIRE change at the given index.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public Fire getFire(int index) {
+		return (Fire) values[index];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("InputBatch [");
+		for (int i = 0; i < size; i++) {
+			sb.append((i > 0) ? ", " : "").append(events[i]).append('=').append(values[i]);
+			if (events[i] == Event.ROTATE) {
+				sb.append('(').append(strengths[i]).append(')');
+			}
+		}
+		return sb.append(']').toString();
+	}
+}
@@ -1,5 +1,9 @@
 package com.samsung.multiscreen.msf20.casteroids.model;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * Contains data from the JOIN_RESPONSE event.
  * 
@@ -21,8 +25,14 @@ public class JoinResponseData {
 	// The color the player chose.
 	private final Color color;
 
+	// The wire format the TV Application picked for the controller input events.
+	private final WireFormat wireFormat;
+
+	// The optional protocol features the TV Application agreed to use.
+	private final Set<ProtocolFeature> features;
+
 	/**
-	 * Constructor.
+	 * Constructor. Used for TV Applications that do not negotiate the wire format and features.
 	 * 
 	 * @param responseCode
 	 *            The TV Application defined response code.
@@ -32,10 +42,31 @@ public class JoinResponseData {
 	 *            The color the player chose.
 	 */
 	public JoinResponseData(int responseCode, String name, Color color) {
+		this(responseCode, name, color, WireFormat.JSON, EnumSet.noneOf(ProtocolFeature.class));
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param responseCode
+	 *            The TV Application defined response code.
+	 * @param name
+	 *            The name of the player.
+	 * @param color
+	 *            The color the player chose.
+	 * @param wireFormat
+	 *            The wire format the TV Application picked for the controller input events.
+	 * @param features
+	 *            The optional protocol features the TV Application agreed to use.
+	 */
+	public JoinResponseData(int responseCode, String name, Color color, WireFormat wireFormat,
+	        Set<ProtocolFeature> features) {
 		super();
 		this.responseCode = responseCode;
 		this.name = name;
 		this.color = color;
+		this.wireFormat = wireFormat;
+		this.features = Collections.unmodifiableSet(features);
 	}
 
 	/**
@@ -76,8 +107,27 @@ public class JoinResponseData {
 		return color;
 	}
 
+	/**
+	 * Returns the wire format the TV Application picked for the controller input events.
+	 * 
+	 * @return
+	 */
+	public WireFormat getWireFormat() {
+		return wireFormat;
+	}
+
+	/**
+	 * Returns the optional protocol features the TV Application agreed to use.
+	 * 
+	 * @return
+	 */
+	public Set<ProtocolFeature> getFeatures() {
+		return features;
+	}
+
 	@Override
 	public String toString() {
-		return "JoinResponseData [responseCode=" + responseCode + ", name=" + name + ", color=" + color + "]";
+		return "JoinResponseData [responseCode=" + responseCode + ", name=" + name + ", color=" + color
+		        + ", wireFormat=" + wireFormat + ", features=" + features + "]";
 	}
 }
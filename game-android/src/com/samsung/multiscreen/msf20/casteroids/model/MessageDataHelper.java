@@ -1,8 +1,9 @@
 package com.samsung.multiscreen.msf20.casteroids.model;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -20,6 +21,13 @@ public class MessageDataHelper {
 	// Used to identify the source of a log message.
 	private static final String TAG = MessageDataHelper.class.getSimpleName();
 
+	// The maximum strength of a ROTATE message.
+	public static final int MAX_ROTATE_STRENGTH = 20;
+
+	// The encoded ROTATE message data indexed by the Rotate ordinal and strength. Entries are created the first time
+	// they are needed so that, once warmed up, encoding a ROTATE message does not allocate.
+	private static final String[][] rotateDataCache = new String[Rotate.values().length][MAX_ROTATE_STRENGTH + 1];
+
 	/******************************************************************************************************************
 	 * Encode Methods
 	 */
@@ -27,32 +35,75 @@ public class MessageDataHelper {
 	/**
 	 * Returns the JSON encoded JOIN_REQUEST message data in the TV application defined JSON format:<br>
 	 * <code>
-	 *     { "name": "Buck Rogers", "color": "blue" }
-	 * </code>
+	 *     { "name": "Buck Rogers", "color": "blue", "formats": [ "json", "binary" ], "features": [ ... ] }
+	 * </code><br>
+	 * <br>
+	 * The formats and features advertise what the client supports. TV applications that predate the negotiation ignore
+	 * them.
 	 * 
 	 * @param name
 	 * @param color
+	 * @param formats
+	 *            The wire formats the client supports.
+	 * @param features
+	 *            The optional protocol features the client supports.
 	 * @return
 	 */
-	public static String encodeJoinRequestData(String name, Color color) {
-		JSONObject jsonObject = new JSONObject();
+	public static String encodeJoinRequestData(String name, Color color, Set<WireFormat> formats,
+	        Set<ProtocolFeature> features) {
+		return encodeJoinRequestData(name, color, formats, features, null);
+	}
 
-		try {
-			jsonObject.put("name", name);
-			jsonObject.put("color", color.getName());
-		} catch (JSONException e) {
-			Log.e(TAG, "Faled to JSON encode JOIN_REQUEST message data. name=" + name + ", color=" + color, e);
-			return null;
+	/**
+	 * Returns the JSON encoded JOIN_REQUEST message data with a resume token:<br>
+	 * <code>
+	 *     { "name": "Buck Rogers", "color": "red", "formats": [ ... ], "features": [ ... ], "resume_token": "..." }
+	 * </code><br>
+	 * <br>
+	 * A TV application that still holds the slot of a player that joined with the same resume token gives the player
+	 * that slot back, with its ship and score, instead of adding a new player.
+	 * 
+	 * @param name
+	 * @param color
+	 * @param formats
+	 *            The wire formats the client supports.
+	 * @param features
+	 *            The optional protocol features the client supports.
+	 * @param resumeToken
+	 *            The token identifying the player's session, or null to leave it out.
+	 * @return
+	 */
+	public static String encodeJoinRequestData(String name, Color color, Set<WireFormat> formats,
+	        Set<ProtocolFeature> features, String resumeToken) {
+		MessageJsonWriter writer = MessageJsonWriter.get();
+		writer.beginObject();
+		writer.name("name").value(name);
+		writer.name("color").value(color.getName());
+		if (resumeToken != null) {
+			writer.name("resume_token").value(resumeToken);
 		}
-
-		return jsonObject.toString();
+		writer.name("formats").beginArray();
+		for (WireFormat format : formats) {
+			writer.value(format.getName());
+		}
+		writer.endArray();
+		writer.name("features").beginArray();
+		for (ProtocolFeature feature : features) {
+			writer.value(feature.getName());
+		}
+		writer.endArray();
+		writer.endObject();
+		return writer.toString();
 	}
 
 	/**
 	 * Returns the JSON encoded ROTATE message data in the TV application defined JSON format:<br>
 	 * <code>
 	 *     { "rotate": "left", "strength": 50 }
-	 * </code>
+	 * </code><br>
+	 * <br>
+	 * The encoded data for strengths from 0 to MAX_ROTATE_STRENGTH is cached, so in the steady state this method does
+	 * not allocate.
 	 * 
 	 * @param rotate
 	 *            Which direction to rotate.
@@ -61,17 +112,78 @@ public class MessageDataHelper {
 	 * @return
 	 */
 	public static String encodeRotateData(Rotate rotate, int strength) {
-		JSONObject jsonObject = new JSONObject();
+		strength = (rotate != Rotate.NONE ? strength : 0);
 
-		try {
-			jsonObject.put("rotate", rotate.getName());
-			jsonObject.put("strength", (rotate != Rotate.NONE ? strength : 0));
-		} catch (JSONException e) {
-			Log.e(TAG, "Faled to JSON encode ROTATE message data. rotate=" + rotate + ", strength=" + strength, e);
-			return null;
+		// Strengths outside of the expected range are not cached.
+		if ((strength < 0) || (strength > MAX_ROTATE_STRENGTH)) {
+			return writeRotateData(rotate, strength);
 		}
 
-		return jsonObject.toString();
+		// NOTE: Racing threads may both create the entry, which is harmless since Strings are immutable.
+		String data = rotateDataCache[rotate.ordinal()][strength];
+		if (data == null) {
+			data = writeRotateData(rotate, strength);
+			rotateDataCache[rotate.ordinal()][strength] = data;
+		}
+		return data;
+	}
+
+	/**
+	 * Returns the JSON encoded INPUT_BATCH message data in the TV application defined JSON format. Each element has the
+	 * same fields as the individual ROTATE, THRUST and FIRE messages plus the event name:<br>
+	 * <code>
+	 *     [ { "event": "rotate", "rotate": "left", "strength": 5 }, { "event": "fire", "fire": "on" } ]
+	 * </code>
+	 * 
+	 * @param inputBatch
+	 * @return
+	 */
+	public static String encodeInputBatchData(InputBatch inputBatch) {
+		MessageJsonWriter writer = MessageJsonWriter.get();
+		writer.beginArray();
+		for (int i = 0; i < inputBatch.size(); i++) {
+			Event event = inputBatch.getEvent(i);
+			writer.beginObject();
+			writer.name("event").value(event.getName());
+			switch (event) {
+				case ROTATE:
+					writer.name("rotate").value(inputBatch.getRotate(i).getName());
+					writer.name("strength").value(inputBatch.getStrength(i));
+					break;
+				case THRUST:
+					writer.name("thrust").value(inputBatch.getThrust(i).getName());
+					break;
+				case FIRE:
+					writer.name("fire").value(inputBatch.getFire(i).getName());
+					break;
+				default:
+					// Ignore. Only the input events are batched.
+			}
+			writer.endObject();
+		}
+		writer.endArray();
+		return writer.toString();
+	}
+
+	/**
+	 * Returns the JSON encoded CONTROLLER_STATE message data in the TV application defined JSON format:<br>
+	 * <code>
+	 *     { "seq": 42, "rotate": "left", "strength": 5, "thrust": "on", "fire": "off" }
+	 * </code>
+	 * 
+	 * @param controllerState
+	 * @return
+	 */
+	public static String encodeControllerStateData(ControllerState controllerState) {
+		MessageJsonWriter writer = MessageJsonWriter.get();
+		writer.beginObject();
+		writer.name("seq").value(controllerState.getSequence());
+		writer.name("rotate").value(controllerState.getRotate().getName());
+		writer.name("strength").value(controllerState.getStrength());
+		writer.name("thrust").value(controllerState.getThrust().getName());
+		writer.name("fire").value(controllerState.getFire().getName());
+		writer.endObject();
+		return writer.toString();
 	}
 
 	/**
@@ -84,18 +196,13 @@ public class MessageDataHelper {
 	 * @return
 	 */
 	public static String encodeConfigUpdateData(ConfigTypeMap configTypeMap) {
-		JSONObject jsonObject = new JSONObject();
-
-		try {
-			for (ConfigType type : configTypeMap.getConfigTypes()) {
-				jsonObject.put(type.getName(), configTypeMap.isEnabled(type));
-			}
-		} catch (JSONException e) {
-			Log.e(TAG, "Faled to JSON encode CONFIG_UPDATE message data. configTypeMap=" + configTypeMap, e);
-			return null;
+		MessageJsonWriter writer = MessageJsonWriter.get();
+		writer.beginObject();
+		for (ConfigType type : configTypeMap.getConfigTypes()) {
+			writer.name(type.getName()).value(configTypeMap.isEnabled(type));
 		}
-
-		return jsonObject.toString();
+		writer.endObject();
+		return writer.toString();
 	}
 
 	/******************************************************************************************************************
@@ -108,7 +215,10 @@ public class MessageDataHelper {
 	 * JSON format:<br>
 	 * <code>
 	 * [ { "available": false, "color": "red" }, { "available": true, "color": "blue" } ]
-	 * </code>
+	 * </code><br>
+	 * <br>
+	 * A slot with a missing or unknown available or color value is skipped. Data that is not valid JSON results in an
+	 * empty list.
 	 * 
 	 * @param data
 	 *            The string data from the SLOT_UPDATE message.
@@ -118,29 +228,44 @@ public class MessageDataHelper {
 		List<SlotData> slotDataList = new ArrayList<SlotData>();
 
 		try {
-			// Initialize a JSON Array with the given data object
-			JSONArray jsonArray = new JSONArray(data);
-
-			// Loop through the length of the JSON Array...
-			for (int i = 0; i < jsonArray.length(); i++) {
-				// Get the JSON object at the current index.
-				JSONObject jsonObject = jsonArray.getJSONObject(i);
-
-				// Get the score data from the current JSON object.
-				boolean available = jsonObject.getBoolean("available");
-				Color color = Color.getByName(jsonObject.getString("color"));
-
-				// Create and add a ScoreData object to the score data list.
-				slotDataList.add(new SlotData(available, color));
+			// Pull the slot data straight out of the JSON array.
+			MessageJsonReader reader = new MessageJsonReader(data);
+			reader.beginArray();
+			while (reader.hasNext()) {
+				Boolean available = null;
+				Color color = null;
+
+				// Read the fields of the current slot object, skipping any we do not know about.
+				reader.beginObject();
+				while (reader.hasNext()) {
+					String name = reader.nextName();
+					if ("available".equals(name)) {
+						available = reader.optBoolean();
+					} else if ("color".equals(name)) {
+						String colorName = reader.optString();
+						color = (colorName != null) ? Color.getByName(colorName) : null;
+					} else {
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+
+				// Skip a slot the game cannot show instead of dropping the whole list.
+				if ((available == null) || (color == null)) {
+					Log.w(TAG, "Skipping a slot with a missing or unknown available or color value. data=" + data);
+					continue;
+				}
+
+				// Create and insert a SlotData object in to the sorted slot data list.
+				insertSorted(slotDataList, new SlotData(available, color));
 			}
+			reader.endArray();
+			reader.endDocument();
 		} catch (JSONException e) {
 			Log.e(TAG, "Failed to decode the SlotData list. data=" + data, e);
 			slotDataList.clear();
 		}
 
-		// Sort the slot data.
-		Collections.sort(slotDataList);
-
 		// Return the sorted slot data list.
 		return slotDataList;
 	}
@@ -149,8 +274,11 @@ public class MessageDataHelper {
 	 * Returns the decoded JoinResponseData from the JOIN_RESPONSE message data sent by the TV application. The data is
 	 * expected to be in the TV application defined JSON format:<br>
 	 * <code>
-	 * { "response_code": 0, "name": "Buck", "color": "red" }
-	 * </code>
+	 * { "response_code": 0, "name": "Buck", "color": "red", "format": "binary", "features": [ ... ] }
+	 * </code><br>
+	 * <br>
+	 * The format and features are optional. If the TV application did not send them, the JSON wire format and no
+	 * features are used.
 	 * 
 	 * @param data
 	 *            The string data from the JOIN_RESPONSE message.
@@ -167,13 +295,31 @@ public class MessageDataHelper {
 			String name = jsonObject.getString("name");
 			Color color = Color.getByName(jsonObject.getString("color"));
 
-			// Create and add a ScoreData object to the score data list.
-			joinResponseData = new JoinResponseData(responseCode, name, color);
+			// Get the negotiated wire format, defaulting to JSON.
+			WireFormat wireFormat = WireFormat.getByName(jsonObject.optString("format", null));
+			if (wireFormat == null) {
+				wireFormat = WireFormat.JSON;
+			}
+
+			// Get the negotiated features, ignoring any this client does not know about.
+			Set<ProtocolFeature> features = EnumSet.noneOf(ProtocolFeature.class);
+			JSONArray jsonArray = jsonObject.optJSONArray("features");
+			if (jsonArray != null) {
+				for (int i = 0; i < jsonArray.length(); i++) {
+					ProtocolFeature feature = ProtocolFeature.getByName(jsonArray.optString(i));
+					if (feature != null) {
+						features.add(feature);
+					}
+				}
+			}
+
+			// Create the JoinResponseData object.
+			joinResponseData = new JoinResponseData(responseCode, name, color, wireFormat, features);
 		} catch (JSONException e) {
 			Log.e(TAG, "Failed to decode the JoinResponseData list. data=" + data, e);
 		}
 
-		// Return the sorted slot data list.
+		// Return the join response data.
 		return joinResponseData;
 	}
 
@@ -207,7 +353,10 @@ public class MessageDataHelper {
 	 * defined JSON format:<br>
 	 * <code>
 	 * [ { "name": "Buck Rogers", "score": 9700 }, { "name": "Captain Kirk", "score": 3370 } ]
-	 * </code>
+	 * </code><br>
+	 * <br>
+	 * A score with a missing name, color or score value is skipped. Data that is not valid JSON results in an empty
+	 * list.
 	 * 
 	 * @param data
 	 *            The string data from the GAME_OVER message.
@@ -217,30 +366,46 @@ public class MessageDataHelper {
 		List<ScoreData> scoreDataList = new ArrayList<ScoreData>();
 
 		try {
-			// Initialize a JSON Array with the given data object
-			JSONArray jsonArray = new JSONArray(data);
-
-			// Loop through the length of the JSON Array...
-			for (int i = 0; i < jsonArray.length(); i++) {
-				// Get the JSON object at the current index.
-				JSONObject jsonObject = jsonArray.getJSONObject(i);
-
-				// Get the score data from the current JSON object.
-				String name = jsonObject.getString("name");
-				Color color = Color.getByName(jsonObject.getString("color"));
-				int score = jsonObject.getInt("score");
-
-				// Create and add a ScoreData object to the score data list.
-				scoreDataList.add(new ScoreData(name, color, score));
+			// Pull the score data straight out of the JSON array.
+			MessageJsonReader reader = new MessageJsonReader(data);
+			reader.beginArray();
+			while (reader.hasNext()) {
+				String name = null;
+				String colorName = null;
+				Integer score = null;
+
+				// Read the fields of the current score object, skipping any we do not know about.
+				reader.beginObject();
+				while (reader.hasNext()) {
+					String fieldName = reader.nextName();
+					if ("name".equals(fieldName)) {
+						name = reader.nextString();
+					} else if ("color".equals(fieldName)) {
+						colorName = reader.nextString();
+					} else if ("score".equals(fieldName)) {
+						score = reader.nextInt();
+					} else {
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+
+				// Skip an incomplete score instead of dropping the whole list.
+				if ((name == null) || (colorName == null) || (score == null)) {
+					Log.w(TAG, "Skipping a score with a missing name, color or score value. data=" + data);
+					continue;
+				}
+
+				// Create and insert a ScoreData object in to the sorted score data list.
+				insertSorted(scoreDataList, new ScoreData(name, Color.getByName(colorName), score));
 			}
+			reader.endArray();
+			reader.endDocument();
 		} catch (JSONException e) {
 			Log.e(TAG, "Failed to decode the ScoreData list. data=" + data, e);
 			scoreDataList.clear();
 		}
 
-		// Sort the score data.
-		Collections.sort(scoreDataList);
-
 		// Return the sorted score data list.
 		return scoreDataList;
 	}
@@ -279,6 +444,39 @@ public class MessageDataHelper {
 	 * Internal helper methods
 	 */
 
+	/**
+	 * Internal helper method that inserts the given item in to the sorted list after any items that compare equal to
+	 * it, so the list stays sorted in the same order Collections.sort() would produce.
+	 * 
+	 * @param list
+	 *            The sorted list.
+	 * @param item
+	 *            The item to insert.
+	 */
+	private static <T extends Comparable<T>> void insertSorted(List<T> list, T item) {
+		int index = list.size();
+		while ((index > 0) && (list.get(index - 1).compareTo(item) > 0)) {
+			index--;
+		}
+		list.add(index, item);
+	}
+
+	/**
+	 * Internal helper method that writes the JSON encoded ROTATE message data.
+	 * 
+	 * @param rotate
+	 * @param strength
+	 * @return
+	 */
+	private static String writeRotateData(Rotate rotate, int strength) {
+		MessageJsonWriter writer = MessageJsonWriter.get();
+		writer.beginObject();
+		writer.name("rotate").value(rotate.getName());
+		writer.name("strength").value(strength);
+		writer.endObject();
+		return writer.toString();
+	}
+
 	/**
 	 * Internal helper method that parses an integer from the given string value. If the string is null or not an
 	 * integer the given default int value is returned.
@@ -0,0 +1,464 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import org.json.JSONException;
+
+/**
+ * A single pass JSON pull parser used to decode message data straight into the model objects without building an
+ * intermediate JSONArray/JSONObject tree.<br>
+ * <br>
+ * The reader is used the same way as android.util.JsonReader: the caller walks the structure it expects with the
+ * begin/end, hasNext() and next*() methods, and calls skipValue() for anything it does not care about, then calls
+ * endDocument() to check that nothing follows the value. Any deviation from valid JSON or from the expected structure
+ * results in a JSONException.<br>
+ * <br>
+ * Instances are not thread safe.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class MessageJsonReader {
+
+	// The JSON being read.
+	private final String json;
+
+	// The index of the next character to read.
+	private int pos = 0;
+
+	// A reusable buffer used when a string contains escape sequences.
+	private StringBuilder escapeBuffer = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param json
+	 *            The JSON to read.
+	 * @throws JSONException
+	 *             If the JSON is null.
+	 */
+	public MessageJsonReader(String json) throws JSONException {
+		if (json == null) {
+			throw new JSONException("Cannot read null JSON.");
+		}
+		this.json = json;
+	}
+
+	/**
+	 * Consumes the start of a JSON array.
+	 *
+	 * @throws JSONException
+	 */
+	public void beginArray() throws JSONException {
+		expect('[');
+	}
+
+	/**
+	 * Consumes the end of the current JSON array.
+	 *
+	 * @throws JSONException
+	 */
+	public void endArray() throws JSONException {
+		expect(']');
+	}
+
+	/**
+	 * Consumes the start of a JSON object.
+	 *
+	 * @throws JSONException
+	 */
+	public void beginObject() throws JSONException {
+		expect('{');
+	}
+
+	/**
+	 * Consumes the end of the current JSON object.
+	 *
+	 * @throws JSONException
+	 */
+	public void endObject() throws JSONException {
+		expect('}');
+	}
+
+	/**
+	 * Returns true if the current array or object has another element. Consumes the comma that separates the element
+	 * from the previous one, which is required between two elements and rejected anywhere else.
+	 *
+	 * @return
+	 * @throws JSONException
+	 *             If the comma is missing, doubled or trailing.
+	 */
+	public boolean hasNext() throws JSONException {
+		char c = peek();
+		char previous = previousChar();
+
+		if ((previous == '[') || (previous == '{') || (previous == ',')) {
+			// The first element, or the comma before this element was consumed by an earlier call.
+			if (c == ',') {
+				throw syntaxError("Unexpected ','");
+			} else if ((c == ']') || (c == '}')) {
+				if (previous == ',') {
+					throw syntaxError("Unexpected '" + c + "' after ','");
+				}
+				return false;
+			}
+			return true;
+		}
+
+		// After an element. Either the array or object ends or a comma and the next element follow.
+		if ((c == ']') || (c == '}')) {
+			return false;
+		} else if (c != ',') {
+			throw syntaxError("Expected ',' or the end of the array or object");
+		}
+		pos++;
+		c = peek();
+		if ((c == ',') || (c == ']') || (c == '}')) {
+			throw syntaxError("Unexpected '" + c + "' after ','");
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the name of the next value in the current object and consumes the following colon.
+	 *
+	 * @return
+	 * @throws JSONException
+	 */
+	public String nextName() throws JSONException {
+		String name = nextString();
+		expect(':');
+		return name;
+	}
+
+	/**
+	 * Returns the next value as a String. Only JSON strings are accepted.
+	 *
+	 * @return
+	 * @throws JSONException
+	 */
+	public String nextString() throws JSONException {
+		expect('"');
+
+		// Fast path. Return a substring if the string does not contain any escape sequences.
+		int start = pos;
+		int length = json.length();
+		while (pos < length) {
+			char c = json.charAt(pos);
+			if (c == '"') {
+				return json.substring(start, pos++);
+			} else if (c == '\\') {
+				break;
+			}
+			pos++;
+		}
+
+		// Slow path. Unescape the string into the escape buffer.
+		if (escapeBuffer == null) {
+			escapeBuffer = new StringBuilder();
+		}
+		escapeBuffer.setLength(0);
+		escapeBuffer.append(json, start, pos);
+		while (pos < length) {
+			char c = json.charAt(pos++);
+			if (c == '"') {
+				return escapeBuffer.toString();
+			} else if (c == '\\') {
+				escapeBuffer.append(readEscapedChar());
+			} else {
+				escapeBuffer.append(c);
+			}
+		}
+
+		throw syntaxError("Unterminated string");
+	}
+
+	/**
+	 * Returns the next value as a String, or consumes the value and returns null if it is not a JSON string.
+	 *
+	 * @return
+	 * @throws JSONException
+	 */
+	public String optString() throws JSONException {
+		if (peek() != '"') {
+			skipValue();
+			return null;
+		}
+		return nextString();
+	}
+
+	/**
+	 * Returns the next value as an int. Numbers with a fraction or exponent are truncated.
+	 *
+	 * @return
+	 * @throws JSONException
+	 */
+	public int nextInt() throws JSONException {
+		return (int) nextLong();
+	}
+
+	/**
+	 * Returns the next value as a long. Numbers with a fraction or exponent are truncated.
+	 *
+	 * @return
+	 * @throws JSONException
+	 */
+	public long nextLong() throws JSONException {
+		char c = peek();
+		int start = pos;
+		boolean negative = false;
+		boolean integral = true;
+		long value = 0;
+
+		if (c == '-') {
+			negative = true;
+			pos++;
+		}
+
+		int length = json.length();
+		while (pos < length) {
+			c = json.charAt(pos);
+			if ((c >= '0') && (c <= '9')) {
+				value = (value * 10) + (c - '0');
+			} else if ((c == '.') || (c == 'e') || (c == 'E') || (c == '+') || (c == '-')) {
+				integral = false;
+			} else {
+				break;
+			}
+			pos++;
+		}
+
+		if ((pos == start) || (negative && (pos == start + 1))) {
+			throw syntaxError("Expected a number");
+		}
+
+		if (!integral) {
+			try {
+				return (long) Double.parseDouble(json.substring(start, pos));
+			} catch (NumberFormatException e) {
+				throw syntaxError("Invalid number");
+			}
+		}
+
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Returns the next value as a boolean. The strings "true" and "false" are also accepted.
+	 *
+	 * @return
+	 * @throws JSONException
+	 */
+	public boolean nextBoolean() throws JSONException {
+		char c = peek();
+		if (c == '"') {
+			String value = nextString();
+			if ("true".equalsIgnoreCase(value)) {
+				return true;
+			} else if ("false".equalsIgnoreCase(value)) {
+				return false;
+			}
+			throw syntaxError("Expected a boolean");
+		} else if (json.startsWith("true", pos)) {
+			pos += 4;
+			return true;
+		} else if (json.startsWith("false", pos)) {
+			pos += 5;
+			return false;
+		}
+		throw syntaxError("Expected a boolean");
+	}
+
+	/**
+	 * Returns the next value as a Boolean, or consumes the value and returns null if it is not a boolean. The strings
+	 * "true" and "false" are also accepted.
+	 *
+	 * @return
+	 * @throws JSONException
+	 */
+	public Boolean optBoolean() throws JSONException {
+		char c = peek();
+		if (c == '"') {
+			String value = nextString();
+			if ("true".equalsIgnoreCase(value)) {
+				return Boolean.TRUE;
+			} else if ("false".equalsIgnoreCase(value)) {
+				return Boolean.FALSE;
+			}
+			return null;
+		} else if ((c == 't') || (c == 'f')) {
+			return nextBoolean();
+		}
+		skipValue();
+		return null;
+	}
+
+	/**
+	 * Returns true and consumes the value if the next value is the JSON null literal.
+	 *
+	 * @return
+	 * @throws JSONException
+	 */
+	public boolean nextNull() throws JSONException {
+		peek();
+		if (json.startsWith("null", pos)) {
+			pos += 4;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Skips the next value, including any nested arrays or objects.
+	 *
+	 * @throws JSONException
+	 */
+	public void skipValue() throws JSONException {
+		char c = peek();
+		switch (c) {
+			case '"':
+				nextString();
+				break;
+			case '[':
+				beginArray();
+				while (hasNext()) {
+					skipValue();
+				}
+				endArray();
+				break;
+			case '{':
+				beginObject();
+				while (hasNext()) {
+					nextName();
+					skipValue();
+				}
+				endObject();
+				break;
+			case 't':
+			case 'f':
+				nextBoolean();
+				break;
+			case 'n':
+				if (!nextNull()) {
+					throw syntaxError("Unexpected value");
+				}
+				break;
+			default:
+				nextLong();
+		}
+	}
+
+	/**
+	 * Checks that nothing but whitespace follows the value that was read.
+	 *
+	 * @throws JSONException
+	 *             If there is more content.
+	 */
+	public void endDocument() throws JSONException {
+		int length = json.length();
+		while (pos < length) {
+			char c = json.charAt(pos);
+			if ((c != ' ') && (c != '\t') && (c != '\n') && (c != '\r')) {
+				throw syntaxError("Unexpected content after the end of the value");
+			}
+			pos++;
+		}
+	}
+
+	/******************************************************************************************************************
+	 * Internal helper methods
+	 */
+
+	/**
+	 * Skips any whitespace and returns the next character without consuming it.
+	 *
+	 * @return
+	 * @throws JSONException
+	 */
+	private char peek() throws JSONException {
+		int length = json.length();
+		while (pos < length) {
+			char c = json.charAt(pos);
+			if ((c != ' ') && (c != '\t') && (c != '\n') && (c != '\r')) {
+				return c;
+			}
+			pos++;
+		}
+		throw syntaxError("Unexpected end of input");
+	}
+
+	/**
+	 * Returns the last character consumed before any whitespace, or 0 at the start of the JSON.
+	 *
+	 * @return
+	 */
+	private char previousChar() {
+		for (int i = pos - 1; i >= 0; i--) {
+			char c = json.charAt(i);
+			if ((c != ' ') && (c != '\t') && (c != '\n') && (c != '\r')) {
+				return c;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Consumes the given character or throws a JSONException if it is not the next character.
+	 *
+	 * @param expected
+	 * @throws JSONException
+	 */
+	private void expect(char expected) throws JSONException {
+		if (peek() != expected) {
+			throw syntaxError("Expected '" + expected + "'");
+		}
+		pos++;
+	}
+
+	/**
+	 * Reads the character following a backslash.
+	 *
+	 * @return
+	 * @throws JSONException
+	 */
+	private char readEscapedChar() throws JSONException {
+		if (pos >= json.length()) {
+			throw syntaxError("Unterminated escape sequence");
+		}
+
+		char c = json.charAt(pos++);
+		switch (c) {
+			case 'u':
+				if (pos + 4 > json.length()) {
+					throw syntaxError("Unterminated escape sequence");
+				}
+				try {
+					char unicode = (char) Integer.parseInt(json.substring(pos, pos + 4), 16);
+					pos += 4;
+					return unicode;
+				} catch (NumberFormatException e) {
+					throw syntaxError("Invalid escape sequence");
+				}
+			case 'b':
+				return '\b';
+			case 'f':
+				return '\f';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 't':
+				return '\t';
+			default:
+				return c;
+		}
+	}
+
+	/**
+	 * Returns a JSONException with the given message and the current position.
+	 *
+	 * @param message
+	 * @return
+	 */
+	private JSONException syntaxError(String message) {
+		return new JSONException(message + " at character " + pos);
+	}
+}
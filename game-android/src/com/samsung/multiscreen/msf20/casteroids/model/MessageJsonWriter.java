@@ -0,0 +1,239 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+/**
+ * A reusable streaming JSON writer used to encode message data without building an intermediate JSONObject tree.<br>
+ * <br>
+ * The writer appends directly to a recycled StringBuilder. Each thread has its own instance (see {@link #get()}) so no
+ * synchronization is needed, but an instance must never be shared between threads or used re-entrantly.<br>
+ * <br>
+ * The writer does not validate the structure of the JSON. It is up to the caller to balance the begin/end calls and to
+ * call {@link #name(String)} before each value in an object.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class MessageJsonWriter {
+
+	// The initial capacity of the recycled buffer. Large enough for every message the client sends.
+	private static final int INITIAL_CAPACITY = 256;
+
+	// The per thread writer instances.
+	private static final ThreadLocal<MessageJsonWriter> threadWriter = new ThreadLocal<MessageJsonWriter>() {
+		@Override
+		protected MessageJsonWriter initialValue() {
+			return new MessageJsonWriter();
+		}
+	};
+
+	// Hex digits used to escape control characters.
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	// The recycled buffer the JSON is written to.
+	private final StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+
+	// A flag indicating whether or not the next name or array value needs a leading comma.
+	private boolean needsComma = false;
+
+	/**
+	 * Constructor.
+	 */
+	private MessageJsonWriter() {
+		super();
+	}
+
+	/**
+	 * Returns the calling thread's writer, reset and ready to write a new JSON value.
+	 *
+	 * @return
+	 */
+	public static MessageJsonWriter get() {
+		MessageJsonWriter writer = threadWriter.get();
+		writer.reset();
+		return writer;
+	}
+
+	/**
+	 * Clears the buffer so that the writer can be reused.
+	 */
+	public void reset() {
+		buffer.setLength(0);
+		needsComma = false;
+	}
+
+	/**
+	 * Begins a JSON object.
+	 *
+	 * @return
+	 */
+	public MessageJsonWriter beginObject() {
+		appendCommaIfNeeded();
+		buffer.append('{');
+		needsComma = false;
+		return this;
+	}
+
+	/**
+	 * Ends the current JSON object.
+	 *
+	 * @return
+	 */
+	public MessageJsonWriter endObject() {
+		buffer.append('}');
+		needsComma = true;
+		return this;
+	}
+
+	/**
+	 * Begins a JSON array.
+	 *
+	 * @return
+	 */
+	public MessageJsonWriter beginArray() {
+		appendCommaIfNeeded();
+		buffer.append('[');
+		needsComma = false;
+		return this;
+	}
+
+	/**
+	 * Ends the current JSON array.
+	 *
+	 * @return
+	 */
+	public MessageJsonWriter endArray() {
+		buffer.append(']');
+		needsComma = true;
+		return this;
+	}
+
+	/**
+	 * Writes the name of the next value in the current JSON object.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public MessageJsonWriter name(String name) {
+		appendCommaIfNeeded();
+		appendString(name);
+		buffer.append(':');
+		needsComma = false;
+		return this;
+	}
+
+	/**
+	 * Writes a String value. A NULL value is written as the JSON null literal.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public MessageJsonWriter value(String value) {
+		appendCommaIfNeeded();
+		if (value != null) {
+			appendString(value);
+		} else {
+			buffer.append("null");
+		}
+		needsComma = true;
+		return this;
+	}
+
+	/**
+	 * Writes an int value.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public MessageJsonWriter value(int value) {
+		appendCommaIfNeeded();
+		buffer.append(value);
+		needsComma = true;
+		return this;
+	}
+
+	/**
+	 * Writes a long value.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public MessageJsonWriter value(long value) {
+		appendCommaIfNeeded();
+		buffer.append(value);
+		needsComma = true;
+		return this;
+	}
+
+	/**
+	 * Writes a boolean value.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public MessageJsonWriter value(boolean value) {
+		appendCommaIfNeeded();
+		buffer.append(value);
+		needsComma = true;
+		return this;
+	}
+
+	/**
+	 * Returns the number of characters written so far.
+	 *
+	 * @return
+	 */
+	public int length() {
+		return buffer.length();
+	}
+
+	/**
+	 * Returns the JSON written so far as a String. This is the only method that allocates once the buffer has grown to
+	 * its working size.
+	 */
+	@Override
+	public String toString() {
+		return buffer.toString();
+	}
+
+	/**
+	 * Appends a comma if the previous token was a value.
+	 */
+	private void appendCommaIfNeeded() {
+		if (needsComma) {
+			buffer.append(',');
+		}
+	}
+
+	/**
+	 * Appends the given String as a quoted and escaped JSON string.
+	 *
+	 * @param value
+	 */
+	private void appendString(String value) {
+		buffer.append('"');
+		for (int i = 0, length = value.length(); i < length; i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+				case '\\':
+					buffer.append('\\').append(c);
+					break;
+				case '\n':
+					buffer.append("\\n");
+					break;
+				case '\r':
+					buffer.append("\\r");
+					break;
+				case '\t':
+					buffer.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						buffer.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+					} else {
+						buffer.append(c);
+					}
+			}
+		}
+		buffer.append('"');
+	}
+}
@@ -0,0 +1,269 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import android.util.Log;
+
+/**
+ * Helper class that encodes/decodes the binary message payloads transmitted between the client and TV applications.<br>
+ * <br>
+ * The binary payloads are used for the high rate controller input events (ROTATE, THRUST and FIRE). Every payload
+ * starts with a format version byte followed by the event specific fields:<br>
+ * <code>
+ *     ROTATE: [ version, rotate, strength ]<br>
+ *     THRUST: [ version, thrust ]<br>
+ *     FIRE:   [ version, fire ]<br>
+ *     INPUT_BATCH: [ version, count, ( event, event fields )... ]<br>
+ *     CONTROLLER_STATE: [ version, rotate, strength, buttons, sequence (4 bytes, big endian) ]
+ * </code><br>
+ * <br>
+ * Older TV applications only understand the JSON/String message data created by the MessageDataHelper, so the binary
+ * payloads should only be sent to a TV application that is known to support them.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class MessagePayloadHelper {
+	// Used to identify the source of a log message.
+	private static final String TAG = MessagePayloadHelper.class.getSimpleName();
+
+	// The version of the binary payload format. Stored in the first byte of every payload.
+	public static final byte PAYLOAD_FORMAT_VERSION = 1;
+
+	// The binary values for the ROTATE message payload.
+	private static final byte ROTATE_NONE = 0;
+	private static final byte ROTATE_LEFT = 1;
+	private static final byte ROTATE_RIGHT = 2;
+
+	// The binary values for the THRUST and FIRE message payloads.
+	private static final byte OFF = 0;
+	private static final byte ON = 1;
+
+	// The bits of the buttons field in a CONTROLLER_STATE message payload.
+	private static final byte BUTTON_THRUST = 0x01;
+	private static final byte BUTTON_FIRE = 0x02;
+
+	// The binary values for the events in an INPUT_BATCH message payload.
+	private static final byte BATCH_ROTATE = 1;
+	private static final byte BATCH_THRUST = 2;
+	private static final byte BATCH_FIRE = 3;
+
+	/******************************************************************************************************************
+	 * Encode Methods
+	 */
+
+	/**
+	 * Returns the binary encoded ROTATE message payload:<br>
+	 * <code>
+	 *     [ version, rotate, strength ]
+	 * </code>
+	 *
+	 * @param rotate
+	 *            Which direction to rotate.
+	 * @param strength
+	 *            The strength of the rotate from 0 to 20.
+	 * @return
+	 */
+	public static byte[] encodeRotatePayload(Rotate rotate, int strength) {
+		return new byte[] { PAYLOAD_FORMAT_VERSION, getRotateValue(rotate), (byte) (rotate != Rotate.NONE ? strength : 0) };
+	}
+
+	/**
+	 * Returns the binary encoded THRUST message payload:<br>
+	 * <code>
+	 *     [ version, thrust ]
+	 * </code>
+	 *
+	 * @param thrust
+	 * @return
+	 */
+	public static byte[] encodeThrustPayload(Thrust thrust) {
+		return new byte[] { PAYLOAD_FORMAT_VERSION, (thrust == Thrust.ON) ? ON : OFF };
+	}
+
+	/**
+	 * Returns the binary encoded FIRE message payload:<br>
+	 * <code>
+	 *     [ version, fire ]
+	 * </code>
+	 *
+	 * @param fire
+	 * @return
+	 */
+	public static byte[] encodeFirePayload(Fire fire) {
+		return new byte[] { PAYLOAD_FORMAT_VERSION, (fire == Fire.ON) ? ON : OFF };
+	}
+
+	/**
+	 * Returns the binary encoded INPUT_BATCH message payload. The changes are encoded in order, each starting with the
+	 * event followed by the same fields as the individual payload:<br>
+	 * <code>
+	 *     [ version, count, ( event, event fields )... ]
+	 * </code>
+	 *
+	 * @param inputBatch
+	 * @return
+	 */
+	public static byte[] encodeInputBatchPayload(InputBatch inputBatch) {
+		// Every change is at most 3 bytes (event, rotate, strength).
+		byte[] payload = new byte[2 + (inputBatch.size() * 3)];
+		int pos = 0;
+
+		payload[pos++] = PAYLOAD_FORMAT_VERSION;
+		payload[pos++] = (byte) inputBatch.size();
+
+		for (int i = 0; i < inputBatch.size(); i++) {
+			switch (inputBatch.getEvent(i)) {
+				case ROTATE:
+					payload[pos++] = BATCH_ROTATE;
+					payload[pos++] = getRotateValue(inputBatch.getRotate(i));
+					payload[pos++] = (byte) inputBatch.getStrength(i);
+					break;
+				case THRUST:
+					payload[pos++] = BATCH_THRUST;
+					payload[pos++] = (inputBatch.getThrust(i) == Thrust.ON) ? ON : OFF;
+					break;
+				case FIRE:
+					payload[pos++] = BATCH_FIRE;
+					payload[pos++] = (inputBatch.getFire(i) == Fire.ON) ? ON : OFF;
+					break;
+				default:
+					// Ignore. Only the input events are batched.
+			}
+		}
+
+		// Trim the payload to the bytes that were written.
+		if (pos < payload.length) {
+			byte[] trimmed = new byte[pos];
+			System.arraycopy(payload, 0, trimmed, 0, pos);
+			payload = trimmed;
+		}
+
+		return payload;
+	}
+
+	/**
+	 * Returns the binary encoded CONTROLLER_STATE message payload:<br>
+	 * <code>
+	 *     [ version, rotate, strength, buttons, sequence (4 bytes, big endian) ]
+	 * </code>
+	 *
+	 * @param controllerState
+	 * @return
+	 */
+	public static byte[] encodeControllerStatePayload(ControllerState controllerState) {
+		int buttons = 0;
+		if (controllerState.getThrust() == Thrust.ON) {
+			buttons |= BUTTON_THRUST;
+		}
+		if (controllerState.getFire() == Fire.ON) {
+			buttons |= BUTTON_FIRE;
+		}
+
+		int sequence = controllerState.getSequence();
+		return new byte[] { PAYLOAD_FORMAT_VERSION, getRotateValue(controllerState.getRotate()),
+		        (byte) controllerState.getStrength(), (byte) buttons, (byte) (sequence >>> 24), (byte) (sequence >>> 16),
+		        (byte) (sequence >>> 8), (byte) sequence };
+	}
+
+	/******************************************************************************************************************
+	 * Decode Methods
+	 */
+
+	/**
+	 * Returns the decoded Rotate from the ROTATE message payload or NULL if the payload is not valid.
+	 *
+	 * @param payload
+	 *            The binary payload from the ROTATE message.
+	 * @return
+	 */
+	public static Rotate decodeRotatePayloadRotate(byte[] payload) {
+		if (!isValid(payload, 3)) {
+			return null;
+		}
+
+		switch (payload[1]) {
+			case ROTATE_LEFT:
+				return Rotate.LEFT;
+			case ROTATE_RIGHT:
+				return Rotate.RIGHT;
+			default:
+				return Rotate.NONE;
+		}
+	}
+
+	/**
+	 * Returns the decoded strength from the ROTATE message payload or 0 if the payload is not valid.
+	 *
+	 * @param payload
+	 *            The binary payload from the ROTATE message.
+	 * @return
+	 */
+	public static int decodeRotatePayloadStrength(byte[] payload) {
+		return isValid(payload, 3) ? payload[2] : 0;
+	}
+
+	/**
+	 * Returns the decoded Thrust from the THRUST message payload or NULL if the payload is not valid.
+	 *
+	 * @param payload
+	 *            The binary payload from the THRUST message.
+	 * @return
+	 */
+	public static Thrust decodeThrustPayload(byte[] payload) {
+		if (!isValid(payload, 2)) {
+			return null;
+		}
+		return (payload[1] == ON) ? Thrust.ON : Thrust.OFF;
+	}
+
+	/**
+	 * Returns the decoded Fire from the FIRE message payload or NULL if the payload is not valid.
+	 *
+	 * @param payload
+	 *            The binary payload from the FIRE message.
+	 * @return
+	 */
+	public static Fire decodeFirePayload(byte[] payload) {
+		if (!isValid(payload, 2)) {
+			return null;
+		}
+		return (payload[1] == ON) ? Fire.ON : Fire.OFF;
+	}
+
+	/******************************************************************************************************************
+	 * Internal helper methods
+	 */
+
+	/**
+	 * Internal helper method that returns the binary value for the given Rotate.
+	 *
+	 * @param rotate
+	 * @return
+	 */
+	private static byte getRotateValue(Rotate rotate) {
+		switch (rotate) {
+			case LEFT:
+				return ROTATE_LEFT;
+			case RIGHT:
+				return ROTATE_RIGHT;
+			default:
+				return ROTATE_NONE;
+		}
+	}
+
+	/**
+	 * Internal helper method that checks the given payload has the expected length and a supported format version.
+	 *
+	 * @param payload
+	 *            The binary payload.
+	 * @param length
+	 *            The expected length of the payload.
+	 * @return
+	 */
+	private static boolean isValid(byte[] payload, int length) {
+		if ((payload == null) || (payload.length < length) || (payload[0] != PAYLOAD_FORMAT_VERSION)) {
+			Log.e(TAG, "Invalid binary payload. length=" + ((payload != null) ? payload.length : -1));
+			return false;
+		}
+		return true;
+	}
+}
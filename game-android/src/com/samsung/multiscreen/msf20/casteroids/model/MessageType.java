@@ -0,0 +1,127 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import android.util.Log;
+
+/**
+ * The typed key of a message received from the TV application. Each MessageType pairs an Event with the type its data
+ * is decoded to by the Codec registered for it in the {@link CodecRegistry}.<br>
+ * <br>
+ * A GameMessageListener registers against a MessageType, so it receives the decoded message with its own type and never
+ * has to cast it. The GameConnectivityManager checks the decoded object against the type once, in cast(), before
+ * handing it to the listeners.
+ *
+ * @author Dan McCafferty
+ *
+ * @param <T>
+ *            The type of the decoded message.
+ */
+public final class MessageType<T> {
+	// Used to identify the source of a log message.
+	private static final String TAG = MessageType.class.getSimpleName();
+
+	// The slots of the game.
+	public static final MessageType<List<SlotData>> SLOT_UPDATE = new MessageType<List<SlotData>>(Event.SLOT_UPDATE,
+	        MessageType.<SlotData> listType());
+
+	// The response to a JOIN_REQUEST.
+	public static final MessageType<JoinResponseData> JOIN_RESPONSE = new MessageType<JoinResponseData>(
+	        Event.JOIN_RESPONSE, JoinResponseData.class);
+
+	// The count down seconds until the game starts.
+	public static final MessageType<Integer> GAME_START = new MessageType<Integer>(Event.GAME_START, Integer.class);
+
+	// The scores of the game that ended.
+	public static final MessageType<List<ScoreData>> GAME_OVER = new MessageType<List<ScoreData>>(Event.GAME_OVER,
+	        MessageType.<ScoreData> listType());
+
+	// The count down seconds until the player can rejoin the game.
+	public static final MessageType<Integer> PLAYER_OUT = new MessageType<Integer>(Event.PLAYER_OUT, Integer.class);
+
+	// The game configuration sent by another client.
+	public static final MessageType<ConfigTypeMap> CONFIG_UPDATE = new MessageType<ConfigTypeMap>(
+	        Event.CONFIG_UPDATE, ConfigTypeMap.class);
+
+	// The MessageTypes indexed by their Event.
+	private static final Map<Event, MessageType<?>> eventIndex = new EnumMap<Event, MessageType<?>>(Event.class);
+
+	static {
+		MessageType<?>[] messageTypes = { SLOT_UPDATE, JOIN_RESPONSE, GAME_START, GAME_OVER, PLAYER_OUT, CONFIG_UPDATE };
+		for (MessageType<?> messageType : messageTypes) {
+			eventIndex.put(messageType.event, messageType);
+		}
+	}
+
+	// The Event of the message.
+	private final Event event;
+
+	// The type the message data is decoded to.
+	private final Class<T> type;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param event
+	 *            The Event of the message.
+	 * @param type
+	 *            The type the message data is decoded to.
+	 */
+	private MessageType(Event event, Class<T> type) {
+		this.event = event;
+		this.type = type;
+	}
+
+	/**
+	 * Returns the Event of the message.
+	 *
+	 * @return
+	 */
+	public Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * Returns the given decoded message as this type, or NULL if it is NULL or not of this type. A message of another
+	 * type is logged, it means a Codec that does not match its MessageType was registered.
+	 *
+	 * @param message
+	 * @return
+	 */
+	public T cast(Object message) {
+		if ((message == null) || type.isInstance(message)) {
+			return type.cast(message);
+		}
+
+		Log.e(TAG, "Ignoring '" + event.getName() + "' message of the wrong type. type=" + type.getSimpleName()
+		        + ", messageType=" + message.getClass().getName());
+		return null;
+	}
+
+	/**
+	 * Returns the MessageType of the given Event or NULL if the client does not receive the Event.
+	 *
+	 * @param event
+	 * @return
+	 */
+	public static MessageType<?> get(Event event) {
+		return (event != null) ? eventIndex.get(event) : null;
+	}
+
+	@Override
+	public String toString() {
+		return event.name();
+	}
+
+	/**
+	 * Returns the List class as the type of a list of the given element type. The element type is not checked.
+	 *
+	 * @return
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <E> Class<List<E>> listType() {
+		return (Class) List.class;
+	}
+}
@@ -0,0 +1,51 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Looks up the values of an enum by their TV application defined name. Each value is indexed by its name and by its
+ * case-folded name, so a lookup costs one or two map gets instead of a scan of values().
+ *
+ * @author Dan McCafferty
+ *
+ * @param <E>
+ *            The type of the indexed values.
+ */
+final class NameIndex<E> {
+
+	// The values indexed by their name and by their case-folded name.
+	private final Map<String, E> index = new HashMap<String, E>();
+
+	/**
+	 * Adds the given value under the given TV application defined name.
+	 *
+	 * @param name
+	 * @param value
+	 */
+	void put(String name, E value) {
+		index.put(name, value);
+		index.put(name.toLowerCase(Locale.US), value);
+	}
+
+	/**
+	 * Returns the value with the given TV application defined name or NULL if no match.
+	 *
+	 * @param name
+	 * @return
+	 */
+	E get(String name) {
+		if (name == null) {
+			return null;
+		}
+
+		// Try the name as is first since that is how it is sent on the wire, then fall back to the case-folded name.
+		E value = index.get(name);
+		if (value == null) {
+			value = index.get(name.toLowerCase(Locale.US));
+		}
+
+		return value;
+	}
+}
@@ -0,0 +1,57 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+/**
+ * Enumeration of all the optional protocol features. The client advertises the features it supports in the JOIN_REQUEST
+ * message and the TV application answers with the subset it supports in the JOIN_RESPONSE message. A feature is only
+ * used for the session if both sides support it.<br>
+ * <br>
+ * TV applications that predate the negotiation do not answer with any features, so none are used with them.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public enum ProtocolFeature {
+	// Several ROTATE, THRUST and FIRE changes from the same input tick can be sent in a single INPUT_BATCH message.
+	INPUT_BATCH("input_batch"),
+
+	// The controller input is sent as full ControllerState snapshots with sequence numbers in CONTROLLER_STATE messages.
+	CONTROLLER_STATE("controller_state");
+
+	// The TV application defined name for the feature.
+	private final String name;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name
+	 *            The TV application defined name for the feature.
+	 */
+	ProtocolFeature(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the TV application defined name for the feature.
+	 * 
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns a ProtocolFeature with the given TV application defined name or NULL if no match.
+	 * 
+	 * @param name
+	 *            The TV application defined name for the feature.
+	 * @return
+	 */
+	public static ProtocolFeature getByName(String name) {
+		for (ProtocolFeature feature : ProtocolFeature.values()) {
+			if (feature.name.equalsIgnoreCase(name)) {
+				return feature;
+			}
+		}
+		return null;
+	}
+}
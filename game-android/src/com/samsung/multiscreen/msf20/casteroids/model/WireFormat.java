@@ -0,0 +1,55 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+/**
+ * Enumeration of all the wire formats the client can use to send the controller input events (ROTATE, THRUST and
+ * FIRE). The client advertises the formats it supports in the JOIN_REQUEST message and the TV application picks one in
+ * the JOIN_RESPONSE message.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public enum WireFormat {
+	// JSON/String message data. Supported by every TV application and used when the TV application does not pick one.
+	JSON("json"),
+
+	// Binary message payloads. See MessagePayloadHelper.
+	BINARY("binary");
+
+	// The TV application defined name for the wire format.
+	private final String name;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name
+	 *            The TV application defined name for the wire format.
+	 */
+	WireFormat(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the TV application defined name for the wire format.
+	 * 
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns a WireFormat with the given TV application defined name or NULL if no match.
+	 * 
+	 * @param name
+	 *            The TV application defined name for the wire format.
+	 * @return
+	 */
+	public static WireFormat getByName(String name) {
+		for (WireFormat format : WireFormat.values()) {
+			if (format.name.equalsIgnoreCase(name)) {
+				return format;
+			}
+		}
+		return null;
+	}
+}
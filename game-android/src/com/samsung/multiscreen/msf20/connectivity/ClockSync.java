@@ -0,0 +1,222 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+/**
+ * Estimates the offset and the drift between the System.nanoTime() clock of this device and the clock of the TV
+ * application from the heartbeat round trips, in the same way as NTP.<br>
+ * <br>
+ * Each pong carries the TV time at which the TV application answered the ping. Assuming the two halves of the round
+ * trip took the same time, the TV time was taken at the local midpoint of the round trip, which gives an offset sample
+ * that is accurate to within half the round trip time. The samples of the shortest round trips are the most accurate,
+ * so the offset is taken from the sample with the shortest round trip in a window of recent samples. The drift of a
+ * crystal clock is only measurable over minutes, so the best sample of every window is kept and the drift is the slope
+ * of a least squares fit of them. The offset is extrapolated with the drift between samples.<br>
+ * <br>
+ * The methods can be called from any thread.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class ClockSync {
+
+	// The number of recent samples the offset is taken from.
+	private static final int WINDOW = 16;
+
+	// The number of samples needed before the clocks are considered synchronized.
+	private static final int MIN_SAMPLES = 4;
+
+	// The number of windows whose best sample is kept to fit the drift.
+	private static final int DRIFT_HISTORY = 16;
+
+	// The number of best samples and the shortest time they must span before the drift is fitted.
+	private static final int MIN_DRIFT_SAMPLES = 3;
+	private static final long MIN_DRIFT_SPAN_NANOS = (60L * 1000 * 1000 * 1000); // 1 minute
+
+	// The largest drift accepted, in parts per million. Crystal clocks drift far less, a larger slope is noise.
+	private static final double MAX_DRIFT_PPM = 500;
+
+	// The local time at the midpoint of the round trip of each sample. Guarded by this object.
+	private final long[] sampleLocalNanos = new long[WINDOW];
+
+	// The offset of each sample: the TV time minus the local time. Guarded by this object.
+	private final long[] sampleOffsetNanos = new long[WINDOW];
+
+	// The round trip time of each sample. Guarded by this object.
+	private final long[] sampleRttNanos = new long[WINDOW];
+
+	// The number of samples recorded since the last reset. Guarded by this object.
+	private long sampleCount = 0;
+
+	// The local time and the offset of the best sample of each of the last windows. Guarded by this object.
+	private final long[] driftLocalNanos = new long[DRIFT_HISTORY];
+	private final long[] driftOffsetNanos = new long[DRIFT_HISTORY];
+
+	// The number of windows completed since the last reset. Guarded by this object.
+	private long windowCount = 0;
+
+	// The estimate: the offset at the reference local time, and the drift of the offset. Guarded by this object.
+	private long referenceLocalNanos = 0;
+	private long referenceOffsetNanos = 0;
+	private double drift = 0;
+
+	// The round trip time of the sample the offset was taken from. Guarded by this object.
+	private long referenceRttNanos = 0;
+
+	/**
+	 * Records the TV time of a heartbeat round trip and updates the estimate.
+	 *
+	 * @param receiveTimeNanos
+	 *            The time the pong was received in the System.nanoTime() time base.
+	 * @param rttNanos
+	 *            The round trip time of the ping.
+	 * @param tvTimeNanos
+	 *            The TV time at which the TV application answered the ping.
+	 */
+	public synchronized void onSample(long receiveTimeNanos, long rttNanos, long tvTimeNanos) {
+		long localNanos = receiveTimeNanos - (rttNanos / 2);
+
+		int index = (int) (sampleCount % WINDOW);
+		sampleLocalNanos[index] = localNanos;
+		sampleOffsetNanos[index] = tvTimeNanos - localNanos;
+		sampleRttNanos[index] = rttNanos;
+		sampleCount++;
+
+		// Take the offset from the sample of the window with the shortest round trip.
+		int count = (int) Math.min(sampleCount, WINDOW);
+		int best = 0;
+		for (int i = 1; i < count; i++) {
+			if (sampleRttNanos[i] < sampleRttNanos[best]) {
+				best = i;
+			}
+		}
+		referenceLocalNanos = sampleLocalNanos[best];
+		referenceOffsetNanos = sampleOffsetNanos[best];
+		referenceRttNanos = sampleRttNanos[best];
+
+		// Keep the best sample of every completed window and fit the drift to them.
+		if ((sampleCount % WINDOW) == 0) {
+			int driftIndex = (int) (windowCount % DRIFT_HISTORY);
+			driftLocalNanos[driftIndex] = referenceLocalNanos;
+			driftOffsetNanos[driftIndex] = referenceOffsetNanos;
+			windowCount++;
+
+			updateDrift();
+		}
+	}
+
+	/**
+	 * Fits the drift to the best samples of the last windows.
+	 */
+	private void updateDrift() {
+		int n = (int) Math.min(windowCount, DRIFT_HISTORY);
+
+		// Fit relative to the newest sample, which keeps the sums small.
+		int newest = (int) ((windowCount - 1) % DRIFT_HISTORY);
+		double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+		long minX = 0;
+		for (int i = 0; i < n; i++) {
+			long x = driftLocalNanos[i] - driftLocalNanos[newest];
+			double y = driftOffsetNanos[i] - driftOffsetNanos[newest];
+			sumX += x;
+			sumY += y;
+			sumXX += (double) x * x;
+			sumXY += x * y;
+			minX = Math.min(minX, x);
+		}
+
+		double denominator = (n * sumXX) - (sumX * sumX);
+		if ((n < MIN_DRIFT_SAMPLES) || (-minX < MIN_DRIFT_SPAN_NANOS) || (denominator <= 0)) {
+			return;
+		}
+
+		double slope = ((n * sumXY) - (sumX * sumY)) / denominator;
+		double maxDrift = MAX_DRIFT_PPM / 1000000;
+		drift = Math.max(-maxDrift, Math.min(maxDrift, slope));
+	}
+
+	/**
+	 * Forgets all the samples. Called when a new connection is made, since the TV application may have restarted.
+	 */
+	public synchronized void reset() {
+		sampleCount = 0;
+		windowCount = 0;
+		referenceLocalNanos = 0;
+		referenceOffsetNanos = 0;
+		referenceRttNanos = 0;
+		drift = 0;
+	}
+
+	/**
+	 * Returns whether or not enough samples were recorded to convert between the clocks.
+	 *
+	 * @return
+	 */
+	public synchronized boolean isSynchronized() {
+		return (sampleCount >= MIN_SAMPLES);
+	}
+
+	/**
+	 * Returns the TV time of the given local time.
+	 *
+	 * @param localNanos
+	 *            A time in the System.nanoTime() time base.
+	 * @return
+	 */
+	public synchronized long toTvTimeNanos(long localNanos) {
+		return localNanos + getOffsetNanos(localNanos);
+	}
+
+	/**
+	 * Returns the local time in the System.nanoTime() time base of the given TV time.
+	 *
+	 * @param tvTimeNanos
+	 * @return
+	 */
+	public synchronized long toLocalNanos(long tvTimeNanos) {
+		// The drift is tiny, so the offset at the TV time is close enough to the offset at the local time.
+		return tvTimeNanos - getOffsetNanos(tvTimeNanos - referenceOffsetNanos);
+	}
+
+	/**
+	 * Returns the offset of the TV clock at the given local time: the TV time minus the local time.
+	 *
+	 * @param localNanos
+	 * @return
+	 */
+	private long getOffsetNanos(long localNanos) {
+		return referenceOffsetNanos + (long) (drift * (localNanos - referenceLocalNanos));
+	}
+
+	/**
+	 * Returns the offset of the TV clock at the current time in microseconds: the TV time minus the local time.
+	 *
+	 * @return
+	 */
+	public synchronized long getOffsetMicros() {
+		return getOffsetNanos(System.nanoTime()) / 1000;
+	}
+
+	/**
+	 * Returns the drift of the TV clock relative to the local clock in parts per million.
+	 *
+	 * @return
+	 */
+	public synchronized double getDriftPpm() {
+		return drift * 1000000;
+	}
+
+	/**
+	 * Returns the largest error of the offset in microseconds, which is half the round trip time of the sample it was
+	 * taken from.
+	 *
+	 * @return
+	 */
+	public synchronized long getUncertaintyMicros() {
+		return referenceRttNanos / 2000;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ClockSync [synchronized=" + isSynchronized() + ", offset=" + getOffsetMicros() + ", drift="
+		        + getDriftPpm() + ", uncertainty=" + getUncertaintyMicros() + ", samples=" + sampleCount + "]";
+	}
+}
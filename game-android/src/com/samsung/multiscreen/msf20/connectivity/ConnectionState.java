@@ -0,0 +1,25 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+/**
+ * The states of the connection to the TV application. The ConnectivityManager moves between the states with atomic
+ * transitions, so only one connect or disconnect attempt can be in progress at a time.<br>
+ * <br>
+ * DISCONNECTED -> CONNECTING -> CONNECTED -> DISCONNECTING -> DISCONNECTED. A connect attempt that fails or is
+ * cancelled goes back to DISCONNECTED without waiting for a disconnect to be confirmed.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public enum ConnectionState {
+	// Not connected to the TV application.
+	DISCONNECTED,
+
+	// A connect attempt is in progress.
+	CONNECTING,
+
+	// Connected to the TV application.
+	CONNECTED,
+
+	// A disconnect was initiated and is waiting to be confirmed.
+	DISCONNECTING;
+}
@@ -24,6 +24,9 @@ public interface ConnectivityListener {
     public static final int APPLICATION_CONNECTED = 7;
     public static final int APPLICATION_DISCONNECTED = 8;
     public static final int APPLICATION_CONNECT_FAILED = 9;
+    public static final int LINK_QUALITY_CHANGED = 10;
+    public static final int APPLICATION_RECONNECTING = 11;
+    public static final int APPLICATION_RECONNECTED = 12;
 
     /**
      * Called any time a connectivity event occurs. <br>
@@ -33,8 +36,12 @@ public interface ConnectivityListener {
      * 
      * @param eventId
      *            One of the following: DISCOVERY_STARTED, DISCOVERY_STOPPED, DISCOVERY_FOUND_SERVICE,
-     *            DISCOVERY_LOST_SERVICE, APPLICATION_CONNECTED, APPLICATION_DISCONNECTED, or
-     *            APPLICATION_CONNECT_FAILED.
+     *            DISCOVERY_LOST_SERVICE, APPLICATION_CONNECTED, APPLICATION_DISCONNECTED,
+     *            APPLICATION_CONNECT_FAILED, LINK_QUALITY_CHANGED, APPLICATION_RECONNECTING, or
+     *            APPLICATION_RECONNECTED. LINK_QUALITY_CHANGED is sent when the LinkQuality level of the connection
+     *            changes, see ConnectivityManager.getLinkQuality(). APPLICATION_RECONNECTING is sent instead of
+     *            APPLICATION_DISCONNECTED when the connection is lost unexpectedly and is being reconnected, and is
+     *            followed by APPLICATION_RECONNECTED, or by APPLICATION_DISCONNECTED if reconnecting fails.
      */
     public void onConnectivityUpdate(int eventId);
 }
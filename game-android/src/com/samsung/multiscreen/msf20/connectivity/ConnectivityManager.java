@@ -5,6 +5,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import android.content.BroadcastReceiver;
 import android.content.Context;
@@ -13,7 +16,10 @@ import android.content.IntentFilter;
 import android.net.NetworkInfo;
 import android.net.Uri;
 import android.net.wifi.WifiManager;
+import android.os.Build;
 import android.os.CountDownTimer;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import com.samsung.multiscreen.Application;
@@ -40,9 +46,8 @@ import com.samsung.multiscreen.msf20.casteroids.BuildConfig;
  * protocols or SDK being used.<br>
  * <br>
  * The scope of this class is tied to the scope of this example application. Sicne it only needs to send messages
- * directly to the TV Application and the messages are limited to String data, this class does not include logic for
- * sending messages directly to other clients nor logic for sending byte[] payloads with the message. This functionality
- * can easily be added to this class. See the notes in the class for more details.
+ * directly to the TV Application, this class does not include logic for sending messages directly to other clients.
+ * This functionality can easily be added to this class. See the notes in the class for more details.
  * 
  * @author Dan McCafferty
  * 
@@ -54,7 +59,7 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	protected final String TAG;
 
 	// An singleton instance of this class
-	private static ConnectivityManager instance = null;
+	private static volatile ConnectivityManager instance = null;
 
 	// The default time that service discovery can run. Set to 0 for no limit.
 	protected static final long DEFAULT_DISCOVERY_TIMEOUT_MILLIS = (1000 * 60); // 1 minute
@@ -78,26 +83,42 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	// The maximum time that service discovery can run. Set to 0 for no limit.
 	private final long discoveryTimeoutMillis;
 
-	// The current Search object used during service discovery or null.
-	private Search search = null;
+	// The current Search object used during service discovery or null. Only written while holding the discovery lock.
+	private volatile Search search = null;
 
-	// The current Application object or null.
-	private Application application = null;
+	// A map of service name to Service object. Guarded by the discovery lock.
+	private Map<String, Service> serviceMap = new HashMap<String, Service>();
 
-	// This clients current Client object or null;
-	protected Client client = null;
+	// A lock used to synchronize service discovery and access to the service map.
+	private final Object discoveryLock = new Object();
 
-	// A map of service name to Service object.
-	private Map<String, Service> serviceMap = new HashMap<String, Service>();
+	// The state of the connection to the TV application. Only changed with atomic transitions.
+	private final AtomicReference<ConnectionState> connectionState = new AtomicReference<ConnectionState>(
+	        ConnectionState.DISCONNECTED);
+
+	// The current Application object or null. Volatile since the send thread publishes with it.
+	private volatile Application application = null;
 
-	// A lock used to synchronize creation of this object and access to the service map
+	// This clients current Client object or null;
+	protected volatile Client client = null;
+
+	// A lock used to synchronize creation of this object.
 	protected static final Object lock = new Object();
 
-	// A map that stores the registered connectivity listeners
-	private List<ConnectivityListener> connectivityListenerList = new ArrayList<ConnectivityListener>();
+	// The registered connectivity listeners. The array is never changed, registering or unregistering a listener
+	// replaces it. Only replaced while holding the listener lock.
+	private volatile ConnectivityListener[] connectivityListeners = new ConnectivityListener[0];
+
+	// A map of event to the registered message listeners. The arrays are never changed, registering or unregistering a
+	// listener replaces them. Only changed while holding the listener lock.
+	private final Map<String, MessageListener[]> messageListenerMap = new ConcurrentHashMap<String, MessageListener[]>();
+
+	// A lock used to synchronize changes to the listener registries, and changes to the message listener map with adding
+	// and removing the message listeners of the application. Never held while a listener is notified.
+	private final Object listenerLock = new Object();
 
-	// A map that stores the registered message listeners
-	private Map<String, List<MessageListener>> messageListenerMap = new HashMap<String, List<MessageListener>>();
+	// Held by the connectivity and message notifications, so that a listener is never called after it unregistered.
+	private final ListenerDispatchGuard listenerDispatchGuard = new ListenerDispatchGuard();
 
 	//
 	private String wifiNetworkName = null;
@@ -108,6 +129,99 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	// A Broadcast receiver used to monitor WiFi connectivity changes.
 	private WifiBroadcastReceiver wifiReceiver = null;
 
+	// The input time passed to sendMessage() for a message that was not caused by an input event.
+	public static final long NO_INPUT_TIME = 0;
+
+	// The input latency histograms, indexed by the LatencyStage ordinal.
+	private final LatencyHistogram[] latencyHistograms = new LatencyHistogram[LatencyStage.values().length];
+
+	// The maximum number of messages waiting to be published in each priority lane.
+	private static final int SEND_QUEUE_CAPACITY = 256;
+
+	// The maximum time the send thread keeps publishing the queued messages after disconnect() before it disconnects
+	// the application.
+	private static final long DISCONNECT_DRAIN_TIMEOUT_NANOS = (250L * 1000 * 1000); // 250 milliseconds
+
+	// How often awaitSendQueueEmpty() checks whether the queued messages are published.
+	private static final long DRAIN_POLL_NANOS = (1000 * 1000); // 1 millisecond
+
+	// The messages waiting to be published by the send thread, indexed by the SendPriority ordinal.
+	private final SendQueue[] sendQueues = new SendQueue[SendPriority.values().length];
+
+	// The time the messages waited in each send queue, indexed by the SendPriority ordinal.
+	private final LatencyHistogram[] sendQueueLatencyHistograms = new LatencyHistogram[SendPriority.values().length];
+
+	// A lock used to serialize the threads adding messages to the send queues.
+	private final Object sendLock = new Object();
+
+	// The thread that publishes the queued messages.
+	private final SendThread sendThread;
+
+	// Receives the published messages in place of the TV application, or null.
+	private volatile MessageSink messageSink = null;
+
+	// The application disconnect() handed to the send thread, to be disconnected once the queued messages are
+	// published, or null.
+	private final AtomicReference<Application> drainingApplication = new AtomicReference<Application>();
+
+	// The time the send thread stops waiting for the queued messages and disconnects the draining application.
+	private volatile long drainDeadlineNanos = 0;
+
+	// The event of the heartbeat ping sent to the TV application. The data is the sequence number of the ping.
+	public static final String HEARTBEAT_PING_EVENT = "ping";
+
+	// The event of the heartbeat pong the TV application answers a ping with. The data is the data of the ping, a comma
+	// and the TV time in milliseconds at which the TV application answered, for example "12,83512.345".
+	public static final String HEARTBEAT_PONG_EVENT = "pong";
+
+	// How often a heartbeat ping is sent while connected.
+	private static final long HEARTBEAT_INTERVAL_NANOS = (1000L * 1000 * 1000); // 1 second
+
+	// The number of pings sent in a burst right after connecting, so the clocks are synchronized before the game
+	// starts, and how often they are sent.
+	private static final int HEARTBEAT_BURST_COUNT = 8;
+	private static final long HEARTBEAT_BURST_INTERVAL_NANOS = (50 * 1000 * 1000); // 50 milliseconds
+
+	// The time the next heartbeat ping is due. Only used while connected.
+	private volatile long nextHeartbeatNanos = 0;
+
+	// The number of burst pings left to send. Set when connected and only decremented by the send thread.
+	private volatile int heartbeatBurstRemaining = 0;
+
+	// Estimates the quality of the link from the heartbeat round trips.
+	private final LinkQuality linkQuality = new LinkQuality();
+
+	// Estimates the offset and the drift of the TV clock from the heartbeat round trips.
+	private final ClockSync clockSync = new ClockSync();
+
+	// The maximum number of attempts to reconnect after the connection was lost, before giving up.
+	private static final int RECONNECT_MAX_ATTEMPTS = 6;
+
+	// The delay before the first reconnect attempt. The delay doubles with every attempt up to the maximum delay.
+	private static final long RECONNECT_INITIAL_DELAY_MILLIS = 250;
+	private static final long RECONNECT_MAX_DELAY_MILLIS = (1000 * 4); // 4 seconds
+
+	// The service of the last application connected to, which is reconnected to without discovering it again.
+	private volatile Service lastService = null;
+
+	// The number of reconnect attempts scheduled since the connection was lost, or 0 if not reconnecting. Guarded by
+	// the reconnect lock.
+	private int reconnectAttempt = 0;
+
+	// A lock used to synchronize scheduling and cancelling the reconnect attempts.
+	private final Object reconnectLock = new Object();
+
+	// Runs the reconnect attempts on the main thread, where the connectivity listeners expect to be called.
+	private final Handler reconnectHandler = new Handler(Looper.getMainLooper());
+
+	// The next reconnect attempt.
+	private final Runnable reconnectRunnable = new Runnable() {
+		@Override
+		public void run() {
+			attemptReconnect();
+		}
+	};
+
 	/**
 	 * Constructor.
 	 * 
@@ -129,11 +243,23 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 
 		this.context = context.getApplicationContext();
 
+		for (int i = 0; i < latencyHistograms.length; i++) {
+			latencyHistograms[i] = new LatencyHistogram();
+		}
+		for (int i = 0; i < sendQueues.length; i++) {
+			sendQueues[i] = new SendQueue(SEND_QUEUE_CAPACITY);
+			sendQueueLatencyHistograms[i] = new LatencyHistogram();
+		}
+
 		this.url = url;
 		this.uri = Uri.parse(url);
 		this.channelId = channelId;
 		this.discoveryTimeoutMillis = discoveryTimeoutMillis;
 
+		// Start the thread that publishes the queued messages.
+		sendThread = new SendThread();
+		sendThread.start();
+
 		// Start monitoring WiFi connectivity changes.
 		startMonitoringWifiConnectivity();
 	}
@@ -188,21 +314,26 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 			Log.d(TAG, "Destroying ConnectivityManager.");
 		}
 
-		synchronized (lock) {
-			// Stop monitoring WiFi connectivity changes.
-			stopMonitoringWifiConnectivity();
+		// Stop monitoring WiFi connectivity changes.
+		stopMonitoringWifiConnectivity();
+
+		// Stop any discovery actions
+		stopDiscovery();
 
-			// Stop any discovery actions
-			stopDiscovery();
+		// Disconnect from any applications
+		disconnect();
 
-			// Disconnect from any applications
-			disconnect();
+		// Stop the send thread
+		sendThread.quit();
 
-			// Clear the service map to release Service objects
+		// Clear the service map to release Service objects
+		synchronized (discoveryLock) {
 			serviceMap.clear();
+		}
 
-			// Clear the connectivity listener list and message listener map and release listener objects
-			connectivityListenerList.clear();
+		// Clear the connectivity listeners and message listener map and release listener objects
+		synchronized (listenerLock) {
+			connectivityListeners = new ConnectivityListener[0];
 			messageListenerMap.clear();
 		}
 	}
@@ -215,7 +346,7 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	 * Start service discovery.
 	 */
 	public boolean startDiscovery() {
-		synchronized (lock) {
+		synchronized (discoveryLock) {
 			// If already searching, return true (we are discovering).
 			if (isDiscovering()) {
 				return true;
@@ -265,7 +396,7 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 			return;
 		}
 
-		synchronized (lock) {
+		synchronized (discoveryLock) {
 			// Stop the discovery process after some amount of time, preferably once the user has selected a service to
 			// work with.
 			if (search != null) {
@@ -296,7 +427,9 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	 * @return
 	 */
 	public boolean hasDiscoveredService() {
-		return (serviceMap.size() > 0);
+		synchronized (discoveryLock) {
+			return (serviceMap.size() > 0);
+		}
 	}
 
 	/**
@@ -305,8 +438,10 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	 * @return
 	 */
 	public String[] getDiscoveredServiceNames() {
-		Set<String> servicesNameSet = serviceMap.keySet();
-		return servicesNameSet.toArray(new String[servicesNameSet.size()]);
+		synchronized (discoveryLock) {
+			Set<String> servicesNameSet = serviceMap.keySet();
+			return servicesNameSet.toArray(new String[servicesNameSet.size()]);
+		}
 	}
 
 	/**
@@ -315,12 +450,14 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	 * @return
 	 */
 	public List<Service> getDiscoveredServices() {
-		return new ArrayList<Service>(serviceMap.values());
+		synchronized (discoveryLock) {
+			return new ArrayList<Service>(serviceMap.values());
+		}
 	}
 
 	@Override
 	public void onFound(Service service) {
-		synchronized (lock) {
+		synchronized (discoveryLock) {
 			if (BuildConfig.DEBUG) {
 				Log.d(TAG, "Search.onFound() service: " + service.toString());
 			}
@@ -335,7 +472,7 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 
 	@Override
 	public void onLost(Service service) {
-		synchronized (lock) {
+		synchronized (discoveryLock) {
 			if (BuildConfig.DEBUG) {
 				Log.d(TAG, "Search.onLost() service: " + service.toString());
 			}
@@ -384,7 +521,15 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	 * <br>
 	 * This example application connects to the TV application and listens for connect and disconnect events. Since this
 	 * example application does not need to communicate directly with other clients it does not store Client objects for
-	 * the other clients that are connected to the same TV Application instance.
+	 * the other clients that are connected to the same TV Application instance.<br>
+	 * <br>
+	 * The connection moves between the ConnectionState states with atomic transitions instead of a lock, so only one
+	 * connect or disconnect attempt can be in progress and a slow listener or discovery callback never blocks it.<br>
+	 * <br>
+	 * When the connection to the TV application is lost without disconnect() being called, for example while the
+	 * device roams between WiFi access points, the last service is reconnected to without discovering it again. The
+	 * attempts back off exponentially and are bounded, so the listeners are notified of APPLICATION_RECONNECTING, then
+	 * of either APPLICATION_RECONNECTED or, when giving up, APPLICATION_DISCONNECTED.
 	 */
 
 	/**
@@ -397,65 +542,97 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
      * @see #getDiscoveredServiceNames()
 	 */
 	public boolean connect(String serviceName) {
-		synchronized (lock) {
-			// If are not connected to a WiFi network, return false (we are not connecting).
-			if (!isConnectedToWifi()) {
-				return false;
-			}
+		// If are not connected to a WiFi network, return false (we are not connecting).
+		if (!isConnectedToWifi()) {
+			return false;
+		}
 
-			// If we just initiated a disconnected from an application, we cannot attempt to connect to it until we get
-			// the onDisconnect callback.
-			if (disconnect()) {
-				if (BuildConfig.DEBUG) {
-					Log.d(TAG, "Cannot attempt connect. Waiting for disconnect attempt to complete.");
-				}
-				return false;
+		// If we just initiated a disconnected from an application, we cannot attempt to connect to it until we get the
+		// onDisconnect callback.
+		if (disconnect()) {
+			if (BuildConfig.DEBUG) {
+				Log.d(TAG, "Cannot attempt connect. Waiting for disconnect attempt to complete.");
 			}
+			return false;
+		}
 
-			// Stop discovering services.
-			stopDiscovery();
-
+		// Only one connect attempt can be in progress.
+		if (!transitionConnectionState(ConnectionState.DISCONNECTED, ConnectionState.CONNECTING)) {
 			if (BuildConfig.DEBUG) {
-				Log.d(TAG, "Attempting to connect to application at '" + serviceName + "'. url=" + uri + ", channelId="
-				        + channelId);
+				Log.d(TAG, "Cannot attempt connect. state=" + connectionState.get());
 			}
+			return false;
+		}
 
-			// Get the Service object from the service map
-			Service service = serviceMap.get(serviceName);
+		// Stop discovering services.
+		stopDiscovery();
 
-			if (service == null) {
-				onError(null);
-			}
+		if (BuildConfig.DEBUG) {
+			Log.d(TAG, "Attempting to connect to application at '" + serviceName + "'. url=" + uri + ", channelId="
+			        + channelId);
+		}
+
+		// Get the Service object from the service map
+		Service service;
+		synchronized (discoveryLock) {
+			service = serviceMap.get(serviceName);
+		}
+
+		if (service == null) {
+			onError(null);
+			return false;
+		}
+
+		openApplication(service);
+		return true;
+	}
+
+	/**
+	 * Creates the application of the given service, registers the listeners with it, and connects to it. The connection
+	 * state must already be CONNECTING.
+	 * 
+	 * @param service
+	 */
+	private void openApplication(Service service) {
+		// Remember the service so that it can be reconnected to if the connection is lost.
+		lastService = service;
+
+		// Get an instance of Application.
+		Application application = service.createApplication(uri, channelId);
 
-			// Get an instance of Application.
-			application = service.createApplication(uri, channelId);
+		// Set the connection timeout. This needs to be set in order to be notified when connection to the TV App is
+		// lost because the TV lost its WiFi connection or was turned off.
+		application.setConnectionTimeout(CONNECTION_TIMEOUT_MILLIS);
 
-			// Set the connection timeout. This needs to be set in order to be notified when connection to the TV App is
-			// lost because the TV lost its WiFi connection or was turned off.
-			application.setConnectionTimeout(CONNECTION_TIMEOUT_MILLIS);
+		// Listen for the connect/disconnect events
+		application.setOnConnectListener(this);
+		application.setOnDisconnectListener(this);
 
-			// Listen for the connect/disconnect events
-			application.setOnConnectListener(this);
-			application.setOnDisconnectListener(this);
+		// NOTE: There are other listeners that we could register for but are not needed for this application
+		// application.setOnClientConnectListener(this);
+		// application.setOnClientDisconnectListener(this);
+		// application.setOnErrorListener(this);
 
-			// NOTE: There are other listeners that we could register for but are not needed for this application
-			// application.setOnClientConnectListener(this);
-			// application.setOnClientDisconnectListener(this);
-			// application.setOnErrorListener(this);
+		synchronized (listenerLock) {
+			this.application = application;
 
 			// Add message listeners for all registered events
 			for (String event : messageListenerMap.keySet()) {
+				if (HEARTBEAT_PONG_EVENT.equals(event)) {
+					continue;
+				}
 				if (BuildConfig.DEBUG) {
 					Log.v(TAG, "Adding message listener for '" + event + "'");
 				}
 				application.addOnMessageListener(event, this);
 			}
 
-			// Connect and launch the application.
-			application.connect(this);
+			// Always listen for the heartbeat pongs.
+			application.addOnMessageListener(HEARTBEAT_PONG_EVENT, this);
 		}
 
-		return true;
+		// Connect and launch the application.
+		application.connect(this);
 	}
 
 	/**
@@ -473,27 +650,52 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	}
 
 	/**
-	 * Disconnects from the current application.
+	 * Disconnects from the current application, or cancels the current connect attempt.<br>
+	 * <br>
+	 * Returns right away. The send thread first publishes the messages still queued, for example a QUIT message sent
+	 * just before disconnecting, for up to DISCONNECT_DRAIN_TIMEOUT_NANOS and then disconnects the application.
 	 * 
 	 * @return Returns true if attempted to disconnect from an application otherwise false.
 	 */
 	public boolean disconnect() {
-		// If we are not connected, return.
-		if (!isConnected()) {
-			return false;
+		// Stop reconnecting. The listeners were told the connection is being reconnected, so tell them it is gone.
+		if (cancelReconnect()) {
+			notifyConnectivityListeners(ConnectivityListener.APPLICATION_DISCONNECTED);
 		}
 
-		synchronized (lock) {
-			// Initiate the disconnect from the application. The disconnect will be confirmed by the onDisconnect()
-			// callback.
-			if (application != null) {
-				if (BuildConfig.DEBUG) {
-					Log.d(TAG, "Attempting to disconnect from application '" + application.getId() + "'");
-				}
+		// If we are not connected or connecting, return.
+		ConnectionState state;
+		do {
+			state = connectionState.get();
+			if ((state != ConnectionState.CONNECTED) && (state != ConnectionState.CONNECTING)) {
+				return false;
+			}
+		} while (!transitionConnectionState(state, ConnectionState.DISCONNECTING));
+
+		// Initiate the disconnect from the application. The disconnect will be confirmed by the onDisconnect()
+		// callback.
+		Application application = this.application;
+		if (application != null) {
+			if (BuildConfig.DEBUG) {
+				Log.d(TAG, "Attempting to disconnect from application '" + application.getId() + "'");
+			}
+
+			// Let the send thread publish the queued messages and then disconnect, instead of waiting for them here. A
+			// connect attempt never connected, so it has nothing to publish.
+			if ((state == ConnectionState.CONNECTED) && sendThread.isAlive()) {
+				drainDeadlineNanos = System.nanoTime() + DISCONNECT_DRAIN_TIMEOUT_NANOS;
+				drainingApplication.set(application);
+				sendThread.wakeUp();
+			} else {
 				application.disconnect();
-				application = null;
 			}
 		}
+		this.application = null;
+
+		// A connect attempt that was cancelled never connected, so there is no disconnect to wait for.
+		if (state == ConnectionState.CONNECTING) {
+			transitionConnectionState(ConnectionState.DISCONNECTING, ConnectionState.DISCONNECTED);
+		}
 
 		return true;
 	}
@@ -504,9 +706,34 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	 * @return
 	 */
 	public boolean isConnected() {
+		Application application = this.application;
 		return ((application != null) && application.isConnected());
 	}
 
+	/**
+	 * Returns the state of the connection to the TV application.
+	 * 
+	 * @return
+	 */
+	public ConnectionState getConnectionState() {
+		return connectionState.get();
+	}
+
+	/**
+	 * Moves the connection state from the given state to the given state if the connection is in the from state.
+	 * 
+	 * @param from
+	 * @param to
+	 * @return Returns true if the state changed otherwise false.
+	 */
+	private boolean transitionConnectionState(ConnectionState from, ConnectionState to) {
+		boolean changed = connectionState.compareAndSet(from, to);
+		if (changed && BuildConfig.DEBUG) {
+			Log.v(TAG, "Connection state changed from " + from + " to " + to + ".");
+		}
+		return changed;
+	}
+
 	@Override
 	public void onConnect(Client client) {
 		// We are connected! :)
@@ -514,13 +741,30 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 			Log.d(TAG, "Application.onConnect() client: " + getAsString(client));
 		}
 
-		synchronized (lock) {
-			// Store off our client just in case we need it.
-			this.client = client;
+		// Ignore the callback of a connect attempt that was cancelled.
+		if (!transitionConnectionState(ConnectionState.CONNECTING, ConnectionState.CONNECTED)) {
+			if (BuildConfig.DEBUG) {
+				Log.w(TAG, "Ignoring onConnect(). state=" + connectionState.get());
+			}
+			return;
 		}
 
-		// Notify listeners that we are connected.
-		notifyConnectivityListeners(ConnectivityListener.APPLICATION_CONNECTED);
+		// Store off our client just in case we need it.
+		this.client = client;
+
+		// Start measuring the new link and synchronizing the clocks right away.
+		linkQuality.reset();
+		clockSync.reset();
+		heartbeatBurstRemaining = HEARTBEAT_BURST_COUNT;
+		nextHeartbeatNanos = System.nanoTime();
+		sendThread.wakeUp();
+
+		// Notify listeners that we are connected, or reconnected after the connection was lost.
+		if (cancelReconnect()) {
+			notifyConnectivityListeners(ConnectivityListener.APPLICATION_RECONNECTED);
+		} else {
+			notifyConnectivityListeners(ConnectivityListener.APPLICATION_CONNECTED);
+		}
 	}
 
 	@Override
@@ -530,12 +774,27 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 			Log.d(TAG, "Application.onDisconnect() client: " + getAsString(client));
 		}
 
-		synchronized (lock) {
-			// Reset the application object
-			application = null;
+		ConnectionState state = connectionState.getAndSet(ConnectionState.DISCONNECTED);
+		if (BuildConfig.DEBUG) {
+			Log.v(TAG, "Connection state changed from " + state + " to " + ConnectionState.DISCONNECTED + ".");
+		}
+
+		// Reset the application object
+		application = null;
+
+		// Reset other data associated to the application connection.
+		this.client = null;
 
-			// Reset other data associated to the application connection.
-			client = null;
+		// The connection was lost without disconnect() being called, so try to reconnect to the same service.
+		if ((state == ConnectionState.CONNECTED) && (lastService != null)) {
+			startReconnect();
+			return;
+		}
+
+		// A reconnect attempt that is dropped before it connects is retried until the attempts run out.
+		if (isReconnecting()) {
+			scheduleReconnect();
+			return;
 		}
 
 		// Notify listeners that we are no longer connected.
@@ -558,10 +817,130 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 			Log.w(TAG, "Application connect onError() error: " + errorMsg);
 		}
 
+		// The connect attempt failed.
+		if (transitionConnectionState(ConnectionState.CONNECTING, ConnectionState.DISCONNECTED)) {
+			application = null;
+		}
+
+		// A failed reconnect attempt is retried until the attempts run out.
+		if (isReconnecting()) {
+			scheduleReconnect();
+			return;
+		}
+
 		// Notify listeners of the error.
 		notifyConnectivityListeners(ConnectivityListener.APPLICATION_CONNECT_FAILED);
 	}
 
+	/**
+	 * Starts reconnecting to the last service after the connection was lost, and notifies the listeners.
+	 */
+	private void startReconnect() {
+		if (BuildConfig.DEBUG) {
+			Log.d(TAG, "Lost the connection to the application. Reconnecting to '" + lastService.getName() + "'.");
+		}
+
+		synchronized (reconnectLock) {
+			reconnectAttempt = 0;
+			scheduleReconnect();
+		}
+
+		notifyConnectivityListeners(ConnectivityListener.APPLICATION_RECONNECTING);
+	}
+
+	/**
+	 * Schedules the next reconnect attempt after an exponentially increasing delay, or gives up and notifies the
+	 * listeners that the connection is gone once the attempts run out.
+	 */
+	private void scheduleReconnect() {
+		synchronized (reconnectLock) {
+			if (reconnectAttempt < RECONNECT_MAX_ATTEMPTS) {
+				long delayMillis = Math.min(RECONNECT_INITIAL_DELAY_MILLIS << reconnectAttempt,
+				        RECONNECT_MAX_DELAY_MILLIS);
+				reconnectAttempt++;
+				reconnectHandler.removeCallbacks(reconnectRunnable);
+				reconnectHandler.postDelayed(reconnectRunnable, delayMillis);
+
+				if (BuildConfig.DEBUG) {
+					Log.d(TAG, "Scheduled reconnect attempt " + reconnectAttempt + " in " + delayMillis + " ms.");
+				}
+				return;
+			}
+			reconnectAttempt = 0;
+		}
+
+		if (BuildConfig.DEBUG) {
+			Log.d(TAG, "Giving up reconnecting after " + RECONNECT_MAX_ATTEMPTS + " attempts.");
+		}
+		notifyConnectivityListeners(ConnectivityListener.APPLICATION_DISCONNECTED);
+	}
+
+	/**
+	 * Attempts to reconnect to the last service. Called on the main thread by the reconnect handler.
+	 */
+	private void attemptReconnect() {
+		Service service = lastService;
+		if (!isReconnecting() || (service == null)) {
+			return;
+		}
+
+		// Without a WiFi network, or while the lost connection is still being torn down, the attempt is used up without
+		// connecting.
+		if (!isConnectedToWifi()
+		        || !transitionConnectionState(ConnectionState.DISCONNECTED, ConnectionState.CONNECTING)) {
+			if (BuildConfig.DEBUG) {
+				Log.d(TAG, "Cannot attempt reconnect. isConnectedToWifi=" + isConnectedToWifi() + ", state="
+				        + connectionState.get());
+			}
+			scheduleReconnect();
+			return;
+		}
+
+		if (BuildConfig.DEBUG) {
+			Log.d(TAG, "Attempting to reconnect to application at '" + service.getName() + "'. url=" + uri
+			        + ", channelId=" + channelId);
+		}
+		openApplication(service);
+	}
+
+	/**
+	 * Runs the pending reconnect attempt right away instead of waiting for its delay. Called when the device connects
+	 * to a WiFi network again.
+	 */
+	private void reconnectNow() {
+		synchronized (reconnectLock) {
+			if (reconnectAttempt > 0) {
+				reconnectHandler.removeCallbacks(reconnectRunnable);
+				reconnectHandler.post(reconnectRunnable);
+			}
+		}
+	}
+
+	/**
+	 * Stops reconnecting to the last service.
+	 * 
+	 * @return Returns true if the connection was being reconnected otherwise false.
+	 */
+	private boolean cancelReconnect() {
+		synchronized (reconnectLock) {
+			boolean reconnecting = (reconnectAttempt > 0);
+			reconnectAttempt = 0;
+			reconnectHandler.removeCallbacks(reconnectRunnable);
+			return reconnecting;
+		}
+	}
+
+	/**
+	 * Returns whether or not the connection was lost and is being reconnected.
+	 * 
+	 * @return
+	 */
+	public boolean isReconnecting() {
+		synchronized (reconnectLock) {
+			return (reconnectAttempt > 0);
+		}
+	}
+
 	/**
 	 * Returns the toString() value of the given Client object or "null" if null.
 	 * 
@@ -575,8 +954,17 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	/******************************************************************************************************************
 	 * Communicate related methods.<br>
 	 * <br>
-	 * This example application sends messages to the TV Application with String data. This example does not include
-	 * logic for sending messages directly to other clients nor logic for sending byte[] payloads with the message.
+	 * This example application sends messages to the TV Application with String data and/or a byte[] payload. This
+	 * example does not include logic for sending messages directly to other clients.<br>
+	 * <br>
+	 * The sendMessage() methods do not block. The message is added to the bounded send queue of its priority lane and
+	 * published by the send thread, so a stalled socket never blocks the calling thread. The send thread always
+	 * publishes from the highest priority lane that has a message, so for example a button press never waits behind a
+	 * burst of other messages. Messages of the same lane are published in the order they were sent. If the send queue
+	 * is full the message is dropped.<br>
+	 * <br>
+	 * A message of a coalescible event replaces the newest message of its lane if that message is of the same event
+	 * and was not published yet, so catching up after a stall publishes the latest state instead of a backlog.
 	 */
 
 	/**
@@ -603,7 +991,63 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	 *            EXCEPT self (Message.TARGET_BROADCAST), to all clients INCLUDING self (Message.TARGET_ALL).
 	 */
 	public void sendMessage(String event, String data, String target) {
-		if (!isConnected()) {
+		sendMessage(event, data, target, null);
+	}
+
+	/**
+	 * Sends a message with a byte[] payload to the TV application.
+	 * 
+	 * @param event
+	 *            The application defined event name.
+	 * @param data
+	 *            The application defined data structure for the event. May be null.
+	 * @param payload
+	 *            The application defined byte array for the event. May be null.
+	 */
+	public void sendMessage(String event, String data, byte[] payload) {
+		sendMessage(event, data, Message.TARGET_HOST, payload);
+	}
+
+	/**
+	 * Sends a message with a byte[] payload to the given target.
+	 * 
+	 * @param event
+	 *            The application defined event name.
+	 * @param data
+	 *            The application defined data structure for the event. May be null.
+	 * @param target
+	 *            The target of the message. Can be the TV application (Message.TARGET_HOST), to all connected clients
+	 *            EXCEPT self (Message.TARGET_BROADCAST), to all clients INCLUDING self (Message.TARGET_ALL).
+	 * @param payload
+	 *            The application defined byte array for the event. May be null.
+	 */
+	public void sendMessage(String event, String data, String target, byte[] payload) {
+		sendMessage(event, data, target, payload, NO_INPUT_TIME);
+	}
+
+	/**
+	 * Sends a message caused by an input event with a byte[] payload to the given target, and records the input
+	 * latency of the message.
+	 * 
+	 * @param event
+	 *            The application defined event name.
+	 * @param data
+	 *            The application defined data structure for the event. May be null.
+	 * @param target
+	 *            The target of the message. Can be the TV application (Message.TARGET_HOST), to all connected clients
+	 *            EXCEPT self (Message.TARGET_BROADCAST), to all clients INCLUDING self (Message.TARGET_ALL).
+	 * @param payload
+	 *            The application defined byte array for the event. May be null.
+	 * @param inputTimeNanos
+	 *            The time of the input event in the System.nanoTime() time base, or NO_INPUT_TIME.
+	 */
+	public void sendMessage(String event, String data, String target, byte[] payload, long inputTimeNanos) {
+		long enqueueTimeNanos = System.nanoTime();
+		if (inputTimeNanos != NO_INPUT_TIME) {
+			recordLatency(LatencyStage.INPUT_TO_SEND, enqueueTimeNanos - inputTimeNanos);
+		}
+
+		if (!isConnected() && (messageSink == null)) {
 			if (BuildConfig.DEBUG) {
 				Log.w(TAG, "Cannot send message. Not connected. event=" + event + ", data=" + data + ", target="
 				        + target);
@@ -611,78 +1055,621 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 			return;
 		}
 
-		if (BuildConfig.DEBUG) {
-			Log.d(TAG, "Sending message. event=" + event + ", data=" + data + ", target=" + target);
+		// Add the message to the send queue of its priority lane
+		SendPriority priority = getSendPriority(event);
+		boolean queued;
+		boolean coalescible = isCoalescible(event);
+		synchronized (sendLock) {
+			SendQueue sendQueue = sendQueues[priority.ordinal()];
+			if (coalescible) {
+				queued = sendQueue.offerOrReplace(event, data, target, payload, inputTimeNanos, enqueueTimeNanos);
+			} else {
+				queued = sendQueue.offer(event, data, target, payload, inputTimeNanos, enqueueTimeNanos);
+			}
+		}
+
+		if (!queued) {
+			if (BuildConfig.DEBUG) {
+				Log.w(TAG, "Cannot send message. The " + priority.getName() + " send queue is full. event=" + event
+				        + ", data=" + data + ", target=" + target);
+			}
+			return;
 		}
 
-		// Send a message to the target
-		application.publish(event, data, target);
+		// Wake up the send thread
+		sendThread.wakeUp();
 	}
 
 	/**
-	 * Receives a message.
+	 * Cancels the newest queued message of the given event if the send thread did not take it yet. Call before sending
+	 * a message in another lane that carries newer state than the queued one, so that the older message cannot be
+	 * published after it. Only coalescible events can be cancelled.
 	 * 
-	 * @param message
+	 * @param event
+	 *            The application defined event name.
+	 * @return Returns true if a queued message was cancelled.
 	 */
-	@Override
-	public void onMessage(Message message) {
-		if (BuildConfig.DEBUG) {
-			Log.d(TAG, "Application.onMessage() message: " + message.toString());
+	protected boolean cancelQueuedMessage(String event) {
+		if (!isCoalescible(event)) {
+			return false;
 		}
 
-		// Notify the registered listeners.
-		synchronized (lock) {
-			List<MessageListener> listeners = messageListenerMap.get(message.getEvent());
-			if (listeners != null) {
-				try {
-					// Extract data
-					String event = message.getEvent();
-					String data = getMessageDataAsString(message);
-					byte[] payload = message.getPayload();
-
-					// Send to the listeners
-					for (MessageListener listener : listeners) {
-						try {
-							if (BuildConfig.DEBUG) {
-								String simpleName = listener.getClass().getSimpleName();
-								Log.d(TAG, "Sending " + simpleName + " a '" + event + "' message update. data=" + data);
-							}
-							listener.onMessage(event, data, payload);
-						} catch (Exception e) {
-							String simpleName = listener.getClass().getSimpleName();
-							Log.e(TAG, "Failed to send " + simpleName + " a '" + event + "' message update. data="
-							        + data, e);
-						}
-					}
-				} catch (Exception e) {
-					Log.e(TAG, "Failed to process message. message=" + message, e);
-				}
-			}
+		SendPriority priority = getSendPriority(event);
+		synchronized (sendLock) {
+			return sendQueues[priority.ordinal()].cancel(event);
 		}
 	}
 
 	/**
-	 * Normalizes the message data to a String. If the message data is a String it is casted to a String and returned.
-	 * If the message data is not a String, the toString() value of the Object is returned. If the message data is NULL,
-	 * then NULL is returned.
+	 * Returns the priority lane the given event is sent in. Override to classify the application's events, by default
+	 * every event is sent in the NORMAL lane.<br>
+	 * <br>
+	 * Messages of different lanes can be published in a different order than they were sent, so events whose order
+	 * matters to the receiver must be sent in the same lane.
 	 * 
-	 * @param message
+	 * @param event
+	 *            The application defined event name.
 	 * @return
 	 */
-	private String getMessageDataAsString(Message message) {
-		String dataStr = null;
-
-		if (message.getData() != null) {
-			if (message.getData() instanceof String) {
-				dataStr = (String) message.getData();
-			} else {
-				dataStr = message.getData().toString();
-			}
-		}
+	protected SendPriority getSendPriority(String event) {
+		return SendPriority.NORMAL;
+	}
+
+	/**
+	 * Returns whether or not a queued message of the given event can be replaced by a newer message of the same event
+	 * before it is published. Override for events that carry the latest state, by default no event is coalescible.<br>
+	 * <br>
+	 * Only the newest message of a lane is replaced, so the order of the messages of a lane never changes. Events
+	 * whose every message matters, for example the two edges of a button press, must not be coalescible.
+	 * 
+	 * @param event
+	 *            The application defined event name.
+	 * @return
+	 */
+	protected boolean isCoalescible(String event) {
+		return false;
+	}
+
+	/**
+	 * Returns the index of the highest priority send queue that is not empty, or -1 if all the send queues are empty.
+	 * 
+	 * @return
+	 */
+	private int getNextSendQueueIndex() {
+		for (int i = 0; i < sendQueues.length; i++) {
+			if (!sendQueues[i].isEmpty()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns whether or not all the send queues are empty.
+	 * 
+	 * @return
+	 */
+	private boolean isSendQueueEmpty() {
+		return (getNextSendQueueIndex() == -1);
+	}
+
+	/**
+	 * Publishes a queued message. Called on the send thread.
+	 * 
+	 * @param entry
+	 * @param queueLatencyHistogram
+	 *            The histogram of the time the messages waited in the send queue of the message.
+	 */
+	private void publishMessage(SendQueue.Entry entry, LatencyHistogram queueLatencyHistogram) {
+		long publishStartNanos = System.nanoTime();
+		long queueLatencyNanos = publishStartNanos - entry.getEnqueueTimeNanos();
+		recordLatency(LatencyStage.QUEUE, queueLatencyNanos);
+		queueLatencyHistogram.record(queueLatencyNanos);
+
+		String event = entry.getEvent();
+		String data = entry.getData();
+		String target = entry.getTarget();
+		byte[] payload = entry.getPayload();
+
+		// The application can be disconnected while the message was queued. After disconnect() the queued messages are
+		// published to the draining application.
+		MessageSink messageSink = this.messageSink;
+		Application application = this.application;
+		if (application == null) {
+			application = drainingApplication.get();
+		}
+		if ((messageSink == null) && ((application == null) || !application.isConnected())) {
+			if (BuildConfig.DEBUG) {
+				Log.w(TAG, "Cannot send queued message. Not connected. event=" + event + ", data=" + data
+				        + ", target=" + target);
+			}
+			return;
+		}
+
+		if (BuildConfig.DEBUG) {
+			int payloadLength = (payload != null) ? payload.length : 0;
+			Log.d(TAG, "Sending message. event=" + event + ", data=" + data + ", target=" + target + ", payloadLength="
+			        + payloadLength);
+		}
+
+		// Send a message to the target, or hand it to the message sink in its place.
+		if (messageSink != null) {
+			messageSink.publish(event, data, target, payload);
+		} else if (payload != null) {
+			application.publish(event, data, target, payload);
+		} else {
+			application.publish(event, data, target);
+		}
+		long publishEndNanos = System.nanoTime();
+
+		recordLatency(LatencyStage.PUBLISH, publishEndNanos - publishStartNanos);
+		if (entry.getInputTimeNanos() != NO_INPUT_TIME) {
+			recordLatency(LatencyStage.INPUT_TO_WIRE, publishEndNanos - entry.getInputTimeNanos());
+		}
+	}
+
+	/**
+	 * Disconnects the application handed to the send thread by disconnect() once the queued messages are published or
+	 * the drain timed out. Called on the send thread.
+	 * 
+	 * @param force
+	 *            Whether or not to disconnect without waiting for the queued messages.
+	 */
+	private void disconnectDrainedApplication(boolean force) {
+		if (drainingApplication.get() == null) {
+			return;
+		}
+		boolean drained = isSendQueueEmpty();
+		if (!force && !drained && ((drainDeadlineNanos - System.nanoTime()) > 0)) {
+			return;
+		}
+
+		Application application = drainingApplication.getAndSet(null);
+		if (application == null) {
+			return;
+		}
+		if (!drained && BuildConfig.DEBUG) {
+			Log.w(TAG, "Disconnecting before the queued messages were sent. depth=" + getSendQueueDepth());
+		}
+		try {
+			application.disconnect();
+		} catch (Exception e) {
+			Log.e(TAG, "Failed to disconnect from application '" + application.getId() + "'.", e);
+		}
+	}
+
+	/**
+	 * Waits until all the queued messages are published or the given time passed.
+	 * 
+	 * @param timeoutMillis
+	 * @return Returns true if the send queues are empty otherwise false.
+	 */
+	public boolean awaitSendQueueEmpty(long timeoutMillis) {
+		long deadlineNanos = System.nanoTime() + (timeoutMillis * 1000 * 1000);
+		while (!isSendQueueEmpty() && ((deadlineNanos - System.nanoTime()) > 0)) {
+			LockSupport.parkNanos(DRAIN_POLL_NANOS);
+		}
+
+		if (!isSendQueueEmpty()) {
+			if (BuildConfig.DEBUG) {
+				Log.w(TAG, "Timed out waiting for the queued messages to be sent. depth=" + getSendQueueDepth());
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Sends a heartbeat ping to the TV application if one is due. Called on the send thread.
+	 * 
+	 * @return Returns the time until the next ping is due in nanoseconds, or 0 if not connected.
+	 */
+	private long sendHeartbeatIfDue() {
+		if (connectionState.get() != ConnectionState.CONNECTED) {
+			return 0;
+		}
+
+		long now = System.nanoTime();
+		long delayNanos = nextHeartbeatNanos - now;
+		if (delayNanos > 0) {
+			return delayNanos;
+		}
+
+		// After the burst the regular heartbeat keeps the estimates fresh without any extra messages.
+		long intervalNanos = HEARTBEAT_INTERVAL_NANOS;
+		int burstRemaining = heartbeatBurstRemaining;
+		if (burstRemaining > 0) {
+			heartbeatBurstRemaining = burstRemaining - 1;
+			intervalNanos = HEARTBEAT_BURST_INTERVAL_NANOS;
+		}
+		nextHeartbeatNanos = now + intervalNanos;
+
+		Application application = this.application;
+		if ((application != null) && application.isConnected()) {
+			// Published directly instead of through a send queue, so the round trip measures the link and not the
+			// messages waiting in the queues.
+			int sequence = linkQuality.onPingSent(now);
+			application.publish(HEARTBEAT_PING_EVENT, Integer.toString(sequence), Message.TARGET_HOST);
+		}
+		return intervalNanos;
+	}
+
+	/**
+	 * Records the round trip and the TV time of a heartbeat pong received from the TV application.
+	 * 
+	 * @param data
+	 *            The data of the pong, which is the sequence number of the ping optionally followed by a comma and the
+	 *            TV time in milliseconds.
+	 */
+	private void onHeartbeatPong(String data) {
+		long receiveTimeNanos = System.nanoTime();
+
+		int sequence;
+		long tvTimeNanos = -1;
+		try {
+			int separatorIndex = data.indexOf(',');
+			if (separatorIndex == -1) {
+				// A TV application that does not report its time.
+				sequence = Integer.parseInt(data);
+			} else {
+				sequence = Integer.parseInt(data.substring(0, separatorIndex));
+				tvTimeNanos = (long) (Double.parseDouble(data.substring(separatorIndex + 1)) * 1000 * 1000);
+			}
+		} catch (RuntimeException e) {
+			if (BuildConfig.DEBUG) {
+				Log.w(TAG, "Ignoring invalid heartbeat pong. data=" + data);
+			}
+			return;
+		}
+
+		LinkQuality.Level previousLevel = linkQuality.getLevel();
+		long rttNanos = linkQuality.onPongReceived(sequence, receiveTimeNanos);
+		if (rttNanos < 0) {
+			return;
+		}
+
+		if (tvTimeNanos >= 0) {
+			clockSync.onSample(receiveTimeNanos, rttNanos, tvTimeNanos);
+		}
+
+		if (linkQuality.getLevel() != previousLevel) {
+			if (BuildConfig.DEBUG) {
+				Log.d(TAG, "Link quality changed. " + linkQuality);
+			}
+			notifyConnectivityListeners(ConnectivityListener.LINK_QUALITY_CHANGED);
+		}
+	}
+
+	/**
+	 * Returns the quality of the link to the TV application, estimated from the heartbeat round trips of the current
+	 * connection.
+	 * 
+	 * @return
+	 */
+	public LinkQuality getLinkQuality() {
+		return linkQuality;
+	}
+
+	/**
+	 * Returns the estimate of the offset and the drift of the TV clock, synchronized from the heartbeat round trips of
+	 * the current connection.
+	 * 
+	 * @return
+	 */
+	public ClockSync getClockSync() {
+		return clockSync;
+	}
+
+	/**
+	 * Publishes the messages in the send queues, highest priority lane first, and the heartbeat pings while connected.
+	 * Parks while all the queues are empty and no ping is due.
+	 */
+	private class SendThread extends Thread {
+
+		// Whether or not the thread should keep running.
+		private volatile boolean running = true;
+
+		// Whether or not the thread is about to park or parked, waiting for a message.
+		private volatile boolean waiting = false;
+
+		SendThread() {
+			super("SendThread");
+
+			// Input messages are latency sensitive. Thread.MAX_PRIORITY maps to THREAD_PRIORITY_URGENT_DISPLAY on
+			// Android.
+			setPriority(Thread.MAX_PRIORITY);
+			setDaemon(true);
+		}
+
+		/**
+		 * Wakes up the thread if it is waiting for a message. Called after a message is queued.
+		 */
+		void wakeUp() {
+			if (waiting) {
+				LockSupport.unpark(this);
+			}
+		}
+
+		/**
+		 * Stops the thread. Messages still in the queue are not published.
+		 */
+		void quit() {
+			running = false;
+			LockSupport.unpark(this);
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				disconnectDrainedApplication(false);
+
+				long heartbeatDelayNanos;
+				try {
+					heartbeatDelayNanos = sendHeartbeatIfDue();
+				} catch (Exception e) {
+					Log.e(TAG, "Failed to send heartbeat.", e);
+					heartbeatDelayNanos = HEARTBEAT_INTERVAL_NANOS;
+				}
+
+				int index = getNextSendQueueIndex();
+
+				if (index == -1) {
+					// Check the queues, the connection state and the pending disconnect again after setting the flag,
+					// so a message queued, a connection made or a disconnect requested in between is not missed.
+					waiting = true;
+					if (isSendQueueEmpty() && running && (drainingApplication.get() == null)) {
+						if (connectionState.get() != ConnectionState.CONNECTED) {
+							LockSupport.park(this);
+						} else if (heartbeatDelayNanos > 0) {
+							LockSupport.parkNanos(this, heartbeatDelayNanos);
+						}
+					}
+					waiting = false;
+					continue;
+				}
+
+				SendQueue sendQueue = sendQueues[index];
+				SendQueue.Entry entry = sendQueue.peek();
+				if (!entry.isCancelled()) {
+					try {
+						publishMessage(entry, sendQueueLatencyHistograms[index]);
+					} catch (Exception e) {
+						Log.e(TAG, "Failed to send message. event=" + entry.getEvent() + ", data=" + entry.getData(),
+						        e);
+					}
+				}
+				sendQueue.remove();
+			}
+
+			// Stopped. The queued messages are not published, but a pending disconnect still has to happen.
+			disconnectDrainedApplication(true);
+		}
+	}
+
+	/**
+	 * Receives a message.
+	 * 
+	 * @param message
+	 */
+	@Override
+	public void onMessage(Message message) {
+		if (BuildConfig.DEBUG) {
+			Log.d(TAG, "Application.onMessage() message: " + message.toString());
+		}
+
+		if (HEARTBEAT_PONG_EVENT.equals(message.getEvent())) {
+			onHeartbeatPong(getMessageDataAsString(message));
+		}
+
+		// Notify the registered listeners. The listener array is never changed, so the listeners are notified without a
+		// lock or an allocation and a listener can register or unregister while the message is dispatched.
+		listenerDispatchGuard.beginDispatch();
+		try {
+			MessageListener[] listeners = messageListenerMap.get(message.getEvent());
+			if (listeners == null) {
+				return;
+			}
+
+			// Extract data
+			String event = message.getEvent();
+			String data = getMessageDataAsString(message);
+			byte[] payload = message.getPayload();
+
+			// Send to the listeners
+			for (int i = 0; i < listeners.length; i++) {
+				MessageListener listener = listeners[i];
+
+				// Skip a listener unregistered by an earlier listener of this message.
+				MessageListener[] currentListeners = messageListenerMap.get(event);
+				if ((currentListeners != listeners)
+				        && ((currentListeners == null) || !ListenerArrays.contains(currentListeners, listener))) {
+					continue;
+				}
+
+				try {
+					if (BuildConfig.DEBUG) {
+						String simpleName = listener.getClass().getSimpleName();
+						Log.d(TAG, "Sending " + simpleName + " a '" + event + "' message update. data=" + data);
+					}
+					listener.onMessage(event, data, payload);
+				} catch (Exception e) {
+					String simpleName = listener.getClass().getSimpleName();
+					Log.e(TAG, "Failed to send " + simpleName + " a '" + event + "' message update. data=" + data, e);
+				}
+			}
+		} catch (Exception e) {
+			Log.e(TAG, "Failed to process message. message=" + message, e);
+		} finally {
+			listenerDispatchGuard.endDispatch();
+		}
+	}
+
+	/**
+	 * Normalizes the message data to a String. If the message data is a String it is casted to a String and returned.
+	 * If the message data is not a String, the toString() value of the Object is returned. If the message data is NULL,
+	 * then NULL is returned.
+	 * 
+	 * @param message
+	 * @return
+	 */
+	private String getMessageDataAsString(Message message) {
+		String dataStr = null;
+
+		if (message.getData() != null) {
+			if (message.getData() instanceof String) {
+				dataStr = (String) message.getData();
+			} else {
+				dataStr = message.getData().toString();
+			}
+		}
 
 		return dataStr;
 	}
 
+	/******************************************************************************************************************
+	 * Input latency methods
+	 */
+
+	/**
+	 * Returns the input latency histogram of the given stage.
+	 * 
+	 * @param stage
+	 * @return
+	 */
+	public LatencyHistogram getLatencyHistogram(LatencyStage stage) {
+		return latencyHistograms[stage.ordinal()];
+	}
+
+	/**
+	 * Records a latency of the given stage.
+	 * 
+	 * @param stage
+	 * @param latencyNanos
+	 */
+	protected void recordLatency(LatencyStage stage, long latencyNanos) {
+		latencyHistograms[stage.ordinal()].record(latencyNanos);
+	}
+
+	/**
+	 * Returns the number of messages waiting to be published in all the priority lanes.
+	 * 
+	 * @return
+	 */
+	public int getSendQueueDepth() {
+		int depth = 0;
+		for (SendQueue sendQueue : sendQueues) {
+			depth += sendQueue.size();
+		}
+		return depth;
+	}
+
+	/**
+	 * Returns the number of messages waiting to be published in the given priority lane.
+	 * 
+	 * @param priority
+	 * @return
+	 */
+	public int getSendQueueDepth(SendPriority priority) {
+		return sendQueues[priority.ordinal()].size();
+	}
+
+	/**
+	 * Returns the largest number of messages that were waiting to be published in the given priority lane since the
+	 * metrics were reset.
+	 * 
+	 * @param priority
+	 * @return
+	 */
+	public int getMaxSendQueueDepth(SendPriority priority) {
+		return sendQueues[priority.ordinal()].getMaxSize();
+	}
+
+	/**
+	 * Returns the number of messages of the given priority lane dropped because its send queue was full since the
+	 * metrics were reset.
+	 * 
+	 * @param priority
+	 * @return
+	 */
+	public long getDroppedMessageCount(SendPriority priority) {
+		return sendQueues[priority.ordinal()].getDroppedCount();
+	}
+
+	/**
+	 * Returns the number of messages of the given priority lane replaced by a newer message of the same event before
+	 * they were published since the metrics were reset.
+	 * 
+	 * @param priority
+	 * @return
+	 */
+	public long getReplacedMessageCount(SendPriority priority) {
+		return sendQueues[priority.ordinal()].getReplacedCount();
+	}
+
+	/**
+	 * Returns the histogram of the time the messages of the given priority lane waited in its send queue.
+	 * 
+	 * @param priority
+	 * @return
+	 */
+	public LatencyHistogram getSendQueueLatencyHistogram(SendPriority priority) {
+		return sendQueueLatencyHistograms[priority.ordinal()];
+	}
+
+	/**
+	 * Removes all the recorded input latencies and resets the send queue metrics.
+	 */
+	public void resetLatency() {
+		for (LatencyHistogram latencyHistogram : latencyHistograms) {
+			latencyHistogram.reset();
+		}
+
+		synchronized (sendLock) {
+			for (int i = 0; i < sendQueues.length; i++) {
+				sendQueues[i].resetMetrics();
+				sendQueueLatencyHistograms[i].reset();
+			}
+		}
+	}
+
+	/**
+	 * Returns a one line report of the input latency of every stage, the send queue metrics, the link quality and the
+	 * clock synchronization, tagged with the device model so that reports from different devices can be compared. The
+	 * latencies are in microseconds.
+	 * 
+	 * @return
+	 */
+	public String getLatencyReport() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("model=").append(Build.MANUFACTURER).append(' ').append(Build.MODEL);
+		for (LatencyStage stage : LatencyStage.values()) {
+			LatencyHistogram latencyHistogram = latencyHistograms[stage.ordinal()];
+			sb.append(", ").append(stage.getName()).append("=[count=").append(latencyHistogram.getCount())
+			        .append(", p50=").append(latencyHistogram.getPercentileMicros(50)).append(", p99=")
+			        .append(latencyHistogram.getPercentileMicros(99)).append(", max=")
+			        .append(latencyHistogram.getMaxMicros()).append(']');
+		}
+		for (SendPriority priority : SendPriority.values()) {
+			SendQueue sendQueue = sendQueues[priority.ordinal()];
+			LatencyHistogram latencyHistogram = sendQueueLatencyHistograms[priority.ordinal()];
+			sb.append(", send_queue_").append(priority.getName()).append("=[depth=").append(sendQueue.size())
+			        .append(", max=").append(sendQueue.getMaxSize()).append(", dropped=")
+			        .append(sendQueue.getDroppedCount()).append(", replaced=").append(sendQueue.getReplacedCount())
+			        .append(", p50=")
+			        .append(latencyHistogram.getPercentileMicros(50)).append(", p99=")
+			        .append(latencyHistogram.getPercentileMicros(99)).append(']');
+		}
+		LatencyHistogram rttHistogram = linkQuality.getRttHistogram();
+		sb.append(", link=[level=").append(linkQuality.getLevel()).append(", rtt=")
+		        .append(linkQuality.getSmoothedRttMicros()).append(", jitter=").append(linkQuality.getJitterMicros())
+		        .append(", p50=").append(rttHistogram.getPercentileMicros(50)).append(", p99=")
+		        .append(rttHistogram.getPercentileMicros(99)).append(']');
+		sb.append(", clock=[synchronized=").append(clockSync.isSynchronized()).append(", offset=")
+		        .append(clockSync.getOffsetMicros()).append(", drift_ppm=").append(clockSync.getDriftPpm())
+		        .append(", uncertainty=").append(clockSync.getUncertaintyMicros()).append(']');
+		return sb.toString();
+	}
+
 	/******************************************************************************************************************
 	 * Getter and Setter methods
 	 */
@@ -731,6 +1718,29 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 		this.channelId = channelId;
 	}
 
+	/**
+	 * Returns the MessageSink that receives the published messages in place of the TV application, or null.
+	 * 
+	 * @return
+	 */
+	public MessageSink getMessageSink() {
+		return messageSink;
+	}
+
+	/**
+	 * Sets the MessageSink that receives the published messages in place of the TV application, or null to publish to
+	 * the TV application again.<br>
+	 * <br>
+	 * While a sink is set, the messages are queued and published through the send lanes whether or not an application
+	 * is connected, and nothing is published to the application. This lets the send path run without a TV, for
+	 * example to count the messages sent for a replayed input log.
+	 * 
+	 * @param messageSink
+	 */
+	public void setMessageSink(MessageSink messageSink) {
+		this.messageSink = messageSink;
+	}
+
 	/******************************************************************************************************************
 	 * WiFi Connectivity related methods
 	 */
@@ -830,19 +1840,26 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 			wifiNetworkName = isConnectedToWifiUpdate ? ni.getExtraInfo() : null;
 			isConnectedToWifi = isConnectedToWifiUpdate;
 
-			// If we connected to a WiFi network, notify listeners.
+			// If we connected to a WiFi network, reconnect to the application if the connection was lost and notify
+			// listeners.
 			if (isConnectedToWifi) {
+				reconnectNow();
+
 				// Notify listeners on the WiFi connectivity change.
 				notifyConnectivityListeners(ConnectivityListener.WIFI_CONNECTED);
 			}
-			// Else we are not connected to a WiFi network stop discovery, disconnect from any applications, and notify
-			// listeners.
+			// Else we are not connected to a WiFi network stop discovery, disconnect from any applications that are not
+			// connected, and notify listeners.
 			else {
 				// Stop any discovery actions
 				stopDiscovery();
 
-				// Disconnect from any applications
-				disconnect();
+				// A connected or reconnecting application is left alone since the loss may be a blip while roaming
+				// between access points. If the connection does not survive it, it is reconnected once the network is
+				// back.
+				if ((connectionState.get() != ConnectionState.CONNECTED) && !isReconnecting()) {
+					disconnect();
+				}
 
 				// Notify listeners on the WiFi connectivity change.
 				notifyConnectivityListeners(ConnectivityListener.WIFI_DISCONNECTED);
@@ -856,7 +1873,11 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	}
 
 	/******************************************************************************************************************
-	 * Listener Registration related methods
+	 * Listener Registration related methods.<br>
+	 * <br>
+	 * The listeners are kept in immutable arrays that are replaced when a listener registers or unregisters, so the
+	 * listeners are notified without a lock or an allocation and a slow listener never blocks a registration. A
+	 * listener that registers or unregisters while a notification is sent may or may not receive that notification.
 	 */
 
 	/**
@@ -869,14 +1890,15 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 			return;
 		}
 
-		synchronized (lock) {
-			// Add the listener to the list if its not already in there.
-			if (!connectivityListenerList.contains(listener)) {
-				connectivityListenerList.add(listener);
+		synchronized (listenerLock) {
+			// Add the listener if its not already registered.
+			ConnectivityListener[] listeners = ListenerArrays.add(connectivityListeners, listener);
+			if (listeners != connectivityListeners) {
+				connectivityListeners = listeners;
 
 				if (BuildConfig.DEBUG) {
 					String simpleName = listener.getClass().getSimpleName();
-					int count = connectivityListenerList.size();
+					int count = listeners.length;
 					Log.v(TAG, "Registering " + simpleName + " for connectivity updates. count=" + count);
 				}
 			}
@@ -884,7 +1906,10 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	}
 
 	/**
-	 * Unregisters the given listener from connectivity updates.
+	 * Unregisters the given listener from connectivity updates.<br>
+	 * <br>
+	 * The listener is not called once this method returns. Unless called from a listener callback, it waits for the
+	 * notifications in progress on other threads.
 	 * 
 	 * @param listener
 	 */
@@ -893,17 +1918,25 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 			return;
 		}
 
-		synchronized (lock) {
-			// If the list is not null, then attempt to remove the listener.
-			boolean removed = connectivityListenerList.remove(listener);
+		boolean removed;
+		synchronized (listenerLock) {
+			// Attempt to remove the listener.
+			ConnectivityListener[] listeners = ListenerArrays.remove(connectivityListeners, listener);
+			removed = (listeners != connectivityListeners);
+			connectivityListeners = listeners;
 
 			if (BuildConfig.DEBUG) {
 				String msg = removed ? "Unregistering " : "Could not unregister ";
 				String simpleName = listener.getClass().getSimpleName();
-				int count = connectivityListenerList.size();
+				int count = listeners.length;
 				Log.v(TAG, msg + simpleName + " from connectivity updates. count=" + count);
 			}
 		}
+
+		// Wait for the notifications that may still call the listener.
+		if (removed) {
+			listenerDispatchGuard.awaitDispatches();
+		}
 	}
 
 	/**
@@ -912,12 +1945,23 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	 * @param eventId
 	 */
 	private void notifyConnectivityListeners(int eventId) {
-		synchronized (lock) {
+		listenerDispatchGuard.beginDispatch();
+		try {
+			ConnectivityListener[] listeners = connectivityListeners;
+
 			if (BuildConfig.DEBUG) {
-				int count = connectivityListenerList.size();
+				int count = listeners.length;
 				Log.d(TAG, "Sending a connectivity update. eventId=" + eventId + ", count=" + count);
 			}
-			for (ConnectivityListener listener : connectivityListenerList) {
+			for (int i = 0; i < listeners.length; i++) {
+				ConnectivityListener listener = listeners[i];
+
+				// Skip a listener unregistered by an earlier listener of this update.
+				ConnectivityListener[] currentListeners = connectivityListeners;
+				if ((currentListeners != listeners) && !ListenerArrays.contains(currentListeners, listener)) {
+					continue;
+				}
+
 				try {
 					if (BuildConfig.DEBUG) {
 						String simpleName = listener.getClass().getSimpleName();
@@ -929,6 +1973,8 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 					Log.e(TAG, "Failed to send " + simpleName + " a connectivity update. eventId=" + eventId, e);
 				}
 			}
+		} finally {
+			listenerDispatchGuard.endDispatch();
 		}
 	}
 
@@ -959,32 +2005,31 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 			return;
 		}
 
-		synchronized (lock) {
-			// Get the list of registered listeners.
-			List<MessageListener> listeners = messageListenerMap.get(event);
-
-			// If the list is null, then create it.
-			if (listeners == null) {
-				listeners = new ArrayList<MessageListener>();
-				messageListenerMap.put(event, listeners);
+		synchronized (listenerLock) {
+			// Get the registered listeners.
+			MessageListener[] originalListeners = messageListenerMap.get(event);
+			if (originalListeners == null) {
+				originalListeners = new MessageListener[0];
 			}
 
-			// Store the original size of the list
-			int originalSize = listeners.size();
-
-			// Add the listener to the list if its not already in there.
-			if (!listeners.contains(listener)) {
-				listeners.add(listener);
+			// Add the listener if its not already registered.
+			MessageListener[] listeners = ListenerArrays.add(originalListeners, listener);
+			if (listeners == originalListeners) {
+				return;
+			}
+			messageListenerMap.put(event, listeners);
 
-				if (BuildConfig.DEBUG) {
-					String simpleName = listener.getClass().getSimpleName();
-					int count = listeners.size();
-					Log.v(TAG, "Registering " + simpleName + " for '" + event + "' changed updates. count=" + count);
-				}
+			if (BuildConfig.DEBUG) {
+				String simpleName = listener.getClass().getSimpleName();
+				int count = listeners.length;
+				Log.v(TAG, "Registering " + simpleName + " for '" + event + "' changed updates. count=" + count);
 			}
 
 			// If this is the first listener registering for this event, register with the application for the event.
-			if ((originalSize != 1) && (listeners.size() == 1) && isConnected()) {
+			// An application that is being connected already has its message listeners, so connect() adds them. The
+			// application always has a message listener for the heartbeat pongs.
+			Application application = this.application;
+			if ((originalListeners.length == 0) && (application != null) && !HEARTBEAT_PONG_EVENT.equals(event)) {
 				if (BuildConfig.DEBUG) {
 					Log.v(TAG, "Adding message listener for '" + event + "'");
 				}
@@ -1010,7 +2055,10 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 	}
 
 	/**
-	 * Unregisters the given listener for message updates.
+	 * Unregisters the given listener for message updates.<br>
+	 * <br>
+	 * The listener is not called once this method returns. Unless called from a listener callback, it waits for the
+	 * notifications in progress on other threads.
 	 * 
 	 * @param listener
 	 * @param event
@@ -1020,37 +2068,45 @@ public class ConnectivityManager implements OnConnectListener, OnDisconnectListe
 			return;
 		}
 
-		synchronized (lock) {
-			// Get the list of registered listeners.
-			List<MessageListener> listeners = messageListenerMap.get(event);
-
-			// Store the original size of the list map
-			int originalSize = listeners.size();
+		synchronized (listenerLock) {
+			// Get the registered listeners. If there are none, then there is nothing to remove.
+			MessageListener[] originalListeners = messageListenerMap.get(event);
+			if (originalListeners == null) {
+				return;
+			}
 
-			// If the list is not null, then attempt to remove the listener.
-			if (listeners != null) {
-				boolean removed = listeners.remove(listener);
+			// Attempt to remove the listener.
+			MessageListener[] listeners = ListenerArrays.remove(originalListeners, listener);
+			boolean removed = (listeners != originalListeners);
 
-				if (BuildConfig.DEBUG) {
-					String msg = removed ? "Unregistering " : "Could not unregister ";
-					String simpleName = listener.getClass().getSimpleName();
-					int count = listeners.size();
-					Log.v(TAG, msg + simpleName + " from '" + event + "' changed updates. count=" + count);
-				}
+			if (BuildConfig.DEBUG) {
+				String msg = removed ? "Unregistering " : "Could not unregister ";
+				String simpleName = listener.getClass().getSimpleName();
+				int count = listeners.length;
+				Log.v(TAG, msg + simpleName + " from '" + event + "' changed updates. count=" + count);
+			}
 
-				// If the list size is zero remove it.
-				if (listeners.size() == 0) {
-					messageListenerMap.remove(event);
-				}
+			if (!removed) {
+				return;
 			}
 
-			// If the size of the list map just changed to 0, then unregister with the application for the event.
-			if ((originalSize != 0) && (listeners.size() == 0) && isConnected()) {
-				if (BuildConfig.DEBUG) {
-					Log.v(TAG, "Removing message listener from '" + event + "'");
+			// If the last listener unregistered, then remove the event and unregister with the application for it.
+			if (listeners.length == 0) {
+				messageListenerMap.remove(event);
+
+				Application application = this.application;
+				if ((application != null) && !HEARTBEAT_PONG_EVENT.equals(event)) {
+					if (BuildConfig.DEBUG) {
+						Log.v(TAG, "Removing message listener from '" + event + "'");
+					}
+					application.removeOnMessageListener(event, this);
 				}
-				application.removeOnMessageListener(event, this);
+			} else {
+				messageListenerMap.put(event, listeners);
 			}
 		}
+
+		// Wait for the notifications that may still call the listener.
+		listenerDispatchGuard.awaitDispatches();
 	}
 }
@@ -0,0 +1,83 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A MessageSink that counts the published messages and their size by event, so that the messages sent for the same
+ * input can be compared between builds.<br>
+ * <br>
+ * The size of a message is the length of its data plus the length of its payload. The methods can be called from any
+ * thread.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class CountingMessageSink implements MessageSink {
+
+	// The number of messages and bytes published by event, as { count, bytes }. Guarded by this object.
+	private final Map<String, long[]> counts = new TreeMap<String, long[]>();
+
+	@Override
+	public synchronized void publish(String event, String data, String target, byte[] payload) {
+		long[] eventCounts = counts.get(event);
+		if (eventCounts == null) {
+			eventCounts = new long[2];
+			counts.put(event, eventCounts);
+		}
+		eventCounts[0]++;
+		eventCounts[1] += ((data != null) ? data.length() : 0) + ((payload != null) ? payload.length : 0);
+	}
+
+	/**
+	 * Returns the number of messages of the given event published.
+	 * 
+	 * @param event
+	 * @return
+	 */
+	public synchronized long getCount(String event) {
+		long[] eventCounts = counts.get(event);
+		return (eventCounts != null) ? eventCounts[0] : 0;
+	}
+
+	/**
+	 * Returns the number of bytes of the messages of the given event published.
+	 * 
+	 * @param event
+	 * @return
+	 */
+	public synchronized long getBytes(String event) {
+		long[] eventCounts = counts.get(event);
+		return (eventCounts != null) ? eventCounts[1] : 0;
+	}
+
+	/**
+	 * Returns the number of messages published.
+	 * 
+	 * @return
+	 */
+	public synchronized long getTotalCount() {
+		long count = 0;
+		for (long[] eventCounts : counts.values()) {
+			count += eventCounts[0];
+		}
+		return count;
+	}
+
+	/**
+	 * Forgets the counted messages.
+	 */
+	public synchronized void reset() {
+		counts.clear();
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder("CountingMessageSink [total=").append(getTotalCount());
+		for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+			sb.append(", ").append(entry.getKey()).append("=[count=").append(entry.getValue()[0]).append(", bytes=")
+			        .append(entry.getValue()[1]).append(']');
+		}
+		return sb.append(']').toString();
+	}
+}
@@ -0,0 +1,164 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, log-linear latency histogram with microsecond resolution.<br>
+ * <br>
+ * Every power of two is split in to SUB_BUCKETS linear buckets, so a percentile is accurate to within 1/SUB_BUCKETS
+ * (12.5%) of the value. Latencies from 0 up to about 35 minutes are counted, larger latencies are counted in the last
+ * bucket.<br>
+ * <br>
+ * Recording a latency does not allocate or lock and can be done from any thread. The percentiles are read from the
+ * buckets as they are, so a latency recorded while reading may or may not be included.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class LatencyHistogram {
+
+	// The number of linear buckets per power of two.
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// The largest power of two counted in its own buckets. 2^31 microseconds is about 35 minutes.
+	private static final int MAX_EXPONENT = 31;
+
+	// The total number of buckets.
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	// The number of latencies in each bucket.
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	// The number of latencies recorded.
+	private final AtomicLong count = new AtomicLong();
+
+	// The largest latency recorded in microseconds.
+	private final AtomicLong maxMicros = new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param latencyNanos
+	 *            The latency in nanoseconds. Negative latencies are counted as 0.
+	 */
+	public void record(long latencyNanos) {
+		long micros = Math.max(0, latencyNanos / 1000);
+
+		buckets.incrementAndGet(getBucketIndex(micros));
+		count.incrementAndGet();
+
+		long max = maxMicros.get();
+		while ((micros > max) && !maxMicros.compareAndSet(max, micros)) {
+			max = maxMicros.get();
+		}
+	}
+
+	/**
+	 * Returns the number of latencies recorded.
+	 *
+	 * @return
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the largest latency recorded in microseconds.
+	 *
+	 * @return
+	 */
+	public long getMaxMicros() {
+		return maxMicros.get();
+	}
+
+	/**
+	 * Returns the latency in microseconds at or below which the given percentage of the recorded latencies are, or 0
+	 * if no latency was recorded.
+	 *
+	 * @param percentile
+	 *            The percentile from 0 to 100.
+	 * @return
+	 */
+	public long getPercentileMicros(double percentile) {
+		if ((percentile < 0) || (percentile > 100)) {
+			throw new IllegalArgumentException("percentile must be from 0 to 100. percentile=" + percentile);
+		}
+
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+
+		// The rank of the latency to return, from 1 to total.
+		long rank = Math.max(1, (long) Math.ceil((percentile * total) / 100.0));
+
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				// Use the upper end of the bucket, but never report more than the largest latency recorded.
+				return Math.min(getBucketUpperMicros(i), maxMicros.get());
+			}
+		}
+
+		return maxMicros.get();
+	}
+
+	/**
+	 * Removes all the recorded latencies.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		maxMicros.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram [count=" + getCount() + ", p50=" + getPercentileMicros(50) + "us, p99="
+		        + getPercentileMicros(99) + "us, max=" + getMaxMicros() + "us]";
+	}
+
+	/**
+	 * Returns the index of the bucket for the given latency.
+	 *
+	 * @param micros
+	 * @return
+	 */
+	private static int getBucketIndex(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+
+		int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return ((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS) + subBucket;
+	}
+
+	/**
+	 * Returns the largest latency in microseconds counted in the given bucket.
+	 *
+	 * @param index
+	 * @return
+	 */
+	private static long getBucketUpperMicros(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		if (index == BUCKET_COUNT - 1) {
+			return Long.MAX_VALUE;
+		}
+
+		int exponent = (index / SUB_BUCKETS) + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
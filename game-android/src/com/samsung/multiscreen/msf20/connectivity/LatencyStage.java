@@ -0,0 +1,39 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+/**
+ * The stages of the input latency recorded by the ConnectivityManager. All the latencies of a stage are recorded in
+ * their own LatencyHistogram.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public enum LatencyStage {
+	// From the time of the input event to the message being handed to the ConnectivityManager to send. Includes the
+	// time the input waited to be sent, for example for the next input tick.
+	INPUT_TO_SEND("input_to_send"),
+
+	// From the message being handed to the ConnectivityManager to the send thread taking it from the send queue.
+	QUEUE("queue"),
+
+	// The time spent in Application.publish().
+	PUBLISH("publish"),
+
+	// From the time of the input event to Application.publish() returning.
+	INPUT_TO_WIRE("input_to_wire");
+
+	// The name of the stage used in the latency report.
+	private final String name;
+
+	private LatencyStage(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name of the stage used in the latency report.
+	 *
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,223 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+/**
+ * Estimates the quality of the link to the TV application from the round trip times of the heartbeat pings sent by the
+ * ConnectivityManager.<br>
+ * <br>
+ * The smoothed round trip time and the jitter are exponentially weighted moving averages, like the ones TCP (RFC 6298)
+ * and RTP (RFC 3550) use. The smoothed RTT moves 1/8 of the way to every sample. The jitter is the average difference
+ * between consecutive samples and moves 1/16 of the way. The samples are also recorded in a histogram for the
+ * percentiles. The estimate is classified in to a Level so that the application can react to it, for example by
+ * sending less input while the link is POOR.<br>
+ * <br>
+ * The methods can be called from any thread.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class LinkQuality {
+
+	/**
+	 * The quality levels of the link.
+	 */
+	public enum Level {
+		// Not enough round trips were measured yet.
+		UNKNOWN,
+
+		// Low round trip time and jitter. Good enough for fast paced input.
+		GOOD,
+
+		// Noticeable round trip time or jitter.
+		FAIR,
+
+		// High round trip time or jitter. Input will feel delayed.
+		POOR;
+	}
+
+	// The number of round trips measured before the level is known.
+	private static final int MIN_SAMPLES = 3;
+
+	// The largest smoothed RTT and jitter of a GOOD link.
+	private static final long GOOD_RTT_NANOS = (40 * 1000 * 1000); // 40 milliseconds
+	private static final long GOOD_JITTER_NANOS = (10 * 1000 * 1000); // 10 milliseconds
+
+	// The smallest smoothed RTT or jitter of a POOR link.
+	private static final long POOR_RTT_NANOS = (150 * 1000 * 1000); // 150 milliseconds
+	private static final long POOR_JITTER_NANOS = (50 * 1000 * 1000); // 50 milliseconds
+
+	// The number of pings whose send time is kept. A pong that arrives after this many newer pings were sent is ignored.
+	private static final int PING_HISTORY = 16;
+
+	// The send time of the recent pings, indexed by the sequence number modulo PING_HISTORY.
+	private final long[] pingSendTimesNanos = new long[PING_HISTORY];
+
+	// The round trip times of the pings answered since the last reset.
+	private final LatencyHistogram rttHistogram = new LatencyHistogram();
+
+	// The sequence number of the last ping sent. Guarded by this object.
+	private int pingSequence = 0;
+
+	// The number of pings sent and pongs received since the last reset. Guarded by this object.
+	private long pingCount = 0;
+	private long pongCount = 0;
+
+	// The last and the smoothed round trip time and the jitter in nanoseconds. Guarded by this object.
+	private long lastRttNanos = 0;
+	private long smoothedRttNanos = 0;
+	private long jitterNanos = 0;
+
+	// The current level. Guarded by this object.
+	private Level level = Level.UNKNOWN;
+
+	/**
+	 * Records that a ping was sent and returns its sequence number, which the pong must echo.
+	 *
+	 * @param sendTimeNanos
+	 *            The time the ping was sent in the System.nanoTime() time base.
+	 * @return
+	 */
+	public synchronized int onPingSent(long sendTimeNanos) {
+		pingSequence++;
+		pingSendTimesNanos[pingSequence & (PING_HISTORY - 1)] = sendTimeNanos;
+		pingCount++;
+		return pingSequence;
+	}
+
+	/**
+	 * Records the round trip of the ping with the given sequence number. A pong of an unknown or too old ping is
+	 * ignored.
+	 *
+	 * @param sequence
+	 *            The sequence number echoed by the pong.
+	 * @param receiveTimeNanos
+	 *            The time the pong was received in the System.nanoTime() time base.
+	 * @return Returns the round trip time in nanoseconds, or -1 if the pong was ignored.
+	 */
+	public synchronized long onPongReceived(int sequence, long receiveTimeNanos) {
+		int age = pingSequence - sequence;
+		if ((age < 0) || (age >= PING_HISTORY) || (sequence <= 0)) {
+			return -1;
+		}
+
+		long rttNanos = receiveTimeNanos - pingSendTimesNanos[sequence & (PING_HISTORY - 1)];
+		if (rttNanos < 0) {
+			return -1;
+		}
+		pongCount++;
+		rttHistogram.record(rttNanos);
+
+		if (pongCount == 1) {
+			smoothedRttNanos = rttNanos;
+			jitterNanos = 0;
+		} else {
+			smoothedRttNanos += (rttNanos - smoothedRttNanos) >> 3;
+			jitterNanos += (Math.abs(rttNanos - lastRttNanos) - jitterNanos) >> 4;
+		}
+		lastRttNanos = rttNanos;
+
+		level = classify();
+		return rttNanos;
+	}
+
+	/**
+	 * Returns the level of the current estimate.
+	 *
+	 * @return
+	 */
+	private Level classify() {
+		if (pongCount < MIN_SAMPLES) {
+			return Level.UNKNOWN;
+		}
+		if ((smoothedRttNanos >= POOR_RTT_NANOS) || (jitterNanos >= POOR_JITTER_NANOS)) {
+			return Level.POOR;
+		}
+		if ((smoothedRttNanos <= GOOD_RTT_NANOS) && (jitterNanos <= GOOD_JITTER_NANOS)) {
+			return Level.GOOD;
+		}
+		return Level.FAIR;
+	}
+
+	/**
+	 * Forgets all the measured round trips. Called when a new connection is made.
+	 */
+	public synchronized void reset() {
+		pingCount = 0;
+		pongCount = 0;
+		lastRttNanos = 0;
+		smoothedRttNanos = 0;
+		jitterNanos = 0;
+		level = Level.UNKNOWN;
+		rttHistogram.reset();
+	}
+
+	/**
+	 * Returns the quality level of the link.
+	 *
+	 * @return
+	 */
+	public synchronized Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * Returns the smoothed round trip time in microseconds, or 0 if no round trip was measured.
+	 *
+	 * @return
+	 */
+	public synchronized long getSmoothedRttMicros() {
+		return smoothedRttNanos / 1000;
+	}
+
+	/**
+	 * Returns the jitter of the round trip time in microseconds.
+	 *
+	 * @return
+	 */
+	public synchronized long getJitterMicros() {
+		return jitterNanos / 1000;
+	}
+
+	/**
+	 * Returns the last measured round trip time in microseconds, or 0 if no round trip was measured.
+	 *
+	 * @return
+	 */
+	public synchronized long getLastRttMicros() {
+		return lastRttNanos / 1000;
+	}
+
+	/**
+	 * Returns the number of pings sent since the last reset.
+	 *
+	 * @return
+	 */
+	public synchronized long getPingCount() {
+		return pingCount;
+	}
+
+	/**
+	 * Returns the number of pongs received since the last reset. Pings that are not answered are either late or were
+	 * lost with the connection.
+	 *
+	 * @return
+	 */
+	public synchronized long getPongCount() {
+		return pongCount;
+	}
+
+	/**
+	 * Returns the histogram of the round trip times since the last reset, for the percentiles.
+	 *
+	 * @return
+	 */
+	public LatencyHistogram getRttHistogram() {
+		return rttHistogram;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LinkQuality [level=" + level + ", rtt=" + getSmoothedRttMicros() + ", jitter=" + getJitterMicros()
+		        + ", p50=" + rttHistogram.getPercentileMicros(50) + ", p99=" + rttHistogram.getPercentileMicros(99)
+		        + ", pings=" + pingCount + ", pongs=" + pongCount + "]";
+	}
+}
@@ -0,0 +1,82 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+import java.util.Arrays;
+
+/**
+ * Helpers for the immutable listener arrays used by the listener registries.<br>
+ * <br>
+ * A registry never changes an array it published. Registering or unregistering a listener creates a new array that
+ * replaces the old one, so the listeners can be notified by reading the current array without a lock or an allocation,
+ * and a listener can register or unregister from its own callback.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public final class ListenerArrays {
+
+	private ListenerArrays() {
+	}
+
+	/**
+	 * Returns whether or not the given array contains the given listener.
+	 *
+	 * @param listeners
+	 * @param listener
+	 * @return
+	 */
+	public static <T> boolean contains(T[] listeners, T listener) {
+		return (indexOf(listeners, listener) != -1);
+	}
+
+	/**
+	 * Returns a new array with the given listener added to the end of the given array, or the given array if it
+	 * already contains the listener.
+	 *
+	 * @param listeners
+	 * @param listener
+	 * @return
+	 */
+	public static <T> T[] add(T[] listeners, T listener) {
+		if (contains(listeners, listener)) {
+			return listeners;
+		}
+
+		T[] updatedListeners = Arrays.copyOf(listeners, listeners.length + 1);
+		updatedListeners[listeners.length] = listener;
+		return updatedListeners;
+	}
+
+	/**
+	 * Returns a new array without the given listener, or the given array if it does not contain the listener.
+	 *
+	 * @param listeners
+	 * @param listener
+	 * @return
+	 */
+	public static <T> T[] remove(T[] listeners, T listener) {
+		int index = indexOf(listeners, listener);
+		if (index == -1) {
+			return listeners;
+		}
+
+		T[] updatedListeners = Arrays.copyOf(listeners, listeners.length - 1);
+		System.arraycopy(listeners, index + 1, updatedListeners, index, listeners.length - index - 1);
+		return updatedListeners;
+	}
+
+	/**
+	 * Returns the index of the given listener in the given array or -1 if the array does not contain it.
+	 *
+	 * @param listeners
+	 * @param listener
+	 * @return
+	 */
+	private static <T> int indexOf(T[] listeners, T listener) {
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i].equals(listener)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,76 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Makes sure that a listener is never called after unregistering it returned, for the listener registries that notify
+ * their listeners from immutable arrays without a lock.<br>
+ * <br>
+ * A notification holds the guard for as long as it reads a listener array and calls the listeners. Unregistering a
+ * listener replaces the array and then calls awaitDispatches(), which waits for the notifications that may still hold
+ * the old array. Notifications on different threads never wait for each other, and a notification only waits while an
+ * unregister is waiting for the notifications before it.<br>
+ * <br>
+ * A listener can unregister itself or another listener from its callback. awaitDispatches() does not wait when the
+ * current thread is notifying under any guard: it cannot wait for the notification of its own thread, and two
+ * notifications on different guards that each unregister a listener of the other would wait for each other forever.
+ * The notifying loop must therefore check that each listener is still registered before calling it when the array was
+ * replaced.<br>
+ * <br>
+ * Once every thread has notified, holding the guard does not allocate as long as the notifications do not overlap.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public final class ListenerDispatchGuard {
+
+	// The number of guards the current thread holds for a notification, in a one element array so it can be changed
+	// in place.
+	private static final ThreadLocal<int[]> DISPATCH_DEPTH = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	// Held for reading by the notifications and briefly for writing by awaitDispatches().
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Called before reading the listener array of a notification. Must be followed by endDispatch() on the same thread.
+	 */
+	public void beginDispatch() {
+		lock.readLock().lock();
+		DISPATCH_DEPTH.get()[0]++;
+	}
+
+	/**
+	 * Called after the listeners of a notification were called.
+	 */
+	public void endDispatch() {
+		DISPATCH_DEPTH.get()[0]--;
+		lock.readLock().unlock();
+	}
+
+	/**
+	 * Waits until the notifications in progress on other threads are finished. Returns right away when called from the
+	 * listener callback of any guard. Must be called after the listener array was replaced and without holding a lock
+	 * that a listener callback might take.
+	 */
+	public void awaitDispatches() {
+		if (isDispatching()) {
+			return;
+		}
+		lock.writeLock().lock();
+		lock.writeLock().unlock();
+	}
+
+	/**
+	 * Returns whether or not the current thread is notifying listeners under any guard.
+	 *
+	 * @return
+	 */
+	public static boolean isDispatching() {
+		return (DISPATCH_DEPTH.get()[0] > 0);
+	}
+}
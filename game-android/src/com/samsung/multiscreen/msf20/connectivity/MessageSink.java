@@ -0,0 +1,28 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+/**
+ * This interface is implemented by components that take the place of the TV application as the destination of the
+ * messages sent by the ConnectivityManager, for example to count the messages a replayed input log sends without
+ * connecting to a TV.<br>
+ * <br>
+ * Set with ConnectivityManager.setMessageSink(). Called on the send thread, in the order the messages are published.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public interface MessageSink {
+
+    /**
+     * Called when a queued message is published.
+     * 
+     * @param event
+     *            The application defined event name.
+     * @param data
+     *            The application defined data structure for the event. May be null.
+     * @param target
+     *            The target of the message.
+     * @param payload
+     *            The application defined byte array for the event. May be null.
+     */
+    public void publish(String event, String data, String target, byte[] payload);
+}
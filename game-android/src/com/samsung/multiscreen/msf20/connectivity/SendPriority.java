@@ -0,0 +1,36 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+/**
+ * The priority lanes of the outbound messages. Every lane has its own send queue, and the send thread always publishes
+ * the oldest message of the highest priority lane that is not empty. Messages of the same lane are published in the
+ * order they were sent, messages of different lanes are not.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public enum SendPriority {
+	// Latency sensitive messages that must never wait behind other messages, for example button presses.
+	HIGH("high"),
+
+	// The default lane.
+	NORMAL("normal"),
+
+	// Messages that can wait until the other lanes are empty, for example configuration changes.
+	LOW("low");
+
+	// The name of the lane used in the latency report.
+	private final String name;
+
+	private SendPriority(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name of the lane used in the latency report.
+	 *
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,419 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, single producer, single consumer ring buffer of the messages waiting to be published.<br>
+ * <br>
+ * The entries are allocated once and reused, so queueing a message does not allocate. offer() must only be called by
+ * one thread at a time and peek() and remove() must only be called by the consumer thread. Neither side blocks: offer()
+ * returns false when the queue is full and peek() returns null when it is empty.<br>
+ * <br>
+ * A message of an event that only carries the latest state can be queued with offerOrReplace(). If the newest queued
+ * message is of the same event and the consumer did not take it yet, it is replaced in place instead of queueing
+ * another message, so after a stall only the latest state is published instead of a backlog. Only the newest message
+ * is ever replaced, so the order of the messages in the queue never changes.<br>
+ * <br>
+ * The queue also keeps the largest number of queued messages, the number of messages dropped because it was full and
+ * the number of messages replaced.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class SendQueue {
+
+	// The entries of the ring buffer. The entry of an index is entries[index & mask].
+	private final Entry[] entries;
+
+	// The mask used to map an index to an entry.
+	private final int mask;
+
+	// The index of the next entry to take. Only written by the consumer.
+	private final AtomicLong head = new AtomicLong();
+
+	// The index of the next entry to put. Only written by the producer.
+	private final AtomicLong tail = new AtomicLong();
+
+	// The last head read by the producer, so the producer only reads the head when the queue looks full.
+	private long cachedHead = 0;
+
+	// The largest number of queued messages since the metrics were reset. Only written by the producer.
+	private volatile int maxSize = 0;
+
+	// The number of messages dropped because the queue was full since the metrics were reset. Only written by the
+	// producer.
+	private volatile long droppedCount = 0;
+
+	// The number of messages replaced by a newer message since the metrics were reset. Only written by the producer.
+	private volatile long replacedCount = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity
+	 *            The maximum number of queued messages. Must be a power of two.
+	 */
+	public SendQueue(int capacity) {
+		if ((capacity <= 0) || ((capacity & (capacity - 1)) != 0)) {
+			throw new IllegalArgumentException("capacity must be a power of two. capacity=" + capacity);
+		}
+
+		entries = new Entry[capacity];
+		for (int i = 0; i < capacity; i++) {
+			entries[i] = new Entry();
+		}
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Adds a message to the end of the queue. Must only be called by one thread at a time.
+	 *
+	 * @param event
+	 *            The application defined event name.
+	 * @param data
+	 *            The application defined data structure for the event. May be null.
+	 * @param target
+	 *            The target of the message.
+	 * @param payload
+	 *            The application defined byte array for the event. May be null.
+	 * @param inputTimeNanos
+	 *            The time of the input event that caused the message, or ConnectivityManager.NO_INPUT_TIME.
+	 * @param enqueueTimeNanos
+	 *            The time the message was queued in the System.nanoTime() time base.
+	 * @return Returns true if the message was queued or false if the queue is full.
+	 */
+	public boolean offer(String event, String data, String target, byte[] payload, long inputTimeNanos,
+	        long enqueueTimeNanos) {
+		return offer(event, data, target, payload, inputTimeNanos, enqueueTimeNanos, false);
+	}
+
+	/**
+	 * Replaces the newest message in the queue if it is of the same event and was not taken by the consumer yet,
+	 * otherwise adds the message to the end of the queue. Must only be called by one thread at a time.<br>
+	 * <br>
+	 * The replaced message keeps its place in the queue and the earlier of the two input times, so that the input
+	 * latency includes the time the replaced input waited.
+	 *
+	 * @param event
+	 *            The application defined event name.
+	 * @param data
+	 *            The application defined data structure for the event. May be null.
+	 * @param target
+	 *            The target of the message.
+	 * @param payload
+	 *            The application defined byte array for the event. May be null.
+	 * @param inputTimeNanos
+	 *            The time of the input event that caused the message, or ConnectivityManager.NO_INPUT_TIME.
+	 * @param enqueueTimeNanos
+	 *            The time the message was queued in the System.nanoTime() time base.
+	 * @return Returns true if the message was queued or replaced or false if the queue is full.
+	 */
+	public boolean offerOrReplace(String event, String data, String target, byte[] payload, long inputTimeNanos,
+	        long enqueueTimeNanos) {
+		// The entry before the tail is the newest message, unless the consumer already took it. Only entries queued
+		// with offerOrReplace() can be replaced, and the consumer claims them before reading them.
+		Entry newest = entries[(int) (tail.get() - 1) & mask];
+		if (newest.replaceable) {
+			synchronized (newest) {
+				if (!newest.claimed && event.equals(newest.event)) {
+					newest.data = data;
+					newest.target = target;
+					newest.payload = payload;
+					if ((newest.inputTimeNanos == ConnectivityManager.NO_INPUT_TIME)
+					        || ((inputTimeNanos != ConnectivityManager.NO_INPUT_TIME)
+					                && (inputTimeNanos - newest.inputTimeNanos < 0))) {
+						newest.inputTimeNanos = inputTimeNanos;
+					}
+					replacedCount++;
+					return true;
+				}
+			}
+		}
+
+		return offer(event, data, target, payload, inputTimeNanos, enqueueTimeNanos, true);
+	}
+
+	/**
+	 * Cancels the newest message in the queue if it is of the same event and was not taken by the consumer yet. Must
+	 * only be called by the producer thread.<br>
+	 * <br>
+	 * The cancelled message keeps its place in the queue but the consumer must not publish it, see Entry.isCancelled().
+	 * Only entries queued with offerOrReplace() can be cancelled.
+	 * 
+	 * @param event
+	 *            The application defined event name.
+	 * @return Returns true if a message was cancelled.
+	 */
+	public boolean cancel(String event) {
+		Entry newest = entries[(int) (tail.get() - 1) & mask];
+		if (!isEmpty() && newest.replaceable) {
+			synchronized (newest) {
+				if (!newest.claimed && !newest.cancelled && event.equals(newest.event)) {
+					newest.cancelled = true;
+					replacedCount++;
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a message to the end of the queue.
+	 *
+	 * @param event
+	 * @param data
+	 * @param target
+	 * @param payload
+	 * @param inputTimeNanos
+	 * @param enqueueTimeNanos
+	 * @param replaceable
+	 *            Whether or not the message can be replaced by offerOrReplace().
+	 * @return
+	 */
+	private boolean offer(String event, String data, String target, byte[] payload, long inputTimeNanos,
+	        long enqueueTimeNanos, boolean replaceable) {
+		long index = tail.get();
+
+		if ((index - cachedHead) >= entries.length) {
+			cachedHead = head.get();
+			if ((index - cachedHead) >= entries.length) {
+				droppedCount++;
+				return false;
+			}
+		}
+
+		Entry entry = entries[(int) index & mask];
+		entry.event = event;
+		entry.data = data;
+		entry.target = target;
+		entry.payload = payload;
+		entry.inputTimeNanos = inputTimeNanos;
+		entry.enqueueTimeNanos = enqueueTimeNanos;
+		entry.replaceable = replaceable;
+		entry.claimed = false;
+		entry.cancelled = false;
+
+		// Publish the entry to the consumer.
+		tail.set(index + 1);
+
+		int size = (int) (index + 1 - cachedHead);
+		if (size > maxSize) {
+			// The cached head may be behind, so re-read it before recording a new maximum.
+			size = size();
+			if (size > maxSize) {
+				maxSize = size;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the entry at the front of the queue without removing it, or null if the queue is empty. Must only be
+	 * called by the consumer thread. Once returned, the entry can no longer be replaced.
+	 *
+	 * @return
+	 */
+	public Entry peek() {
+		long index = head.get();
+		if (index == tail.get()) {
+			return null;
+		}
+
+		Entry entry = entries[(int) index & mask];
+		if (entry.replaceable) {
+			synchronized (entry) {
+				entry.claimed = true;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Removes the entry at the front of the queue, which must have been returned by peek(). Must only be called by the
+	 * consumer thread.
+	 */
+	public void remove() {
+		long index = head.get();
+
+		// Release the references held by the entry.
+		Entry entry = entries[(int) index & mask];
+		entry.event = null;
+		entry.data = null;
+		entry.target = null;
+		entry.payload = null;
+
+		head.lazySet(index + 1);
+	}
+
+	/**
+	 * Returns the number of queued messages.
+	 *
+	 * @return
+	 */
+	public int size() {
+		// Read the head first so that the size is never negative.
+		long headIndex = head.get();
+		return (int) (tail.get() - headIndex);
+	}
+
+	/**
+	 * Returns whether or not the queue is empty.
+	 *
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return (head.get() == tail.get());
+	}
+
+	/**
+	 * Returns the maximum number of queued messages.
+	 *
+	 * @return
+	 */
+	public int getCapacity() {
+		return entries.length;
+	}
+
+	/**
+	 * Returns the largest number of queued messages since the metrics were reset.
+	 *
+	 * @return
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Returns the number of messages dropped because the queue was full since the metrics were reset.
+	 *
+	 * @return
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Returns the number of messages replaced or cancelled by a newer message since the metrics were reset.
+	 *
+	 * @return
+	 */
+	public long getReplacedCount() {
+		return replacedCount;
+	}
+
+	/**
+	 * Resets the largest number of queued messages and the number of dropped and replaced messages. Must not be called
+	 * at the same time as offer() or offerOrReplace().
+	 */
+	public void resetMetrics() {
+		maxSize = 0;
+		droppedCount = 0;
+		replacedCount = 0;
+	}
+
+	/**
+	 * A queued message. The entry is reused once it is removed from the queue, so it must not be kept.
+	 */
+	public static final class Entry {
+
+		// The application defined event name.
+		private String event;
+
+		// The application defined data structure for the event or null.
+		private String data;
+
+		// The target of the message.
+		private String target;
+
+		// The application defined byte array for the event or null.
+		private byte[] payload;
+
+		// The time of the input event that caused the message, or ConnectivityManager.NO_INPUT_TIME.
+		private long inputTimeNanos;
+
+		// The time the message was queued.
+		private long enqueueTimeNanos;
+
+		// Whether or not the message can be replaced by offerOrReplace(). Only written by the producer.
+		private boolean replaceable;
+
+		// Whether or not the consumer took the message, after which it can no longer be replaced. Guarded by the entry.
+		private boolean claimed;
+
+		// Whether or not the message was cancelled by a newer message before the consumer took it. Guarded by the entry.
+		private boolean cancelled;
+
+		private Entry() {
+		}
+
+		/**
+		 * Returns the application defined event name.
+		 *
+		 * @return
+		 */
+		public String getEvent() {
+			return event;
+		}
+
+		/**
+		 * Returns the application defined data structure for the event or null.
+		 *
+		 * @return
+		 */
+		public String getData() {
+			return data;
+		}
+
+		/**
+		 * Returns the target of the message.
+		 *
+		 * @return
+		 */
+		public String getTarget() {
+			return target;
+		}
+
+		/**
+		 * Returns the application defined byte array for the event or null.
+		 *
+		 * @return
+		 */
+		public byte[] getPayload() {
+			return payload;
+		}
+
+		/**
+		 * Returns the time of the input event that caused the message, or ConnectivityManager.NO_INPUT_TIME.
+		 *
+		 * @return
+		 */
+		public long getInputTimeNanos() {
+			return inputTimeNanos;
+		}
+
+		/**
+		 * Returns the time the message was queued in the System.nanoTime() time base.
+		 *
+		 * @return
+		 */
+		public long getEnqueueTimeNanos() {
+			return enqueueTimeNanos;
+		}
+
+		/**
+		 * Returns whether or not the message was cancelled and must not be published. Only valid once the entry was
+		 * returned by peek().
+		 * 
+		 * @return
+		 */
+		public boolean isCancelled() {
+			if (!replaceable) {
+				return false;
+			}
+			synchronized (this) {
+				return cancelled;
+			}
+		}
+	}
+}
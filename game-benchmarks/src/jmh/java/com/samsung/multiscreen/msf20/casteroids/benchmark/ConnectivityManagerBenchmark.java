@@ -0,0 +1,117 @@
+package com.samsung.multiscreen.msf20.casteroids.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import android.content.Context;
+
+import com.samsung.multiscreen.Message;
+import com.samsung.multiscreen.Messages;
+import com.samsung.multiscreen.msf20.casteroids.model.Event;
+import com.samsung.multiscreen.msf20.casteroids.model.GameConnectivityManager;
+import com.samsung.multiscreen.msf20.casteroids.model.GameMessageListener;
+import com.samsung.multiscreen.msf20.casteroids.model.MessagePayloadHelper;
+import com.samsung.multiscreen.msf20.casteroids.model.MessageType;
+import com.samsung.multiscreen.msf20.casteroids.model.Rotate;
+import com.samsung.multiscreen.msf20.casteroids.model.SlotData;
+import com.samsung.multiscreen.msf20.connectivity.MessageListener;
+
+/**
+ * Measures the fan out of a received message to N registered listeners through ConnectivityManager.onMessage().<br>
+ * <br>
+ * The GameConnectivityManager is used since it is what the game creates. It is registered for every game event
+ * itself, so each message also goes through its decode step before the benchmark listeners are called:
+ * <ul>
+ * <li>rotateToMessageListeners: a ROTATE message with a binary payload fanned out to N raw MessageListeners.</li>
+ * <li>slotUpdateToGameMessageListeners: a SLOT_UPDATE message decoded once and fanned out to N GameMessageListeners.</li>
+ * </ul>
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectivityManagerBenchmark {
+
+	private static final String SLOT_UPDATE_DATA = "[{\"available\":false,\"color\":\"red\"},"
+	        + "{\"available\":true,\"color\":\"green\"},{\"available\":false,\"color\":\"yellow\"},"
+	        + "{\"available\":true,\"color\":\"blue\"}]";
+
+	// The number of registered listeners.
+	@Param({ "1", "4", "16" })
+	private int listenerCount;
+
+	private GameConnectivityManager gameConnectivityManager;
+	private MessageListener[] messageListeners;
+	private List<GameMessageListener<List<SlotData>>> gameMessageListeners;
+
+	private Message rotateMessage;
+	private Message slotUpdateMessage;
+
+	@Setup
+	public void setup(final Blackhole blackhole) {
+		gameConnectivityManager = GameConnectivityManager.getInstance(new Context());
+
+		messageListeners = new MessageListener[listenerCount];
+		gameMessageListeners = new ArrayList<GameMessageListener<List<SlotData>>>(listenerCount);
+		for (int i = 0; i < listenerCount; i++) {
+			messageListeners[i] = new MessageListener() {
+				@Override
+				public void onMessage(String event, String data, byte[] payload) {
+					blackhole.consume(payload);
+				}
+			};
+			gameConnectivityManager.registerMessageListener(messageListeners[i], Event.ROTATE);
+
+			GameMessageListener<List<SlotData>> gameMessageListener = new GameMessageListener<List<SlotData>>() {
+				@Override
+				public void onMessage(MessageType<? extends List<SlotData>> messageType, List<SlotData> slotData) {
+					blackhole.consume(slotData);
+				}
+			};
+			gameConnectivityManager.registerMessageListener(gameMessageListener, MessageType.SLOT_UPDATE);
+			gameMessageListeners.add(gameMessageListener);
+		}
+
+		rotateMessage = Messages.create(Event.ROTATE.getName(), null,
+		        MessagePayloadHelper.encodeRotatePayload(Rotate.LEFT, 13));
+		slotUpdateMessage = Messages.create(Event.SLOT_UPDATE.getName(), SLOT_UPDATE_DATA, null);
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (int i = 0; i < listenerCount; i++) {
+			gameConnectivityManager.unregisterMessageListener(messageListeners[i], Event.ROTATE);
+			gameConnectivityManager.unregisterMessageListener(gameMessageListeners.get(i), MessageType.SLOT_UPDATE);
+		}
+	}
+
+	@Benchmark
+	public void rotateToMessageListeners() {
+		gameConnectivityManager.onMessage(rotateMessage);
+	}
+
+	@Benchmark
+	public void slotUpdateToGameMessageListeners() {
+		gameConnectivityManager.onMessage(slotUpdateMessage);
+	}
+}
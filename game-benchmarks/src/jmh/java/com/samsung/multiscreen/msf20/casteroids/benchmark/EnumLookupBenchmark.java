@@ -0,0 +1,71 @@
+package com.samsung.multiscreen.msf20.casteroids.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.samsung.multiscreen.msf20.casteroids.model.Color;
+import com.samsung.multiscreen.msf20.casteroids.model.ConfigType;
+import com.samsung.multiscreen.msf20.casteroids.model.Event;
+
+/**
+ * Measures the getByName() lookups used to map the names received from the TV application to the Event, Color and
+ * ConfigType enums. Covers an exact match, a match that needs the case insensitive fallback and a miss.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnumLookupBenchmark {
+
+	// The names are fields so the JIT cannot constant fold the lookups.
+	private String eventName = "config_update";
+	private String eventNameMixedCase = "Config_Update";
+	private String colorName = "blue";
+	private String colorNameMixedCase = "Blue";
+	private String configTypeName = "isAlienEnabled";
+	private String unknownName = "unknown";
+
+	@Benchmark
+	public Event eventExact() {
+		return Event.getByName(eventName);
+	}
+
+	@Benchmark
+	public Event eventIgnoreCase() {
+		return Event.getByName(eventNameMixedCase);
+	}
+
+	@Benchmark
+	public Event eventUnknown() {
+		return Event.getByName(unknownName);
+	}
+
+	@Benchmark
+	public Color colorExact() {
+		return Color.getByName(colorName);
+	}
+
+	@Benchmark
+	public Color colorIgnoreCase() {
+		return Color.getByName(colorNameMixedCase);
+	}
+
+	@Benchmark
+	public ConfigType configTypeExact() {
+		return ConfigType.getByName(configTypeName);
+	}
+}
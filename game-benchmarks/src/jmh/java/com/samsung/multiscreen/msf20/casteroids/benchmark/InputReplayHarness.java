@@ -0,0 +1,111 @@
+package com.samsung.multiscreen.msf20.casteroids.benchmark;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.samsung.multiscreen.Messages;
+import com.samsung.multiscreen.msf20.casteroids.input.InputPipeline;
+import com.samsung.multiscreen.msf20.casteroids.input.InputReplayer;
+import com.samsung.multiscreen.msf20.casteroids.input.InputScheduler;
+import com.samsung.multiscreen.msf20.casteroids.model.Event;
+import com.samsung.multiscreen.msf20.casteroids.model.GameConnectivityManager;
+import com.samsung.multiscreen.msf20.connectivity.CountingMessageSink;
+
+/**
+ * Replays an input log recorded by the InputRecorder through the InputPipeline, InputScheduler and
+ * GameConnectivityManager send path, without a TV, and reports what was sent:
+ * <ul>
+ * <li>The messages published by event and their size, counted by a CountingMessageSink.</li>
+ * <li>The bytes allocated by the replaying thread.</li>
+ * <li>The input latency report of the ConnectivityManager.</li>
+ * </ul>
+ * The replay waits for every message to be published before the next record, so no queued message is replaced and
+ * every run of the same log and build publishes the same messages. Each run is reported, so that can be checked.<br>
+ * <br>
+ * Usage: InputReplayHarness log [format] [features] [filter] [tickMillis] [runs]
+ * <ul>
+ * <li>format: the negotiated wire format, "json" or "binary". Defaults to "binary".</li>
+ * <li>features: the negotiated features separated by commas, or "none". Defaults to "input_batch".</li>
+ * <li>filter: the tilt filter setting as in the TiltFilterBenchmark. Defaults to "oneeuro:0.5:0.05".</li>
+ * <li>tickMillis: the InputScheduler tick. Defaults to InputScheduler.DEFAULT_TICK_MILLIS.</li>
+ * <li>runs: the number of replays. Defaults to 3.</li>
+ * </ul>
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class InputReplayHarness {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: InputReplayHarness log [format] [features] [filter] [tickMillis] [runs]");
+			System.exit(1);
+		}
+
+		String logPath = args[0];
+		String format = (args.length > 1) ? args[1] : "binary";
+		String features = (args.length > 2) ? args[2] : "input_batch";
+		String filterSetting = (args.length > 3) ? args[3] : "oneeuro:0.5:0.05";
+		long tickMillis = (args.length > 4) ? Long.parseLong(args[4]) : InputScheduler.DEFAULT_TICK_MILLIS;
+		int runs = (args.length > 5) ? Integer.parseInt(args[5]) : 3;
+
+		GameConnectivityManager gameConnectivityManager = GameConnectivityManager.getInstance(new Context());
+		CountingMessageSink messageSink = new CountingMessageSink();
+		gameConnectivityManager.setMessageSink(messageSink);
+
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory
+		        .getThreadMXBean();
+
+		for (int run = 1; run <= runs; run++) {
+			messageSink.reset();
+			gameConnectivityManager.resetLatency();
+			negotiateSession(gameConnectivityManager, format, features);
+
+			InputScheduler inputScheduler = new InputScheduler(gameConnectivityManager, new Handler(
+			        Looper.getMainLooper()), tickMillis);
+			InputPipeline inputPipeline = new InputPipeline(inputScheduler,
+			        TiltFilterBenchmark.createFilter(filterSetting));
+			InputReplayer inputReplayer = new InputReplayer(new FileInputStream(logPath));
+
+			long allocatedBytes = threadMXBean.getCurrentThreadAllocatedBytes();
+			inputReplayer.replay(inputPipeline, gameConnectivityManager, gameConnectivityManager);
+			allocatedBytes = threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBytes;
+
+			System.out.println("run " + run + ": " + inputReplayer);
+			System.out.println("  sent: " + messageSink);
+			System.out.println("  rotates=" + inputScheduler.getRotateSentCount() + ", rotatesOverwritten="
+			        + inputScheduler.getRotateOverwrittenCount() + ", states=" + inputScheduler.getStateSentCount()
+			        + ", allocatedBytes=" + allocatedBytes);
+			System.out.println("  latency: " + gameConnectivityManager.getLatencyReport());
+		}
+
+		gameConnectivityManager.setMessageSink(null);
+		System.exit(0);
+	}
+
+	/**
+	 * Negotiates the wire format and features of the session, as if the TV application answered a JOIN_REQUEST.
+	 * 
+	 * @param gameConnectivityManager
+	 * @param format
+	 * @param features
+	 */
+	private static void negotiateSession(GameConnectivityManager gameConnectivityManager, String format,
+	        String features) {
+		StringBuilder sb = new StringBuilder("{\"response_code\":0,\"name\":\"Replay\",\"color\":\"red\",\"format\":\"")
+		        .append(format).append("\",\"features\":[");
+		if (!"none".equals(features)) {
+			String[] names = features.split(",");
+			for (int i = 0; i < names.length; i++) {
+				sb.append((i > 0) ? "," : "").append('"').append(names[i]).append('"');
+			}
+		}
+		sb.append("]}");
+		gameConnectivityManager.onMessage(Messages.create(Event.JOIN_RESPONSE.getName(), sb.toString(), null));
+	}
+}
@@ -0,0 +1,137 @@
+package com.samsung.multiscreen.msf20.casteroids.benchmark;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.samsung.multiscreen.msf20.casteroids.model.Color;
+import com.samsung.multiscreen.msf20.casteroids.model.ConfigTypeMap;
+import com.samsung.multiscreen.msf20.casteroids.model.Fire;
+import com.samsung.multiscreen.msf20.casteroids.model.InputBatch;
+import com.samsung.multiscreen.msf20.casteroids.model.JoinResponseData;
+import com.samsung.multiscreen.msf20.casteroids.model.MessageDataHelper;
+import com.samsung.multiscreen.msf20.casteroids.model.ProtocolFeature;
+import com.samsung.multiscreen.msf20.casteroids.model.Rotate;
+import com.samsung.multiscreen.msf20.casteroids.model.ScoreData;
+import com.samsung.multiscreen.msf20.casteroids.model.SlotData;
+import com.samsung.multiscreen.msf20.casteroids.model.Thrust;
+import com.samsung.multiscreen.msf20.casteroids.model.WireFormat;
+
+/**
+ * Measures every MessageDataHelper encode and decode method using message data shaped like the data sent by the TV
+ * application during a four player game.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageDataHelperBenchmark {
+
+	private static final String SLOT_UPDATE_DATA = "[{\"available\":false,\"color\":\"red\"},"
+	        + "{\"available\":true,\"color\":\"green\"},{\"available\":false,\"color\":\"yellow\"},"
+	        + "{\"available\":true,\"color\":\"blue\"}]";
+
+	private static final String JOIN_RESPONSE_DATA = "{\"response_code\":0,\"name\":\"Buck\",\"color\":\"red\","
+	        + "\"format\":\"binary\",\"features\":[\"input_batch\"]}";
+
+	private static final String GAME_OVER_DATA = "[{\"name\":\"Buck Rogers\",\"color\":\"red\",\"score\":3370},"
+	        + "{\"name\":\"Captain Kirk\",\"color\":\"green\",\"score\":9700},"
+	        + "{\"name\":\"Han Solo\",\"color\":\"yellow\",\"score\":120},"
+	        + "{\"name\":\"Starbuck\",\"color\":\"blue\",\"score\":5010}]";
+
+	private static final String CONFIG_UPDATE_DATA = "{\"isSoundEnabled\":false,\"isFpsEnabled\":false,"
+	        + "\"isShortGameEnabled\":true,\"isBackgroundImageEnabled\":true,\"isCollisionDetectionEnabled\":true,"
+	        + "\"isAlienEnabled\":false,\"isGameTextEnabled\":true,\"isPointsTextEnabled\":false,"
+	        + "\"isAggressiveUpdateCycle\":true}";
+
+	private final Set<WireFormat> wireFormats = EnumSet.allOf(WireFormat.class);
+	private final Set<ProtocolFeature> features = EnumSet.allOf(ProtocolFeature.class);
+	private final ConfigTypeMap configTypeMap = new ConfigTypeMap();
+	private final InputBatch inputBatch = new InputBatch();
+
+	// Fields so the JIT cannot constant fold the arguments.
+	private String countDownData = "10";
+	private int strength = 13;
+
+	@Setup
+	public void setup() {
+		inputBatch.addRotate(Rotate.LEFT, strength);
+		inputBatch.addThrust(Thrust.ON);
+		inputBatch.addFire(Fire.ON);
+	}
+
+	/******************************************************************************************************************
+	 * Encode benchmarks
+	 */
+
+	@Benchmark
+	public String encodeJoinRequestData() {
+		return MessageDataHelper.encodeJoinRequestData("Buck Rogers", Color.RED, wireFormats, features);
+	}
+
+	@Benchmark
+	public String encodeRotateData() {
+		return MessageDataHelper.encodeRotateData(Rotate.LEFT, strength);
+	}
+
+	@Benchmark
+	public String encodeInputBatchData() {
+		return MessageDataHelper.encodeInputBatchData(inputBatch);
+	}
+
+	@Benchmark
+	public String encodeConfigUpdateData() {
+		return MessageDataHelper.encodeConfigUpdateData(configTypeMap);
+	}
+
+	/******************************************************************************************************************
+	 * Decode benchmarks
+	 */
+
+	@Benchmark
+	public List<SlotData> decodeSlotUpdateSlotData() {
+		return MessageDataHelper.decodeSlotUpdateSlotData(SLOT_UPDATE_DATA);
+	}
+
+	@Benchmark
+	public JoinResponseData decodeJoinResponseData() {
+		return MessageDataHelper.decodeJoinResponseData(JOIN_RESPONSE_DATA);
+	}
+
+	@Benchmark
+	public int decodeGameStartCountDownSeconds() {
+		return MessageDataHelper.decodeGameStartCountDownSeconds(countDownData);
+	}
+
+	@Benchmark
+	public int decodePlayerOutCountDownSeconds() {
+		return MessageDataHelper.decodePlayerOutCountDownSeconds(countDownData);
+	}
+
+	@Benchmark
+	public List<ScoreData> decodeGameOverScoreData() {
+		return MessageDataHelper.decodeGameOverScoreData(GAME_OVER_DATA);
+	}
+
+	@Benchmark
+	public ConfigTypeMap decodeConfigUpdateData() {
+		return MessageDataHelper.decodeConfigUpdateData(CONFIG_UPDATE_DATA);
+	}
+}
@@ -0,0 +1,79 @@
+package com.samsung.multiscreen.msf20.casteroids.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.samsung.multiscreen.msf20.casteroids.model.Fire;
+import com.samsung.multiscreen.msf20.casteroids.model.InputBatch;
+import com.samsung.multiscreen.msf20.casteroids.model.MessagePayloadHelper;
+import com.samsung.multiscreen.msf20.casteroids.model.Rotate;
+import com.samsung.multiscreen.msf20.casteroids.model.Thrust;
+
+/**
+ * Measures the MessagePayloadHelper binary encode and decode methods used for the controller input events.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessagePayloadHelperBenchmark {
+
+	private final InputBatch inputBatch = new InputBatch();
+
+	// Fields so the JIT cannot constant fold the arguments.
+	private int strength = 13;
+	private byte[] rotatePayload;
+	private byte[] thrustPayload;
+
+	@Setup
+	public void setup() {
+		inputBatch.addRotate(Rotate.LEFT, strength);
+		inputBatch.addThrust(Thrust.ON);
+		inputBatch.addFire(Fire.ON);
+
+		rotatePayload = MessagePayloadHelper.encodeRotatePayload(Rotate.RIGHT, strength);
+		thrustPayload = MessagePayloadHelper.encodeThrustPayload(Thrust.ON);
+	}
+
+	@Benchmark
+	public byte[] encodeRotatePayload() {
+		return MessagePayloadHelper.encodeRotatePayload(Rotate.LEFT, strength);
+	}
+
+	@Benchmark
+	public byte[] encodeFirePayload() {
+		return MessagePayloadHelper.encodeFirePayload(Fire.ON);
+	}
+
+	@Benchmark
+	public byte[] encodeInputBatchPayload() {
+		return MessagePayloadHelper.encodeInputBatchPayload(inputBatch);
+	}
+
+	@Benchmark
+	public void decodeRotatePayload(Blackhole blackhole) {
+		blackhole.consume(MessagePayloadHelper.decodeRotatePayloadRotate(rotatePayload));
+		blackhole.consume(MessagePayloadHelper.decodeRotatePayloadStrength(rotatePayload));
+	}
+
+	@Benchmark
+	public Thrust decodeThrustPayload() {
+		return MessagePayloadHelper.decodeThrustPayload(thrustPayload);
+	}
+}
@@ -0,0 +1,71 @@
+package com.samsung.multiscreen.msf20.casteroids.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.samsung.multiscreen.Message;
+import com.samsung.multiscreen.msf20.casteroids.model.Event;
+import com.samsung.multiscreen.msf20.casteroids.model.MessagePayloadHelper;
+import com.samsung.multiscreen.msf20.casteroids.model.Rotate;
+import com.samsung.multiscreen.msf20.connectivity.SendQueue;
+
+/**
+ * Measures the cost of handing a message to the send thread through the SendQueue used by
+ * ConnectivityManager.sendMessage(), from the offer() on the sending thread to the peek() and remove() on the send
+ * thread. Both sides run on the benchmark thread so only the cost of the queue itself is measured, which should not
+ * allocate:
+ * <ul>
+ * <li>offerAndTake: a message queued and taken by the send thread.</li>
+ * <li>replaceStalled: a ROTATE message replacing the queued one while the send thread is stalled.</li>
+ * </ul>
+ *
+ * @author Dan McCafferty
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SendQueueBenchmark {
+
+	private SendQueue sendQueue;
+	private SendQueue stalledSendQueue;
+
+	private String event;
+	private byte[] payload;
+
+	@Setup
+	public void setup() {
+		sendQueue = new SendQueue(256);
+		stalledSendQueue = new SendQueue(256);
+		event = Event.ROTATE.getName();
+		payload = MessagePayloadHelper.encodeRotatePayload(Rotate.LEFT, 13);
+	}
+
+	@Benchmark
+	public void offerAndTake(Blackhole blackhole) {
+		sendQueue.offer(event, null, Message.TARGET_HOST, payload, 0, 0);
+
+		SendQueue.Entry entry = sendQueue.peek();
+		blackhole.consume(entry.getPayload());
+		sendQueue.remove();
+	}
+
+	@Benchmark
+	public boolean replaceStalled() {
+		return stalledSendQueue.offerOrReplace(event, null, Message.TARGET_HOST, payload, 0, 0);
+	}
+}
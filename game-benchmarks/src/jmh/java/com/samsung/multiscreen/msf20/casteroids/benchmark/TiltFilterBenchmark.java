@@ -0,0 +1,119 @@
+package com.samsung.multiscreen.msf20.casteroids.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.samsung.multiscreen.msf20.casteroids.input.LowPassFilter;
+import com.samsung.multiscreen.msf20.casteroids.input.OneEuroFilter;
+import com.samsung.multiscreen.msf20.casteroids.input.PassThroughFilter;
+import com.samsung.multiscreen.msf20.casteroids.input.RotateQuantizer;
+import com.samsung.multiscreen.msf20.casteroids.input.TiltFilter;
+
+/**
+ * Replays a TiltTrace through a TiltFilter and the RotateQuantizer, the same stages the controller runs for every
+ * sensor event.<br>
+ * <br>
+ * Besides the time per replay, every filter setting reports two aux counters:
+ * <ul>
+ * <li>messagesPerSecond: the rotate changes per second of trace, the most ROTATE messages the controller would send
+ * before the input tick.</li>
+ * <li>lagMillis: the mean time by which the filtered pitch crosses the middle of a move after the clean pitch does.</li>
+ * </ul>
+ * The filter settings are "none", "lowpass:cutoffHz" and "oneeuro:minCutoffHz:beta".
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TiltFilterBenchmark {
+
+	// A minute of game play.
+	private static final TiltTrace trace = new TiltTrace(4, 42);
+
+	@Param({ "none", "lowpass:3", "lowpass:1", "oneeuro:0.5:0.05", "oneeuro:1:0.1" })
+	private String filterSetting;
+
+	private TiltFilter filter;
+	private final RotateQuantizer rotateQuantizer = new RotateQuantizer();
+	private float[] output;
+
+	/**
+	 * The quality of the filter setting, reported next to the replay time.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class TraceMetrics {
+		public double messagesPerSecond;
+		public double lagMillis;
+	}
+
+	// The quality of the filter setting, measured once since the trace is the same for every replay.
+	private double messagesPerSecond;
+	private double lagMillis;
+
+	@Setup
+	public void setup() {
+		filter = createFilter(filterSetting);
+		output = new float[trace.size()];
+
+		int changes = replay();
+		messagesPerSecond = changes / trace.getDurationSeconds();
+		lagMillis = trace.getMeanLagMillis(output);
+	}
+
+	@Benchmark
+	public int replayTrace(TraceMetrics metrics) {
+		// JMH clears the aux counters before every iteration.
+		metrics.messagesPerSecond = messagesPerSecond;
+		metrics.lagMillis = lagMillis;
+		return replay();
+	}
+
+	/**
+	 * Replays the trace and returns the number of rotate changes.
+	 * 
+	 * @return
+	 */
+	private int replay() {
+		filter.reset();
+		rotateQuantizer.reset();
+
+		int changes = 0;
+		for (int i = 0; i < trace.size(); i++) {
+			float pitch = filter.filter(trace.getPitch(i), trace.getTimestamp(i));
+			output[i] = pitch;
+			if (rotateQuantizer.update(pitch)) {
+				changes++;
+			}
+		}
+		return changes;
+	}
+
+	static TiltFilter createFilter(String setting) {
+		String[] parts = setting.split(":");
+		if ("lowpass".equals(parts[0])) {
+			return new LowPassFilter(Float.parseFloat(parts[1]));
+		} else if ("oneeuro".equals(parts[0])) {
+			return new OneEuroFilter(Float.parseFloat(parts[1]), Float.parseFloat(parts[2]),
+			        OneEuroFilter.DEFAULT_DERIVATIVE_CUTOFF_HZ);
+		}
+		return new PassThroughFilter();
+	}
+}
@@ -0,0 +1,164 @@
+package com.samsung.multiscreen.msf20.casteroids.benchmark;
+
+import java.util.Random;
+
+/**
+ * A tilt trace shaped like the pitch recorded from a phone during a game: the phone at rest, slow turns, held turns
+ * and fast flicks from one side to the other. The samples are 20ms apart like SENSOR_DELAY_GAME, and the sensor noise
+ * is Gaussian with a standard deviation of NOISE_DEGREES. The random generator is seeded so every run replays the same
+ * trace.<br>
+ * <br>
+ * Besides the noisy pitch the trace keeps the clean pitch and where every move starts, so that the lag a filter adds
+ * can be measured.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class TiltTrace {
+
+	// The time between samples.
+	public static final long SAMPLE_PERIOD_NANOS = 20000000L;
+
+	// The standard deviation of the sensor noise in degrees.
+	public static final float NOISE_DEGREES = 2.0f;
+
+	// The moves repeated through the trace: the target pitch in degrees, the time to get there and the time to hold it.
+	private static final float[] MOVE_TARGETS = { 0f, 25f, 40f, 10f, -50f, 0f, -20f, 60f, 0f };
+	private static final int[] MOVE_MILLIS = { 300, 1000, 400, 300, 150, 300, 800, 150, 300 };
+	private static final int[] HOLD_MILLIS = { 2000, 2000, 1500, 1000, 1000, 3000, 1500, 800, 1500 };
+
+	// The noisy pitch, the clean pitch and the timestamp of each sample.
+	private final float[] pitch;
+	private final float[] cleanPitch;
+	private final long[] timestamps;
+
+	// The first sample, the start pitch and the target pitch of each move.
+	private final int[] moveStarts;
+	private final float[] moveFrom;
+	private final float[] moveTo;
+
+	/**
+	 * Creates a trace with the moves repeated the given number of times.
+	 * 
+	 * @param repeat
+	 * @param seed
+	 */
+	public TiltTrace(int repeat, long seed) {
+		int samplesPerRound = 0;
+		for (int i = 0; i < MOVE_TARGETS.length; i++) {
+			samplesPerRound += toSamples(MOVE_MILLIS[i]) + toSamples(HOLD_MILLIS[i]);
+		}
+
+		int moveCount = repeat * MOVE_TARGETS.length;
+		pitch = new float[repeat * samplesPerRound];
+		cleanPitch = new float[pitch.length];
+		timestamps = new long[pitch.length];
+		moveStarts = new int[moveCount];
+		moveFrom = new float[moveCount];
+		moveTo = new float[moveCount];
+
+		Random random = new Random(seed);
+		float current = 0f;
+		int sample = 0;
+		for (int move = 0; move < moveCount; move++) {
+			int i = move % MOVE_TARGETS.length;
+			float target = MOVE_TARGETS[i];
+			int moveSamples = toSamples(MOVE_MILLIS[i]);
+			int holdSamples = toSamples(HOLD_MILLIS[i]);
+
+			moveStarts[move] = sample;
+			moveFrom[move] = current;
+			moveTo[move] = target;
+
+			for (int j = 0; j < moveSamples + holdSamples; j++) {
+				float clean = (j < moveSamples) ? current + (((target - current) * (j + 1)) / moveSamples) : target;
+				cleanPitch[sample] = clean;
+				pitch[sample] = clean + (float) (random.nextGaussian() * NOISE_DEGREES);
+				timestamps[sample] = sample * SAMPLE_PERIOD_NANOS;
+				sample++;
+			}
+			current = target;
+		}
+	}
+
+	/**
+	 * Returns the number of samples.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return pitch.length;
+	}
+
+	/**
+	 * Returns the length of the trace in seconds.
+	 * 
+	 * @return
+	 */
+	public double getDurationSeconds() {
+		return (pitch.length * SAMPLE_PERIOD_NANOS) / 1e9;
+	}
+
+	/**
+	 * Returns the noisy pitch of the given sample.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public float getPitch(int index) {
+		return pitch[index];
+	}
+
+	/**
+	 * Returns the timestamp of the given sample.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public long getTimestamp(int index) {
+		return timestamps[index];
+	}
+
+	/**
+	 * Returns the mean time in milliseconds by which the given output lags behind the clean pitch. For every move this
+	 * is the time between the clean pitch and the output crossing the middle of the move.
+	 * 
+	 * @param output
+	 *            The filtered pitch of every sample.
+	 * @return
+	 */
+	public double getMeanLagMillis(float[] output) {
+		double totalMillis = 0;
+		int count = 0;
+		for (int move = 0; move < moveStarts.length; move++) {
+			if (moveFrom[move] == moveTo[move]) {
+				continue;
+			}
+
+			float middle = (moveFrom[move] + moveTo[move]) / 2;
+			boolean up = (moveTo[move] > moveFrom[move]);
+			int end = (move + 1 < moveStarts.length) ? moveStarts[move + 1] : pitch.length;
+
+			int cleanIndex = findCrossing(cleanPitch, moveStarts[move], end, middle, up);
+			int outputIndex = findCrossing(output, moveStarts[move], end, middle, up);
+			if ((cleanIndex >= 0) && (outputIndex >= 0)) {
+				totalMillis += ((outputIndex - cleanIndex) * SAMPLE_PERIOD_NANOS) / 1e6;
+				count++;
+			}
+		}
+		return (count > 0) ? (totalMillis / count) : 0;
+	}
+
+	private static int findCrossing(float[] values, int start, int end, float middle, boolean up) {
+		for (int i = start; i < end; i++) {
+			if (up ? (values[i] >= middle) : (values[i] <= middle)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int toSamples(int millis) {
+		return (int) ((millis * 1000000L) / SAMPLE_PERIOD_NANOS);
+	}
+}
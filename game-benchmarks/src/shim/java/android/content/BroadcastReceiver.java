@@ -0,0 +1,9 @@
+package android.content;
+
+/**
+ * JVM shim of the Android BroadcastReceiver class.
+ */
+public abstract class BroadcastReceiver {
+
+	public abstract void onReceive(Context context, Intent intent);
+}
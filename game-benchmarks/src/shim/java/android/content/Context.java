@@ -0,0 +1,27 @@
+package android.content;
+
+/**
+ * JVM shim of the Android Context class. Has no system services and ignores receiver registrations.
+ */
+public class Context {
+
+	public static final String CONNECTIVITY_SERVICE = "connectivity";
+
+	public Context getApplicationContext() {
+		return this;
+	}
+
+	public Object getSystemService(String name) {
+		if (CONNECTIVITY_SERVICE.equals(name)) {
+			return new android.net.ConnectivityManager();
+		}
+		return null;
+	}
+
+	public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+		return null;
+	}
+
+	public void unregisterReceiver(BroadcastReceiver receiver) {
+	}
+}
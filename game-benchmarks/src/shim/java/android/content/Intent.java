@@ -0,0 +1,15 @@
+package android.content;
+
+/**
+ * JVM shim of the Android Intent class.
+ */
+public class Intent {
+
+	public String getAction() {
+		return null;
+	}
+
+	public <T> T getParcelableExtra(String name) {
+		return null;
+	}
+}
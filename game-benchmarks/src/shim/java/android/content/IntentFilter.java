@@ -0,0 +1,10 @@
+package android.content;
+
+/**
+ * JVM shim of the Android IntentFilter class.
+ */
+public class IntentFilter {
+
+	public void addAction(String action) {
+	}
+}
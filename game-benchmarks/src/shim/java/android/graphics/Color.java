@@ -0,0 +1,26 @@
+package android.graphics;
+
+/**
+ * JVM shim of the Android Color class.
+ */
+public class Color {
+
+	/**
+	 * Parses a #RRGGBB or #AARRGGBB color string.
+	 * 
+	 * @param colorString
+	 * @return
+	 */
+	public static int parseColor(String colorString) {
+		if ((colorString != null) && (colorString.length() > 1) && (colorString.charAt(0) == '#')) {
+			long color = Long.parseLong(colorString.substring(1), 16);
+			if (colorString.length() == 7) {
+				color |= 0x00000000ff000000L;
+			} else if (colorString.length() != 9) {
+				throw new IllegalArgumentException("Unknown color");
+			}
+			return (int) color;
+		}
+		throw new IllegalArgumentException("Unknown color");
+	}
+}
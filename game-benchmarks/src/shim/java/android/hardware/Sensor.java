@@ -0,0 +1,16 @@
+package android.hardware;
+
+/**
+ * JVM shim of the Android Sensor class. Only the sensor types used by the InputPipeline.
+ */
+public final class Sensor {
+
+	public static final int TYPE_ACCELEROMETER = 1;
+
+	public static final int TYPE_MAGNETIC_FIELD = 2;
+
+	public static final int TYPE_GAME_ROTATION_VECTOR = 15;
+
+	private Sensor() {
+	}
+}
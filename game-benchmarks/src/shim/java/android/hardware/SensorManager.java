@@ -0,0 +1,129 @@
+package android.hardware;
+
+/**
+ * JVM shim of the Android SensorManager class. Only the rotation matrix and orientation math used by the
+ * InputPipeline, computed the same way as on Android so that a replayed input log gives the same device pitch.
+ */
+public final class SensorManager {
+
+	public static final float STANDARD_GRAVITY = 9.80665f;
+
+	private SensorManager() {
+	}
+
+	public static boolean getRotationMatrix(float[] R, float[] I, float[] gravity, float[] geomagnetic) {
+		float Ax = gravity[0];
+		float Ay = gravity[1];
+		float Az = gravity[2];
+
+		// The device is in free fall, there is no gravity to tell down from.
+		final float normsqA = (Ax * Ax + Ay * Ay + Az * Az);
+		final float freeFallGravitySquared = 0.01f * STANDARD_GRAVITY * STANDARD_GRAVITY;
+		if (normsqA < freeFallGravitySquared) {
+			return false;
+		}
+
+		final float Ex = geomagnetic[0];
+		final float Ey = geomagnetic[1];
+		final float Ez = geomagnetic[2];
+		float Hx = Ey * Az - Ez * Ay;
+		float Hy = Ez * Ax - Ex * Az;
+		float Hz = Ex * Ay - Ey * Ax;
+		final float normH = (float) Math.sqrt(Hx * Hx + Hy * Hy + Hz * Hz);
+
+		// The device is close to free fall, in space, or close to the magnetic north pole.
+		if (normH < 0.1f) {
+			return false;
+		}
+
+		final float invH = 1.0f / normH;
+		Hx *= invH;
+		Hy *= invH;
+		Hz *= invH;
+		final float invA = 1.0f / (float) Math.sqrt(Ax * Ax + Ay * Ay + Az * Az);
+		Ax *= invA;
+		Ay *= invA;
+		Az *= invA;
+		final float Mx = Ay * Hz - Az * Hy;
+		final float My = Az * Hx - Ax * Hz;
+		final float Mz = Ax * Hy - Ay * Hx;
+
+		setRotationMatrix(R, Hx, Hy, Hz, Mx, My, Mz, Ax, Ay, Az);
+		return true;
+	}
+
+	public static void getRotationMatrixFromVector(float[] R, float[] rotationVector) {
+		float q0;
+		float q1 = rotationVector[0];
+		float q2 = rotationVector[1];
+		float q3 = rotationVector[2];
+
+		if (rotationVector.length >= 4) {
+			q0 = rotationVector[3];
+		} else {
+			q0 = 1 - q1 * q1 - q2 * q2 - q3 * q3;
+			q0 = (q0 > 0) ? (float) Math.sqrt(q0) : 0;
+		}
+
+		float sq_q1 = 2 * q1 * q1;
+		float sq_q2 = 2 * q2 * q2;
+		float sq_q3 = 2 * q3 * q3;
+		float q1_q2 = 2 * q1 * q2;
+		float q3_q0 = 2 * q3 * q0;
+		float q1_q3 = 2 * q1 * q3;
+		float q2_q0 = 2 * q2 * q0;
+		float q2_q3 = 2 * q2 * q3;
+		float q1_q0 = 2 * q1 * q0;
+
+		setRotationMatrix(R, 1 - sq_q2 - sq_q3, q1_q2 - q3_q0, q1_q3 + q2_q0, q1_q2 + q3_q0, 1 - sq_q1 - sq_q3,
+		        q2_q3 - q1_q0, q1_q3 - q2_q0, q2_q3 + q1_q0, 1 - sq_q1 - sq_q2);
+	}
+
+	public static float[] getOrientation(float[] R, float[] values) {
+		if (R.length == 9) {
+			values[0] = (float) Math.atan2(R[1], R[4]);
+			values[1] = (float) Math.asin(-R[7]);
+			values[2] = (float) Math.atan2(-R[6], R[8]);
+		} else {
+			values[0] = (float) Math.atan2(R[1], R[5]);
+			values[1] = (float) Math.asin(-R[9]);
+			values[2] = (float) Math.atan2(-R[8], R[10]);
+		}
+		return values;
+	}
+
+	/**
+	 * Writes the 3x3 rotation in to the given 3x3 or 4x4 matrix.
+	 */
+	private static void setRotationMatrix(float[] R, float r0, float r1, float r2, float r3, float r4, float r5,
+	        float r6, float r7, float r8) {
+		if (R.length == 9) {
+			R[0] = r0;
+			R[1] = r1;
+			R[2] = r2;
+			R[3] = r3;
+			R[4] = r4;
+			R[5] = r5;
+			R[6] = r6;
+			R[7] = r7;
+			R[8] = r8;
+		} else {
+			R[0] = r0;
+			R[1] = r1;
+			R[2] = r2;
+			R[3] = 0;
+			R[4] = r3;
+			R[5] = r4;
+			R[6] = r5;
+			R[7] = 0;
+			R[8] = r6;
+			R[9] = r7;
+			R[10] = r8;
+			R[11] = 0;
+			R[12] = 0;
+			R[13] = 0;
+			R[14] = 0;
+			R[15] = 1;
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package android.net;
+
+/**
+ * JVM shim of the Android ConnectivityManager class. There is never an active network.
+ */
+public class ConnectivityManager {
+
+	public static final int TYPE_WIFI = 1;
+
+	public NetworkInfo getActiveNetworkInfo() {
+		return null;
+	}
+}
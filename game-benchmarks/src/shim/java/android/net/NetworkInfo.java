@@ -0,0 +1,19 @@
+package android.net;
+
+/**
+ * JVM shim of the Android NetworkInfo class.
+ */
+public class NetworkInfo {
+
+	public boolean isConnected() {
+		return false;
+	}
+
+	public int getType() {
+		return -1;
+	}
+
+	public String getExtraInfo() {
+		return null;
+	}
+}
@@ -0,0 +1,22 @@
+package android.net;
+
+/**
+ * JVM shim of the Android Uri class. Only holds on to the parsed string.
+ */
+public class Uri {
+
+	private final String uriString;
+
+	private Uri(String uriString) {
+		this.uriString = uriString;
+	}
+
+	public static Uri parse(String uriString) {
+		return new Uri(uriString);
+	}
+
+	@Override
+	public String toString() {
+		return uriString;
+	}
+}
@@ -0,0 +1,11 @@
+package android.net.wifi;
+
+/**
+ * JVM shim of the Android WifiManager class.
+ */
+public class WifiManager {
+
+	public static final String NETWORK_STATE_CHANGED_ACTION = "android.net.wifi.STATE_CHANGE";
+
+	public static final String EXTRA_NETWORK_INFO = "networkInfo";
+}
@@ -0,0 +1,11 @@
+package android.os;
+
+/**
+ * JVM shim of the Android Build class. Reports the JVM vendor and architecture as the device.
+ */
+public class Build {
+
+	public static final String MANUFACTURER = System.getProperty("java.vendor");
+
+	public static final String MODEL = System.getProperty("os.arch");
+}
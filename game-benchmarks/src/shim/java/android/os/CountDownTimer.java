@@ -0,0 +1,21 @@
+package android.os;
+
+/**
+ * JVM shim of the Android CountDownTimer class. The timer never fires.
+ */
+public abstract class CountDownTimer {
+
+	public CountDownTimer(long millisInFuture, long countDownInterval) {
+	}
+
+	public abstract void onTick(long millisUntilFinished);
+
+	public abstract void onFinish();
+
+	public final synchronized void cancel() {
+	}
+
+	public final synchronized CountDownTimer start() {
+		return this;
+	}
+}
@@ -0,0 +1,30 @@
+package android.os;
+
+/**
+ * JVM shim of the Android Handler class. There is no message loop, so a posted Runnable runs right away on the calling
+ * thread and a delayed one never runs.
+ */
+public class Handler {
+
+	private final Looper looper;
+
+	public Handler(Looper looper) {
+		this.looper = looper;
+	}
+
+	public final Looper getLooper() {
+		return looper;
+	}
+
+	public final boolean post(Runnable r) {
+		r.run();
+		return true;
+	}
+
+	public final boolean postDelayed(Runnable r, long delayMillis) {
+		return true;
+	}
+
+	public final void removeCallbacks(Runnable r) {
+	}
+}
@@ -0,0 +1,20 @@
+package android.os;
+
+/**
+ * JVM shim of the Android Looper class. There is a single main looper and no message loop.
+ */
+public class Looper {
+
+	private static final Looper MAIN_LOOPER = new Looper();
+
+	private Looper() {
+	}
+
+	public static Looper getMainLooper() {
+		return MAIN_LOOPER;
+	}
+
+	public static Looper myLooper() {
+		return null;
+	}
+}
@@ -0,0 +1,12 @@
+package android.os;
+
+/**
+ * JVM shim of the Android Process class. Thread priorities are ignored.
+ */
+public class Process {
+
+	public static final int THREAD_PRIORITY_AUDIO = -16;
+
+	public static void setThreadPriority(int tid, int priority) {
+	}
+}
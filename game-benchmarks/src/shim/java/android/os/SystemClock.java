@@ -0,0 +1,23 @@
+package android.os;
+
+/**
+ * JVM shim of the Android SystemClock class. The device does not sleep, so the uptime and the elapsed realtime are both
+ * System.nanoTime().
+ */
+public final class SystemClock {
+
+	private SystemClock() {
+	}
+
+	public static long uptimeMillis() {
+		return System.nanoTime() / 1000000;
+	}
+
+	public static long elapsedRealtime() {
+		return System.nanoTime() / 1000000;
+	}
+
+	public static long elapsedRealtimeNanos() {
+		return System.nanoTime();
+	}
+}
@@ -0,0 +1,47 @@
+package android.util;
+
+/**
+ * JVM shim of the Android Log class. Warnings and errors are printed to System.err, everything else is dropped so it
+ * does not skew the benchmark results.
+ */
+public final class Log {
+
+	private Log() {
+	}
+
+	public static int v(String tag, String msg) {
+		return 0;
+	}
+
+	public static int d(String tag, String msg) {
+		return 0;
+	}
+
+	public static int i(String tag, String msg) {
+		return 0;
+	}
+
+	public static int w(String tag, String msg) {
+		return w(tag, msg, null);
+	}
+
+	public static int w(String tag, String msg, Throwable tr) {
+		return print("W", tag, msg, tr);
+	}
+
+	public static int e(String tag, String msg) {
+		return e(tag, msg, null);
+	}
+
+	public static int e(String tag, String msg, Throwable tr) {
+		return print("E", tag, msg, tr);
+	}
+
+	private static int print(String level, String tag, String msg, Throwable tr) {
+		System.err.println(level + "/" + tag + ": " + msg);
+		if (tr != null) {
+			tr.printStackTrace();
+		}
+		return 0;
+	}
+}
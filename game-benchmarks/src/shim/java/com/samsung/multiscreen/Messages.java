@@ -0,0 +1,42 @@
+package com.samsung.multiscreen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.net.Uri;
+
+/**
+ * Creates the MSF Message objects used by the benchmarks. The Message, Channel and Client constructors are not public,
+ * so this class lives in the MSF package.
+ */
+public final class Messages {
+
+	// The channel and TV client the messages are received on.
+	private static final Channel channel = new Channel(null, Uri.parse("http://127.0.0.1:8001/api/v2/"),
+	        "com.samsung.multiscreen.casteroids");
+	private static final Client host = createHost(channel);
+
+	private Messages() {
+	}
+
+	/**
+	 * Returns a Message as it would be received from the TV application.
+	 *
+	 * @param event
+	 * @param data
+	 * @param payload
+	 * @return
+	 */
+	public static Message create(String event, Object data, byte[] payload) {
+		return new Message(channel, event, data, host, payload);
+	}
+
+	private static Client createHost(Channel channel) {
+		Map<String, Object> info = new HashMap<String, Object>();
+		info.put("id", "host");
+		info.put("isHost", Boolean.TRUE);
+		info.put("connectTime", Long.valueOf(0));
+		info.put("attributes", new HashMap<String, String>());
+		return Client.create(channel, info);
+	}
+}
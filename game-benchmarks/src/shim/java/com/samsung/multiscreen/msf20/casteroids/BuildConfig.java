@@ -0,0 +1,9 @@
+package com.samsung.multiscreen.msf20.casteroids;
+
+/**
+ * Stands in for the BuildConfig class generated by the Android build. The benchmarks measure a release build.
+ */
+public final class BuildConfig {
+
+	public static final boolean DEBUG = false;
+}
@@ -0,0 +1,151 @@
+package com.samsung.multiscreen.msf20.casteroids.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.samsung.multiscreen.Messages;
+import com.samsung.multiscreen.msf20.casteroids.model.Event;
+import com.samsung.multiscreen.msf20.casteroids.model.GameConnectivityManager;
+import com.samsung.multiscreen.msf20.connectivity.CountingMessageSink;
+import com.samsung.multiscreen.msf20.connectivity.MessageSink;
+import com.samsung.multiscreen.msf20.connectivity.RecordingMessageSink;
+
+/**
+ * Replays the recorded input log tilt-session.cinp and checks the messages sent for it.<br>
+ * <br>
+ * The log is a 2 second session written with the InputRecorder from a scripted input, with game rotation vector
+ * events at 50 Hz:
+ * <ul>
+ * <li>Held flat for 0.2 s, tilted to 25 degrees over 0.3 s and held there until 0.9 s.</li>
+ * <li>Tilted to -25 degrees until 1.2 s, held there until 1.6 s and back to flat at 1.8 s.</li>
+ * <li>Thrust pressed at 0.6 s and released at 1.4 s.</li>
+ * <li>Fire pressed at 0.8 s, released at 0.9 s and pressed again at 1.5 s.</li>
+ * <li>All the controls released at 2.0 s.</li>
+ * </ul>
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class InputReplayerTest {
+
+	// The recorded input log.
+	private static final String LOG = "tilt-session.cinp";
+
+	// The number of records in the log.
+	private static final long RECORD_COUNT = 107;
+
+	private GameConnectivityManager gameConnectivityManager;
+
+	@Before
+	public void setUp() {
+		gameConnectivityManager = GameConnectivityManager.getInstance(new Context());
+	}
+
+	@After
+	public void tearDown() {
+		gameConnectivityManager.setMessageSink(null);
+	}
+
+	@Test
+	public void replaySendsTheRecordedInputInOrder() throws IOException {
+		RecordingMessageSink messageSink = new RecordingMessageSink();
+		replay(messageSink, "json");
+
+		List<String> expected = Arrays.asList(
+		        "rotate {\"rotate\":\"right\",\"strength\":0}",
+		        "rotate {\"rotate\":\"right\",\"strength\":1}",
+		        "rotate {\"rotate\":\"right\",\"strength\":3}",
+		        "rotate {\"rotate\":\"right\",\"strength\":4}",
+		        "thrust on",
+		        "fire on",
+		        "fire off",
+		        "rotate {\"rotate\":\"right\",\"strength\":2}",
+		        "rotate {\"rotate\":\"none\",\"strength\":0}",
+		        "rotate {\"rotate\":\"left\",\"strength\":0}",
+		        "rotate {\"rotate\":\"left\",\"strength\":3}",
+		        "rotate {\"rotate\":\"left\",\"strength\":4}",
+		        "thrust off",
+		        "fire on",
+		        "rotate {\"rotate\":\"left\",\"strength\":1}",
+		        "rotate {\"rotate\":\"none\",\"strength\":0}",
+		        "fire off",
+		        "thrust off");
+		assertEquals(expected, messageSink.getMessages());
+	}
+
+	@Test
+	public void replaySendsTheSameCountsEveryTime() throws IOException {
+		for (int run = 0; run < 3; run++) {
+			CountingMessageSink messageSink = new CountingMessageSink();
+			replay(messageSink, "binary");
+
+			assertEquals(messageSink.toString(), 11, messageSink.getCount(Event.ROTATE.getName()));
+			assertEquals(messageSink.toString(), 3, messageSink.getCount(Event.THRUST.getName()));
+			assertEquals(messageSink.toString(), 4, messageSink.getCount(Event.FIRE.getName()));
+			assertEquals(messageSink.toString(), 18, messageSink.getTotalCount());
+		}
+	}
+
+	@Test
+	public void replayRejectsTooManySensorValues() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(InputRecorder.MAGIC);
+		out.writeByte(InputRecorder.VERSION);
+		out.writeByte(InputRecorder.RECORD_SENSOR);
+		out.writeInt(0);
+		out.writeByte(15);
+		out.writeByte(InputRecorder.MAX_SENSOR_VALUES + 1);
+		out.close();
+
+		InputScheduler inputScheduler = new InputScheduler(gameConnectivityManager, new Handler(
+		        Looper.getMainLooper()), InputScheduler.DEFAULT_TICK_MILLIS);
+		InputPipeline inputPipeline = new InputPipeline(inputScheduler, new OneEuroFilter());
+		InputReplayer inputReplayer = new InputReplayer(new ByteArrayInputStream(bytes.toByteArray()));
+		try {
+			inputReplayer.replay(inputPipeline, null);
+			fail("Replayed a sensor record with too many values");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Too many input log sensor values."));
+		}
+	}
+
+	/**
+	 * Replays the log in a session with the given wire format and no features, publishing the messages to the given
+	 * sink.
+	 * 
+	 * @param messageSink
+	 * @param format
+	 * @throws IOException
+	 */
+	private void replay(MessageSink messageSink, String format) throws IOException {
+		gameConnectivityManager.setMessageSink(messageSink);
+		gameConnectivityManager.onMessage(Messages.create(Event.JOIN_RESPONSE.getName(),
+		        "{\"response_code\":0,\"name\":\"Replay\",\"color\":\"red\",\"format\":\"" + format
+		                + "\",\"features\":[]}", null));
+
+		InputScheduler inputScheduler = new InputScheduler(gameConnectivityManager, new Handler(
+		        Looper.getMainLooper()), InputScheduler.DEFAULT_TICK_MILLIS);
+		InputPipeline inputPipeline = new InputPipeline(inputScheduler, new OneEuroFilter());
+		InputReplayer inputReplayer = new InputReplayer(getClass().getResourceAsStream(LOG));
+		inputReplayer.replay(inputPipeline, gameConnectivityManager, gameConnectivityManager);
+
+		assertEquals(RECORD_COUNT, inputReplayer.getRecordCount());
+	}
+}
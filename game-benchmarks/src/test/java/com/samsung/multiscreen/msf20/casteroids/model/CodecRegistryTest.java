@@ -0,0 +1,79 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import android.content.Context;
+
+import com.samsung.multiscreen.Messages;
+
+/**
+ * Checks that the game message listeners receive the decoded messages with the type of their MessageType, even if a
+ * Codec of another type was registered for it.
+ *
+ * @author Dan McCafferty
+ *
+ */
+public class CodecRegistryTest {
+
+	@Test
+	public void listenerReceivesTypedMessage() {
+		GameConnectivityManager gameConnectivityManager = GameConnectivityManager.getInstance(new Context());
+		RecordingListener listener = new RecordingListener();
+		gameConnectivityManager.registerMessageListener(listener, MessageType.PLAYER_OUT);
+		try {
+			gameConnectivityManager.onMessage(Messages.create(Event.PLAYER_OUT.getName(), "5", null));
+		} finally {
+			gameConnectivityManager.unregisterMessageListener(listener, MessageType.PLAYER_OUT);
+		}
+
+		assertEquals(1, listener.messages.size());
+		assertEquals(Integer.valueOf(5), listener.messages.get(0));
+		assertSame(MessageType.PLAYER_OUT, listener.messageType);
+	}
+
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void codecOfAnotherTypeDecodesToNull() {
+		CodecRegistry codecRegistry = new CodecRegistry();
+
+		// Only possible through a raw type.
+		codecRegistry.register((MessageType) MessageType.GAME_START, new Codec<String>() {
+			@Override
+			public String decode(String data, byte[] payload) {
+				return data;
+			}
+		});
+
+		Integer countDownSeconds = codecRegistry.decode(MessageType.GAME_START, "3", null);
+		assertNull(countDownSeconds);
+	}
+
+	@Test
+	public void defaultCodecDecodesItsType() {
+		CodecRegistry codecRegistry = new CodecRegistry();
+		assertEquals(Integer.valueOf(3), codecRegistry.decode(MessageType.GAME_START, "3", null));
+	}
+
+	/**
+	 * Records the messages it receives.
+	 */
+	private static class RecordingListener implements GameMessageListener<Integer> {
+
+		final List<Integer> messages = new ArrayList<Integer>();
+
+		MessageType<?> messageType;
+
+		@Override
+		public void onMessage(MessageType<? extends Integer> messageType, Integer message) {
+			this.messageType = messageType;
+			messages.add(message);
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.samsung.multiscreen.Messages;
+import com.samsung.multiscreen.msf20.casteroids.input.InputScheduler;
+import com.samsung.multiscreen.msf20.connectivity.RecordingMessageSink;
+
+/**
+ * Checks that the button edges leave the send thread in the order they were made, whether they were sent in an
+ * INPUT_BATCH or on their own, and that a rotation in an INPUT_BATCH is never undone by an older ROTATE.<br>
+ * <br>
+ * Each test first blocks the send thread in the message sink, queues the messages while it is blocked and then lets it
+ * publish them, so that the send lanes decide the order.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class InputLaneOrderTest {
+
+	// The longest time to wait for the send thread.
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	private GameConnectivityManager gameConnectivityManager;
+
+	private GatedMessageSink messageSink;
+
+	@Before
+	public void setUp() {
+		gameConnectivityManager = GameConnectivityManager.getInstance(new Context());
+		messageSink = new GatedMessageSink();
+		gameConnectivityManager.setMessageSink(messageSink);
+		gameConnectivityManager.onMessage(Messages.create(Event.JOIN_RESPONSE.getName(),
+		        "{\"response_code\":0,\"name\":\"Lanes\",\"color\":\"red\",\"format\":\"json\","
+		                + "\"features\":[\"input_batch\"]}", null));
+	}
+
+	@After
+	public void tearDown() {
+		messageSink.open();
+		gameConnectivityManager.setMessageSink(null);
+	}
+
+	@Test
+	public void batchedOnIsNotOvertakenByStandaloneOff() throws InterruptedException {
+		blockSendThread();
+
+		gameConnectivityManager.beginInputBatch();
+		try {
+			gameConnectivityManager.sendThrustMessage(Thrust.ON);
+			gameConnectivityManager.sendFireMessage(Fire.ON);
+		} finally {
+			gameConnectivityManager.endInputBatch();
+		}
+		gameConnectivityManager.sendFireMessage(Fire.OFF);
+
+		List<String> messages = publishQueuedMessages();
+		assertEquals(messages.toString(), 2, messages.size());
+		assertTrue(messages.toString(), messages.get(0).startsWith(Event.INPUT_BATCH.getName() + " "));
+		assertEquals(messages.toString(), "fire off", messages.get(1));
+	}
+
+	@Test
+	public void batchedRotationSupersedesQueuedRotate() throws InterruptedException {
+		blockSendThread();
+
+		gameConnectivityManager.sendRotateMessage(Rotate.LEFT, 3);
+		gameConnectivityManager.beginInputBatch();
+		try {
+			gameConnectivityManager.sendFireMessage(Fire.ON);
+			gameConnectivityManager.sendRotateMessage(Rotate.RIGHT, 5);
+		} finally {
+			gameConnectivityManager.endInputBatch();
+		}
+
+		// The older LEFT rotation must not be published after the batch.
+		List<String> messages = publishQueuedMessages();
+		assertEquals(messages.toString(), 1, messages.size());
+		assertTrue(messages.toString(), messages.get(0).startsWith(Event.INPUT_BATCH.getName() + " "));
+	}
+
+	@Test
+	public void rotateAfterBatchIsPublished() throws InterruptedException {
+		blockSendThread();
+
+		gameConnectivityManager.beginInputBatch();
+		try {
+			gameConnectivityManager.sendFireMessage(Fire.ON);
+			gameConnectivityManager.sendRotateMessage(Rotate.RIGHT, 5);
+		} finally {
+			gameConnectivityManager.endInputBatch();
+		}
+		gameConnectivityManager.sendRotateMessage(Rotate.LEFT, 3);
+
+		List<String> messages = publishQueuedMessages();
+		assertEquals(messages.toString(), 2, messages.size());
+		assertTrue(messages.toString(), messages.get(0).startsWith(Event.INPUT_BATCH.getName() + " "));
+		assertTrue(messages.toString(), messages.get(1).startsWith(Event.ROTATE.getName() + " "));
+	}
+
+	@Test
+	public void schedulerButtonEdgesKeepTheirOrder() throws InterruptedException {
+		InputScheduler inputScheduler = new InputScheduler(gameConnectivityManager, new Handler(
+		        Looper.getMainLooper()), InputScheduler.DEFAULT_TICK_MILLIS);
+		blockSendThread();
+
+		// The pending rotation goes out in one INPUT_BATCH with the first edge.
+		inputScheduler.setRotate(Rotate.LEFT, 3);
+		inputScheduler.setFire(Fire.ON);
+		inputScheduler.setThrust(Thrust.ON);
+		inputScheduler.setFire(Fire.OFF);
+		inputScheduler.setThrust(Thrust.OFF);
+
+		List<String> messages = publishQueuedMessages();
+		assertEquals(messages.toString(), 4, messages.size());
+		assertEquals(messages.toString(), Event.INPUT_BATCH.getName() + " "
+		        + MessageDataHelper.encodeInputBatchData(createBatch(Fire.ON, Rotate.LEFT, 3)), messages.get(0));
+		assertEquals(messages.toString(), Arrays.asList("thrust on", "fire off", "thrust off"),
+		        messages.subList(1, messages.size()));
+	}
+
+	@Test
+	public void schedulerEdgeSupersedesQueuedTickRotation() throws InterruptedException {
+		InputScheduler inputScheduler = new InputScheduler(gameConnectivityManager, new Handler(
+		        Looper.getMainLooper()), InputScheduler.DEFAULT_TICK_MILLIS);
+		blockSendThread();
+
+		// A tick rotation queued before the edge is superseded by the rotation batched with the edge.
+		inputScheduler.setRotate(Rotate.LEFT, 3);
+		inputScheduler.flush();
+		inputScheduler.setRotate(Rotate.RIGHT, 5);
+		inputScheduler.setThrust(Thrust.ON);
+
+		List<String> messages = publishQueuedMessages();
+		assertEquals(messages.toString(), Collections.singletonList(Event.INPUT_BATCH.getName() + " "
+		        + MessageDataHelper.encodeInputBatchData(createBatch(Thrust.ON, Rotate.RIGHT, 5))), messages);
+	}
+
+	/**
+	 * Sends a message and waits until the send thread is blocked publishing it.
+	 * 
+	 * @throws InterruptedException
+	 */
+	private void blockSendThread() throws InterruptedException {
+		gameConnectivityManager.sendRotateMessage(Rotate.NONE, 0);
+		assertTrue("The send thread did not publish.", messageSink.awaitBlocked());
+		messageSink.reset();
+	}
+
+	/**
+	 * Lets the send thread publish the queued messages and returns them in publish order.
+	 * 
+	 * @return
+	 */
+	private List<String> publishQueuedMessages() {
+		messageSink.open();
+		assertTrue("The send queue did not empty.", gameConnectivityManager.awaitSendQueueEmpty(TIMEOUT_MILLIS));
+		return messageSink.getMessages();
+	}
+
+	/**
+	 * Returns a batch of a button edge followed by a rotation.
+	 * 
+	 * @param edge
+	 *            A Fire or Thrust value.
+	 * @param rotate
+	 * @param strength
+	 * @return
+	 */
+	private static InputBatch createBatch(Enum<?> edge, Rotate rotate, int strength) {
+		InputBatch inputBatch = new InputBatch();
+		if (edge instanceof Fire) {
+			inputBatch.addFire((Fire) edge);
+		} else {
+			inputBatch.addThrust((Thrust) edge);
+		}
+		inputBatch.addRotate(rotate, strength);
+		return inputBatch;
+	}
+
+	/**
+	 * A RecordingMessageSink that blocks the send thread in its first publish call until opened. The blocking message
+	 * is not recorded.
+	 */
+	private static class GatedMessageSink extends RecordingMessageSink {
+
+		private final CountDownLatch blocked = new CountDownLatch(1);
+
+		private final CountDownLatch opened = new CountDownLatch(1);
+
+		@Override
+		public void publish(String event, String data, String target, byte[] payload) {
+			if (blocked.getCount() > 0) {
+				blocked.countDown();
+				try {
+					opened.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return;
+			}
+			super.publish(event, data, target, payload);
+		}
+
+		boolean awaitBlocked() throws InterruptedException {
+			return blocked.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		}
+
+		void open() {
+			opened.countDown();
+		}
+	}
+}
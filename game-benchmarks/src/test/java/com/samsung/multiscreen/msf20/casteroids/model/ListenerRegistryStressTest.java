@@ -0,0 +1,324 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.Context;
+
+import com.samsung.multiscreen.Message;
+import com.samsung.multiscreen.Messages;
+import com.samsung.multiscreen.msf20.connectivity.MessageListener;
+
+/**
+ * Registers and unregisters listeners from several threads while other threads dispatch messages, and checks that:
+ * <ul>
+ * <li>No listener is called once unregistering it returned.</li>
+ * <li>A listener that stays registered sees every message.</li>
+ * </ul>
+ * Both the ConnectivityManager message listeners and the GameConnectivityManager game message listeners on the INLINE
+ * and BACKGROUND targets are covered. Listeners on different targets that unregister each other from their callbacks
+ * must not deadlock.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class ListenerRegistryStressTest {
+
+	// The event of the raw messages. No codec or game state handles it.
+	private static final String RAW_EVENT = "stress_test";
+
+	// The number of threads dispatching messages and the number of messages each dispatches.
+	private static final int DISPATCH_THREADS = 2;
+	private static final int MESSAGES_PER_THREAD = 20000;
+
+	// The number of threads registering and unregistering listeners.
+	private static final int CHURN_THREADS = 4;
+
+	// The number of listeners that stay registered.
+	private static final int STEADY_LISTENERS = 3;
+
+	// The longest time to wait for the BACKGROUND deliveries.
+	private static final long TIMEOUT_MILLIS = 10000;
+
+	private GameConnectivityManager gameConnectivityManager;
+
+	// The number of callbacks to a listener after unregistering it returned.
+	private final AtomicInteger lateCallbacks = new AtomicInteger();
+
+	// The number of callbacks to the listeners that were registered and unregistered.
+	private final AtomicLong churnCallbacks = new AtomicLong();
+
+	// The number of times a listener was registered and unregistered.
+	private final AtomicLong churnCount = new AtomicLong();
+
+	@Before
+	public void setUp() {
+		gameConnectivityManager = GameConnectivityManager.getInstance(new Context());
+	}
+
+	@After
+	public void tearDown() {
+		assertEquals("Callbacks after unregister returned", 0, lateCallbacks.get());
+	}
+
+	@Test
+	public void messageListeners() throws InterruptedException {
+		List<CountingListener> steadyListeners = new ArrayList<CountingListener>();
+		for (int i = 0; i < STEADY_LISTENERS; i++) {
+			CountingListener listener = new CountingListener(false);
+			gameConnectivityManager.registerMessageListener(listener, RAW_EVENT);
+			steadyListeners.add(listener);
+		}
+
+		final Message message = Messages.create(RAW_EVENT, "data", null);
+		run(new Runnable() {
+			@Override
+			public void run() {
+				gameConnectivityManager.onMessage(message);
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				CountingListener listener = new CountingListener(true);
+				gameConnectivityManager.registerMessageListener(listener, RAW_EVENT);
+				Thread.yield();
+				gameConnectivityManager.unregisterMessageListener(listener, RAW_EVENT);
+				listener.unregistered = true;
+			}
+		});
+
+		for (CountingListener listener : steadyListeners) {
+			gameConnectivityManager.unregisterMessageListener(listener, RAW_EVENT);
+			assertEquals(DISPATCH_THREADS * MESSAGES_PER_THREAD, listener.count.get());
+		}
+		assertTrue("No churned listener was called", churnCallbacks.get() > 0);
+	}
+
+	@Test
+	public void inlineGameMessageListeners() throws InterruptedException {
+		runGameMessageListeners(DeliveryTarget.INLINE);
+	}
+
+	@Test
+	public void backgroundGameMessageListeners() throws InterruptedException {
+		runGameMessageListeners(DeliveryTarget.BACKGROUND);
+	}
+
+	@Test
+	public void listenerUnregisteredByAnEarlierListenerIsSkipped() {
+		final CountingListener second = new CountingListener(false);
+		MessageListener first = new MessageListener() {
+			@Override
+			public void onMessage(String event, String data, byte[] payload) {
+				gameConnectivityManager.unregisterMessageListener(second, RAW_EVENT);
+				second.unregistered = true;
+			}
+		};
+		gameConnectivityManager.registerMessageListener(first, RAW_EVENT);
+		gameConnectivityManager.registerMessageListener(second, RAW_EVENT);
+
+		gameConnectivityManager.onMessage(Messages.create(RAW_EVENT, "data", null));
+		gameConnectivityManager.unregisterMessageListener(first, RAW_EVENT);
+
+		assertEquals(0, second.count.get());
+	}
+
+	@Test
+	public void listenersOnDifferentTargetsUnregisterEachOther() throws InterruptedException {
+		// The BACKGROUND listener gets the PLAYER_OUT message and the INLINE listener the GAME_START message, so that
+		// both deliveries are in their callbacks at the same time.
+		final List<MessageType<Integer>> messageTypes = Arrays.asList(MessageType.GAME_START, MessageType.PLAYER_OUT);
+		final CountDownLatch bothCalled = new CountDownLatch(2);
+		final List<GameMessageListener<Integer>> listeners = new ArrayList<GameMessageListener<Integer>>();
+		for (int i = 0; i < messageTypes.size(); i++) {
+			final int other = 1 - i;
+			listeners.add(new GameMessageListener<Integer>() {
+				@Override
+				public void onMessage(MessageType<? extends Integer> messageType, Integer message) {
+					// Wait until the other delivery is in its callback too, then unregister its listener.
+					bothCalled.countDown();
+					try {
+						bothCalled.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					gameConnectivityManager.unregisterMessageListener(listeners.get(other), messageTypes.get(other));
+				}
+			});
+		}
+		gameConnectivityManager.registerMessageListener(listeners.get(0), DeliveryTarget.INLINE, messageTypes.get(0));
+		gameConnectivityManager.registerMessageListener(listeners.get(1), DeliveryTarget.BACKGROUND,
+		        messageTypes.get(1));
+
+		// The INLINE delivery runs on the dispatch thread and the BACKGROUND delivery on its executor.
+		Thread dispatchThread = new Thread("Dispatch") {
+			@Override
+			public void run() {
+				gameConnectivityManager.onMessage(Messages.create(Event.PLAYER_OUT.getName(), "1", null));
+				gameConnectivityManager.onMessage(Messages.create(Event.GAME_START.getName(), "3", null));
+			}
+		};
+		dispatchThread.setDaemon(true);
+		dispatchThread.start();
+		dispatchThread.join(TIMEOUT_MILLIS / 2);
+
+		assertFalse("The deliveries deadlocked", dispatchThread.isAlive());
+		assertEquals(0, bothCalled.getCount());
+	}
+
+	private void runGameMessageListeners(final DeliveryTarget target) throws InterruptedException {
+		List<CountingListener> steadyListeners = new ArrayList<CountingListener>();
+		for (int i = 0; i < STEADY_LISTENERS; i++) {
+			CountingListener listener = new CountingListener(false);
+			gameConnectivityManager.registerMessageListener(listener, target, MessageType.PLAYER_OUT);
+			steadyListeners.add(listener);
+		}
+
+		final Message message = Messages.create(Event.PLAYER_OUT.getName(), "1", null);
+		run(new Runnable() {
+			@Override
+			public void run() {
+				gameConnectivityManager.onMessage(message);
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				CountingListener listener = new CountingListener(true);
+				gameConnectivityManager.registerMessageListener(listener, target, MessageType.PLAYER_OUT);
+				Thread.yield();
+				gameConnectivityManager.unregisterMessageListener(listener, MessageType.PLAYER_OUT);
+				listener.unregistered = true;
+			}
+		});
+
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		for (CountingListener listener : steadyListeners) {
+			while ((listener.count.get() < DISPATCH_THREADS * MESSAGES_PER_THREAD)
+			        && (System.currentTimeMillis() < deadline)) {
+				Thread.sleep(10);
+			}
+			gameConnectivityManager.unregisterMessageListener(listener, MessageType.PLAYER_OUT);
+			assertEquals(DISPATCH_THREADS * MESSAGES_PER_THREAD, listener.count.get());
+		}
+		assertTrue("No churned listener was called", churnCallbacks.get() > 0);
+	}
+
+	/**
+	 * Runs the dispatch threads to completion while the churn threads run, then stops the churn threads.
+	 * 
+	 * @param dispatch
+	 *            Dispatches one message.
+	 * @param churn
+	 *            Registers and unregisters one listener.
+	 * @throws InterruptedException
+	 */
+	private void run(final Runnable dispatch, final Runnable churn) throws InterruptedException {
+		final AtomicBoolean stop = new AtomicBoolean(false);
+		final AtomicInteger failures = new AtomicInteger();
+
+		List<Thread> churnThreads = new ArrayList<Thread>();
+		for (int i = 0; i < CHURN_THREADS; i++) {
+			churnThreads.add(new Thread("Churn-" + i) {
+				@Override
+				public void run() {
+					try {
+						while (!stop.get()) {
+							churn.run();
+							churnCount.incrementAndGet();
+						}
+					} catch (RuntimeException e) {
+						failures.incrementAndGet();
+						throw e;
+					}
+				}
+			});
+		}
+
+		List<Thread> dispatchThreads = new ArrayList<Thread>();
+		for (int i = 0; i < DISPATCH_THREADS; i++) {
+			dispatchThreads.add(new Thread("Dispatch-" + i) {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < MESSAGES_PER_THREAD; j++) {
+							dispatch.run();
+						}
+					} catch (RuntimeException e) {
+						failures.incrementAndGet();
+						throw e;
+					}
+				}
+			});
+		}
+
+		for (Thread thread : churnThreads) {
+			thread.start();
+		}
+		for (Thread thread : dispatchThreads) {
+			thread.start();
+		}
+		for (Thread thread : dispatchThreads) {
+			thread.join();
+		}
+		stop.set(true);
+		for (Thread thread : churnThreads) {
+			thread.join();
+		}
+
+		assertEquals("Failed threads", 0, failures.get());
+		assertTrue("No listener was registered and unregistered", churnCount.get() > 0);
+		assertFalse("Callbacks after unregister returned: " + lateCallbacks.get(), lateCallbacks.get() > 0);
+	}
+
+	/**
+	 * Counts its callbacks, and the callbacks after it was marked as unregistered.
+	 */
+	private class CountingListener implements MessageListener, GameMessageListener<Object> {
+
+		// Whether or not the listener is registered and unregistered by a churn thread.
+		private final boolean churned;
+
+		// Set right after unregistering the listener returned.
+		volatile boolean unregistered = false;
+
+		final AtomicInteger count = new AtomicInteger();
+
+		CountingListener(boolean churned) {
+			this.churned = churned;
+		}
+
+		@Override
+		public void onMessage(String event, String data, byte[] payload) {
+			onCallback();
+		}
+
+		@Override
+		public void onMessage(MessageType<?> messageType, Object message) {
+			onCallback();
+		}
+
+		private void onCallback() {
+			if (unregistered) {
+				lateCallbacks.incrementAndGet();
+			}
+			count.incrementAndGet();
+			if (churned) {
+				churnCallbacks.incrementAndGet();
+			}
+		}
+	}
+}
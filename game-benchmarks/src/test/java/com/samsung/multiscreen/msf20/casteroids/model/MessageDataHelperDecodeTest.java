@@ -0,0 +1,69 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks how the SLOT_UPDATE and GAME_OVER message data decoders handle bad entries and malformed data.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class MessageDataHelperDecodeTest {
+
+	@Test
+	public void decodesSlots() {
+		List<SlotData> slots = MessageDataHelper
+		        .decodeSlotUpdateSlotData("[{\"available\":false,\"color\":\"red\"},{\"available\":true,\"color\":\"blue\"}]");
+		assertEquals(2, slots.size());
+	}
+
+	@Test
+	public void skipsSlotsWithMissingOrUnknownValues() {
+		List<SlotData> slots = MessageDataHelper.decodeSlotUpdateSlotData("[" //
+		        + "{\"available\":true,\"color\":\"red\"}," //
+		        + "{\"color\":\"blue\"}," // Missing available.
+		        + "{\"available\":true}," // Missing color.
+		        + "{\"available\":\"maybe\",\"color\":\"blue\"}," // Unknown available.
+		        + "{\"available\":true,\"color\":\"magenta\"}," // Unknown color.
+		        + "{\"available\":true,\"color\":7}," // Color is not a string.
+		        + "{\"available\":false,\"color\":\"blue\",\"extra\":[1,2]}" //
+		        + "]");
+		assertEquals(slots.toString(), 2, slots.size());
+		assertTrue(slots.get(0).isAvailable());
+		assertFalse(slots.get(1).isAvailable());
+	}
+
+	@Test
+	public void rejectsMalformedSlotData() {
+		assertTrue(MessageDataHelper.decodeSlotUpdateSlotData(
+		        "[{\"available\":true \"color\":\"red\"}]").isEmpty());
+		assertTrue(MessageDataHelper.decodeSlotUpdateSlotData(
+		        "[{\"available\":true,\"color\":\"red\"},]").isEmpty());
+		assertTrue(MessageDataHelper.decodeSlotUpdateSlotData(
+		        "[{\"available\":true,\"color\":\"red\"}] trailing").isEmpty());
+	}
+
+	@Test
+	public void skipsIncompleteScores() {
+		List<ScoreData> scores = MessageDataHelper.decodeGameOverScoreData("[" //
+		        + "{\"name\":\"Buck\",\"color\":\"red\",\"score\":9700}," //
+		        + "{\"name\":\"Kirk\",\"color\":\"blue\"}," // Missing score.
+		        + "{\"name\":\"Picard\",\"color\":\"blue\",\"score\":3370}" //
+		        + "]");
+		assertEquals(scores.toString(), 2, scores.size());
+		assertEquals(9700, scores.get(0).getScore());
+		assertEquals(3370, scores.get(1).getScore());
+	}
+
+	@Test
+	public void rejectsMalformedScoreData() {
+		assertTrue(MessageDataHelper.decodeGameOverScoreData(
+		        "[{\"name\":\"Buck\",\"color\":\"red\",\"score\":9700}]]").isEmpty());
+	}
+}
@@ -0,0 +1,143 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+/**
+ * Checks that the MessageJsonReader reads valid JSON and rejects malformed JSON.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class MessageJsonReaderTest {
+
+	@Test
+	public void readsObjectsAndArrays() throws JSONException {
+		MessageJsonReader reader = new MessageJsonReader(" { \"a\" : [ 1 , 2 ] , \"b\" : { } , \"c\" : [ ] } ");
+		reader.beginObject();
+		assertTrue(reader.hasNext());
+		assertEquals("a", reader.nextName());
+		reader.beginArray();
+		assertTrue(reader.hasNext());
+		assertEquals(1, reader.nextInt());
+		assertTrue(reader.hasNext());
+		assertEquals(2, reader.nextInt());
+		assertFalse(reader.hasNext());
+		reader.endArray();
+		assertTrue(reader.hasNext());
+		assertEquals("b", reader.nextName());
+		reader.skipValue();
+		assertTrue(reader.hasNext());
+		assertEquals("c", reader.nextName());
+		reader.skipValue();
+		assertFalse(reader.hasNext());
+		reader.endObject();
+		reader.endDocument();
+	}
+
+	@Test
+	public void hasNextCanBeCalledTwice() throws JSONException {
+		MessageJsonReader reader = new MessageJsonReader("[1,2]");
+		reader.beginArray();
+		assertTrue(reader.hasNext());
+		assertTrue(reader.hasNext());
+		assertEquals(1, reader.nextInt());
+		assertTrue(reader.hasNext());
+		assertTrue(reader.hasNext());
+		assertEquals(2, reader.nextInt());
+		assertFalse(reader.hasNext());
+		assertFalse(reader.hasNext());
+		reader.endArray();
+		reader.endDocument();
+	}
+
+	@Test
+	public void rejectsMissingCommaBetweenMembers() {
+		assertRejected("{\"a\":1 \"b\":2}");
+	}
+
+	@Test
+	public void rejectsMissingCommaBetweenElements() {
+		assertRejected("[1 2]");
+		assertRejected("[{} {}]");
+	}
+
+	@Test
+	public void rejectsLeadingCommas() {
+		assertRejected("[,1]");
+		assertRejected("{,\"a\":1}");
+	}
+
+	@Test
+	public void rejectsDoubledCommas() {
+		assertRejected("[1,,2]");
+		assertRejected("{\"a\":1,,\"b\":2}");
+	}
+
+	@Test
+	public void rejectsTrailingCommas() {
+		assertRejected("[1,]");
+		assertRejected("{\"a\":1,}");
+	}
+
+	@Test
+	public void rejectsTrailingContent() {
+		assertRejected("[1] x");
+		assertRejected("[1][2]");
+		assertRejected("{\"a\":1}}");
+	}
+
+	@Test
+	public void rejectsMissingColon() {
+		assertRejected("{\"a\" 1}");
+	}
+
+	@Test
+	public void rejectsUnterminatedInput() {
+		assertRejected("[1");
+		assertRejected("{\"a\":\"b");
+	}
+
+	@Test
+	public void optValuesSkipOtherTypes() throws JSONException {
+		MessageJsonReader reader = new MessageJsonReader("[\"x\",true,\"false\",5,{\"a\":[1]},\"s\"]");
+		reader.beginArray();
+		assertTrue(reader.hasNext());
+		assertNull(reader.optBoolean());
+		assertTrue(reader.hasNext());
+		assertEquals(Boolean.TRUE, reader.optBoolean());
+		assertTrue(reader.hasNext());
+		assertEquals(Boolean.FALSE, reader.optBoolean());
+		assertTrue(reader.hasNext());
+		assertNull(reader.optString());
+		assertTrue(reader.hasNext());
+		assertNull(reader.optString());
+		assertTrue(reader.hasNext());
+		assertEquals("s", reader.optString());
+		assertFalse(reader.hasNext());
+		reader.endArray();
+		reader.endDocument();
+	}
+
+	/**
+	 * Reads the given JSON completely, skipping every value, and fails unless a JSONException is thrown.
+	 * 
+	 * @param json
+	 */
+	private static void assertRejected(String json) {
+		try {
+			MessageJsonReader reader = new MessageJsonReader(json);
+			reader.skipValue();
+			reader.endDocument();
+			fail("Accepted malformed JSON: " + json);
+		} catch (JSONException e) {
+			// Expected.
+		}
+	}
+}
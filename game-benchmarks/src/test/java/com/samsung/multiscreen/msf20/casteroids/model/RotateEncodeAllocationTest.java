@@ -0,0 +1,111 @@
+package com.samsung.multiscreen.msf20.casteroids.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that encoding the ROTATE message data does not allocate once warmed up.<br>
+ * <br>
+ * The bytes allocated by the test thread are read with the ThreadMXBean of the JVM before and after the measured loop.
+ * The cost of reading them is measured with an empty loop and taken off. The JVM itself can allocate on the thread
+ * now and then, for example when the JIT replaces the compiled loop, so the loop is measured a few times and the
+ * smallest count is used. Code that allocates per call allocates in every measurement.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class RotateEncodeAllocationTest {
+
+	// The number of calls used to warm up the code, enough for the JIT to compile it.
+	private static final int WARMUP_ITERATIONS = 200000;
+
+	// The number of measured calls.
+	private static final int ITERATIONS = 100000;
+
+	// The number of times the calls are measured.
+	private static final int MEASUREMENTS = 5;
+
+	private com.sun.management.ThreadMXBean threadMXBean;
+
+	private final Rotate[] rotates = Rotate.values();
+
+	// Keeps the results alive so that the calls are not optimized away.
+	private int sink = 0;
+
+	@Before
+	public void setUp() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	@Test
+	public void encodeRotateDataDoesNotAllocate() {
+		encodeRotateData(WARMUP_ITERATIONS);
+
+		long allocated = Long.MAX_VALUE;
+		for (int i = 0; i < MEASUREMENTS; i++) {
+			allocated = Math.min(allocated, measureEncodeRotateData() - measureEmpty());
+		}
+		assertEquals("Bytes allocated by " + ITERATIONS + " encodeRotateData() calls", 0, allocated);
+	}
+
+	@Test
+	public void writeRotateObjectDoesNotAllocate() {
+		writeRotateObject(WARMUP_ITERATIONS);
+
+		long allocated = Long.MAX_VALUE;
+		for (int i = 0; i < MEASUREMENTS; i++) {
+			allocated = Math.min(allocated, measureWriteRotateObject() - measureEmpty());
+		}
+		assertEquals("Bytes allocated by writing " + ITERATIONS + " ROTATE objects", 0, allocated);
+	}
+
+	private long measureEmpty() {
+		long start = threadMXBean.getCurrentThreadAllocatedBytes();
+		return threadMXBean.getCurrentThreadAllocatedBytes() - start;
+	}
+
+	private long measureEncodeRotateData() {
+		long start = threadMXBean.getCurrentThreadAllocatedBytes();
+		encodeRotateData(ITERATIONS);
+		return threadMXBean.getCurrentThreadAllocatedBytes() - start;
+	}
+
+	private long measureWriteRotateObject() {
+		long start = threadMXBean.getCurrentThreadAllocatedBytes();
+		writeRotateObject(ITERATIONS);
+		return threadMXBean.getCurrentThreadAllocatedBytes() - start;
+	}
+
+	private void encodeRotateData(int iterations) {
+		for (int i = 0; i < iterations; i++) {
+			Rotate rotate = rotates[i % rotates.length];
+			int strength = i % (MessageDataHelper.MAX_ROTATE_STRENGTH + 1);
+			sink += MessageDataHelper.encodeRotateData(rotate, strength).length();
+		}
+	}
+
+	/**
+	 * Writes ROTATE objects with the thread's MessageJsonWriter, the way the uncached strengths and the INPUT_BATCH
+	 * elements are written, without creating the String.
+	 * 
+	 * @param iterations
+	 */
+	private void writeRotateObject(int iterations) {
+		for (int i = 0; i < iterations; i++) {
+			MessageJsonWriter writer = MessageJsonWriter.get();
+			writer.beginObject();
+			writer.name("rotate").value(rotates[i % rotates.length].getName());
+			writer.name("strength").value(i);
+			writer.endObject();
+			sink += writer.length();
+		}
+	}
+}
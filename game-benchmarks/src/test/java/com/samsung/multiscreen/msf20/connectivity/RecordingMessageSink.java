@@ -0,0 +1,53 @@
+package com.samsung.multiscreen.msf20.connectivity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A MessageSink that keeps the published messages in order, as "event" or "event data" strings.
+ * 
+ * @author Dan McCafferty
+ * 
+ */
+public class RecordingMessageSink implements MessageSink {
+
+	// The published messages in publish order. Guarded by this object.
+	private final List<String> messages = new ArrayList<String>();
+
+	@Override
+	public synchronized void publish(String event, String data, String target, byte[] payload) {
+		messages.add((data != null) ? (event + " " + data) : event);
+	}
+
+	/**
+	 * Returns a copy of the published messages in publish order.
+	 * 
+	 * @return
+	 */
+	public synchronized List<String> getMessages() {
+		return new ArrayList<String>(messages);
+	}
+
+	/**
+	 * Returns the published messages of the given event in publish order.
+	 * 
+	 * @param event
+	 * @return
+	 */
+	public synchronized List<String> getMessages(String event) {
+		List<String> eventMessages = new ArrayList<String>();
+		for (String message : messages) {
+			if (message.equals(event) || message.startsWith(event + " ")) {
+				eventMessages.add(message);
+			}
+		}
+		return eventMessages;
+	}
+
+	/**
+	 * Forgets the published messages.
+	 */
+	public synchronized void reset() {
+		messages.clear();
+	}
+}
@@ -46,7 +46,10 @@ $(ConnectivityManager = function(){
             if (logToConsole) {
                 console.log('disconnect');
             }
-            GameManager.removePlayer(client.id);
+            delete lastControllerState[client.id];
+
+            // Hold the player's slot in case the client reconnects and resumes it.
+            GameManager.holdPlayer(client.id);
             sendSlotUpdate();
         });
 
@@ -65,7 +68,10 @@ $(ConnectivityManager = function(){
             if (logToConsole) {
                 console.log('clientDisconnect');
             }
-            GameManager.removePlayer(client.id);
+            delete lastControllerState[client.id];
+
+            // Hold the player's slot in case the client reconnects and resumes it.
+            GameManager.holdPlayer(client.id);
             sendSlotUpdate();
         });
 
@@ -77,13 +83,20 @@ $(ConnectivityManager = function(){
             // Parse the JSON data received from the client.
             var joinRequestData = JSON.parse(msg);
 
-            // Attempt to add the player to the game.
-            var responseCode = GameManager.addPlayer(from.id, joinRequestData.name, joinRequestData.color);
+            // The client starts a new controller state sequence for each session.
+            delete lastControllerState[from.id];
 
-            // Create the join response data
+            // Attempt to add the player to the game, or to give a reconnected client its slot back.
+            var responseCode = GameManager.addPlayer(from.id, joinRequestData.name, joinRequestData.color,
+                joinRequestData.resume_token);
+
+            // Create the join response data. Pick the wire format and features for the session from the ones the
+            // client advertised. Older clients do not advertise any, so they get JSON and no features.
             var joinResponse = { name : joinRequestData.name,
                 color : joinRequestData.color,
-                response_code : responseCode };
+                response_code : responseCode,
+                format : pickWireFormat(joinRequestData.formats),
+                features : pickFeatures(joinRequestData.features) };
 
             // Send a join_response back to the client
             if (logToConsole) {
@@ -101,34 +114,92 @@ $(ConnectivityManager = function(){
             if (logToConsole) {
                 console.log('quit. from=' + (from.id || 'Unknown'));
             }
+            delete lastControllerState[from.id];
             GameManager.removePlayer(from.id);
             sendSlotUpdate();
         });
 
-        channel.on('rotate', function(msg, from){
+        channel.on('rotate', function(msg, from, payload){
             if (logToConsole) {
                 console.log('rotate. from=' + (from.id || 'Unknown'));
             }
 
-            // Parse the JSON data received from the client.
-            var rotateData = JSON.parse(msg);
+            // Decode the binary payload if the client sent one, otherwise parse the JSON data received from the client.
+            var rotateData = payload ? decodeRotatePayload(payload) : JSON.parse(msg);
 
             // Rotate the player
-            GameManager.onRotate(from.id, rotateData.rotate, rotateData.strength);
+            if (rotateData) {
+                GameManager.onRotate(from.id, rotateData.rotate, rotateData.strength);
+            }
         });
 
-        channel.on('thrust', function(msg, from){
+        channel.on('thrust', function(msg, from, payload){
             if (logToConsole) {
                 console.log('thrust. from=' + (from.id || 'Unknown'));
             }
-            GameManager.onThrust(from.id, msg == 'on');
+            GameManager.onThrust(from.id, payload ? decodeOnOffPayload(payload) : (msg == 'on'));
         });
 
-        channel.on('fire', function(msg, from){
+        channel.on('fire', function(msg, from, payload){
             if (logToConsole) {
                 console.log('fire. from=' + (from.id || 'Unknown'));
             }
-            GameManager.onFire(from.id, msg == 'on');
+            GameManager.onFire(from.id, payload ? decodeOnOffPayload(payload) : (msg == 'on'));
+        });
+
+        channel.on('input_batch', function(msg, from, payload){
+            if (logToConsole) {
+                console.log('input_batch. from=' + (from.id || 'Unknown'));
+            }
+
+            // Decode the binary payload if the client sent one, otherwise parse the JSON data received from the client.
+            var batch = payload ? decodeInputBatchPayload(payload) : JSON.parse(msg);
+
+            // Apply the changes in the order the client made them.
+            if (batch instanceof Array) {
+                for (var i = 0; i < batch.length; i++) {
+                    var input = batch[i];
+                    if (input.event == 'rotate') {
+                        GameManager.onRotate(from.id, input.rotate, input.strength);
+                    } else if (input.event == 'thrust') {
+                        GameManager.onThrust(from.id, input.thrust == 'on');
+                    } else if (input.event == 'fire') {
+                        GameManager.onFire(from.id, input.fire == 'on');
+                    }
+                }
+            }
+        });
+
+        channel.on('controller_state', function(msg, from, payload){
+            if (logToConsole) {
+                console.log('controller_state. from=' + (from.id || 'Unknown'));
+            }
+
+            // Decode the binary payload if the client sent one, otherwise parse the JSON data received from the client.
+            var state = payload ? decodeControllerStatePayload(payload) : JSON.parse(msg);
+
+            // Each snapshot carries the full controller state, so a late or repeated snapshot can simply be dropped.
+            var lastState = lastControllerState[from.id];
+            if (!state || (lastState && state.seq <= lastState.seq)) {
+                return;
+            }
+            lastControllerState[from.id] = state;
+
+            // Apply the state. The buttons are only applied when they change, since pressing a button starts a thrust
+            // burst or fires a bullet.
+            GameManager.onRotate(from.id, state.rotate, state.strength);
+            if (!lastState || state.thrust != lastState.thrust) {
+                GameManager.onThrust(from.id, state.thrust == 'on');
+            }
+            if (!lastState || state.fire != lastState.fire) {
+                GameManager.onFire(from.id, state.fire == 'on');
+            }
+        });
+
+        channel.on('ping', function(msg, from) {
+            // Answer the heartbeat right away with the data of the ping, the client measures the round trip from it.
+            // The TV time lets the client synchronize its clock to the performance.now() clock of the game.
+            channel.publish('pong', msg + ',' + performance.now(), from.id);
         });
 
         channel.on('config_update', function(msg, from) {
@@ -145,6 +216,99 @@ $(ConnectivityManager = function(){
 
     });
 
+    // The wire formats supported by the TV application in order of preference.
+    var SUPPORTED_WIRE_FORMATS = ['binary', 'json'];
+
+    // The optional protocol features supported by the TV application.
+    var SUPPORTED_FEATURES = ['input_batch', 'controller_state'];
+
+    // The last controller_state snapshot applied for each client.
+    var lastControllerState = {};
+
+    // Pick the most preferred wire format that the client supports. Defaults to JSON.
+    function pickWireFormat(clientFormats) {
+        if (clientFormats instanceof Array) {
+            for (var i = 0; i < SUPPORTED_WIRE_FORMATS.length; i++) {
+                if (clientFormats.indexOf(SUPPORTED_WIRE_FORMATS[i]) !== -1) {
+                    return SUPPORTED_WIRE_FORMATS[i];
+                }
+            }
+        }
+        return 'json';
+    }
+
+    // Pick the features that both the client and the TV application support.
+    function pickFeatures(clientFeatures) {
+        if (!(clientFeatures instanceof Array)) {
+            return [];
+        }
+        return SUPPORTED_FEATURES.filter(function(feature) {
+            return clientFeatures.indexOf(feature) !== -1;
+        });
+    }
+
+    // The version of the binary payload format sent by the clients. Stored in the first byte of every payload.
+    var PAYLOAD_FORMAT_VERSION = 1;
+
+    // The rotate directions indexed by their binary value.
+    var ROTATE_VALUES = ['none', 'left', 'right'];
+
+    // Decode a binary rotate payload: [ version, rotate, strength ]. Returns null if the payload is not valid.
+    function decodeRotatePayload(payload) {
+        var bytes = new Uint8Array(payload);
+        if (bytes.length < 3 || bytes[0] !== PAYLOAD_FORMAT_VERSION) {
+            return null;
+        }
+        return { rotate : ROTATE_VALUES[bytes[1]] || 'none', strength : bytes[2] };
+    }
+
+    // Decode a binary thrust or fire payload: [ version, on/off ]. Returns true if on.
+    function decodeOnOffPayload(payload) {
+        var bytes = new Uint8Array(payload);
+        return (bytes.length >= 2 && bytes[0] === PAYLOAD_FORMAT_VERSION && bytes[1] === 1);
+    }
+
+    // Decode a binary input batch payload: [ version, count, ( event, event fields )... ] into the same array of
+    // objects as the JSON input batch data. Returns null if the payload is not valid.
+    function decodeInputBatchPayload(payload) {
+        var bytes = new Uint8Array(payload);
+        if (bytes.length < 2 || bytes[0] !== PAYLOAD_FORMAT_VERSION) {
+            return null;
+        }
+
+        var batch = [];
+        var pos = 2;
+        for (var i = 0; i < bytes[1] && pos < bytes.length; i++) {
+            var event = bytes[pos++];
+            if (event === 1 && pos + 1 < bytes.length) {
+                batch.push({ event : 'rotate', rotate : ROTATE_VALUES[bytes[pos]] || 'none',
+                    strength : bytes[pos + 1] });
+                pos += 2;
+            } else if (event === 2 && pos < bytes.length) {
+                batch.push({ event : 'thrust', thrust : (bytes[pos++] === 1) ? 'on' : 'off' });
+            } else if (event === 3 && pos < bytes.length) {
+                batch.push({ event : 'fire', fire : (bytes[pos++] === 1) ? 'on' : 'off' });
+            } else {
+                return null;
+            }
+        }
+        return batch;
+    }
+
+    // Decode a binary controller state payload: [ version, rotate, strength, buttons, sequence (4 bytes, big endian) ]
+    // into the same object as the JSON controller state data. Returns null if the payload is not valid.
+    function decodeControllerStatePayload(payload) {
+        var bytes = new Uint8Array(payload);
+        if (bytes.length < 8 || bytes[0] !== PAYLOAD_FORMAT_VERSION) {
+            return null;
+        }
+        return { seq : new DataView(bytes.buffer, bytes.byteOffset, bytes.byteLength).getUint32(4),
+            rotate : ROTATE_VALUES[bytes[1]] || 'none',
+            strength : bytes[2],
+            thrust : (bytes[3] & 0x01) ? 'on' : 'off',
+            fire : (bytes[3] & 0x02) ? 'on' : 'off' };
+    }
+
     // Send a slot_update to all or a specific client.
     function sendSlotUpdate(clientId) {
         // Create and populate the slot data array. It is a subset of the slots object used by the GameManager.
@@ -207,7 +371,8 @@ $(ConnectivityManager = function(){
         onGameStart: function(countdown) { return sendGameStart(countdown); },
         onGameStarted: function(clientId) { return sendGameStarted(clientId); },
         onPlayerOut: function(clientId, countdown) { return sendPlayerOut(clientId, countdown); },
-        onGameOver: function(scoreData) { return sendGameOver(scoreData); }
+        onGameOver: function(scoreData) { return sendGameOver(scoreData); },
+        onPlayerRemoved: function() { return sendSlotUpdate(); }
     }
 
 }());
@@ -194,6 +194,37 @@ BasicGame.Game.prototype = {
         }
     },
 
+    /**
+     * Called to hand a player's spaceship, score and name over to the new client id of the player. Called by the
+     * GameManager when a player resumes the game after reconnecting.
+     *
+     * @param oldClientId
+     * @param newClientId
+     */
+    resumePlayer: function(oldClientId, newClientId) {
+        // Look up the player.
+        var currentPlayer = this.players[oldClientId];
+
+        // If the player was not found, ignore and return.
+        if (currentPlayer == null) {
+            return;
+        }
+
+        this.players[newClientId] = currentPlayer;
+        delete this.players[oldClientId];
+        currentPlayer.id = newClientId;
+
+        // Credit the hits of the bullets still in flight to the new client id.
+        currentPlayer.bullets.forEach(function(bullet) {
+            bullet.source = newClientId;
+        }, this);
+
+        this.scores[newClientId] = this.scores[oldClientId];
+        delete this.scores[oldClientId];
+        this.names[newClientId] = this.names[oldClientId];
+        delete this.names[oldClientId];
+    },
+
     /**
      * Called to rotate a specific player's spaceship. Called by the GameManager when it is informed of a rotation
      * change for a specific player.
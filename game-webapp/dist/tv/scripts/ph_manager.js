@@ -43,6 +43,12 @@ $(GameManager = function(){
         // The name associated to this slot.
         this.name = null;
 
+        // The token the client joined with, which lets it resume this slot after reconnecting.
+        this.resumeToken = null;
+
+        // The timer that removes the player of this slot if the client does not resume it in time, or null.
+        this.holdTimer = null;
+
         // The color and color code associated to this slot.
         this.position = position;
         this.color = color || 'unknown';
@@ -70,6 +76,9 @@ $(GameManager = function(){
         colorToSlotMap[slot.color] = slot;
     }
 
+    // How long the slot of a client that disconnected is held for the client to reconnect and resume it.
+    var RESUME_GRACE_MILLIS = 15000; // 15 seconds
+
     // The last score data object from the last game
     var lastScoreData;
 
@@ -114,10 +123,17 @@ $(GameManager = function(){
 
     // Attempts to add a player to the game. Called by the ConnectivityManager when it receives join event from a
     // client.
-    function addPlayer(clientId, name, color) {
+    function addPlayer(clientId, name, color, resumeToken) {
         // If we already have a player with this client id, remove it and add the new one.
         removePlayer(clientId);
 
+        // If the client is resuming a slot after reconnecting, give it the slot back.
+        var resumedSlot = findSlotByResumeToken(resumeToken);
+        if (resumedSlot != null) {
+            resumePlayer(resumedSlot, clientId, name);
+            return JoinResponseCode.SUCCESS;
+        }
+
         // Look up the requested slot by the color name
         var slot = colorToSlotMap[color];
 
@@ -134,6 +150,7 @@ $(GameManager = function(){
         slot.available = false;
         slot.clientId = clientId;
         slot.name = name;
+        slot.resumeToken = resumeToken || null;
 
         // If in the Game state, add the Player to the game and notify the client that the game has already started.
         if (game.state.getCurrentState() === gameState) {
@@ -167,10 +184,17 @@ $(GameManager = function(){
             return;
         }
 
+        // Stop holding the slot for the client.
+        if (slot.holdTimer != null) {
+            clearTimeout(slot.holdTimer);
+        }
+
         // Un-associate the client with the slot
         slot.available = true;
         slot.clientId = null;
         slot.name = null;
+        slot.resumeToken = null;
+        slot.holdTimer = null;
         
         // If in the Game state, remove the player from the game.
         if (game.state.getCurrentState() === gameState) {
@@ -189,6 +213,73 @@ $(GameManager = function(){
         }
     }
 
+    // Holds the slot of a client that disconnected, so that the client can resume it after reconnecting. The player
+    // is removed if the client does not resume the slot in time. A client that did not join with a resume token is
+    // removed right away. Called by the ConnectivityManager when it receives a disconnect event from a client.
+    function holdPlayer(clientId) {
+        var slot = clientIdToSlotMap[clientId];
+
+        // If the slot is null then the player has already been removed or the given client id is invalid.
+        if (slot == null) {
+            return;
+        }
+        if (slot.resumeToken == null) {
+            removePlayer(clientId);
+            return;
+        }
+        if (slot.holdTimer != null) {
+            return;
+        }
+
+        // Release the controls so the ship does not keep turning, thrusting or firing while the client is away.
+        onRotate(clientId, 'none', 0);
+        onThrust(clientId, false);
+        onFire(clientId, false);
+
+        slot.holdTimer = setTimeout(function() {
+            slot.holdTimer = null;
+            removePlayer(clientId);
+            ConnectivityManager.onPlayerRemoved();
+        }, RESUME_GRACE_MILLIS);
+    }
+
+    // Gives a slot back to the client that joined it, under the client's new client id.
+    function resumePlayer(slot, clientId, name) {
+        var oldClientId = slot.clientId;
+
+        // Stop holding the slot for the client.
+        if (slot.holdTimer != null) {
+            clearTimeout(slot.holdTimer);
+            slot.holdTimer = null;
+        }
+
+        // Move the client id to slot mapping to the new client id.
+        delete clientIdToSlotMap[oldClientId];
+        slot.clientId = clientId;
+        slot.name = name;
+        clientIdToSlotMap[clientId] = slot;
+
+        // If in the Game state, hand the Player over and notify the client that the game has already started.
+        if (game.state.getCurrentState() === gameState) {
+            gameState.resumePlayer(oldClientId, clientId);
+            ConnectivityManager.onGameStarted(clientId);
+        }
+    }
+
+    // Returns the taken slot joined with the given resume token, or null.
+    function findSlotByResumeToken(resumeToken) {
+        if (!resumeToken) {
+            return null;
+        }
+        for (var i in slots) {
+            var slot = slots[i];
+            if (!slot.available && slot.resumeToken === resumeToken) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
     /******************************************************************************************************************
      * Player Control Methods
      */
@@ -234,8 +325,9 @@ $(GameManager = function(){
 
         // Player Join/Quit Methods
         getPlayerCount: function() { return Object.keys(clientIdToSlotMap).length; },
-        addPlayer: function(clientId, name, color) { return addPlayer(clientId, name, color); },
+        addPlayer: function(clientId, name, color, resumeToken) { return addPlayer(clientId, name, color, resumeToken); },
         removePlayer: function(clientId) { return removePlayer(clientId); },
+        holdPlayer: function(clientId) { return holdPlayer(clientId); },
 
         // Player Control Methods
         onRotate: function(clientId, direction, strength) { onRotate(clientId, direction, strength); },